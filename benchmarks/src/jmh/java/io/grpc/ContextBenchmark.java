@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.grpc;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures {@link Context} lookups, attach/detach and derivation for contexts of various depths,
+ * where every level of the context adds one value, like a chain of interceptors does.
+ */
+@State(Scope.Benchmark)
+public class ContextBenchmark {
+
+  @Param({"1", "5", "10", "25"})
+  public int depth;
+
+  private final Context.Key<Object> missingKey = Context.key("missing");
+  private final Context.Key<Object> newKey = Context.key("new");
+  private final Object value = new Object();
+  private Context.Key<Object> oldestKey;
+  private Context.Key<Object> newestKey;
+  private Context.CancellableContext cancellable;
+  private Context context;
+
+  /**
+   * Builds a context {@link #depth} levels below a cancellable context.
+   */
+  @Setup
+  public void setUp() {
+    cancellable = Context.ROOT.withCancellation();
+    context = cancellable;
+    for (int i = 0; i < depth; i++) {
+      Context.Key<Object> key = Context.key("key" + i);
+      if (i == 0) {
+        oldestKey = key;
+      }
+      newestKey = key;
+      context = context.withValue(key, value);
+    }
+  }
+
+  /**
+   * Looks up the value set by the context's own level.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public Object lookupNewest() {
+    return newestKey.get(context);
+  }
+
+  /**
+   * Looks up the value set by the level right below {@link Context#ROOT}.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public Object lookupOldest() {
+    return oldestKey.get(context);
+  }
+
+  /**
+   * Looks up a key that no level sets.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public Object lookupMissing() {
+    return missingKey.get(context);
+  }
+
+  /**
+   * Checks whether the cancellable context at the bottom of the chain was cancelled.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public boolean isCancelled() {
+    return context.isCancelled();
+  }
+
+  /**
+   * Attaches the context and restores the previous one, as done around every callback.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public Context attachDetach() {
+    Context previous = context.attach();
+    context.detach(previous);
+    return previous;
+  }
+
+  /**
+   * Derives a context with one more value.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public Context withValue() {
+    return context.withValue(newKey, value);
+  }
+
+  /**
+   * Cancels the context built by {@link #setUp}.
+   */
+  @TearDown
+  public void tearDown() {
+    cancellable.cancel(null);
+  }
+}
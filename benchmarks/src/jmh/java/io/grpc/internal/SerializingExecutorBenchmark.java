@@ -18,13 +18,16 @@ package io.grpc.internal;
 
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Phaser;
 import java.util.concurrent.TimeUnit;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Mode;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.TearDown;
 
@@ -39,8 +42,14 @@ import org.openjdk.jmh.annotations.TearDown;
 @State(Scope.Thread)
 public class SerializingExecutorBenchmark {
 
+  @Param({"2147483647", "16"})
+  public int maxBatchSize;
+
+  @Param({"false", "true"})
+  public boolean metrics;
+
   private ExecutorService executorService;
-  private Executor executor = new SerializingExecutor(executorService);
+  private Executor executor;
 
   private static class IncrRunnable implements Runnable {
     int val;
@@ -61,6 +70,13 @@ public class SerializingExecutorBenchmark {
     }
   };
 
+  @Setup
+  public void setUp() {
+    executorService = Executors.newSingleThreadExecutor();
+    executor = new SerializingExecutor(
+        executorService, maxBatchSize, metrics ? new SerializingExecutor.Metrics() : null);
+  }
+
   @TearDown
   public void tearDown() throws Exception {
     executorService.shutdownNow();
@@ -62,6 +62,9 @@ public class OutboundHeadersBenchmark {
   private final AsciiString userAgent = new AsciiString("grpc-java-netty");
   private final Http2HeadersEncoder headersEncoder = new DefaultHttp2HeadersEncoder();
   private final ByteBuf scratchBuffer = UnpooledByteBufAllocator.DEFAULT.buffer(4096);
+  private final GrpcHttp2OutboundHeaders.ClientRequestPreHeaders preHeaders =
+      new GrpcHttp2OutboundHeaders.ClientRequestPreHeaders(
+          authority, defaultPath, Utils.HTTP_METHOD, scheme, userAgent);
 
   @Setup
   public void setUp() throws Exception {
@@ -78,6 +81,17 @@ public class OutboundHeadersBenchmark {
         userAgent);
   }
 
+  /**
+   * Like {@link #convertClientHeaders}, but with the headers added by gRPC cached, as they are for
+   * repeated calls of a method.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public Http2Headers convertClientHeadersCached() {
+    return Utils.convertClientHeaders(metadata, preHeaders);
+  }
+
   @Benchmark
   @BenchmarkMode(Mode.SampleTime)
   @OutputTimeUnit(TimeUnit.NANOSECONDS)
@@ -16,6 +16,7 @@
 
 package io.grpc.benchmarks.qps;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.common.util.concurrent.UncaughtExceptionHandlers;
 import io.grpc.Server;
 import io.grpc.benchmarks.Utils;
@@ -35,6 +36,7 @@ import io.netty.handler.ssl.SslContextBuilder;
 import io.netty.handler.ssl.SslProvider;
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
 import java.util.concurrent.ForkJoinWorkerThread;
@@ -160,24 +162,47 @@ public class AsyncServer {
         .addService(new BenchmarkServiceImpl())
         .sslContext(sslContext)
         .flowControlWindow(config.flowControlWindow);
-    if (config.directExecutor) {
-      builder.directExecutor();
-    } else {
-      // TODO(carl-mastrangelo): This should not be necessary.  I don't know where this should be
-      // put.  Move it somewhere else, or remove it if no longer necessary.
-      // See: https://github.com/grpc/grpc-java/issues/2119
-      builder.executor(new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
-          new ForkJoinWorkerThreadFactory() {
-            final AtomicInteger num = new AtomicInteger();
-            @Override
-            public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
-              ForkJoinWorkerThread thread =
-                  ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
-              thread.setDaemon(true);
-              thread.setName("grpc-server-app-" + "-" + num.getAndIncrement());
-              return thread;
-            }
-          }, UncaughtExceptionHandlers.systemExit(), true /* async */));
+    ServerConfiguration.ExecutorType executorType =
+        config.directExecutor ? ServerConfiguration.ExecutorType.DIRECT : config.executor;
+    switch (executorType) {
+      case DIRECT: {
+        builder.directExecutor();
+        break;
+      }
+      case THREAD_PER_CALL: {
+        builder.threadPerCallExecutor();
+        break;
+      }
+      case FIXED: {
+        builder.executor(Executors.newFixedThreadPool(config.executorThreads,
+            new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("grpc-server-app-%d")
+                .build()));
+        break;
+      }
+      case FORK_JOIN: {
+        // TODO(carl-mastrangelo): This should not be necessary.  I don't know where this should be
+        // put.  Move it somewhere else, or remove it if no longer necessary.
+        // See: https://github.com/grpc/grpc-java/issues/2119
+        builder.executor(new ForkJoinPool(config.executorThreads,
+            new ForkJoinWorkerThreadFactory() {
+              final AtomicInteger num = new AtomicInteger();
+              @Override
+              public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                ForkJoinWorkerThread thread =
+                    ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setDaemon(true);
+                thread.setName("grpc-server-app-" + "-" + num.getAndIncrement());
+                return thread;
+              }
+            }, UncaughtExceptionHandlers.systemExit(), true /* async */));
+        break;
+      }
+      default: {
+        // Should never get here.
+        throw new IllegalArgumentException("Unsupported executor: " + executorType);
+      }
     }
 
     return builder.build();
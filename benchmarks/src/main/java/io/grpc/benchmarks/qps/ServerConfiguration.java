@@ -40,6 +40,8 @@ class ServerConfiguration implements Configuration {
   boolean tls;
   boolean useDefaultCiphers;
   boolean directExecutor;
+  ExecutorType executor = ExecutorType.FORK_JOIN;
+  int executorThreads = Runtime.getRuntime().availableProcessors();
   SocketAddress address;
   int flowControlWindow = NettyChannelBuilder.DEFAULT_FLOW_CONTROL_WINDOW;
 
@@ -138,6 +140,38 @@ class ServerConfiguration implements Configuration {
     }
   }
 
+  /**
+   * All of the supported executors for application code.
+   */
+  public enum ExecutorType {
+    FORK_JOIN("A ForkJoinPool with executor_threads threads."),
+    FIXED("A fixed thread pool with executor_threads threads."),
+    DIRECT("Execute calls directly in the transport thread."),
+    THREAD_PER_CALL("A new thread per callback, which is a virtual thread on Java 21 and later.");
+
+    private final String description;
+
+    ExecutorType(String description) {
+      this.description = description;
+    }
+
+    static String getDescriptionString() {
+      StringBuilder builder =
+          new StringBuilder("Select the executor to run RPC calls on. Options:\n");
+      boolean first = true;
+      for (ExecutorType executor : ExecutorType.values()) {
+        if (!first) {
+          builder.append("\n");
+        }
+        builder.append(executor.name().toLowerCase());
+        builder.append(": ");
+        builder.append(executor.description);
+        first = false;
+      }
+      return builder.toString();
+    }
+  }
+
   enum ServerParam implements AbstractConfigurationBuilder.Param {
     ADDRESS("STR", "Socket address (host:port) or Unix Domain Socket file name "
         + "(unix:///path/to/file), depending on the transport selected.", null, true) {
@@ -179,6 +213,19 @@ class ServerConfiguration implements Configuration {
         config.directExecutor = parseBoolean(value);
       }
     },
+    EXECUTOR("STR", ExecutorType.getDescriptionString(), DEFAULT.executor.name().toLowerCase()) {
+      @Override
+      protected void setServerValue(ServerConfiguration config, String value) {
+        config.executor = ExecutorType.valueOf(value.toUpperCase());
+      }
+    },
+    EXECUTOR_THREADS("INT", "The number of threads of the fork_join and fixed executors.",
+        "" + DEFAULT.executorThreads) {
+      @Override
+      protected void setServerValue(ServerConfiguration config, String value) {
+        config.executorThreads = parseInt(value);
+      }
+    },
     FLOW_CONTROL_WINDOW("BYTES", "The HTTP/2 flow control window.",
         "" + DEFAULT.flowControlWindow) {
       @Override
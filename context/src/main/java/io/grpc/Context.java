@@ -95,9 +95,8 @@ public class Context {
 
   private static final Logger log = Logger.getLogger(Context.class.getName());
 
-  private static final Object[][] EMPTY_ENTRIES = new Object[0][2];
-
-  private static final Key<Deadline> DEADLINE_KEY = new Key<Deadline>("deadline");
+  private static final PersistentHashArrayMappedTrie<Key<?>, Object> EMPTY_ENTRIES =
+      new PersistentHashArrayMappedTrie<Key<?>, Object>();
 
   /**
    * The logical root context which is the ultimate ancestor of all contexts. This context
@@ -175,8 +174,13 @@ public class Context {
   }
 
   private final Context parent;
-  private final Object[][] keyValueEntries;
-  private final boolean cascadesCancellation;
+  // Holds every value visible from this context, including those set on its ancestors, so that
+  // lookups don't depend on how deep the context is.
+  private final PersistentHashArrayMappedTrie<Key<?>, Object> keyValueEntries;
+  private final Deadline deadline;
+  // The nearest ancestor whose cancellation cascades to this context, so that checking for
+  // cancellation skips the levels that only add values.
+  private final CancellableContext cancellableAncestor;
   private ArrayList<ExecutableListener> listeners;
   private CancellationListener parentListener = new ParentListener();
   private final boolean canBeCancelled;
@@ -186,9 +190,10 @@ public class Context {
    */
   private Context(Context parent) {
     this.parent = parent;
+    keyValueEntries = parent == null ? EMPTY_ENTRIES : parent.keyValueEntries;
     // Not inheriting cancellation implies not inheriting a deadline too.
-    keyValueEntries = new Object[][]{{DEADLINE_KEY, null}};
-    cascadesCancellation = false;
+    deadline = null;
+    cancellableAncestor = null;
     canBeCancelled = false;
   }
 
@@ -196,24 +201,33 @@ public class Context {
    * Construct a context that cannot be cancelled but will cascade cancellation from its parent if
    * it is cancellable.
    */
-  private Context(Context parent, Object[][] keyValueEntries) {
+  private Context(Context parent, PersistentHashArrayMappedTrie<Key<?>, Object> keyValueEntries) {
     this.parent = parent;
     this.keyValueEntries = keyValueEntries;
-    cascadesCancellation = true;
-    canBeCancelled = this.parent != null && this.parent.canBeCancelled;
+    deadline = parent.deadline;
+    cancellableAncestor = cancellableAncestor(parent);
+    canBeCancelled = parent.canBeCancelled;
   }
 
   /**
    * Construct a context that can be cancelled and will cascade cancellation from its parent if
    * it is cancellable.
    */
-  private Context(Context parent, Object[][] keyValueEntries, boolean isCancellable) {
+  private Context(Context parent, Deadline deadline, boolean isCancellable) {
     this.parent = parent;
-    this.keyValueEntries = keyValueEntries;
-    cascadesCancellation = true;
+    keyValueEntries = parent.keyValueEntries;
+    this.deadline = deadline;
+    cancellableAncestor = cancellableAncestor(parent);
     canBeCancelled = isCancellable;
   }
 
+  private static CancellableContext cancellableAncestor(Context parent) {
+    if (parent instanceof CancellableContext) {
+      return (CancellableContext) parent;
+    }
+    return parent.cancellableAncestor;
+  }
+
   /**
    * Create a new context which is independently cancellable and also cascades cancellation from
    * its parent. Callers <em>must</em> ensure that either {@link
@@ -319,7 +333,7 @@ public class Context {
    *
    */
   public <V> Context withValue(Key<V> k1, V v1) {
-    return new Context(this, new Object[][]{{k1, v1}});
+    return new Context(this, keyValueEntries.put(k1, v1));
   }
 
   /**
@@ -327,7 +341,7 @@ public class Context {
    * from its parent.
    */
   public <V1, V2> Context withValues(Key<V1> k1, V1 v1, Key<V2> k2, V2 v2) {
-    return new Context(this, new Object[][]{{k1, v1}, {k2, v2}});
+    return new Context(this, keyValueEntries.put(k1, v1).put(k2, v2));
   }
 
   /**
@@ -335,7 +349,7 @@ public class Context {
    * from its parent.
    */
   public <V1, V2, V3> Context withValues(Key<V1> k1, V1 v1, Key<V2> k2, V2 v2, Key<V3> k3, V3 v3) {
-    return new Context(this, new Object[][]{{k1, v1}, {k2, v2}, {k3, v3}});
+    return new Context(this, keyValueEntries.put(k1, v1).put(k2, v2).put(k3, v3));
   }
 
   /**
@@ -344,7 +358,7 @@ public class Context {
    */
   public <V1, V2, V3, V4> Context withValues(Key<V1> k1, V1 v1, Key<V2> k2, V2 v2,
       Key<V3> k3, V3 v3, Key<V4> k4, V4 v4) {
-    return new Context(this, new Object[][]{{k1, v1}, {k2, v2}, {k3, v3}, {k4, v4}});
+    return new Context(this, keyValueEntries.put(k1, v1).put(k2, v2).put(k3, v3).put(k4, v4));
   }
 
   /**
@@ -414,10 +428,10 @@ public class Context {
    * Is this context cancelled.
    */
   public boolean isCancelled() {
-    if (parent == null || !cascadesCancellation) {
+    if (cancellableAncestor == null) {
       return false;
     } else {
-      return parent.isCancelled();
+      return cancellableAncestor.isCancelled();
     }
   }
 
@@ -430,10 +444,10 @@ public class Context {
    * should generally assume that it has already been handled and logged properly.
    */
   public Throwable cancellationCause() {
-    if (parent == null || !cascadesCancellation) {
+    if (cancellableAncestor == null) {
       return null;
     } else {
-      return parent.cancellationCause();
+      return cancellableAncestor.cancellationCause();
     }
   }
 
@@ -442,7 +456,7 @@ public class Context {
    * @return A {@link io.grpc.Deadline} or {@code null} if no deadline is set.
    */
   public Deadline getDeadline() {
-    return DEADLINE_KEY.get(this);
+    return deadline;
   }
 
   /**
@@ -644,15 +658,7 @@ public class Context {
    * Lookup the value for a key in the context inheritance chain.
    */
   private Object lookup(Key<?> key) {
-    for (int i = 0; i < keyValueEntries.length; i++) {
-      if (key.equals(keyValueEntries[i][0])) {
-        return keyValueEntries[i][1];
-      }
-    }
-    if (parent == null) {
-      return null;
-    }
-    return parent.lookup(key);
+    return keyValueEntries.get(key);
   }
 
   /**
@@ -663,7 +669,8 @@ public class Context {
    */
   public static final class CancellableContext extends Context {
 
-    private boolean cancelled;
+    // Written under the lock, but volatile so that checking for cancellation doesn't need it.
+    private volatile boolean cancelled;
     private Throwable cancellationCause;
     private final Context uncancellableSurrogate;
     private ScheduledFuture<?> pendingDeadline;
@@ -672,21 +679,21 @@ public class Context {
      * If the parent deadline is before the given deadline there is no need to install the value
      * or listen for its expiration as the parent context will already be listening for it.
      */
-    private static Object[][] deriveDeadline(Context parent, Deadline deadline) {
-      Deadline parentDeadline = DEADLINE_KEY.get(parent);
+    private static Deadline deriveDeadline(Context parent, Deadline deadline) {
+      Deadline parentDeadline = parent.deadline;
       return parentDeadline == null || deadline.isBefore(parentDeadline)
-          ? new Object[][]{{ DEADLINE_KEY, deadline}} :
-          EMPTY_ENTRIES;
+          ? deadline :
+          parentDeadline;
     }
 
     /**
      * Create a cancellable context that does not have a deadline.
      */
     private CancellableContext(Context parent) {
-      super(parent, EMPTY_ENTRIES, true);
+      super(parent, parent.deadline, true);
       // Create a surrogate that inherits from this to attach so that you cannot retrieve a
       // cancellable context from Context.current()
-      uncancellableSurrogate = new Context(this, EMPTY_ENTRIES);
+      uncancellableSurrogate = new Context(this, parent.keyValueEntries);
     }
 
     /**
@@ -695,7 +702,7 @@ public class Context {
     private CancellableContext(Context parent, Deadline deadline,
         ScheduledExecutorService scheduler) {
       super(parent, deriveDeadline(parent, deadline), true);
-      if (DEADLINE_KEY.get(this) == deadline) {
+      if (getDeadline() == deadline) {
         final TimeoutException cause = new TimeoutException("context timed out");
         if (!deadline.isExpired()) {
           // The parent deadline was after the new deadline so we need to install a listener
@@ -715,7 +722,7 @@ public class Context {
           cancel(cause);
         }
       }
-      uncancellableSurrogate = new Context(this, EMPTY_ENTRIES);
+      uncancellableSurrogate = new Context(this, parent.keyValueEntries);
     }
 
 
@@ -754,13 +761,14 @@ public class Context {
       boolean triggeredCancel = false;
       synchronized (this) {
         if (!cancelled) {
-          cancelled = true;
           if (pendingDeadline != null) {
             // If we have a scheduled cancellation pending attempt to cancel it.
             pendingDeadline.cancel(false);
             pendingDeadline = null;
           }
           this.cancellationCause = cause;
+          // Publishes the cause along with the flag.
+          cancelled = true;
           triggeredCancel = true;
         }
       }
@@ -786,12 +794,10 @@ public class Context {
 
     @Override
     public boolean isCancelled() {
-      synchronized (this) {
-        if (cancelled) {
-          return true;
-        }
+      if (cancelled) {
+        return true;
       }
-      // Detect cancellation of parent in the case where we have no listeners and
+      // Detect cancellation of an ancestor in the case where we have no listeners and
       // record it.
       if (super.isCancelled()) {
         cancel(super.cancellationCause());
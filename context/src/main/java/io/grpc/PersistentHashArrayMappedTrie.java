@@ -0,0 +1,299 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.grpc;
+
+import java.util.Arrays;
+
+/**
+ * A persistent (copy-on-write) hash array mapped trie, as described in Phil Bagwell's "Ideal Hash
+ * Trees". Keys are compared by identity and hashed with {@link Object#hashCode}; keys with equal
+ * hashes are kept in a linearly searched collision leaf. Removal is not supported, but replacing a
+ * value is.
+ *
+ * <p>Every {@link #put} returns a new trie that shares all untouched nodes with the original, so a
+ * put copies at most one small array per level and a lookup visits at most one node per level. The
+ * trie branches 32 ways on 5 bits of hash at a time, so even a few hundred entries stay within two
+ * or three levels.
+ */
+final class PersistentHashArrayMappedTrie<K, V> {
+  private final Node<K, V> root;
+
+  PersistentHashArrayMappedTrie() {
+    this(null);
+  }
+
+  private PersistentHashArrayMappedTrie(Node<K, V> root) {
+    this.root = root;
+  }
+
+  /**
+   * Returns the number of keys in the trie.
+   */
+  int size() {
+    if (root == null) {
+      return 0;
+    }
+    return root.size();
+  }
+
+  /**
+   * Returns the value mapped to {@code key}, or {@code null} if there is none.
+   */
+  V get(K key) {
+    if (root == null) {
+      return null;
+    }
+    return root.get(key, key.hashCode(), 0);
+  }
+
+  /**
+   * Returns a new trie in which {@code key} is mapped to {@code value}. This trie is unchanged.
+   */
+  PersistentHashArrayMappedTrie<K, V> put(K key, V value) {
+    if (root == null) {
+      return new PersistentHashArrayMappedTrie<K, V>(new Leaf<K, V>(key, value));
+    }
+    return new PersistentHashArrayMappedTrie<K, V>(root.put(key, value, key.hashCode(), 0));
+  }
+
+  interface Node<K, V> {
+    V get(K key, int hash, int bitsConsumed);
+
+    Node<K, V> put(K key, V value, int hash, int bitsConsumed);
+
+    int size();
+  }
+
+  // Visible for testing
+  static final class Leaf<K, V> implements Node<K, V> {
+    private final K key;
+    private final V value;
+
+    Leaf(K key, V value) {
+      this.key = key;
+      this.value = value;
+    }
+
+    @Override
+    public int size() {
+      return 1;
+    }
+
+    @Override
+    public V get(K key, int hash, int bitsConsumed) {
+      if (this.key == key) {
+        return value;
+      }
+      return null;
+    }
+
+    @Override
+    public Node<K, V> put(K key, V value, int hash, int bitsConsumed) {
+      int thisHash = this.key.hashCode();
+      if (thisHash != hash) {
+        return CompressedIndex.combine(
+            new Leaf<K, V>(key, value), hash, this, thisHash, bitsConsumed);
+      } else if (this.key == key) {
+        return new Leaf<K, V>(key, value);
+      } else {
+        return new CollisionLeaf<K, V>(this.key, this.value, key, value);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return String.format("Leaf(key=%s value=%s)", key, value);
+    }
+  }
+
+  // Visible for testing
+  static final class CollisionLeaf<K, V> implements Node<K, V> {
+    // All keys have the same hash, and no two keys are the same reference.
+    private final K[] keys;
+    private final V[] values;
+
+    @SuppressWarnings("unchecked")
+    CollisionLeaf(K key1, V value1, K key2, V value2) {
+      this((K[]) new Object[] {key1, key2}, (V[]) new Object[] {value1, value2});
+      assert key1 != key2;
+      assert key1.hashCode() == key2.hashCode();
+    }
+
+    private CollisionLeaf(K[] keys, V[] values) {
+      this.keys = keys;
+      this.values = values;
+    }
+
+    @Override
+    public int size() {
+      return values.length;
+    }
+
+    @Override
+    public V get(K key, int hash, int bitsConsumed) {
+      for (int i = 0; i < keys.length; i++) {
+        if (keys[i] == key) {
+          return values[i];
+        }
+      }
+      return null;
+    }
+
+    @Override
+    public Node<K, V> put(K key, V value, int hash, int bitsConsumed) {
+      int thisHash = keys[0].hashCode();
+      if (thisHash != hash) {
+        return CompressedIndex.combine(
+            new Leaf<K, V>(key, value), hash, this, thisHash, bitsConsumed);
+      }
+      int keyIndex = indexOfKey(key);
+      if (keyIndex != -1) {
+        V[] newValues = Arrays.copyOf(values, values.length);
+        newValues[keyIndex] = value;
+        return new CollisionLeaf<K, V>(keys, newValues);
+      }
+      K[] newKeys = Arrays.copyOf(keys, keys.length + 1);
+      V[] newValues = Arrays.copyOf(values, values.length + 1);
+      newKeys[keys.length] = key;
+      newValues[values.length] = value;
+      return new CollisionLeaf<K, V>(newKeys, newValues);
+    }
+
+    private int indexOfKey(K key) {
+      for (int i = 0; i < keys.length; i++) {
+        if (keys[i] == key) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder valuesSb = new StringBuilder();
+      valuesSb.append("CollisionLeaf(");
+      for (int i = 0; i < values.length; i++) {
+        valuesSb.append("(key=").append(keys[i]).append(" value=").append(values[i]).append(") ");
+      }
+      return valuesSb.append(")").toString();
+    }
+  }
+
+  // Visible for testing
+  static final class CompressedIndex<K, V> implements Node<K, V> {
+    private static final int BITS = 5;
+    private static final int BITS_MASK = 0x1F;
+
+    // One bit per occupied slot of the 32-way branch; values holds only the occupied slots.
+    final int bitmap;
+    final Node<K, V>[] values;
+    private final int size;
+
+    private CompressedIndex(int bitmap, Node<K, V>[] values, int size) {
+      this.bitmap = bitmap;
+      this.values = values;
+      this.size = size;
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    public V get(K key, int hash, int bitsConsumed) {
+      int indexBit = indexBit(hash, bitsConsumed);
+      if ((bitmap & indexBit) == 0) {
+        return null;
+      }
+      int compressedIndex = compressedIndex(indexBit);
+      return values[compressedIndex].get(key, hash, bitsConsumed + BITS);
+    }
+
+    @Override
+    public Node<K, V> put(K key, V value, int hash, int bitsConsumed) {
+      int indexBit = indexBit(hash, bitsConsumed);
+      int compressedIndex = compressedIndex(indexBit);
+      if ((bitmap & indexBit) == 0) {
+        Node<K, V>[] newValues = newNodeArray(values.length + 1);
+        System.arraycopy(values, 0, newValues, 0, compressedIndex);
+        newValues[compressedIndex] = new Leaf<K, V>(key, value);
+        System.arraycopy(values, compressedIndex, newValues, compressedIndex + 1,
+            values.length - compressedIndex);
+        return new CompressedIndex<K, V>(bitmap | indexBit, newValues, size() + 1);
+      }
+      Node<K, V>[] newValues = Arrays.copyOf(values, values.length);
+      newValues[compressedIndex] =
+          values[compressedIndex].put(key, value, hash, bitsConsumed + BITS);
+      int newSize = size() + newValues[compressedIndex].size() - values[compressedIndex].size();
+      return new CompressedIndex<K, V>(bitmap, newValues, newSize);
+    }
+
+    static <K, V> Node<K, V> combine(
+        Node<K, V> node1, int hash1, Node<K, V> node2, int hash2, int bitsConsumed) {
+      assert hash1 != hash2;
+      int indexBit1 = indexBit(hash1, bitsConsumed);
+      int indexBit2 = indexBit(hash2, bitsConsumed);
+      if (indexBit1 == indexBit2) {
+        Node<K, V> node = combine(node1, hash1, node2, hash2, bitsConsumed + BITS);
+        Node<K, V>[] values = newNodeArray(1);
+        values[0] = node;
+        return new CompressedIndex<K, V>(indexBit1, values, node.size());
+      }
+      Node<K, V>[] values = newNodeArray(2);
+      // Slots are kept in the order of their bits.
+      if (uncompressedIndex(hash1, bitsConsumed) < uncompressedIndex(hash2, bitsConsumed)) {
+        values[0] = node1;
+        values[1] = node2;
+      } else {
+        values[0] = node2;
+        values[1] = node1;
+      }
+      return new CompressedIndex<K, V>(
+          indexBit1 | indexBit2, values, node1.size() + node2.size());
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder valuesSb = new StringBuilder();
+      valuesSb.append("CompressedIndex(")
+          .append(String.format("bitmap=%s ", Integer.toBinaryString(bitmap)));
+      for (Node<K, V> value : values) {
+        valuesSb.append(value).append(" ");
+      }
+      return valuesSb.append(")").toString();
+    }
+
+    private int compressedIndex(int indexBit) {
+      return Integer.bitCount(bitmap & (indexBit - 1));
+    }
+
+    private static int uncompressedIndex(int hash, int bitsConsumed) {
+      return (hash >>> bitsConsumed) & BITS_MASK;
+    }
+
+    private static int indexBit(int hash, int bitsConsumed) {
+      return 1 << uncompressedIndex(hash, bitsConsumed);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> Node<K, V>[] newNodeArray(int length) {
+      return (Node<K, V>[]) new Node<?, ?>[length];
+    }
+  }
+}
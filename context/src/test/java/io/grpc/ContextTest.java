@@ -30,6 +30,8 @@ import static org.junit.Assert.fail;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.SettableFuture;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
@@ -247,6 +249,28 @@ public class ContextTest {
     base.attach();
   }
 
+  @Test
+  public void valuesVisibleThroughDeepChains() {
+    Context context = Context.ROOT.withValue(PET, "dog");
+    List<Context.Key<Integer>> keys = new ArrayList<Context.Key<Integer>>();
+    for (int i = 0; i < 50; i++) {
+      Context.Key<Integer> key = Context.key("key" + i);
+      keys.add(key);
+      context = i % 10 == 0 ? context.fork().withValue(key, i) : context.withValue(key, i);
+    }
+    Context.CancellableContext cancellable = context.withCancellation();
+    Context child = cancellable.withValue(COLOR, "blue");
+
+    assertEquals("dog", PET.get(child));
+    assertEquals("blue", COLOR.get(child));
+    assertEquals("lasagna", FOOD.get(child));
+    for (int i = 0; i < keys.size(); i++) {
+      assertEquals(i, (int) keys.get(i).get(child));
+    }
+    assertNull(COLOR.get(context));
+    cancellable.cancel(null);
+  }
+
   @Test
   public void cancelReturnsFalseIfAlreadyCancelled() {
     Context.CancellableContext base = Context.current().withCancellation();
@@ -377,6 +401,29 @@ public class ContextTest {
     assertSame(t, child.cancellationCause());
   }
 
+  @Test
+  public void cascadingCancellationThroughDeepChain() {
+    Context.CancellableContext base = Context.current().withCancellation();
+    Context child = base;
+    for (int i = 0; i < 20; i++) {
+      child = child.withValue(PET, "pet" + i);
+    }
+    Context.CancellableContext cancellable = child.withCancellation();
+    Context grandchild = cancellable.withValue(COLOR, "red");
+    Context forked = grandchild.fork();
+    assertFalse(grandchild.isCancelled());
+
+    Throwable t = new Throwable();
+    base.cancel(t);
+    assertTrue(child.isCancelled());
+    assertSame(t, child.cancellationCause());
+    assertTrue(grandchild.isCancelled());
+    assertSame(t, grandchild.cancellationCause());
+    assertTrue(cancellable.isCancelled());
+    assertFalse(forked.isCancelled());
+    assertNull(forked.cancellationCause());
+  }
+
   // Context#isCurrent() and Context.CancellableContext#isCurrent() are intended
   // to be visible only for testing. The deprecation is meant for users.
   @SuppressWarnings("deprecation")
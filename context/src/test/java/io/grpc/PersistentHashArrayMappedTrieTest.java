@@ -0,0 +1,210 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.grpc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import io.grpc.PersistentHashArrayMappedTrie.CollisionLeaf;
+import io.grpc.PersistentHashArrayMappedTrie.CompressedIndex;
+import io.grpc.PersistentHashArrayMappedTrie.Leaf;
+import io.grpc.PersistentHashArrayMappedTrie.Node;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for {@link PersistentHashArrayMappedTrie}.
+ */
+@RunWith(JUnit4.class)
+public class PersistentHashArrayMappedTrieTest {
+
+  @Test
+  public void emptyTrie() {
+    PersistentHashArrayMappedTrie<Key, Object> trie =
+        new PersistentHashArrayMappedTrie<Key, Object>();
+    assertEquals(0, trie.size());
+    assertNull(trie.get(new Key(1)));
+  }
+
+  @Test
+  public void putLeavesOriginalUnchanged() {
+    Key key = new Key(1);
+    PersistentHashArrayMappedTrie<Key, Object> empty =
+        new PersistentHashArrayMappedTrie<Key, Object>();
+    PersistentHashArrayMappedTrie<Key, Object> one = empty.put(key, "a");
+    PersistentHashArrayMappedTrie<Key, Object> replaced = one.put(key, "b");
+
+    assertNull(empty.get(key));
+    assertEquals("a", one.get(key));
+    assertEquals("b", replaced.get(key));
+    assertEquals(1, replaced.size());
+  }
+
+  @Test
+  public void leaf_replace() {
+    Key key = new Key(0);
+    Node<Key, Object> leaf = new Leaf<Key, Object>(key, "a");
+    Node<Key, Object> ret = leaf.put(key, "b", key.hashCode(), 0);
+    assertTrue(ret instanceof Leaf);
+    assertEquals("b", ret.get(key, key.hashCode(), 0));
+    assertEquals("a", leaf.get(key, key.hashCode(), 0));
+  }
+
+  @Test
+  public void leaf_collision() {
+    Key key1 = new Key(0);
+    Key key2 = new Key(0);
+    Node<Key, Object> leaf = new Leaf<Key, Object>(key1, "a");
+    Node<Key, Object> ret = leaf.put(key2, "b", key2.hashCode(), 0);
+    assertTrue(ret instanceof CollisionLeaf);
+    assertEquals(2, ret.size());
+    assertEquals("a", ret.get(key1, key1.hashCode(), 0));
+    assertEquals("b", ret.get(key2, key2.hashCode(), 0));
+    assertNull(ret.get(new Key(0), 0, 0));
+  }
+
+  @Test
+  public void leaf_differentHashes() {
+    Key key1 = new Key(0);
+    Key key2 = new Key(1);
+    Node<Key, Object> leaf = new Leaf<Key, Object>(key1, "a");
+    Node<Key, Object> ret = leaf.put(key2, "b", key2.hashCode(), 0);
+    assertTrue(ret instanceof CompressedIndex);
+    assertEquals(2, ret.size());
+    assertEquals("a", ret.get(key1, key1.hashCode(), 0));
+    assertEquals("b", ret.get(key2, key2.hashCode(), 0));
+  }
+
+  @Test
+  public void collisionLeaf_replaceAndAppend() {
+    Key key1 = new Key(7);
+    Key key2 = new Key(7);
+    Key key3 = new Key(7);
+    Node<Key, Object> leaf = new CollisionLeaf<Key, Object>(key1, "a", key2, "b");
+
+    Node<Key, Object> replaced = leaf.put(key1, "c", 7, 0);
+    assertEquals(2, replaced.size());
+    assertEquals("c", replaced.get(key1, 7, 0));
+    assertEquals("a", leaf.get(key1, 7, 0));
+
+    Node<Key, Object> appended = leaf.put(key3, "d", 7, 0);
+    assertEquals(3, appended.size());
+    assertEquals("d", appended.get(key3, 7, 0));
+    assertNull(leaf.get(key3, 7, 0));
+  }
+
+  @Test
+  public void collisionLeaf_differentHash() {
+    Key key1 = new Key(7);
+    Key key2 = new Key(7);
+    Key key3 = new Key(8);
+    Node<Key, Object> leaf = new CollisionLeaf<Key, Object>(key1, "a", key2, "b");
+    Node<Key, Object> ret = leaf.put(key3, "c", key3.hashCode(), 0);
+    assertTrue(ret instanceof CompressedIndex);
+    assertEquals(3, ret.size());
+    assertEquals("b", ret.get(key2, key2.hashCode(), 0));
+    assertEquals("c", ret.get(key3, key3.hashCode(), 0));
+  }
+
+  @Test
+  public void compressedIndex_combineSameLowBits() {
+    // Same lowest 5 bits, so the hashes only diverge one level down.
+    Key key1 = new Key(1);
+    Key key2 = new Key(1 | 1 << 5);
+    Node<Key, Object> ret = CompressedIndex.combine(
+        new Leaf<Key, Object>(key1, "a"), key1.hashCode(),
+        new Leaf<Key, Object>(key2, "b"), key2.hashCode(), 0);
+    CompressedIndex<Key, Object> index = (CompressedIndex<Key, Object>) ret;
+    assertEquals(1 << 1, index.bitmap);
+    assertEquals(1, index.values.length);
+    assertTrue(index.values[0] instanceof CompressedIndex);
+    assertEquals(2, ret.size());
+    assertEquals("a", ret.get(key1, key1.hashCode(), 0));
+    assertEquals("b", ret.get(key2, key2.hashCode(), 0));
+  }
+
+  @Test
+  public void compressedIndex_slotsStayOrdered() {
+    Key key1 = new Key(3);
+    Key key2 = new Key(1);
+    Key key3 = new Key(2);
+    PersistentHashArrayMappedTrie<Key, Object> trie =
+        new PersistentHashArrayMappedTrie<Key, Object>().put(key1, "a").put(key2, "b")
+            .put(key3, "c");
+    assertEquals(3, trie.size());
+    assertEquals("a", trie.get(key1));
+    assertEquals("b", trie.get(key2));
+    assertEquals("c", trie.get(key3));
+  }
+
+  @Test
+  public void matchesIdentityHashMap() {
+    Random random = new Random(1);
+    for (int round = 0; round < 100; round++) {
+      List<Key> keys = new ArrayList<Key>();
+      for (int i = 0; i < 50; i++) {
+        // A small range of hashes makes for plenty of collisions.
+        keys.add(new Key(random.nextInt(round % 2 == 0 ? 16 : Integer.MAX_VALUE)));
+      }
+      PersistentHashArrayMappedTrie<Key, Object> trie =
+          new PersistentHashArrayMappedTrie<Key, Object>();
+      Map<Key, Object> expected = new IdentityHashMap<Key, Object>();
+      for (int i = 0; i < 200; i++) {
+        Key key = keys.get(random.nextInt(keys.size()));
+        Object value = new Object();
+        PersistentHashArrayMappedTrie<Key, Object> previous = trie;
+        Object previousValue = previous.get(key);
+        trie = trie.put(key, value);
+        expected.put(key, value);
+
+        assertSame(previousValue, previous.get(key));
+        assertEquals(expected.size(), trie.size());
+      }
+      for (Key key : keys) {
+        assertSame(expected.get(key), trie.get(key));
+      }
+    }
+  }
+
+  /** A key with a chosen hash code, compared by identity. */
+  private static final class Key {
+    private final int hash;
+
+    Key(int hash) {
+      this.hash = hash;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public String toString() {
+      return "Key(" + hash + ")";
+    }
+  }
+}
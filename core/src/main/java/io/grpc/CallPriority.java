@@ -0,0 +1,41 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc;
+
+/**
+ * The priority of a server's calls to a method, when the server has more callbacks to run than
+ * its executor can run at once.
+ *
+ * @see ServerBuilder#callPriority
+ */
+@ExperimentalApi
+public enum CallPriority {
+  /**
+   * Run before any other callbacks, for cheap and latency-critical methods like health checks.
+   */
+  HIGH,
+
+  /**
+   * The default priority.
+   */
+  NORMAL,
+
+  /**
+   * Run only when there are no other callbacks, for bulk work.
+   */
+  LOW
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * A snapshot of the counters of a {@link ManagedChannel}, as returned by {@link
+ * ManagedChannel#getStats}. Counts are totals since the channel was created.
+ */
+@ExperimentalApi
+@Immutable
+public final class ChannelStats {
+  private final int pendingPicks;
+  private final long completedPicks;
+  private final long totalPickDelayNanos;
+  private final long hedgeableCalls;
+  private final long hedgesSent;
+  private final long hedgesWon;
+  private final long retries;
+  private final long transparentRetries;
+  private final long throttledRetries;
+
+  private ChannelStats(Builder builder) {
+    this.pendingPicks = builder.pendingPicks;
+    this.completedPicks = builder.completedPicks;
+    this.totalPickDelayNanos = builder.totalPickDelayNanos;
+    this.hedgeableCalls = builder.hedgeableCalls;
+    this.hedgesSent = builder.hedgesSent;
+    this.hedgesWon = builder.hedgesWon;
+    this.retries = builder.retries;
+    this.transparentRetries = builder.transparentRetries;
+    this.throttledRetries = builder.throttledRetries;
+  }
+
+  /**
+   * Creates a new builder, with every count set to zero.
+   */
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * Returns the number of calls waiting for the load balancer to pick a transport.
+   */
+  public int getPendingPicks() {
+    return pendingPicks;
+  }
+
+  /**
+   * Returns the number of calls that had to wait for a pick and have since been given a transport.
+   */
+  public long getCompletedPicks() {
+    return completedPicks;
+  }
+
+  /**
+   * Returns the total time the {@link #getCompletedPicks completed picks} waited, in nanoseconds.
+   */
+  public long getTotalPickDelayNanos() {
+    return totalPickDelayNanos;
+  }
+
+  /**
+   * Returns the number of calls that could be hedged. This is zero if hedging is disabled.
+   */
+  public long getHedgeableCalls() {
+    return hedgeableCalls;
+  }
+
+  /**
+   * Returns the number of hedged attempts sent, not counting the first attempt of each call.
+   */
+  public long getHedgesSent() {
+    return hedgesSent;
+  }
+
+  /**
+   * Returns the number of calls whose response came from a hedged attempt rather than the first.
+   */
+  public long getHedgesWon() {
+    return hedgesWon;
+  }
+
+  /**
+   * Returns the number of attempts retried after a backoff. This is zero if retries are disabled.
+   */
+  public long getRetries() {
+    return retries;
+  }
+
+  /**
+   * Returns the number of attempts retried right away because the server never received them.
+   */
+  public long getTransparentRetries() {
+    return transparentRetries;
+  }
+
+  /**
+   * Returns the number of retries that were not made because too many calls were failing.
+   */
+  public long getThrottledRetries() {
+    return throttledRetries;
+  }
+
+  @Override
+  public String toString() {
+    return "ChannelStats{pendingPicks=" + pendingPicks + ", completedPicks=" + completedPicks
+        + ", totalPickDelayNanos=" + totalPickDelayNanos + ", hedgeableCalls=" + hedgeableCalls
+        + ", hedgesSent=" + hedgesSent + ", hedgesWon=" + hedgesWon + ", retries=" + retries
+        + ", transparentRetries=" + transparentRetries + ", throttledRetries=" + throttledRetries
+        + "}";
+  }
+
+  /**
+   * Builder for {@link ChannelStats}.
+   */
+  public static final class Builder {
+    private int pendingPicks;
+    private long completedPicks;
+    private long totalPickDelayNanos;
+    private long hedgeableCalls;
+    private long hedgesSent;
+    private long hedgesWon;
+    private long retries;
+    private long transparentRetries;
+    private long throttledRetries;
+
+    private Builder() {}
+
+    /**
+     * Sets the number of calls waiting for a pick.
+     */
+    public Builder setPendingPicks(int pendingPicks) {
+      this.pendingPicks = pendingPicks;
+      return this;
+    }
+
+    /**
+     * Sets the number of calls that waited for a pick and have been given a transport.
+     */
+    public Builder setCompletedPicks(long completedPicks) {
+      this.completedPicks = completedPicks;
+      return this;
+    }
+
+    /**
+     * Sets the total time completed picks waited, in nanoseconds.
+     */
+    public Builder setTotalPickDelayNanos(long totalPickDelayNanos) {
+      this.totalPickDelayNanos = totalPickDelayNanos;
+      return this;
+    }
+
+    /**
+     * Sets the number of calls that could be hedged.
+     */
+    public Builder setHedgeableCalls(long hedgeableCalls) {
+      this.hedgeableCalls = hedgeableCalls;
+      return this;
+    }
+
+    /**
+     * Sets the number of hedged attempts sent.
+     */
+    public Builder setHedgesSent(long hedgesSent) {
+      this.hedgesSent = hedgesSent;
+      return this;
+    }
+
+    /**
+     * Sets the number of calls whose response came from a hedged attempt.
+     */
+    public Builder setHedgesWon(long hedgesWon) {
+      this.hedgesWon = hedgesWon;
+      return this;
+    }
+
+    /**
+     * Sets the number of attempts retried after a backoff.
+     */
+    public Builder setRetries(long retries) {
+      this.retries = retries;
+      return this;
+    }
+
+    /**
+     * Sets the number of attempts retried because the server never received them.
+     */
+    public Builder setTransparentRetries(long transparentRetries) {
+      this.transparentRetries = transparentRetries;
+      return this;
+    }
+
+    /**
+     * Sets the number of retries that were throttled.
+     */
+    public Builder setThrottledRetries(long throttledRetries) {
+      this.throttledRetries = throttledRetries;
+      return this;
+    }
+
+    /**
+     * Builds the snapshot.
+     */
+    public ChannelStats build() {
+      return new ChannelStats(this);
+    }
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Limits how many calls a server processes at once, across all of its connections. Calls over the
+ * limit are rejected with {@code RESOURCE_EXHAUSTED} as soon as their stream is created, before a
+ * {@link Context} is created or any message is read, so that the server sheds load instead of
+ * queueing it.
+ *
+ * @see ServerBuilder#concurrencyLimiter
+ */
+@ExperimentalApi
+@ThreadSafe
+public abstract class ConcurrencyLimiter {
+  /**
+   * Admits a call to the method if it is under its limit. The server calls this when a stream is
+   * created, and calls {@link Permit#release} once the call is closed.
+   *
+   * @param fullMethodName the full name of the method, as in {@link
+   *     MethodDescriptor#getFullMethodName}
+   * @return a permit for the call, or {@code null} if it must be rejected
+   */
+  @Nullable
+  public abstract Permit tryAcquire(String fullMethodName);
+
+  /**
+   * Admission of a call, which is released exactly once when the call is closed.
+   */
+  public abstract static class Permit {
+    /**
+     * Releases the permit of a call. The status is the one the server closed the call with, or the
+     * reason the call was cancelled if the server never closed it.
+     */
+    public abstract void release(Status status);
+  }
+}
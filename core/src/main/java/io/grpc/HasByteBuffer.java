@@ -0,0 +1,49 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.grpc;
+
+import java.nio.ByteBuffer;
+import javax.annotation.Nullable;
+
+/**
+ * Extension to an {@link java.io.InputStream} whose content can be accessed as {@link
+ * ByteBuffer}s.
+ *
+ * <p>This can be used for optimizing the case where the consumer of the stream is able to parse
+ * directly from a {@link ByteBuffer}. Instead of copying the content to a byte array through
+ * {@code read()}, the consumer can read the buffers that back the stream in place, for example
+ * the retained slices of the transport's inbound buffers. The buffers are only valid until the
+ * stream is advanced or closed, so the consumer must not hold onto them afterwards.
+ */
+@ExperimentalApi
+public interface HasByteBuffer {
+
+  /**
+   * Indicates whether or not {@link #getByteBuffer} operation is supported.
+   */
+  boolean byteBufferSupported();
+
+  /**
+   * Gets a {@link ByteBuffer} containing some bytes of the content next to be read, or {@code
+   * null} if has reached end of the content. The number of bytes contained in the returned buffer
+   * is implementation specific. Calling this method does not change the position of the stream;
+   * the caller should {@link java.io.InputStream#skip} the bytes it has consumed.
+   */
+  @Nullable
+  ByteBuffer getByteBuffer();
+}
@@ -104,4 +104,16 @@ public abstract class ManagedChannel extends Channel {
   public void notifyWhenStateChanged(ConnectivityState source, Runnable callback) {
     throw new UnsupportedOperationException("Not implemented");
   }
+
+  /**
+   * Returns a snapshot of the channel's counters, such as how many calls are waiting for the load
+   * balancer to pick a transport.
+   *
+   * @throws UnsupportedOperationException if not supported by implementation
+   * @since 1.5.0
+   */
+  @ExperimentalApi
+  public ChannelStats getStats() {
+    throw new UnsupportedOperationException("Not implemented");
+  }
 }
@@ -100,6 +100,22 @@ public abstract class ManagedChannelBuilder<T extends ManagedChannelBuilder<T>>
    */
   public abstract T executor(Executor executor);
 
+  /**
+   * Runs application code on a new thread for each callback, using virtual threads when the JVM
+   * supports them (Java 21 and later), and otherwise a shared cached thread pool. The callbacks of
+   * a call still run one at a time and in order. This replaces any executor previously provided.
+   *
+   * <p>This method is advisory, and implementations may keep using their default executor.
+   *
+   * @return this
+   * @since 1.5.0
+   */
+  @ExperimentalApi
+  public T threadPerCallExecutor() {
+    // intentional nop
+    return thisT();
+  }
+
   /**
    * Adds interceptors that will be called before the channel performs its real work. This is
    * functionally equivalent to using {@link ClientInterceptors#intercept(Channel, List)}, but while
@@ -249,6 +265,207 @@ public abstract class ManagedChannelBuilder<T extends ManagedChannelBuilder<T>>
     return thisT();
   }
 
+  /**
+   * Sets the maximum number of connections the channel may open to a single address. If not
+   * called, defaults to 1. When more than 1, additional connections are opened while every existing
+   * connection to the address is carrying at least {@link #connectionPoolStreamThreshold} streams,
+   * and are closed again once idle. This can help when a single connection is limited by the
+   * server's {@code MAX_CONCURRENT_STREAMS} or by head-of-line blocking.
+   *
+   * <p>This method is advisory, and implementations may decide to not support pooling.
+   *
+   * @param max the maximum number of connections per address.
+   * @throws IllegalArgumentException if max is not positive.
+   * @return this
+   * @since 1.5.0
+   */
+  @ExperimentalApi
+  public T maxConnectionsPerAddress(int max) {
+    // intentional nop
+    return thisT();
+  }
+
+  /**
+   * Sets how many active streams each pooled connection should carry before another connection to
+   * the same address is opened. If not called, defaults to 100, the minimum {@code
+   * MAX_CONCURRENT_STREAMS} recommended by HTTP/2. Only has an effect if {@link
+   * #maxConnectionsPerAddress} is more than 1.
+   *
+   * @param streams the number of active streams per connection.
+   * @throws IllegalArgumentException if streams is not positive.
+   * @return this
+   * @since 1.5.0
+   */
+  @ExperimentalApi
+  public T connectionPoolStreamThreshold(int streams) {
+    // intentional nop
+    return thisT();
+  }
+
+  /**
+   * Enables retries. If a call of an {@link MethodDescriptor#isIdempotent idempotent} or {@link
+   * MethodDescriptor#isSafe safe} method fails with {@code UNAVAILABLE} before receiving any
+   * response, for example because its connection was reset or went away, it is retried on a newly
+   * picked transport after an exponential backoff. Other methods are not retried this way, since
+   * the server may already have processed the failed call. Calls that the server is known not to
+   * have processed are retried right away, whatever the method. Retries are throttled when most
+   * calls fail, and counted by {@link ManagedChannel#getStats}. Retries are disabled by default.
+   *
+   * <p>Outbound messages are buffered for replay up to {@link #perRpcBufferLimit} per call and
+   * {@link #retryBufferSize} across the channel. Once a call exceeds either, it is no longer
+   * retried.
+   *
+   * <p>This method is advisory, and implementations may decide to not support retries.
+   *
+   * @return this
+   * @since 1.5.0
+   */
+  @ExperimentalApi
+  public T enableRetry() {
+    // intentional nop
+    return thisT();
+  }
+
+  /**
+   * Disables retries. This is the default.
+   *
+   * @return this
+   * @since 1.5.0
+   */
+  @ExperimentalApi
+  public T disableRetry() {
+    // intentional nop
+    return thisT();
+  }
+
+  /**
+   * Sets the maximum number of attempts of a retried call, including the first one. If not called,
+   * defaults to 5.
+   *
+   * @param maxAttempts the maximum number of attempts per call.
+   * @throws IllegalArgumentException if maxAttempts is less than 2.
+   * @return this
+   * @since 1.5.0
+   */
+  @ExperimentalApi
+  public T maxRetryAttempts(int maxAttempts) {
+    // intentional nop
+    return thisT();
+  }
+
+  /**
+   * Sets the backoff between the attempts of a retried call. It starts at {@code initialBackoff}
+   * and grows exponentially with some jitter, up to {@code maxBackoff}. If not called, defaults to
+   * 100 milliseconds and 10 seconds.
+   *
+   * @throws IllegalArgumentException if initialBackoff is not positive, or maxBackoff is less than
+   *     initialBackoff.
+   * @return this
+   * @since 1.5.0
+   */
+  @ExperimentalApi
+  public T retryBackoff(long initialBackoff, long maxBackoff, TimeUnit unit) {
+    // intentional nop
+    return thisT();
+  }
+
+  /**
+   * Sets the retry throttle. Each call that fails with a retryable status takes a token, each
+   * successful call gives back {@code tokenRatio} tokens, and retries are only made while more
+   * than half of the {@code maxTokens} tokens are left. If not called, defaults to 10 tokens and a
+   * ratio of 0.1.
+   *
+   * @throws IllegalArgumentException if maxTokens or tokenRatio is not positive.
+   * @return this
+   * @since 1.5.0
+   */
+  @ExperimentalApi
+  public T retryThrottling(int maxTokens, double tokenRatio) {
+    // intentional nop
+    return thisT();
+  }
+
+  /**
+   * Sets how many bytes of outbound messages may be buffered for retries and hedging across the
+   * channel. If not called, defaults to 16 MiB.
+   *
+   * @throws IllegalArgumentException if bytes is not positive.
+   * @return this
+   * @since 1.5.0
+   */
+  @ExperimentalApi
+  public T retryBufferSize(long bytes) {
+    // intentional nop
+    return thisT();
+  }
+
+  /**
+   * Sets how many bytes of outbound messages may be buffered for retries and hedging per call. If
+   * not called, defaults to 1 MiB.
+   *
+   * @throws IllegalArgumentException if bytes is not positive.
+   * @return this
+   * @since 1.5.0
+   */
+  @ExperimentalApi
+  public T perRpcBufferLimit(long bytes) {
+    // intentional nop
+    return thisT();
+  }
+
+  /**
+   * Enables hedging for methods that are {@link MethodDescriptor#isIdempotent idempotent} and have
+   * a single request message. If no response has arrived after the given delay, the request is
+   * sent again on a newly picked transport; the first response is used and the other attempts are
+   * cancelled. Hedging is disabled by default.
+   *
+   * <p>The number of hedged attempts is limited by {@link #maxHedgedAttempts} and by {@link
+   * #hedgingBudgetRatio}. How many were sent, and how many won, is reported by {@link
+   * ManagedChannel#getStats}.
+   *
+   * <p>This method is advisory, and implementations may decide to not support hedging.
+   *
+   * @param delay how long to wait for a response before sending the next attempt.
+   * @throws IllegalArgumentException if delay is negative.
+   * @return this
+   * @since 1.5.0
+   */
+  @ExperimentalApi
+  public T hedgingDelay(long delay, TimeUnit unit) {
+    // intentional nop
+    return thisT();
+  }
+
+  /**
+   * Sets the maximum number of attempts of a hedged call, including the first one. If not called,
+   * defaults to 2.
+   *
+   * @param maxAttempts the maximum number of attempts per call.
+   * @throws IllegalArgumentException if maxAttempts is less than 2.
+   * @return this
+   * @since 1.5.0
+   */
+  @ExperimentalApi
+  public T maxHedgedAttempts(int maxAttempts) {
+    // intentional nop
+    return thisT();
+  }
+
+  /**
+   * Sets how many hedged attempts may be sent per call, on average. If not called, defaults to
+   * 0.1, which limits the extra load from hedging to 10%. Short bursts above the ratio are allowed.
+   *
+   * @param ratio the number of hedged attempts per call.
+   * @throws IllegalArgumentException if ratio is negative or too large.
+   * @return this
+   * @since 1.5.0
+   */
+  @ExperimentalApi
+  public T hedgingBudgetRatio(double ratio) {
+    // intentional nop
+    return thisT();
+  }
+
   /**
    * Builds a channel using the given parameters.
    *
@@ -142,6 +142,12 @@ public final class Metadata {
   private byte[][] namesAndValues;
   // The unscaled number of headers present.
   private int size;
+  // Values already parsed by get(), along with the key that parsed them. Only values of immutable
+  // types are kept. Concurrent readers may call get(), so entries are immutable and published
+  // through this single field; an entry lost to a race is simply parsed again. Dropped whenever
+  // headers are removed.
+  @Nullable
+  private volatile ParsedValue parsedValues;
 
   private byte[] name(int i) {
     return namesAndValues[i * 2];
@@ -189,7 +195,7 @@ public final class Metadata {
    */
   public boolean containsKey(Key<?> key) {
     for (int i = 0; i < size; i++) {
-      if (bytesEqual(key.asciiName(), name(i))) {
+      if (matches(key, name(i))) {
         return true;
       }
     }
@@ -204,13 +210,57 @@ public final class Metadata {
   @Nullable
   public <T> T get(Key<T> key) {
     for (int i = size - 1; i >= 0; i--) {
-      if (bytesEqual(key.asciiName(), name(i))) {
-        return key.parseBytes(value(i));
+      if (matches(key, name(i))) {
+        return parse(key, i);
       }
     }
     return null;
   }
 
+  private <T> T parse(Key<T> key, int i) {
+    ParsedValue head = parsedValues;
+    for (ParsedValue parsed = head; parsed != null; parsed = parsed.next) {
+      if (parsed.index == i && parsed.key == key) {
+        @SuppressWarnings("unchecked")
+        T cached = (T) parsed.value;
+        return cached;
+      }
+    }
+    T value = key.parseBytes(value(i));
+    if (isImmutable(value)) {
+      parsedValues = new ParsedValue(key, i, value, head);
+    }
+    return value;
+  }
+
+  /**
+   * Returns {@code true} for values that can be handed out repeatedly without the caller being able
+   * to observe it.
+   */
+  private static boolean isImmutable(Object value) {
+    return value instanceof String || value instanceof Long || value instanceof Integer
+        || value instanceof Status;
+  }
+
+  private void clearParsedValues() {
+    parsedValues = null;
+  }
+
+  private static final class ParsedValue {
+    final Key<?> key;
+    final int index;
+    final Object value;
+    @Nullable
+    final ParsedValue next;
+
+    ParsedValue(Key<?> key, int index, Object value, @Nullable ParsedValue next) {
+      this.key = key;
+      this.index = index;
+      this.value = value;
+      this.next = next;
+    }
+  }
+
   private final class IterableAt<T> implements Iterable<T> {
     private final Key<T> key;
     private int startIdx;
@@ -232,7 +282,7 @@ public final class Metadata {
             return true;
           }
           for (; idx < size; idx++) {
-            if (bytesEqual(key.asciiName(), name(idx))) {
+            if (matches(key, name(idx))) {
               hasNext = true;
               return hasNext;
             }
@@ -244,7 +294,7 @@ public final class Metadata {
         public T next() {
           if (hasNext()) {
             hasNext = false;
-            return key.parseBytes(value(idx++));
+            return parse(key, idx++);
           }
           throw new NoSuchElementException();
         }
@@ -265,7 +315,7 @@ public final class Metadata {
   @Nullable
   public <T> Iterable<T> getAll(final Key<T> key) {
     for (int i = 0; i < size; i++) {
-      if (bytesEqual(key.asciiName(), name(i))) {
+      if (matches(key, name(i))) {
         return new IterableAt<T>(key, i);
       }
     }
@@ -332,7 +382,7 @@ public final class Metadata {
     Preconditions.checkNotNull(key, "key");
     Preconditions.checkNotNull(value, "value");
     for (int i = 0; i < size; i++) {
-      if (!bytesEqual(key.asciiName(), name(i))) {
+      if (!matches(key, name(i))) {
         continue;
       }
       @SuppressWarnings("unchecked")
@@ -344,6 +394,7 @@ public final class Metadata {
       int readIdx = (i + 1) * 2;
       int readLen = len() - readIdx;
       System.arraycopy(namesAndValues, readIdx, namesAndValues, writeIdx, readLen);
+      clearParsedValues();
       size -= 1;
       name(size, null);
       value(size, null);
@@ -361,7 +412,7 @@ public final class Metadata {
     int readIdx = 0;
     List<T> ret = null;
     for (; readIdx < size; readIdx++) {
-      if (bytesEqual(key.asciiName(), name(readIdx))) {
+      if (matches(key, name(readIdx))) {
         ret = ret != null ? ret : new LinkedList<T>();
         ret.add(key.parseBytes(value(readIdx)));
         continue;
@@ -371,6 +422,9 @@ public final class Metadata {
       writeIdx++;
     }
     int newSize = writeIdx;
+    if (newSize != size) {
+      clearParsedValues();
+    }
     // Multiply by two since namesAndValues is interleaved.
     Arrays.fill(namesAndValues, writeIdx * 2, len(), null);
     size = newSize;
@@ -389,7 +443,7 @@ public final class Metadata {
     int writeIdx = 0;
     int readIdx = 0;
     for (; readIdx < size; readIdx++) {
-      if (bytesEqual(key.asciiName(), name(readIdx))) {
+      if (matches(key, name(readIdx))) {
         continue;
       }
       name(writeIdx, name(readIdx));
@@ -397,6 +451,9 @@ public final class Metadata {
       writeIdx++;
     }
     int newSize = writeIdx;
+    if (newSize != size) {
+      clearParsedValues();
+    }
     // Multiply by two since namesAndValues is interleaved.
     Arrays.fill(namesAndValues, writeIdx * 2, len(), null);
     size = newSize;
@@ -420,6 +477,8 @@ public final class Metadata {
   @Nullable
   byte[][] serialize() {
     if (len() == cap()) {
+      // The caller may modify the returned array, which would leave cached values stale.
+      clearParsedValues();
       return namesAndValues;
     }
     byte[][] serialized = new byte[len()][];
@@ -489,8 +548,9 @@ public final class Metadata {
     return sb.append(')').toString();
   }
 
-  private boolean bytesEqual(byte[] left, byte[] right) {
-    return Arrays.equals(left, right);
+  private static boolean matches(Key<?> key, byte[] name) {
+    byte[] keyName = key.asciiName();
+    return keyName == name || Arrays.equals(keyName, name);
   }
 
   /** Marshaller for metadata values that are serialized into raw binary. */
@@ -646,7 +706,7 @@ public final class Metadata {
       this.originalName = checkNotNull(name, "name");
       // Intern the result for faster string identity checking.
       this.name = validateName(this.originalName.toLowerCase(Locale.ROOT)).intern();
-      this.nameBytes = this.name.getBytes(US_ASCII);
+      this.nameBytes = WellKnownHeaderNames.intern(this.name.getBytes(US_ASCII));
     }
 
     /**
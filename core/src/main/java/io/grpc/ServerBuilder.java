@@ -68,6 +68,20 @@ public abstract class ServerBuilder<T extends ServerBuilder<T>> {
    */
   public abstract T executor(@Nullable Executor executor);
 
+  /**
+   * Runs application code on a new thread for each callback, using virtual threads when the JVM
+   * supports them (Java 21 and later), and otherwise a shared cached thread pool. The callbacks of
+   * a call still run one at a time and in order, so that handlers may block without a large thread
+   * pool. This replaces any executor previously provided.
+   *
+   * @return this
+   * @since 1.5.0
+   */
+  @ExperimentalApi
+  public T threadPerCallExecutor() {
+    throw new UnsupportedOperationException();
+  }
+
   /**
    * Adds a service implementation to the handler registry.
    *
@@ -112,6 +126,65 @@ public abstract class ServerBuilder<T extends ServerBuilder<T>> {
     throw new UnsupportedOperationException();
   }
 
+  /**
+   * Runs the calls to a method or service on the given executor, instead of the server's executor.
+   *
+   * @param name the full name of a method, as in {@link MethodDescriptor#getFullMethodName}, or of
+   *     a service, as in {@link ServiceDescriptor#getName}. A method's executor takes precedence
+   *     over its service's.
+   * @return this
+   * @since 1.5.0
+   */
+  @ExperimentalApi
+  public T callExecutor(String name, Executor executor) {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Sets the priority of the calls to a method or service on the server's executor. It only has an
+   * effect when the {@link #executorParallelism} is reached. By default, calls have {@link
+   * CallPriority#NORMAL} priority, except for the {@code grpc.health.v1.Health} service which has
+   * {@link CallPriority#HIGH} priority.
+   *
+   * @param name the full name of a method, as in {@link MethodDescriptor#getFullMethodName}, or of
+   *     a service, as in {@link ServiceDescriptor#getName}. A method's priority takes precedence
+   *     over its service's.
+   * @return this
+   * @since 1.5.0
+   */
+  @ExperimentalApi
+  public T callPriority(String name, CallPriority priority) {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Sets how many callbacks may run at once on the server's executor. Once reached, callbacks are
+   * queued and run by {@link #callPriority}. This is typically the number of threads of the
+   * executor, so that it is the server and not the executor that queues callbacks. By default,
+   * there is no limit.
+   *
+   * @return this
+   * @since 1.5.0
+   */
+  @ExperimentalApi
+  public T executorParallelism(int parallelism) {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Sets a limiter of how many calls the server processes at once, across all of its connections.
+   * Calls over the limit are rejected with {@code RESOURCE_EXHAUSTED} before they are processed. By
+   * default, there is no limit. {@link io.grpc.util.AdaptiveConcurrencyLimiter} adjusts the limit
+   * to the latency of the calls.
+   *
+   * @return this
+   * @since 1.5.0
+   */
+  @ExperimentalApi
+  public T concurrencyLimiter(@Nullable ConcurrencyLimiter limiter) {
+    throw new UnsupportedOperationException();
+  }
+
   /**
    * Sets a fallback handler registry that will be looked up in if a method is not found in the
    * primary registry. The primary registry (configured via {@code addService()}) is faster but
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc;
+
+import static com.google.common.base.Charsets.US_ASCII;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.Arrays;
+
+/**
+ * Canonical byte arrays for the names of headers that are present on most calls. Every {@link
+ * Metadata.Key} for one of these names uses the canonical array, so headers put with one key are
+ * matched by identity, rather than by comparing bytes, when looked up with another.
+ *
+ * <p>Lookups use a perfect hash table: its size is picked when the class is initialized so that no
+ * two names share a slot, and a lookup hashes the name once and compares against at most one entry.
+ */
+final class WellKnownHeaderNames {
+
+  @VisibleForTesting
+  static final String[] NAMES = {
+    ":authority",
+    ":method",
+    ":path",
+    ":scheme",
+    ":status",
+    "content-type",
+    "te",
+    "user-agent",
+    "grpc-accept-encoding",
+    "grpc-encoding",
+    "grpc-message",
+    "grpc-status",
+    "grpc-timeout",
+    "grpc-tags-bin",
+    "grpc-trace-bin",
+  };
+
+  private static final int MAX_TABLE_SIZE = 1024;
+
+  private static final byte[][] table = createTable();
+  private static final int mask = table.length - 1;
+
+  private WellKnownHeaderNames() {}
+
+  private static byte[][] createTable() {
+    for (int size = Integer.highestOneBit(NAMES.length) * 2; size <= MAX_TABLE_SIZE; size *= 2) {
+      byte[][] candidate = new byte[size][];
+      boolean collision = false;
+      for (String name : NAMES) {
+        byte[] bytes = name.getBytes(US_ASCII);
+        int slot = hash(bytes) & (size - 1);
+        if (candidate[slot] != null) {
+          collision = true;
+          break;
+        }
+        candidate[slot] = bytes;
+      }
+      if (!collision) {
+        return candidate;
+      }
+    }
+    throw new AssertionError("No collision-free table for well-known header names");
+  }
+
+  private static int hash(byte[] name) {
+    int h = 0;
+    for (byte b : name) {
+      h = 31 * h + b;
+    }
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * Returns the canonical array for {@code name} if it is a well-known header name, or {@code name}
+   * itself otherwise.
+   */
+  static byte[] intern(byte[] name) {
+    byte[] canonical = table[hash(name) & mask];
+    if (canonical == null || canonical == name) {
+      return name;
+    }
+    return Arrays.equals(canonical, name) ? canonical : name;
+  }
+}
@@ -21,6 +21,7 @@ import com.google.common.base.Preconditions;
 import io.grpc.Compressor;
 import io.grpc.Metadata;
 import io.grpc.Status;
+import io.grpc.internal.ClientStreamListener.RpcProgress;
 import java.io.InputStream;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -275,7 +276,26 @@ public abstract class AbstractClientStream extends AbstractStream
      */
     public final void transportReportStatus(final Status status, boolean stopDelivery,
         final Metadata trailers) {
+      transportReportStatus(status, RpcProgress.PROCESSED, stopDelivery, trailers);
+    }
+
+    /**
+     * Report stream closure with status to the application layer if not already reported. This
+     * method must be called from the transport thread.
+     *
+     * @param status the new status to set
+     * @param rpcProgress how far the RPC got, see {@link ClientStreamListener.RpcProgress}
+     * @param stopDelivery if {@code true}, interrupts any further delivery of inbound messages that
+     *        may already be queued up in the deframer. If {@code false}, the listener will be
+     *        notified immediately after all currently completed messages in the deframer have been
+     *        delivered to the application.
+     * @param trailers new instance of {@code Trailers}, either empty or those returned by the
+     *        server
+     */
+    public final void transportReportStatus(final Status status, final RpcProgress rpcProgress,
+        boolean stopDelivery, final Metadata trailers) {
       Preconditions.checkNotNull(status, "status");
+      Preconditions.checkNotNull(rpcProgress, "rpcProgress");
       Preconditions.checkNotNull(trailers, "trailers");
       // If stopDelivery, we continue in case previous invocation is waiting for stall
       if (statusReported && !stopDelivery) {
@@ -288,12 +308,12 @@ public abstract class AbstractClientStream extends AbstractStream
       // complete messages to deliver).
       if (stopDelivery || isDeframerStalled()) {
         deliveryStalledTask = null;
-        closeListener(status, trailers);
+        closeListener(status, rpcProgress, trailers);
       } else {
         deliveryStalledTask = new Runnable() {
           @Override
           public void run() {
-            closeListener(status, trailers);
+            closeListener(status, rpcProgress, trailers);
           }
         };
       }
@@ -304,12 +324,16 @@ public abstract class AbstractClientStream extends AbstractStream
      *
      * @throws IllegalStateException if the call has not yet been started.
      */
-    private void closeListener(Status status, Metadata trailers) {
+    private void closeListener(Status status, RpcProgress rpcProgress, Metadata trailers) {
       if (!listenerClosed) {
         listenerClosed = true;
         closeDeframer();
         statsTraceCtx.streamClosed(status);
-        listener().closed(status, trailers);
+        if (rpcProgress == RpcProgress.PROCESSED) {
+          listener().closed(status, trailers);
+        } else {
+          listener().closed(status, rpcProgress, trailers);
+        }
       }
     }
   }
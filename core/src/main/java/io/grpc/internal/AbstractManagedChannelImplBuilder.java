@@ -74,6 +74,39 @@ public abstract class AbstractManagedChannelImplBuilder
   @VisibleForTesting
   static final long IDLE_MODE_MIN_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(1);
 
+  /**
+   * The default number of active streams per pooled connection before another one is opened.
+   */
+  @VisibleForTesting
+  static final int DEFAULT_CONNECTION_POOL_STREAM_THRESHOLD = 100;
+
+  @VisibleForTesting
+  static final int DEFAULT_MAX_HEDGED_ATTEMPTS = 2;
+
+  @VisibleForTesting
+  static final int DEFAULT_MAX_RETRY_ATTEMPTS = 5;
+
+  @VisibleForTesting
+  static final long DEFAULT_RETRY_INITIAL_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+  @VisibleForTesting
+  static final long DEFAULT_RETRY_MAX_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+  @VisibleForTesting
+  static final int DEFAULT_RETRY_MAX_TOKENS = 10;
+
+  @VisibleForTesting
+  static final double DEFAULT_RETRY_TOKEN_RATIO = 0.1;
+
+  @VisibleForTesting
+  static final long DEFAULT_RETRY_BUFFER_SIZE_IN_BYTES = 1L << 24;  // 16M
+
+  @VisibleForTesting
+  static final long DEFAULT_PER_RPC_BUFFER_LIMIT_IN_BYTES = 1L << 20;  // 1M
+
+  @VisibleForTesting
+  static final double DEFAULT_HEDGING_BUDGET_RATIO = 0.1;
+
   private static final ObjectPool<? extends Executor> DEFAULT_EXECUTOR_POOL =
       SharedResourcePool.forResource(GrpcUtil.SHARED_CHANNEL_EXECUTOR);
 
@@ -114,6 +147,35 @@ public abstract class AbstractManagedChannelImplBuilder
 
   long idleTimeoutMillis = IDLE_MODE_DEFAULT_TIMEOUT_MILLIS;
 
+  int maxConnectionsPerAddress = 1;
+
+  int connectionPoolStreamThreshold = DEFAULT_CONNECTION_POOL_STREAM_THRESHOLD;
+
+  /**
+   * Negative if hedging is disabled.
+   */
+  long hedgingDelayNanos = -1;
+
+  int maxHedgedAttempts = DEFAULT_MAX_HEDGED_ATTEMPTS;
+
+  double hedgingBudgetRatio = DEFAULT_HEDGING_BUDGET_RATIO;
+
+  boolean retryEnabled;
+
+  int maxRetryAttempts = DEFAULT_MAX_RETRY_ATTEMPTS;
+
+  long retryInitialBackoffNanos = DEFAULT_RETRY_INITIAL_BACKOFF_NANOS;
+
+  long retryMaxBackoffNanos = DEFAULT_RETRY_MAX_BACKOFF_NANOS;
+
+  int retryMaxTokens = DEFAULT_RETRY_MAX_TOKENS;
+
+  double retryTokenRatio = DEFAULT_RETRY_TOKEN_RATIO;
+
+  long retryBufferSize = DEFAULT_RETRY_BUFFER_SIZE_IN_BYTES;
+
+  long perRpcBufferLimit = DEFAULT_PER_RPC_BUFFER_LIMIT_IN_BYTES;
+
   private int maxInboundMessageSize = GrpcUtil.DEFAULT_MAX_MESSAGE_SIZE;
 
   private boolean enableStatsTagPropagation;
@@ -180,6 +242,12 @@ public abstract class AbstractManagedChannelImplBuilder
     return thisT();
   }
 
+  @Override
+  public final T threadPerCallExecutor() {
+    this.executorPool = SharedResourcePool.forResource(GrpcUtil.SHARED_THREAD_PER_CALL_EXECUTOR);
+    return thisT();
+  }
+
   @Override
   public final T intercept(List<ClientInterceptor> interceptors) {
     this.interceptors.addAll(interceptors);
@@ -262,6 +330,96 @@ public abstract class AbstractManagedChannelImplBuilder
     return thisT();
   }
 
+  @Override
+  public final T maxConnectionsPerAddress(int max) {
+    checkArgument(max > 0, "maxConnectionsPerAddress is %s, but must be positive", max);
+    this.maxConnectionsPerAddress = max;
+    return thisT();
+  }
+
+  @Override
+  public final T connectionPoolStreamThreshold(int streams) {
+    checkArgument(
+        streams > 0, "connectionPoolStreamThreshold is %s, but must be positive", streams);
+    this.connectionPoolStreamThreshold = streams;
+    return thisT();
+  }
+
+  @Override
+  public final T enableRetry() {
+    this.retryEnabled = true;
+    return thisT();
+  }
+
+  @Override
+  public final T disableRetry() {
+    this.retryEnabled = false;
+    return thisT();
+  }
+
+  @Override
+  public final T maxRetryAttempts(int maxAttempts) {
+    checkArgument(maxAttempts >= 2, "maxRetryAttempts is %s, but must be at least 2", maxAttempts);
+    this.maxRetryAttempts = maxAttempts;
+    return thisT();
+  }
+
+  @Override
+  public final T retryBackoff(long initialBackoff, long maxBackoff, TimeUnit unit) {
+    checkArgument(initialBackoff > 0, "initial backoff is %s, but must be positive",
+        initialBackoff);
+    checkArgument(maxBackoff >= initialBackoff,
+        "max backoff is %s, but must not be less than the initial backoff", maxBackoff);
+    this.retryInitialBackoffNanos = unit.toNanos(initialBackoff);
+    this.retryMaxBackoffNanos = unit.toNanos(maxBackoff);
+    return thisT();
+  }
+
+  @Override
+  public final T retryThrottling(int maxTokens, double tokenRatio) {
+    checkArgument(maxTokens > 0, "maxTokens is %s, but must be positive", maxTokens);
+    checkArgument(tokenRatio > 0, "tokenRatio is %s, but must be positive", tokenRatio);
+    this.retryMaxTokens = maxTokens;
+    this.retryTokenRatio = tokenRatio;
+    return thisT();
+  }
+
+  @Override
+  public final T retryBufferSize(long bytes) {
+    checkArgument(bytes > 0, "retryBufferSize is %s, but must be positive", bytes);
+    this.retryBufferSize = bytes;
+    return thisT();
+  }
+
+  @Override
+  public final T perRpcBufferLimit(long bytes) {
+    checkArgument(bytes > 0, "perRpcBufferLimit is %s, but must be positive", bytes);
+    this.perRpcBufferLimit = bytes;
+    return thisT();
+  }
+
+  @Override
+  public final T hedgingDelay(long delay, TimeUnit unit) {
+    checkArgument(delay >= 0, "hedging delay is %s, but must be non-negative", delay);
+    this.hedgingDelayNanos = unit.toNanos(delay);
+    return thisT();
+  }
+
+  @Override
+  public final T maxHedgedAttempts(int maxAttempts) {
+    checkArgument(maxAttempts >= 2, "maxHedgedAttempts is %s, but must be at least 2", maxAttempts);
+    this.maxHedgedAttempts = maxAttempts;
+    return thisT();
+  }
+
+  @Override
+  public final T hedgingBudgetRatio(double ratio) {
+    checkArgument(ratio >= 0 && ratio <= HedgingPolicy.MAX_TOKENS,
+        "hedgingBudgetRatio is %s, but must be in [0, %s]", ratio, HedgingPolicy.MAX_TOKENS);
+    this.hedgingBudgetRatio = ratio;
+    return thisT();
+  }
+
   /**
    * Override the default stats implementation.
    */
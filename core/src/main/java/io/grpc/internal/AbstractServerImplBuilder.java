@@ -17,6 +17,7 @@
 package io.grpc.internal;
 
 import static com.google.common.base.MoreObjects.firstNonNull;
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.common.annotations.VisibleForTesting;
@@ -25,7 +26,9 @@ import com.google.instrumentation.stats.Stats;
 import com.google.instrumentation.stats.StatsContextFactory;
 import com.google.instrumentation.trace.Tracing;
 import io.grpc.BindableService;
+import io.grpc.CallPriority;
 import io.grpc.CompressorRegistry;
+import io.grpc.ConcurrencyLimiter;
 import io.grpc.Context;
 import io.grpc.DecompressorRegistry;
 import io.grpc.HandlerRegistry;
@@ -39,7 +42,9 @@ import io.grpc.ServerStreamTracer;
 import io.grpc.ServerTransportFilter;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executor;
 import javax.annotation.Nullable;
 
@@ -64,6 +69,9 @@ public abstract class AbstractServerImplBuilder<T extends AbstractServerImplBuil
       }
     };
 
+  @VisibleForTesting
+  static final String HEALTH_SERVICE_NAME = "grpc.health.v1.Health";
+
   private final InternalHandlerRegistry.Builder registryBuilder =
       new InternalHandlerRegistry.Builder();
 
@@ -82,6 +90,8 @@ public abstract class AbstractServerImplBuilder<T extends AbstractServerImplBuil
   @Nullable
   private Executor executor;
 
+  private boolean threadPerCallExecutor;
+
   @Nullable
   private DecompressorRegistry decompressorRegistry;
 
@@ -91,6 +101,15 @@ public abstract class AbstractServerImplBuilder<T extends AbstractServerImplBuil
   @Nullable
   private StatsContextFactory statsFactory;
 
+  @Nullable
+  private ConcurrencyLimiter concurrencyLimiter;
+
+  private final Map<String, Executor> callExecutors = new HashMap<String, Executor>();
+
+  private final Map<String, CallPriority> callPriorities = new HashMap<String, CallPriority>();
+
+  private int executorParallelism = Integer.MAX_VALUE;
+
   @Override
   public final T directExecutor() {
     return executor(MoreExecutors.directExecutor());
@@ -99,6 +118,14 @@ public abstract class AbstractServerImplBuilder<T extends AbstractServerImplBuil
   @Override
   public final T executor(@Nullable Executor executor) {
     this.executor = executor;
+    this.threadPerCallExecutor = false;
+    return thisT();
+  }
+
+  @Override
+  public final T threadPerCallExecutor() {
+    this.executor = null;
+    this.threadPerCallExecutor = true;
     return thisT();
   }
 
@@ -128,6 +155,31 @@ public abstract class AbstractServerImplBuilder<T extends AbstractServerImplBuil
     return thisT();
   }
 
+  @Override
+  public final T callExecutor(String name, Executor executor) {
+    callExecutors.put(checkNotNull(name, "name"), checkNotNull(executor, "executor"));
+    return thisT();
+  }
+
+  @Override
+  public final T callPriority(String name, CallPriority priority) {
+    callPriorities.put(checkNotNull(name, "name"), checkNotNull(priority, "priority"));
+    return thisT();
+  }
+
+  @Override
+  public final T executorParallelism(int parallelism) {
+    checkArgument(parallelism > 0, "parallelism must be positive");
+    this.executorParallelism = parallelism;
+    return thisT();
+  }
+
+  @Override
+  public final T concurrencyLimiter(@Nullable ConcurrencyLimiter limiter) {
+    this.concurrencyLimiter = limiter;
+    return thisT();
+  }
+
   @Override
   public final T fallbackHandlerRegistry(HandlerRegistry registry) {
     this.fallbackRegistry = registry;
@@ -174,12 +226,17 @@ public abstract class AbstractServerImplBuilder<T extends AbstractServerImplBuil
 
     io.grpc.internal.InternalServer transportServer =
         buildTransportServer(Collections.unmodifiableList(tracerFactories));
+    Map<String, CallPriority> callPriorities = new HashMap<String, CallPriority>();
+    // Health checks shouldn't fail just because the server is busy
+    callPriorities.put(HEALTH_SERVICE_NAME, CallPriority.HIGH);
+    callPriorities.putAll(this.callPriorities);
     ServerImpl server = new ServerImpl(getExecutorPool(),
         SharedResourcePool.forResource(GrpcUtil.TIMER_SERVICE), registryBuilder.build(),
         firstNonNull(fallbackRegistry, EMPTY_FALLBACK_REGISTRY), transportServer,
         Context.ROOT, firstNonNull(decompressorRegistry, DecompressorRegistry.getDefaultInstance()),
         firstNonNull(compressorRegistry, CompressorRegistry.getDefaultInstance()),
-        transportFilters);
+        transportFilters, concurrencyLimiter,
+        new HashMap<String, Executor>(callExecutors), callPriorities, executorParallelism);
     for (InternalNotifyOnServerBuild notifyTarget : notifyOnBuildList) {
       notifyTarget.notifyOnBuild(server);
     }
@@ -188,6 +245,9 @@ public abstract class AbstractServerImplBuilder<T extends AbstractServerImplBuil
 
   private ObjectPool<? extends Executor> getExecutorPool() {
     final Executor savedExecutor = executor;
+    if (threadPerCallExecutor) {
+      return SharedResourcePool.forResource(GrpcUtil.SHARED_THREAD_PER_CALL_EXECUTOR);
+    }
     if (savedExecutor == null) {
       return SharedResourcePool.forResource(GrpcUtil.SHARED_CHANNEL_EXECUTOR);
     }
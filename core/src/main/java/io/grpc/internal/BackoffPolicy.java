@@ -19,7 +19,7 @@ package io.grpc.internal;
 /**
  * Determines how long to wait before doing some action (typically a retry, or a reconnect).
  */
-interface BackoffPolicy {
+public interface BackoffPolicy {
   interface Provider {
     BackoffPolicy get();
   }
@@ -77,6 +77,12 @@ final class ClientCallImpl<ReqT, RespT> extends ClientCall<ReqT, RespT>
   private ScheduledExecutorService deadlineCancellationExecutor;
   private DecompressorRegistry decompressorRegistry = DecompressorRegistry.getDefaultInstance();
   private CompressorRegistry compressorRegistry = CompressorRegistry.getDefaultInstance();
+  @Nullable
+  private RetryPolicy retryPolicy;
+  @Nullable
+  private HedgingPolicy hedgingPolicy;
+  @Nullable
+  private RetriableStream.BufferLimits bufferLimits;
 
   ClientCallImpl(
       MethodDescriptor<ReqT, RespT> method, Executor executor, CallOptions callOptions,
@@ -125,6 +131,29 @@ final class ClientCallImpl<ReqT, RespT> extends ClientCall<ReqT, RespT>
     return this;
   }
 
+  /**
+   * Enables retries for this call. Has no effect without {@link #setBufferLimits}.
+   */
+  ClientCallImpl<ReqT, RespT> setRetryPolicy(@Nullable RetryPolicy retryPolicy) {
+    this.retryPolicy = retryPolicy;
+    return this;
+  }
+
+  /**
+   * Enables hedging for this call if the method is idempotent and sends a single request, in which
+   * case it is used instead of the retry policy. Has no effect without {@link #setBufferLimits}.
+   */
+  ClientCallImpl<ReqT, RespT> setHedgingPolicy(@Nullable HedgingPolicy hedgingPolicy) {
+    this.hedgingPolicy = hedgingPolicy;
+    return this;
+  }
+
+  ClientCallImpl<ReqT, RespT> setBufferLimits(
+      @Nullable RetriableStream.BufferLimits bufferLimits) {
+    this.bufferLimits = bufferLimits;
+    return this;
+  }
+
   @VisibleForTesting
   static void prepareHeaders(
       Metadata headers, DecompressorRegistry decompressorRegistry, Compressor compressor) {
@@ -200,13 +229,25 @@ final class ClientCallImpl<ReqT, RespT> extends ClientCall<ReqT, RespT>
     if (!deadlineExceeded) {
       updateTimeoutHeaders(effectiveDeadline, callOptions.getDeadline(),
           context.getDeadline(), headers);
-      ClientTransport transport = clientTransportProvider.get(
-          new PickSubchannelArgsImpl(method, headers, callOptions));
-      Context origContext = context.attach();
-      try {
-        stream = transport.newStream(method, headers, callOptions);
-      } finally {
-        context.detach(origContext);
+      // Attempts are timed with the same executor as the deadline
+      boolean replayable = bufferLimits != null && deadlineCancellationExecutor != null;
+      if (replayable && hedgingPolicy != null && method.isIdempotent() && unaryRequest) {
+        stream = new RetriableStream(method, headers, callOptions, context,
+            clientTransportProvider, deadlineCancellationExecutor, bufferLimits, null,
+            hedgingPolicy);
+      } else if (replayable && retryPolicy != null) {
+        stream = new RetriableStream(method, headers, callOptions, context,
+            clientTransportProvider, deadlineCancellationExecutor, bufferLimits, retryPolicy,
+            null);
+      } else {
+        ClientTransport transport = clientTransportProvider.get(
+            new PickSubchannelArgsImpl(method, headers, callOptions));
+        Context origContext = context.attach();
+        try {
+          stream = transport.newStream(method, headers, callOptions);
+        } finally {
+          context.detach(origContext);
+        }
       }
     } else {
       stream = new FailingClientStream(DEADLINE_EXCEEDED);
@@ -541,6 +582,11 @@ final class ClientCallImpl<ReqT, RespT> extends ClientCall<ReqT, RespT>
       callExecutor.execute(new StreamClosed());
     }
 
+    @Override
+    public void closed(Status status, RpcProgress rpcProgress, Metadata trailers) {
+      closed(status, trailers);
+    }
+
     @Override
     public void onReady() {
       class StreamOnReady extends ContextRunnable {
@@ -46,4 +46,33 @@ public interface ClientStreamListener extends StreamListener {
    * @param trailers trailing metadata
    */
   void closed(Status status, Metadata trailers);
+
+  /**
+   * Like {@link #closed(Status, Metadata)}, but also tells how far the RPC got. Transports call it
+   * instead of {@link #closed(Status, Metadata)} when they know more than that the RPC may have
+   * been processed, so {@code closed(status, trailers)} is the same as {@code closed(status,
+   * RpcProgress.PROCESSED, trailers)}.
+   *
+   * @param status details about the remote closure
+   * @param rpcProgress how far the RPC got before it was closed
+   * @param trailers trailing metadata
+   */
+  void closed(Status status, RpcProgress rpcProgress, Metadata trailers);
+
+  /**
+   * How far an RPC got before its stream was closed. It comes from the transport, never from the
+   * remote end-point, so the server can't use it to make the client retry.
+   */
+  enum RpcProgress {
+    /**
+     * The RPC may have been processed by the server.
+     */
+    PROCESSED,
+    /**
+     * The server is known not to have processed the RPC, for example because it refused the
+     * stream or the stream was created after the last one a GOAWAY allowed. The RPC can be sent
+     * again without risk of executing it twice.
+     */
+    REFUSED,
+  }
 }
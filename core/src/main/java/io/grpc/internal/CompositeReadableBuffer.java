@@ -21,6 +21,7 @@ import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.util.ArrayDeque;
 import java.util.Queue;
+import javax.annotation.Nullable;
 
 /**
  * A {@link ReadableBuffer} that is composed of 0 or more {@link ReadableBuffer}s. This provides a
@@ -152,6 +153,48 @@ public class CompositeReadableBuffer extends AbstractReadableBuffer {
     return newBuffer;
   }
 
+  /**
+   * Removes the first component buffer that has readable bytes and transfers its ownership to the
+   * caller, or returns {@code null} if there are no readable bytes left. Empty component buffers
+   * in front of it are closed.
+   */
+  @Nullable
+  ReadableBuffer pollBuffer() {
+    while (!buffers.isEmpty()) {
+      ReadableBuffer buffer = buffers.poll();
+      if (buffer.readableBytes() > 0) {
+        readableBytes -= buffer.readableBytes();
+        return buffer;
+      }
+      buffer.close();
+    }
+    return null;
+  }
+
+  @Override
+  public boolean byteBufferSupported() {
+    for (ReadableBuffer buffer : buffers) {
+      if (!buffer.byteBufferSupported()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the content of the first non-empty component buffer. Callers that need all of the
+   * readable bytes should compare the size of the returned buffer against {@link #readableBytes}.
+   */
+  @Override
+  public ByteBuffer getByteBuffer() {
+    for (ReadableBuffer buffer : buffers) {
+      if (buffer.readableBytes() > 0) {
+        return buffer.getByteBuffer();
+      }
+    }
+    return ByteBuffer.allocate(0);
+  }
+
   @Override
   public void close() {
     while (!buffers.isEmpty()) {
@@ -26,9 +26,16 @@ import io.grpc.Metadata;
 import io.grpc.MethodDescriptor;
 import io.grpc.Status;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 
@@ -40,10 +47,32 @@ import javax.annotation.concurrent.GuardedBy;
  * <p>This transport owns every stream that it has created until a real transport has been picked
  * for that stream, at which point the ownership of the stream is transferred to the real transport,
  * thus the delayed transport stops owning the stream.
+ *
+ * <p>Pending streams are spread over several {@link Stripe stripes}, each with its own lock, so
+ * that {@link #reprocess} only ever holds a lock while copying or pruning one stripe, and streams
+ * being enqueued or cancelled only wait for the stripe they belong to. Streams are spread over the
+ * stripes in turn, and {@link #reprocess} picks them in the order they were created.
  */
 final class DelayedClientTransport implements ManagedClientTransport {
+  /**
+   * Number of stripes. Must be a power of two.
+   */
+  @VisibleForTesting
+  static final int STRIPE_COUNT = 8;
+
+  /**
+   * Most streams whose real stream is created by a single executor task. Batching saves an
+   * executor hand-off per stream when many streams become ready at once, while still letting a
+   * multi-threaded executor create the streams in parallel.
+   */
+  @VisibleForTesting
+  static final int DISPATCH_BATCH_SIZE = 32;
+
   private final LogId lodId = LogId.allocate(getClass().getName());
 
+  /**
+   * Guards the lifecycle state. May be held while acquiring a stripe lock, never the reverse.
+   */
   private final Object lock = new Object();
 
   private final Executor defaultAppExecutor;
@@ -54,24 +83,39 @@ final class DelayedClientTransport implements ManagedClientTransport {
   private Runnable reportTransportShutdown;
   private Runnable reportTransportTerminated;
 
-  @GuardedBy("lock")
-  private Collection<PendingStream> pendingStreams = new LinkedHashSet<PendingStream>();
+  private final Stripe[] stripes = new Stripe[STRIPE_COUNT];
 
   /**
-   * When shutdown == true and pendingStreams == null, then the transport is considered terminated.
+   * Number of pending streams over all stripes, counting streams about to be added to a stripe. It
+   * is decremented only after streams have been removed from their stripe, so it is never less than
+   * the actual number of pending streams. It only changes from or to zero under {@link #lock}.
    */
-  @GuardedBy("lock")
-  private boolean shutdown;
+  private final AtomicInteger pendingStreamsCount = new AtomicInteger();
+
+  /**
+   * Ids of pending streams, which pick their stripe and order them by creation.
+   */
+  private final AtomicLong nextStreamId = new AtomicLong();
+
+  // Written under lock, read without it by newStream()
+  private volatile boolean shutdown;
 
   /**
-   * The last picker that {@link #reprocess} has used.
+   * Set once shutdown == true and there are no more pending streams.
    */
   @GuardedBy("lock")
+  private boolean terminated;
+
+  /**
+   * The last picker that {@link #reprocess} has used. Written under lock, before its version.
+   */
   @Nullable
-  private SubchannelPicker lastPicker;
+  private volatile SubchannelPicker lastPicker;
 
-  @GuardedBy("lock")
-  private long lastPickerVersion;
+  private volatile long lastPickerVersion;
+
+  private final AtomicLong dispatchedStreams = new AtomicLong();
+  private final AtomicLong totalPickDelayNanos = new AtomicLong();
 
   /**
    * Creates a new delayed transport.
@@ -85,6 +129,9 @@ final class DelayedClientTransport implements ManagedClientTransport {
   DelayedClientTransport(Executor defaultAppExecutor, ChannelExecutor channelExecutor) {
     this.defaultAppExecutor = defaultAppExecutor;
     this.channelExecutor = channelExecutor;
+    for (int i = 0; i < STRIPE_COUNT; i++) {
+      stripes[i] = new Stripe();
+    }
   }
 
   @Override
@@ -128,20 +175,12 @@ final class DelayedClientTransport implements ManagedClientTransport {
   public final ClientStream newStream(
       MethodDescriptor<?, ?> method, Metadata headers, CallOptions callOptions) {
     try {
-      SubchannelPicker picker = null;
       PickSubchannelArgs args = new PickSubchannelArgsImpl(method, headers, callOptions);
-      long pickerVersion = -1;
-      synchronized (lock) {
-        if (!shutdown) {
-          if (lastPicker == null) {
-            return createPendingStream(args);
-          }
-          picker = lastPicker;
-          pickerVersion = lastPickerVersion;
-        }
-      }
-      if (picker != null) {
-        while (true) {
+      while (!shutdown) {
+        // The version is read first, so that a picker set in the meantime is noticed when buffering
+        long pickerVersion = lastPickerVersion;
+        SubchannelPicker picker = lastPicker;
+        if (picker != null) {
           PickResult pickResult = picker.pickSubchannel(args);
           ClientTransport transport = GrpcUtil.getTransportFromPickResult(pickResult,
               callOptions.isWaitForReady());
@@ -149,19 +188,13 @@ final class DelayedClientTransport implements ManagedClientTransport {
             return transport.newStream(
                 args.getMethodDescriptor(), args.getHeaders(), args.getCallOptions());
           }
-          // This picker's conclusion is "buffer".  If there hasn't been a newer picker set
-          // (possible race with reprocess()), we will buffer it.  Otherwise, will try with the new
-          // picker.
-          synchronized (lock) {
-            if (shutdown) {
-              break;
-            }
-            if (pickerVersion == lastPickerVersion) {
-              return createPendingStream(args);
-            }
-            picker = lastPicker;
-            pickerVersion = lastPickerVersion;
-          }
+        }
+        // There is no picker yet, or this picker's conclusion is "buffer".  If there hasn't been a
+        // newer picker set (possible race with reprocess()), we will buffer it.  Otherwise, will
+        // try with the new picker.
+        PendingStream pendingStream = createPendingStream(args, pickerVersion);
+        if (pendingStream != null) {
+          return pendingStream;
         }
       }
       return new FailingClientStream(Status.UNAVAILABLE.withDescription(
@@ -177,17 +210,86 @@ final class DelayedClientTransport implements ManagedClientTransport {
   }
 
   /**
-   * Caller must call {@code channelExecutor.drain()} outside of lock because this method may
+   * Buffers a stream, unless the transport is shut down or a picker newer than {@code
+   * pickerVersion} has been set, in which case {@code null} is returned. Only takes {@link #lock}
+   * when the transport goes in or out of use.
+   *
+   * <p>Caller must call {@code channelExecutor.drain()} outside of lock because this method may
+   * schedule tasks on channelExecutor.
+   */
+  @Nullable
+  private PendingStream createPendingStream(PickSubchannelArgs args, long pickerVersion) {
+    // Counted before being added, so that reprocess() and shutdown() either see the stream or
+    // have already set what is checked below.
+    if (!reservePendingStream()) {
+      return null;
+    }
+    long id = nextStreamId.getAndIncrement();
+    Stripe stripe = stripes[(int) (id & (STRIPE_COUNT - 1))];
+    PendingStream pendingStream = new PendingStream(args, stripe, id);
+    synchronized (stripe.lock) {
+      if (!shutdown && pickerVersion == lastPickerVersion) {
+        stripe.streams.add(pendingStream);
+        return pendingStream;
+      }
+    }
+    synchronized (lock) {
+      removePendingStreams(1);
+    }
+    return null;
+  }
+
+  /**
+   * Counts a stream that is about to be buffered. Returns {@code false} if the transport is shut
+   * down and has no pending streams.
+   */
+  private boolean reservePendingStream() {
+    while (true) {
+      int current = pendingStreamsCount.get();
+      if (current != 0) {
+        if (pendingStreamsCount.compareAndSet(current, current + 1)) {
+          return true;
+        }
+        continue;
+      }
+      // The transport goes in use under the lock, where it also goes out of use, so that the
+      // reports are queued in the order the count changed.
+      synchronized (lock) {
+        if (shutdown) {
+          return false;
+        }
+        if (pendingStreamsCount.compareAndSet(0, 1)) {
+          channelExecutor.executeLater(reportTransportInUse);
+          return true;
+        }
+      }
+    }
+  }
+
+  /**
+   * Uncounts streams that have been removed from their stripe.
+   *
+   * <p>Caller must call {@code channelExecutor.drain()} outside of lock because this method may
    * schedule tasks on channelExecutor.
    */
   @GuardedBy("lock")
-  private PendingStream createPendingStream(PickSubchannelArgs args) {
-    PendingStream pendingStream = new PendingStream(args);
-    pendingStreams.add(pendingStream);
-    if (pendingStreams.size() == 1) {
-      channelExecutor.executeLater(reportTransportInUse);
+  private void removePendingStreams(int count) {
+    if (terminated) {
+      // shutdownNow() has already dropped all pending streams
+      return;
+    }
+    if (pendingStreamsCount.addAndGet(-count) == 0) {
+      // There may be a brief gap between delayed transport clearing in-use state, and first real
+      // transport starting streams and setting in-use state.  During the gap the whole channel's
+      // in-use state may be false. However, it shouldn't cause spurious switching to idleness
+      // (which would shutdown the transports and LoadBalancer) because the gap should be shorter
+      // than IDLE_MODE_DEFAULT_TIMEOUT_MILLIS (1 second).
+      channelExecutor.executeLater(reportTransportNotInUse);
+      if (shutdown) {
+        terminated = true;
+        channelExecutor.executeLater(reportTransportTerminated);
+      }
     }
-    return pendingStream;
   }
 
   @Override
@@ -208,8 +310,8 @@ final class DelayedClientTransport implements ManagedClientTransport {
       }
       shutdown = true;
       channelExecutor.executeLater(reportTransportShutdown);
-      if (pendingStreams == null || pendingStreams.isEmpty()) {
-        pendingStreams = null;
+      if (pendingStreamsCount.get() == 0) {
+        terminated = true;
         channelExecutor.executeLater(reportTransportTerminated);
       }
     }
@@ -223,11 +325,18 @@ final class DelayedClientTransport implements ManagedClientTransport {
   @Override
   public final void shutdownNow(Status status) {
     shutdown();
-    Collection<PendingStream> savedPendingStreams = null;
+    List<PendingStream> savedPendingStreams = null;
     synchronized (lock) {
-      if (pendingStreams != null) {
-        savedPendingStreams = pendingStreams;
-        pendingStreams = null;
+      if (!terminated) {
+        savedPendingStreams = new ArrayList<PendingStream>(pendingStreamsCount.get());
+        for (Stripe stripe : stripes) {
+          synchronized (stripe.lock) {
+            savedPendingStreams.addAll(stripe.streams);
+            stripe.streams = new LinkedHashSet<PendingStream>();
+          }
+        }
+        pendingStreamsCount.set(0);
+        terminated = true;
       }
     }
     if (savedPendingStreams != null) {
@@ -240,16 +349,29 @@ final class DelayedClientTransport implements ManagedClientTransport {
   }
 
   public final boolean hasPendingStreams() {
-    synchronized (lock) {
-      return pendingStreams != null && !pendingStreams.isEmpty();
-    }
+    return pendingStreamsCount.get() != 0;
   }
 
-  @VisibleForTesting
+  /**
+   * Returns the number of streams waiting for a transport to be picked.
+   */
   final int getPendingStreamsCount() {
-    synchronized (lock) {
-      return pendingStreams == null ? 0 : pendingStreams.size();
-    }
+    return pendingStreamsCount.get();
+  }
+
+  /**
+   * Returns the number of pending streams that have been handed to a real transport.
+   */
+  final long getDispatchedStreamsCount() {
+    return dispatchedStreams.get();
+  }
+
+  /**
+   * Returns the total time dispatched streams spent pending, in nanoseconds. Divided by {@link
+   * #getDispatchedStreamsCount} it gives the average time a delayed stream waits for a pick.
+   */
+  final long getTotalPickDelayNanos() {
+    return totalPickDelayNanos.get();
   }
 
   /**
@@ -263,21 +385,31 @@ final class DelayedClientTransport implements ManagedClientTransport {
    * <p>This method <strong>must not</strong> be called concurrently with itself.
    */
   final void reprocess(SubchannelPicker picker) {
-    ArrayList<PendingStream> toProcess;
-    ArrayList<PendingStream> toRemove = new ArrayList<PendingStream>();
     synchronized (lock) {
       lastPicker = picker;
       lastPickerVersion++;
-      if (pendingStreams == null || pendingStreams.isEmpty()) {
+      if (terminated || pendingStreamsCount.get() == 0) {
         return;
       }
-      toProcess = new ArrayList<PendingStream>(pendingStreams);
     }
 
-    for (final PendingStream stream : toProcess) {
+    ArrayList<PendingStream> toProcess = new ArrayList<PendingStream>();
+    for (Stripe stripe : stripes) {
+      synchronized (stripe.lock) {
+        toProcess.addAll(stripe.streams);
+      }
+    }
+    // The stripes are filled in turn, so this restores the order the streams were created in.
+    Collections.sort(toProcess, CREATION_ORDER);
+
+    Map<Executor, List<PendingStream>> toDispatch =
+        new IdentityHashMap<Executor, List<PendingStream>>();
+    int toDispatchCount = 0;
+    boolean picked = false;
+    for (PendingStream stream : toProcess) {
       PickResult pickResult = picker.pickSubchannel(stream.args);
       CallOptions callOptions = stream.args.getCallOptions();
-      final ClientTransport transport = GrpcUtil.getTransportFromPickResult(pickResult,
+      ClientTransport transport = GrpcUtil.getTransportFromPickResult(pickResult,
           callOptions.isWaitForReady());
       if (transport != null) {
         Executor executor = defaultAppExecutor;
@@ -287,42 +419,85 @@ final class DelayedClientTransport implements ManagedClientTransport {
         if (callOptions.getExecutor() != null) {
           executor = callOptions.getExecutor();
         }
-        executor.execute(new Runnable() {
-            @Override
-            public void run() {
-              stream.createRealStream(transport);
-            }
-          });
-        toRemove.add(stream);
+        stream.pickedTransport = transport;
+        picked = true;
+        List<PendingStream> batch = toDispatch.get(executor);
+        if (batch == null) {
+          batch = new ArrayList<PendingStream>();
+          toDispatch.put(executor, batch);
+        }
+        batch.add(stream);
+        // Dispatch as we go, so that the first streams do not wait for the last ones to be picked.
+        if (++toDispatchCount == DISPATCH_BATCH_SIZE) {
+          dispatch(toDispatch);
+          toDispatchCount = 0;
+        }
       }  // else: stay pending
     }
+    dispatch(toDispatch);
+    if (!picked) {
+      return;
+    }
+
+    int removed = 0;
+    for (Stripe stripe : stripes) {
+      synchronized (stripe.lock) {
+        // Streams may have been cancelled, or all dropped by shutdownNow(), in the meantime.
+        int sizeBefore = stripe.streams.size();
+        for (Iterator<PendingStream> it = stripe.streams.iterator(); it.hasNext(); ) {
+          if (it.next().pickedTransport != null) {
+            it.remove();
+          }
+        }
+        if (stripe.streams.size() != sizeBefore) {
+          removed += sizeBefore - stripe.streams.size();
+          if (stripe.streams.isEmpty()) {
+            // Because delayed transport is long-lived, we take this opportunity to down-size the
+            // hashmap.
+            stripe.streams = new LinkedHashSet<PendingStream>();
+          }
+        }
+      }
+    }
 
     synchronized (lock) {
-      // Between this synchronized and the previous one:
-      //   - Streams may have been cancelled, which may turn pendingStreams into emptiness.
-      //   - shutdown() may be called, which may turn pendingStreams into null.
-      if (pendingStreams == null || pendingStreams.isEmpty()) {
+      if (removed == 0) {
         return;
       }
-      pendingStreams.removeAll(toRemove);
-      if (pendingStreams.isEmpty()) {
-        // There may be a brief gap between delayed transport clearing in-use state, and first real
-        // transport starting streams and setting in-use state.  During the gap the whole channel's
-        // in-use state may be false. However, it shouldn't cause spurious switching to idleness
-        // (which would shutdown the transports and LoadBalancer) because the gap should be shorter
-        // than IDLE_MODE_DEFAULT_TIMEOUT_MILLIS (1 second).
-        channelExecutor.executeLater(reportTransportNotInUse);
-        if (shutdown) {
-          pendingStreams = null;
-          channelExecutor.executeLater(reportTransportTerminated);
-        } else {
-          // Because delayed transport is long-lived, we take this opportunity to down-size the
-          // hashmap.
-          pendingStreams = new LinkedHashSet<PendingStream>();
+      removePendingStreams(removed);
+    }
+    channelExecutor.drain();
+  }
+
+  /**
+   * Creates the real streams of the picked streams on their executors, in batches of at most
+   * {@link #DISPATCH_BATCH_SIZE}, and empties {@code toDispatch}.
+   */
+  private void dispatch(Map<Executor, List<PendingStream>> toDispatch) {
+    if (toDispatch.isEmpty()) {
+      return;
+    }
+    long now = System.nanoTime();
+    for (Map.Entry<Executor, List<PendingStream>> entry : toDispatch.entrySet()) {
+      List<PendingStream> streams = entry.getValue();
+      for (int i = 0; i < streams.size(); i += DISPATCH_BATCH_SIZE) {
+        final List<PendingStream> batch =
+            streams.subList(i, Math.min(i + DISPATCH_BATCH_SIZE, streams.size()));
+        for (PendingStream stream : batch) {
+          totalPickDelayNanos.addAndGet(now - stream.createdNanos);
         }
+        dispatchedStreams.addAndGet(batch.size());
+        entry.getKey().execute(new Runnable() {
+            @Override
+            public void run() {
+              for (PendingStream stream : batch) {
+                stream.createRealStream();
+              }
+            }
+          });
       }
     }
-    channelExecutor.drain();
+    toDispatch.clear();
   }
 
   // TODO(carl-mastrangelo): remove this once the Subchannel change is in.
@@ -331,19 +506,42 @@ final class DelayedClientTransport implements ManagedClientTransport {
     return lodId;
   }
 
+  /**
+   * A partition of the pending streams.
+   */
+  private static final class Stripe {
+    final Object lock = new Object();
+    @GuardedBy("lock")
+    LinkedHashSet<PendingStream> streams = new LinkedHashSet<PendingStream>();
+  }
+
+  private static final Comparator<PendingStream> CREATION_ORDER = new Comparator<PendingStream>() {
+      @Override
+      public int compare(PendingStream a, PendingStream b) {
+        return a.id < b.id ? -1 : (a.id == b.id ? 0 : 1);
+      }
+    };
+
   private class PendingStream extends DelayedStream {
     private final PickSubchannelArgs args;
+    private final Stripe stripe;
+    private final long id;
     private final Context context = Context.current();
+    private final long createdNanos = System.nanoTime();
+    // Set by reprocess() before the stream is handed to its executor.
+    private ClientTransport pickedTransport;
 
-    private PendingStream(PickSubchannelArgs args) {
+    private PendingStream(PickSubchannelArgs args, Stripe stripe, long id) {
       this.args = args;
+      this.stripe = stripe;
+      this.id = id;
     }
 
-    private void createRealStream(ClientTransport transport) {
+    private void createRealStream() {
       ClientStream realStream;
       Context origContext = context.attach();
       try {
-        realStream = transport.newStream(
+        realStream = pickedTransport.newStream(
             args.getMethodDescriptor(), args.getHeaders(), args.getCallOptions());
       } finally {
         context.detach(origContext);
@@ -354,19 +552,16 @@ final class DelayedClientTransport implements ManagedClientTransport {
     @Override
     public void cancel(Status reason) {
       super.cancel(reason);
-      synchronized (lock) {
-        if (pendingStreams != null) {
-          boolean justRemovedAnElement = pendingStreams.remove(this);
-          if (pendingStreams.isEmpty() && justRemovedAnElement) {
-            channelExecutor.executeLater(reportTransportNotInUse);
-            if (shutdown) {
-              pendingStreams = null;
-              channelExecutor.executeLater(reportTransportTerminated);
-            }
-          }
+      boolean justRemovedAnElement;
+      synchronized (stripe.lock) {
+        justRemovedAnElement = stripe.streams.remove(this);
+      }
+      if (justRemovedAnElement) {
+        synchronized (lock) {
+          removePendingStreams(1);
         }
+        channelExecutor.drain();
       }
-      channelExecutor.drain();
     }
   }
 }
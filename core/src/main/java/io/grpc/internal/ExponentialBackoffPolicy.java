@@ -21,6 +21,7 @@ import static com.google.common.base.Preconditions.checkArgument;
 import com.google.common.annotations.VisibleForTesting;
 import java.util.Random;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 
 /**
  * Retry Policy for Transport reconnection.  Initial parameters from
@@ -28,11 +29,39 @@ import java.util.concurrent.TimeUnit;
  *
  * <p>TODO(carl-mastrangelo): add unit tests for this class
  */
-final class ExponentialBackoffPolicy implements BackoffPolicy {
-  static final class Provider implements BackoffPolicy.Provider {
+public final class ExponentialBackoffPolicy implements BackoffPolicy {
+  public static final class Provider implements BackoffPolicy.Provider {
+    @Nullable
+    private final Long initialBackoffNanos;
+    @Nullable
+    private final Long maxBackoffNanos;
+
+    /**
+     * Creates a provider of policies with the default connection backoff parameters.
+     */
+    public Provider() {
+      this.initialBackoffNanos = null;
+      this.maxBackoffNanos = null;
+    }
+
+    /**
+     * Creates a provider of policies with the given initial and maximum backoff.
+     */
+    public Provider(long initialBackoffNanos, long maxBackoffNanos) {
+      checkArgument(initialBackoffNanos > 0, "initialBackoffNanos must be positive");
+      checkArgument(maxBackoffNanos >= initialBackoffNanos,
+          "maxBackoffNanos must not be less than initialBackoffNanos");
+      this.initialBackoffNanos = initialBackoffNanos;
+      this.maxBackoffNanos = maxBackoffNanos;
+    }
+
     @Override
     public BackoffPolicy get() {
-      return new ExponentialBackoffPolicy();
+      ExponentialBackoffPolicy policy = new ExponentialBackoffPolicy();
+      if (initialBackoffNanos != null) {
+        policy.setInitialBackoffNanos(initialBackoffNanos).setMaxBackoffNanos(maxBackoffNanos);
+      }
+      return policy;
     }
   }
 
@@ -60,7 +89,7 @@ final class ExponentialBackoffPolicy implements BackoffPolicy {
 
   /*
    * No guice and no flags means we get to implement these setters for testing ourselves.  Do not
-   * call these from non-test code.
+   * call these from non-test code, other than through Provider.
    */
 
   @VisibleForTesting
@@ -72,6 +101,7 @@ final class ExponentialBackoffPolicy implements BackoffPolicy {
   @VisibleForTesting
   ExponentialBackoffPolicy setInitialBackoffNanos(long initialBackoffNanos) {
     this.initialBackoffNanos = initialBackoffNanos;
+    this.nextBackoffNanos = initialBackoffNanos;
     return this;
   }
 
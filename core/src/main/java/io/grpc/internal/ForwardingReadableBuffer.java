@@ -105,6 +105,16 @@ public abstract class ForwardingReadableBuffer implements ReadableBuffer {
     return buf.arrayOffset();
   }
 
+  @Override
+  public boolean byteBufferSupported() {
+    return buf.byteBufferSupported();
+  }
+
+  @Override
+  public ByteBuffer getByteBuffer() {
+    return buf.getByteBuffer();
+  }
+
   @Override
   public void close() {
     buf.close();
@@ -35,7 +35,6 @@ import io.grpc.Metadata;
 import io.grpc.MethodDescriptor;
 import io.grpc.Status;
 import io.grpc.internal.SharedResourceHolder.Resource;
-import java.lang.reflect.Method;
 import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -433,35 +432,57 @@ public final class GrpcUtil {
       };
 
   /**
-   * Shared single-threaded executor for managing channel timers.
+   * Shared executor that runs each task on a new virtual thread, when the JVM supports them (Java
+   * 21 and later). Otherwise it is a cached thread pool, like {@link #SHARED_CHANNEL_EXECUTOR}.
+   */
+  public static final Resource<ExecutorService> SHARED_THREAD_PER_CALL_EXECUTOR =
+      new Resource<ExecutorService>() {
+        private static final String NAME = "grpc-thread-per-call-executor";
+        @Override
+        public ExecutorService create() {
+          ExecutorService executor = newVirtualThreadPerTaskExecutor();
+          if (executor == null) {
+            executor = Executors.newCachedThreadPool(getThreadFactory(NAME + "-%d", true));
+          }
+          return executor;
+        }
+
+        @Override
+        public void close(ExecutorService instance) {
+          instance.shutdown();
+        }
+
+        @Override
+        public String toString() {
+          return NAME;
+        }
+      };
+
+  /**
+   * Returns {@code Executors.newVirtualThreadPerTaskExecutor()}, or {@code null} if the JVM
+   * doesn't support virtual threads.
+   */
+  @Nullable
+  @VisibleForTesting
+  static ExecutorService newVirtualThreadPerTaskExecutor() {
+    try {
+      return (ExecutorService)
+          Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (Exception e) {
+      // Not in this JVM, or a preview feature that isn't enabled
+      return null;
+    }
+  }
+
+  /**
+   * Shared single-threaded executor for managing channel timers. It is a hashed timing wheel, since
+   * most timers, like call deadlines, are cancelled before they run.
    */
   public static final Resource<ScheduledExecutorService> TIMER_SERVICE =
       new Resource<ScheduledExecutorService>() {
         @Override
         public ScheduledExecutorService create() {
-          // We don't use newSingleThreadScheduledExecutor because it doesn't return a
-          // ScheduledThreadPoolExecutor.
-          ScheduledExecutorService service = Executors.newScheduledThreadPool(
-              1,
-              getThreadFactory("grpc-timer-%d", true));
-
-          // If there are long timeouts that are cancelled, they will not actually be removed from
-          // the executors queue.  This forces immediate removal upon cancellation to avoid a
-          // memory leak.  Reflection is used because we cannot use methods added in Java 1.7.  If
-          // the method does not exist, we give up.  Note that the method is not present in 1.6, but
-          // _is_ present in the android standard library.
-          try {
-            Method method = service.getClass().getMethod("setRemoveOnCancelPolicy", boolean.class);
-            method.invoke(service, true);
-          } catch (NoSuchMethodException e) {
-            // no op
-          } catch (RuntimeException e) {
-            throw e;
-          } catch (Exception e) {
-            throw new RuntimeException(e);
-          }
-
-          return service;
+          return new HashedWheelTimerService(getThreadFactory("grpc-timer-%d", true));
         }
 
         @Override
@@ -0,0 +1,524 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A {@link ScheduledExecutorService} backed by a hierarchical hashed timing wheel, for the many
+ * timers that are scheduled and then almost always cancelled, like call deadlines.
+ *
+ * <p>Scheduling and cancelling a timer only add it to a concurrent queue, so they take constant
+ * time and no lock. A single worker thread moves the queued timers in and out of the wheels and
+ * runs the ones that are due. There are {@link #LEVELS} wheels of {@link #WHEEL_SIZE} buckets, and
+ * a timer goes to the lowest wheel that spans its delay; each time a wheel wraps around, the next
+ * bucket of the wheel above is cascaded into the wheels below. Delays are rounded up to a tick, so
+ * timers never run early but may run up to a tick late.
+ *
+ * <p>Like a single-threaded {@link java.util.concurrent.ScheduledThreadPoolExecutor}, tasks run on
+ * the worker thread one at a time, so they should not block. On shutdown, the timers that have not
+ * run are cancelled.
+ */
+@ThreadSafe
+final class HashedWheelTimerService extends AbstractExecutorService
+    implements ScheduledExecutorService {
+  @VisibleForTesting
+  static final long DEFAULT_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+  private static final int WHEEL_BITS = 8;
+  @VisibleForTesting
+  static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+  private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+  @VisibleForTesting
+  static final int LEVELS = 4;
+  /** Timers further away are kept in the top wheel, and placed again when cascaded. */
+  private static final long MAX_TICKS = (1L << (WHEEL_BITS * LEVELS)) - 1;
+  /** Longer delays are treated as this one, so that deadlines don't overflow. */
+  private static final long MAX_DELAY_NANOS = Long.MAX_VALUE / 2;
+  /** Bounds the work per tick when tasks keep scheduling new tasks that are already due. */
+  private static final int MAX_NEW_TIMERS_PER_TICK = 100000;
+
+  private final Ticker ticker;
+  private final long tickNanos;
+  private final long startNanos;
+  @Nullable
+  private final ThreadFactory threadFactory;
+
+  private final Queue<WheelTimer<?>> newTimers = new ConcurrentLinkedQueue<WheelTimer<?>>();
+  private final Queue<WheelTimer<?>> cancelledTimers = new ConcurrentLinkedQueue<WheelTimer<?>>();
+
+  // Only accessed by the thread expiring timers
+  private final Bucket[][] wheels = new Bucket[LEVELS][WHEEL_SIZE];
+  /** The next tick to expire. */
+  private long currentTick;
+  /** The number of timers in the wheels. */
+  private int timerCount;
+
+  private final Object lock = new Object();
+  // Only written under the lock
+  private volatile Thread worker;
+  private volatile boolean shutdown;
+  /**
+   * The tick at which the worker will wake up on its own, so that timers due later don't need to
+   * wake it up. {@code -1} while it is awake.
+   */
+  private volatile long wakeUpTick = -1;
+  private final CountDownLatch terminated = new CountDownLatch(1);
+
+  /**
+   * Creates a service whose worker is created by the given factory when the first timer is
+   * scheduled.
+   */
+  HashedWheelTimerService(ThreadFactory threadFactory) {
+    this(Ticker.systemTicker(), DEFAULT_TICK_NANOS, checkNotNull(threadFactory, "threadFactory"));
+  }
+
+  /**
+   * Creates a service without a worker. Timers only run when {@link #expireTimers} is called.
+   */
+  @VisibleForTesting
+  HashedWheelTimerService(Ticker ticker, long tickNanos) {
+    this(ticker, tickNanos, null);
+  }
+
+  private HashedWheelTimerService(Ticker ticker, long tickNanos,
+      @Nullable ThreadFactory threadFactory) {
+    checkArgument(tickNanos > 0, "tickNanos must be positive");
+    this.ticker = checkNotNull(ticker, "ticker");
+    this.tickNanos = tickNanos;
+    this.startNanos = ticker.read();
+    this.threadFactory = threadFactory;
+    for (Bucket[] wheel : wheels) {
+      for (int i = 0; i < WHEEL_SIZE; i++) {
+        wheel[i] = new Bucket();
+      }
+    }
+  }
+
+  @Override
+  public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+    checkNotNull(command, "command");
+    return enqueue(new WheelTimer<Void>(command, deadlineNanos(delay, unit), 0));
+  }
+
+  @Override
+  public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+    checkNotNull(callable, "callable");
+    return enqueue(new WheelTimer<V>(callable, deadlineNanos(delay, unit)));
+  }
+
+  @Override
+  public ScheduledFuture<?> scheduleAtFixedRate(
+      Runnable command, long initialDelay, long period, TimeUnit unit) {
+    checkNotNull(command, "command");
+    checkArgument(period > 0, "period must be positive");
+    long periodNanos = Math.min(unit.toNanos(period), MAX_DELAY_NANOS);
+    return enqueue(
+        new WheelTimer<Void>(command, deadlineNanos(initialDelay, unit), periodNanos));
+  }
+
+  @Override
+  public ScheduledFuture<?> scheduleWithFixedDelay(
+      Runnable command, long initialDelay, long delay, TimeUnit unit) {
+    checkNotNull(command, "command");
+    checkArgument(delay > 0, "delay must be positive");
+    long delayNanos = Math.min(unit.toNanos(delay), MAX_DELAY_NANOS);
+    return enqueue(
+        new WheelTimer<Void>(command, deadlineNanos(initialDelay, unit), -delayNanos));
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    schedule(command, 0, TimeUnit.NANOSECONDS);
+  }
+
+  private long deadlineNanos(long delay, TimeUnit unit) {
+    return ticker.read() + Math.min(Math.max(unit.toNanos(delay), 0), MAX_DELAY_NANOS);
+  }
+
+  private long toTick(long deadlineNanos) {
+    // Rounded up, so that timers never run early
+    return (deadlineNanos - startNanos + tickNanos - 1) / tickNanos;
+  }
+
+  private <V> WheelTimer<V> enqueue(WheelTimer<V> timer) {
+    if (shutdown) {
+      throw new RejectedExecutionException("Timer service has been shut down");
+    }
+    newTimers.add(timer);
+    if (shutdown && newTimers.remove(timer)) {
+      // Otherwise the worker took it, and cancels it on its way out
+      throw new RejectedExecutionException("Timer service has been shut down");
+    }
+    Thread worker = this.worker;
+    if (worker == null) {
+      worker = startWorker();
+    }
+    if (worker != null && timer.deadlineTick < wakeUpTick) {
+      LockSupport.unpark(worker);
+    }
+    return timer;
+  }
+
+  @Nullable
+  private Thread startWorker() {
+    synchronized (lock) {
+      if (worker == null && !shutdown && threadFactory != null) {
+        Thread thread = threadFactory.newThread(new Worker());
+        thread.start();
+        worker = thread;
+      }
+      return worker;
+    }
+  }
+
+  /**
+   * Runs the timers that are due, and returns the tick at which timers may be due next, or
+   * {@link Long#MAX_VALUE} if there are no timers. Must not be called concurrently.
+   */
+  @VisibleForTesting
+  long expireTimers() {
+    long now = ticker.read();
+    // The last tick that is due
+    long nowTick = (now - startNanos) / tickNanos;
+    if (timerCount == 0 && currentTick < nowTick) {
+      // Skip the ticks there is nothing to expire for
+      currentTick = nowTick;
+    }
+    removeCancelledTimers();
+    addNewTimers(now);
+    while (currentTick <= nowTick) {
+      int index = (int) (currentTick & WHEEL_MASK);
+      if (index == 0) {
+        cascade();
+      }
+      Bucket bucket = wheels[0][index];
+      WheelTimer<?> timer;
+      while ((timer = bucket.poll()) != null) {
+        timerCount--;
+        timer.run();
+      }
+      currentTick++;
+    }
+    return nextTick();
+  }
+
+  private void removeCancelledTimers() {
+    WheelTimer<?> timer;
+    while ((timer = cancelledTimers.poll()) != null) {
+      if (timer.bucket != null) {
+        timer.bucket.remove(timer);
+        timerCount--;
+      }
+    }
+  }
+
+  private void addNewTimers(long now) {
+    for (int i = 0; i < MAX_NEW_TIMERS_PER_TICK; i++) {
+      WheelTimer<?> timer = newTimers.poll();
+      if (timer == null) {
+        return;
+      }
+      if (timer.isCancelled()) {
+        continue;
+      }
+      if (timer.deadlineNanos - now <= 0) {
+        timer.run();
+      } else {
+        place(timer);
+        timerCount++;
+      }
+    }
+  }
+
+  private void place(WheelTimer<?> timer) {
+    long expires = Math.max(timer.deadlineTick, currentTick);
+    long delta = expires - currentTick;
+    if (delta > MAX_TICKS) {
+      expires = currentTick + MAX_TICKS;
+      delta = MAX_TICKS;
+    }
+    int level = 0;
+    while (delta >= 1L << (WHEEL_BITS * (level + 1))) {
+      level++;
+    }
+    wheels[level][(int) ((expires >>> (WHEEL_BITS * level)) & WHEEL_MASK)].add(timer);
+  }
+
+  /**
+   * Moves the timers of the current bucket of each upper wheel that wrapped around to the lower
+   * wheels.
+   */
+  private void cascade() {
+    for (int level = 1; level < LEVELS; level++) {
+      int index = (int) ((currentTick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+      Bucket bucket = wheels[level][index];
+      WheelTimer<?> timer;
+      while ((timer = bucket.poll()) != null) {
+        place(timer);
+      }
+      if (index != 0) {
+        return;
+      }
+    }
+  }
+
+  private long nextTick() {
+    if (timerCount == 0) {
+      return Long.MAX_VALUE;
+    }
+    // The lowest wheel is only searched up to the next cascade
+    long cascadeTick = (currentTick | WHEEL_MASK) + 1;
+    for (long tick = currentTick; tick < cascadeTick; tick++) {
+      if (!wheels[0][(int) (tick & WHEEL_MASK)].isEmpty()) {
+        return tick;
+      }
+    }
+    return cascadeTick;
+  }
+
+  private void cancelAll() {
+    WheelTimer<?> timer;
+    while ((timer = newTimers.poll()) != null) {
+      timer.cancel(false);
+    }
+    for (Bucket[] wheel : wheels) {
+      for (Bucket bucket : wheel) {
+        while ((timer = bucket.poll()) != null) {
+          timer.cancel(false);
+        }
+      }
+    }
+    timerCount = 0;
+    cancelledTimers.clear();
+  }
+
+  /**
+   * Stops the worker and cancels the timers that have not run.
+   */
+  @Override
+  public void shutdown() {
+    Thread worker;
+    synchronized (lock) {
+      if (shutdown) {
+        return;
+      }
+      shutdown = true;
+      worker = this.worker;
+    }
+    if (worker != null) {
+      LockSupport.unpark(worker);
+    } else {
+      cancelAll();
+      terminated.countDown();
+    }
+  }
+
+  /**
+   * Same as {@link #shutdown}. The timers that have not run are cancelled rather than returned.
+   */
+  @Override
+  public List<Runnable> shutdownNow() {
+    shutdown();
+    return Collections.emptyList();
+  }
+
+  @Override
+  public boolean isShutdown() {
+    return shutdown;
+  }
+
+  @Override
+  public boolean isTerminated() {
+    return terminated.getCount() == 0;
+  }
+
+  @Override
+  public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    return terminated.await(timeout, unit);
+  }
+
+  private final class Worker implements Runnable {
+    @Override
+    public void run() {
+      try {
+        while (!shutdown) {
+          wakeUpTick = -1;
+          long nextTick = expireTimers();
+          // A task may have been cancelled with mayInterruptIfRunning
+          Thread.interrupted();
+          wakeUpTick = nextTick;
+          // Read after publishing wakeUpTick, so that a timer scheduled concurrently is either
+          // seen here or wakes up the worker
+          if (!newTimers.isEmpty() || shutdown) {
+            continue;
+          }
+          if (nextTick == Long.MAX_VALUE) {
+            LockSupport.park(this);
+          } else {
+            long sleepNanos = startNanos + nextTick * tickNanos - ticker.read();
+            if (sleepNanos > 0) {
+              LockSupport.parkNanos(this, sleepNanos);
+            }
+          }
+        }
+      } finally {
+        cancelAll();
+        terminated.countDown();
+      }
+    }
+  }
+
+  private final class WheelTimer<V> extends FutureTask<V> implements ScheduledFuture<V> {
+    /**
+     * Zero for one-shot timers, positive for a fixed rate, and negative for a fixed delay.
+     */
+    private final long periodNanos;
+    volatile long deadlineNanos;
+    volatile long deadlineTick;
+
+    // Only accessed by the thread expiring timers
+    @Nullable
+    Bucket bucket;
+    @Nullable
+    WheelTimer<?> prev;
+    @Nullable
+    WheelTimer<?> next;
+
+    WheelTimer(Runnable command, long deadlineNanos, long periodNanos) {
+      super(command, null);
+      this.periodNanos = periodNanos;
+      setDeadline(deadlineNanos);
+    }
+
+    WheelTimer(Callable<V> callable, long deadlineNanos) {
+      super(callable);
+      this.periodNanos = 0;
+      setDeadline(deadlineNanos);
+    }
+
+    private void setDeadline(long deadlineNanos) {
+      this.deadlineNanos = deadlineNanos;
+      this.deadlineTick = toTick(deadlineNanos);
+    }
+
+    @Override
+    public void run() {
+      if (periodNanos == 0) {
+        super.run();
+      } else if (runAndReset()) {
+        setDeadline(periodNanos > 0 ? deadlineNanos + periodNanos : ticker.read() - periodNanos);
+        if (shutdown) {
+          cancel(false);
+        } else {
+          newTimers.add(this);
+        }
+      }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      boolean cancelled = super.cancel(mayInterruptIfRunning);
+      if (cancelled) {
+        cancelledTimers.add(this);
+      }
+      return cancelled;
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+      return unit.convert(deadlineNanos - ticker.read(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+      long diff = getDelay(TimeUnit.NANOSECONDS) - other.getDelay(TimeUnit.NANOSECONDS);
+      return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+    }
+  }
+
+  /**
+   * A doubly-linked list of timers, which can remove any of them in constant time.
+   */
+  private static final class Bucket {
+    @Nullable
+    WheelTimer<?> head;
+    @Nullable
+    WheelTimer<?> tail;
+
+    boolean isEmpty() {
+      return head == null;
+    }
+
+    void add(WheelTimer<?> timer) {
+      timer.bucket = this;
+      timer.prev = tail;
+      timer.next = null;
+      if (tail == null) {
+        head = timer;
+      } else {
+        tail.next = timer;
+      }
+      tail = timer;
+    }
+
+    void remove(WheelTimer<?> timer) {
+      if (timer.prev == null) {
+        head = timer.next;
+      } else {
+        timer.prev.next = timer.next;
+      }
+      if (timer.next == null) {
+        tail = timer.prev;
+      } else {
+        timer.next.prev = timer.prev;
+      }
+      timer.bucket = null;
+      timer.prev = null;
+      timer.next = null;
+    }
+
+    @Nullable
+    WheelTimer<?> poll() {
+      WheelTimer<?> timer = head;
+      if (timer != null) {
+        remove(timer);
+      }
+      return timer;
+    }
+  }
+}
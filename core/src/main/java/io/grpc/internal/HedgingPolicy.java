@@ -0,0 +1,134 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.grpc.internal;
+
+import com.google.common.base.Preconditions;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Channel-wide hedging configuration for idempotent methods, along with the budget that limits how
+ * many hedged attempts may be sent and counters of how hedging performed.
+ *
+ * <p>The budget is a token bucket: every hedgeable call deposits {@code budgetRatio} tokens, every
+ * hedged attempt withdraws one, and the bucket holds at most {@link #MAX_TOKENS}. Over time at most
+ * {@code budgetRatio} hedged attempts are sent per call, so hedging can't amplify load much while
+ * the backends are already struggling.
+ */
+@ThreadSafe
+final class HedgingPolicy {
+  /**
+   * The size of the budget, which is how many hedged attempts may be sent in a burst.
+   */
+  static final int MAX_TOKENS = 10;
+
+  // Tokens are kept in thousandths, so that they can be updated atomically without a lock
+  private static final int TOKEN_SCALE = 1000;
+
+  final long hedgingDelayNanos;
+  final int maxAttempts;
+  private final int tokensPerCall;
+  private final AtomicInteger tokens = new AtomicInteger(MAX_TOKENS * TOKEN_SCALE);
+  private final AtomicLong hedgeableCalls = new AtomicLong();
+  private final AtomicLong hedgesSent = new AtomicLong();
+  private final AtomicLong hedgesWon = new AtomicLong();
+
+  /**
+   * Creates a policy.
+   *
+   * @param hedgingDelayNanos how long to wait for a response before sending the next attempt
+   * @param maxAttempts the maximum number of attempts per call, including the first one
+   * @param budgetRatio how many hedged attempts may be sent per call, on average
+   */
+  HedgingPolicy(long hedgingDelayNanos, int maxAttempts, double budgetRatio) {
+    Preconditions.checkArgument(hedgingDelayNanos >= 0, "hedgingDelayNanos must be non-negative");
+    Preconditions.checkArgument(maxAttempts >= 1, "maxAttempts must be positive");
+    Preconditions.checkArgument(budgetRatio >= 0 && budgetRatio <= MAX_TOKENS,
+        "budgetRatio must be in [0, %s]", MAX_TOKENS);
+    this.hedgingDelayNanos = hedgingDelayNanos;
+    this.maxAttempts = maxAttempts;
+    this.tokensPerCall = (int) Math.round(budgetRatio * TOKEN_SCALE);
+  }
+
+  /**
+   * Records a call that may be hedged, adding to the budget.
+   */
+  void recordCall() {
+    hedgeableCalls.incrementAndGet();
+    while (true) {
+      int current = tokens.get();
+      int updated = Math.min(current + tokensPerCall, MAX_TOKENS * TOKEN_SCALE);
+      if (current == updated || tokens.compareAndSet(current, updated)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Takes a token from the budget to send a hedged attempt. Returns {@code false}, without changing
+   * the budget, if the budget is exhausted.
+   */
+  boolean tryAcquireHedge() {
+    while (true) {
+      int current = tokens.get();
+      if (current < TOKEN_SCALE) {
+        return false;
+      }
+      if (tokens.compareAndSet(current, current - TOKEN_SCALE)) {
+        hedgesSent.incrementAndGet();
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Records that a hedged attempt, rather than the first attempt, provided the response of a call.
+   */
+  void recordHedgeWon() {
+    hedgesWon.incrementAndGet();
+  }
+
+  /**
+   * Returns the number of calls for which hedging was enabled.
+   */
+  long getHedgeableCallsCount() {
+    return hedgeableCalls.get();
+  }
+
+  /**
+   * Returns the number of hedged attempts sent, not counting first attempts.
+   */
+  long getHedgesSentCount() {
+    return hedgesSent.get();
+  }
+
+  /**
+   * Returns the number of calls whose response came from a hedged attempt.
+   */
+  long getHedgesWonCount() {
+    return hedgesWon.get();
+  }
+
+  /**
+   * Returns the current budget, in hedged attempts.
+   */
+  double getAvailableTokens() {
+    return tokens.get() / (double) TOKEN_SCALE;
+  }
+}
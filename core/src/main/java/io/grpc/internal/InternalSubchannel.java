@@ -26,17 +26,24 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Stopwatch;
 import com.google.common.base.Supplier;
 import com.google.errorprone.annotations.ForOverride;
+import io.grpc.CallOptions;
+import io.grpc.ClientStreamTracer;
 import io.grpc.ConnectivityState;
 import io.grpc.ConnectivityStateInfo;
 import io.grpc.EquivalentAddressGroup;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
 import io.grpc.Status;
 import java.net.SocketAddress;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.Nullable;
@@ -45,11 +52,29 @@ import javax.annotation.concurrent.ThreadSafe;
 
 /**
  * Transports for a single {@link SocketAddress}.
+ *
+ * <p>When pooling is enabled ({@code maxConnections > 1}), additional transports to the connected
+ * address are opened while READY whenever every pooled transport has at least {@code
+ * streamsPerConnection} active streams, and new streams go to the pooled transport with the
+ * fewest active streams. Additional transports are closed after being idle for {@link
+ * #POOLED_TRANSPORT_IDLE_NANOS}. The connectivity state is driven by the primary transport only;
+ * if it goes away while another pooled transport is READY, that transport becomes the primary.
  */
 @ThreadSafe
 final class InternalSubchannel implements WithLogId {
   private static final Logger log = Logger.getLogger(InternalSubchannel.class.getName());
 
+  @VisibleForTesting
+  static final long POOLED_TRANSPORT_IDLE_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+  /**
+   * Delay before trying to open another pooled transport after one failed to connect.
+   */
+  @VisibleForTesting
+  static final long POOLED_TRANSPORT_RETRY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private static final PooledTransport[] NO_POOLED_TRANSPORTS = new PooledTransport[0];
+
   private final LogId logId = LogId.allocate(getClass().getName());
   private final String authority;
   private final String userAgent;
@@ -57,6 +82,8 @@ final class InternalSubchannel implements WithLogId {
   private final Callback callback;
   private final ClientTransportFactory transportFactory;
   private final ScheduledExecutorService scheduledExecutor;
+  private final int maxConnections;
+  private final int streamsPerConnection;
 
   // File-specific convention: methods without GuardedBy("lock") MUST NOT be called under the lock.
   private final Object lock = new Object();
@@ -134,6 +161,38 @@ final class InternalSubchannel implements WithLogId {
   @Nullable
   private volatile ManagedClientTransport activeTransport;
 
+  /**
+   * Wraps {@link #activeTransport} to count its streams. Only used when pooling.
+   */
+  @GuardedBy("lock")
+  @Nullable
+  private PooledTransport activePooledTransport;
+
+  /**
+   * Pooled transports other than {@link #activeTransport} that are READY. Only used when pooling.
+   */
+  @GuardedBy("lock")
+  private final List<PooledTransport> readyExtraTransports = new ArrayList<PooledTransport>();
+
+  /**
+   * The pooled transport being connected in addition to {@link #activeTransport}, if any.
+   */
+  @GuardedBy("lock")
+  @Nullable
+  private ConnectionClientTransport pendingExtraTransport;
+
+  /**
+   * Whether the pool may not grow right now, because a transport is connecting or has just failed
+   * to. Read without the lock so that saturated picks don't contend on it.
+   */
+  private volatile boolean extraTransportBlocked;
+
+  /**
+   * The active transport followed by {@link #readyExtraTransports}, published for lock-free picks.
+   * 'lock' must be held when assigning to it.
+   */
+  private volatile PooledTransport[] pooledTransports = NO_POOLED_TRANSPORTS;
+
   @GuardedBy("lock")
   private ConnectivityStateInfo state = ConnectivityStateInfo.forNonError(IDLE);
 
@@ -141,6 +200,19 @@ final class InternalSubchannel implements WithLogId {
       BackoffPolicy.Provider backoffPolicyProvider,
       ClientTransportFactory transportFactory, ScheduledExecutorService scheduledExecutor,
       Supplier<Stopwatch> stopwatchSupplier, ChannelExecutor channelExecutor, Callback callback) {
+    this(addressGroup, authority, userAgent, backoffPolicyProvider, transportFactory,
+        scheduledExecutor, stopwatchSupplier, channelExecutor, callback, 1, Integer.MAX_VALUE);
+  }
+
+  InternalSubchannel(EquivalentAddressGroup addressGroup, String authority, String userAgent,
+      BackoffPolicy.Provider backoffPolicyProvider,
+      ClientTransportFactory transportFactory, ScheduledExecutorService scheduledExecutor,
+      Supplier<Stopwatch> stopwatchSupplier, ChannelExecutor channelExecutor, Callback callback,
+      int maxConnections, int streamsPerConnection) {
+    Preconditions.checkArgument(maxConnections > 0, "maxConnections must be positive");
+    Preconditions.checkArgument(streamsPerConnection > 0, "streamsPerConnection must be positive");
+    this.maxConnections = maxConnections;
+    this.streamsPerConnection = streamsPerConnection;
     this.addressGroup = Preconditions.checkNotNull(addressGroup, "addressGroup");
     this.authority = authority;
     this.userAgent = userAgent;
@@ -161,16 +233,16 @@ final class InternalSubchannel implements WithLogId {
   ClientTransport obtainActiveTransport() {
     ClientTransport savedTransport = activeTransport;
     if (savedTransport != null) {
-      return savedTransport;
+      if (maxConnections == 1) {
+        return savedTransport;
+      }
+      return pickPooledTransport(savedTransport);
     }
     try {
       synchronized (lock) {
         savedTransport = activeTransport;
         // Check again, since it could have changed before acquiring the lock
-        if (savedTransport != null) {
-          return savedTransport;
-        }
-        if (state.getState() == IDLE) {
+        if (savedTransport == null && state.getState() == IDLE) {
           gotoNonErrorState(CONNECTING);
           startNewTransport();
         }
@@ -178,6 +250,145 @@ final class InternalSubchannel implements WithLogId {
     } finally {
       channelExecutor.drain();
     }
+    if (savedTransport != null && maxConnections > 1) {
+      return pickPooledTransport(savedTransport);
+    }
+    return savedTransport;
+  }
+
+  /**
+   * Returns the pooled transport with the fewest active streams, growing the pool if they are all
+   * busy.
+   */
+  private ClientTransport pickPooledTransport(ClientTransport fallback) {
+    PooledTransport[] snapshot = pooledTransports;
+    if (snapshot.length == 0) {
+      // Raced with the transport going away
+      return fallback;
+    }
+    PooledTransport best = snapshot[0];
+    for (int i = 1; i < snapshot.length; i++) {
+      if (snapshot[i].activeStreams.get() < best.activeStreams.get()) {
+        best = snapshot[i];
+      }
+    }
+    if (best.activeStreams.get() >= streamsPerConnection && snapshot.length < maxConnections
+        && !extraTransportBlocked) {
+      try {
+        synchronized (lock) {
+          if (state.getState() == READY && pendingExtraTransport == null
+              && 1 + readyExtraTransports.size() < maxConnections) {
+            startExtraTransport();
+          }
+        }
+      } finally {
+        channelExecutor.drain();
+      }
+    }
+    return best;
+  }
+
+  @GuardedBy("lock")
+  private void startExtraTransport() {
+    final SocketAddress address = addressGroup.getAddresses().get(addressIndex);
+    ConnectionClientTransport transport =
+        transportFactory.newClientTransport(address, authority, userAgent);
+    if (log.isLoggable(Level.FINE)) {
+      log.log(Level.FINE, "[{0}] Created pooled {1} for {2}",
+          new Object[] {logId, transport.getLogId(), address});
+    }
+    pendingExtraTransport = transport;
+    extraTransportBlocked = true;
+    transports.add(transport);
+    Runnable runnable = transport.start(new TransportListener(transport, address));
+    if (runnable != null) {
+      channelExecutor.executeLater(runnable);
+    }
+  }
+
+  @GuardedBy("lock")
+  private void updatePooledTransports() {
+    if (maxConnections == 1) {
+      return;
+    }
+    if (activePooledTransport == null) {
+      pooledTransports = NO_POOLED_TRANSPORTS;
+      return;
+    }
+    PooledTransport[] newTransports = new PooledTransport[1 + readyExtraTransports.size()];
+    newTransports[0] = activePooledTransport;
+    for (int i = 0; i < readyExtraTransports.size(); i++) {
+      newTransports[i + 1] = readyExtraTransports.get(i);
+    }
+    pooledTransports = newTransports;
+  }
+
+  /**
+   * Removes all pooled transports besides the active one, returning the ones to shut down.
+   */
+  @GuardedBy("lock")
+  private List<ManagedClientTransport> clearExtraTransports() {
+    List<ManagedClientTransport> removed = new ArrayList<ManagedClientTransport>();
+    for (PooledTransport pooled : readyExtraTransports) {
+      pooled.cancelIdleTask();
+      removed.add(pooled.delegate);
+    }
+    readyExtraTransports.clear();
+    if (pendingExtraTransport != null) {
+      removed.add(pendingExtraTransport);
+      pendingExtraTransport = null;
+      extraTransportBlocked = false;
+    }
+    return removed;
+  }
+
+  @GuardedBy("lock")
+  private void scheduleIdleCheck(final PooledTransport pooled) {
+    pooled.cancelIdleTask();
+    pooled.idleTask = scheduledExecutor.schedule(new LogExceptionRunnable(new Runnable() {
+        @Override
+        public void run() {
+          boolean idle = false;
+          try {
+            synchronized (lock) {
+              pooled.idleTask = null;
+              if (pooled.activeStreams.get() == 0 && readyExtraTransports.remove(pooled)) {
+                idle = true;
+                updatePooledTransports();
+              }
+            }
+          } finally {
+            channelExecutor.drain();
+          }
+          if (idle) {
+            if (log.isLoggable(Level.FINE)) {
+              log.log(Level.FINE, "[{0}] Closing idle pooled {1}",
+                  new Object[] {logId, pooled.delegate.getLogId()});
+            }
+            pooled.delegate.shutdown();
+          }
+        }
+      }), POOLED_TRANSPORT_IDLE_NANOS, TimeUnit.NANOSECONDS);
+  }
+
+  @GuardedBy("lock")
+  private void scheduleExtraTransportRetry() {
+    scheduledExecutor.schedule(new LogExceptionRunnable(new Runnable() {
+        @Override
+        public void run() {
+          extraTransportBlocked = false;
+        }
+      }), POOLED_TRANSPORT_RETRY_NANOS, TimeUnit.NANOSECONDS);
+  }
+
+  @GuardedBy("lock")
+  @Nullable
+  private PooledTransport findReadyExtraTransport(ManagedClientTransport transport) {
+    for (PooledTransport pooled : readyExtraTransports) {
+      if (pooled.delegate == transport) {
+        return pooled;
+      }
+    }
     return null;
   }
 
@@ -273,6 +484,7 @@ final class InternalSubchannel implements WithLogId {
   /** Replaces the existing addresses, avoiding unnecessary reconnects. */
   public void updateAddresses(EquivalentAddressGroup newAddressGroup) {
     ManagedClientTransport savedTransport = null;
+    List<ManagedClientTransport> savedExtraTransports = null;
     try {
       synchronized (lock) {
         EquivalentAddressGroup oldAddressGroup = addressGroup;
@@ -284,9 +496,12 @@ final class InternalSubchannel implements WithLogId {
             addressIndex = newIndex;
           } else {
             // Forced to drop the connection
+            savedExtraTransports = clearExtraTransports();
             if (state.getState() == READY) {
               savedTransport = activeTransport;
               activeTransport = null;
+              activePooledTransport = null;
+              updatePooledTransports();
               addressIndex = 0;
               gotoNonErrorState(IDLE);
             } else {
@@ -304,11 +519,17 @@ final class InternalSubchannel implements WithLogId {
     if (savedTransport != null) {
       savedTransport.shutdown();
     }
+    if (savedExtraTransports != null) {
+      for (ManagedClientTransport transport : savedExtraTransports) {
+        transport.shutdown();
+      }
+    }
   }
 
   public void shutdown() {
     ManagedClientTransport savedActiveTransport;
     ConnectionClientTransport savedPendingTransport;
+    List<ManagedClientTransport> savedExtraTransports;
     try {
       synchronized (lock) {
         if (state.getState() == SHUTDOWN) {
@@ -317,7 +538,10 @@ final class InternalSubchannel implements WithLogId {
         gotoNonErrorState(SHUTDOWN);
         savedActiveTransport = activeTransport;
         savedPendingTransport = pendingTransport;
+        savedExtraTransports = clearExtraTransports();
         activeTransport = null;
+        activePooledTransport = null;
+        updatePooledTransports();
         pendingTransport = null;
         addressIndex = 0;
         if (transports.isEmpty()) {
@@ -337,6 +561,9 @@ final class InternalSubchannel implements WithLogId {
     if (savedPendingTransport != null) {
       savedPendingTransport.shutdown();
     }
+    for (ManagedClientTransport transport : savedExtraTransports) {
+      transport.shutdown();
+    }
   }
 
   @GuardedBy("lock")
@@ -437,6 +664,17 @@ final class InternalSubchannel implements WithLogId {
             gotoNonErrorState(READY);
             activeTransport = transport;
             pendingTransport = null;
+            if (maxConnections > 1) {
+              activePooledTransport = new PooledTransport(transport);
+              updatePooledTransports();
+            }
+          } else if (pendingExtraTransport == transport) {
+            pendingExtraTransport = null;
+            extraTransportBlocked = false;
+            PooledTransport pooled = new PooledTransport(transport);
+            readyExtraTransports.add(pooled);
+            updatePooledTransports();
+            scheduleIdleCheck(pooled);
           }
         }
       } finally {
@@ -450,6 +688,18 @@ final class InternalSubchannel implements WithLogId {
     @Override
     public void transportInUse(boolean inUse) {
       handleTransportInUseState(transport, inUse);
+      if (!inUse && maxConnections > 1) {
+        try {
+          synchronized (lock) {
+            PooledTransport pooled = findReadyExtraTransport(transport);
+            if (pooled != null) {
+              scheduleIdleCheck(pooled);
+            }
+          }
+        } finally {
+          channelExecutor.drain();
+        }
+      }
     }
 
     @Override
@@ -458,15 +708,36 @@ final class InternalSubchannel implements WithLogId {
         log.log(Level.FINE, "[{0}] {1} for {2} is being shutdown with status {3}",
             new Object[] {logId, transport.getLogId(), address, s});
       }
+      ManagedClientTransport savedTransport = null;
       try {
         synchronized (lock) {
           if (state.getState() == SHUTDOWN) {
             return;
           }
+          PooledTransport readyExtra = findReadyExtraTransport(transport);
           if (activeTransport == transport) {
-            gotoNonErrorState(IDLE);
-            activeTransport = null;
-            addressIndex = 0;
+            if (!readyExtraTransports.isEmpty()) {
+              // Another pooled transport takes over, so the subchannel stays READY
+              activePooledTransport = readyExtraTransports.remove(0);
+              activePooledTransport.cancelIdleTask();
+              activeTransport = activePooledTransport.delegate;
+            } else {
+              gotoNonErrorState(IDLE);
+              activeTransport = null;
+              activePooledTransport = null;
+              addressIndex = 0;
+              savedTransport = pendingExtraTransport;
+              pendingExtraTransport = null;
+              extraTransportBlocked = false;
+            }
+            updatePooledTransports();
+          } else if (pendingExtraTransport == transport) {
+            pendingExtraTransport = null;
+            scheduleExtraTransportRetry();
+          } else if (readyExtra != null) {
+            readyExtra.cancelIdleTask();
+            readyExtraTransports.remove(readyExtra);
+            updatePooledTransports();
           } else if (pendingTransport == transport) {
             Preconditions.checkState(state.getState() == CONNECTING,
                 "Expected state is CONNECTING, actual state is %s", state.getState());
@@ -486,6 +757,9 @@ final class InternalSubchannel implements WithLogId {
       } finally {
         channelExecutor.drain();
       }
+      if (savedTransport != null) {
+        savedTransport.shutdown();
+      }
     }
 
     @Override
@@ -514,6 +788,68 @@ final class InternalSubchannel implements WithLogId {
     }
   }
 
+  /**
+   * A transport in the connection pool, which counts its active streams so that new streams can
+   * be spread across the pool.
+   */
+  private static final class PooledTransport implements ClientTransport {
+    final ConnectionClientTransport delegate;
+    final AtomicInteger activeStreams = new AtomicInteger();
+    private final ClientStreamTracer.Factory streamCounter = new ClientStreamTracer.Factory() {
+        @Override
+        public ClientStreamTracer newClientStreamTracer(Metadata headers) {
+          activeStreams.incrementAndGet();
+          return new ClientStreamTracer() {
+            final AtomicBoolean closed = new AtomicBoolean();
+
+            @Override
+            public void streamClosed(Status status) {
+              if (closed.compareAndSet(false, true)) {
+                activeStreams.decrementAndGet();
+              }
+            }
+          };
+        }
+      };
+
+    // Guarded by the lock of the owning InternalSubchannel
+    @Nullable
+    ScheduledFuture<?> idleTask;
+
+    PooledTransport(ConnectionClientTransport delegate) {
+      this.delegate = delegate;
+    }
+
+    void cancelIdleTask() {
+      if (idleTask != null) {
+        idleTask.cancel(false);
+        idleTask = null;
+      }
+    }
+
+    @Override
+    public ClientStream newStream(
+        MethodDescriptor<?, ?> method, Metadata headers, CallOptions callOptions) {
+      return delegate.newStream(
+          method, headers, callOptions.withStreamTracerFactory(streamCounter));
+    }
+
+    @Override
+    public ClientStream newStream(MethodDescriptor<?, ?> method, Metadata headers) {
+      return newStream(method, headers, CallOptions.DEFAULT);
+    }
+
+    @Override
+    public void ping(PingCallback callback, Executor executor) {
+      delegate.ping(callback, executor);
+    }
+
+    @Override
+    public String toString() {
+      return "Pooled(" + delegate + ", activeStreams=" + activeStreams.get() + ")";
+    }
+  }
+
   // All methods are called in channelExecutor, which is a serializing executor.
   abstract static class Callback {
     /**
@@ -28,6 +28,7 @@ import com.google.common.base.Supplier;
 import io.grpc.Attributes;
 import io.grpc.CallOptions;
 import io.grpc.Channel;
+import io.grpc.ChannelStats;
 import io.grpc.ClientCall;
 import io.grpc.ClientInterceptor;
 import io.grpc.ClientInterceptors;
@@ -102,6 +103,13 @@ public final class ManagedChannelImpl extends ManagedChannel implements WithLogI
   private final Supplier<Stopwatch> stopwatchSupplier;
   /** The timout before entering idle mode. */
   private final long idleTimeoutMillis;
+  private final int maxConnectionsPerAddress;
+  private final int connectionPoolStreamThreshold;
+  @Nullable
+  private final RetryPolicy retryPolicy;
+  @Nullable
+  private final HedgingPolicy hedgingPolicy;
+  private final RetriableStream.BufferLimits bufferLimits;
 
   /**
    * Executor that runs deadline timers for requests.
@@ -404,6 +412,24 @@ public final class ManagedChannelImpl extends ManagedChannel implements WithLogI
           "invalid idleTimeoutMillis %s", builder.idleTimeoutMillis);
       this.idleTimeoutMillis = builder.idleTimeoutMillis;
     }
+    this.maxConnectionsPerAddress = builder.maxConnectionsPerAddress;
+    this.connectionPoolStreamThreshold = builder.connectionPoolStreamThreshold;
+    if (builder.retryEnabled) {
+      this.retryPolicy = new RetryPolicy(builder.maxRetryAttempts,
+          new ExponentialBackoffPolicy.Provider(
+              builder.retryInitialBackoffNanos, builder.retryMaxBackoffNanos),
+          builder.retryMaxTokens, builder.retryTokenRatio);
+    } else {
+      this.retryPolicy = null;
+    }
+    if (builder.hedgingDelayNanos >= 0) {
+      this.hedgingPolicy = new HedgingPolicy(
+          builder.hedgingDelayNanos, builder.maxHedgedAttempts, builder.hedgingBudgetRatio);
+    } else {
+      this.hedgingPolicy = null;
+    }
+    this.bufferLimits =
+        new RetriableStream.BufferLimits(builder.perRpcBufferLimit, builder.retryBufferSize);
     this.decompressorRegistry = checkNotNull(builder.decompressorRegistry, "decompressorRegistry");
     this.compressorRegistry = checkNotNull(builder.compressorRegistry, "compressorRegistry");
     this.userAgent = builder.userAgent;
@@ -515,6 +541,25 @@ public final class ManagedChannelImpl extends ManagedChannel implements WithLogI
     return terminated;
   }
 
+  @Override
+  public ChannelStats getStats() {
+    ChannelStats.Builder builder = ChannelStats.newBuilder()
+        .setPendingPicks(delayedTransport.getPendingStreamsCount())
+        .setCompletedPicks(delayedTransport.getDispatchedStreamsCount())
+        .setTotalPickDelayNanos(delayedTransport.getTotalPickDelayNanos());
+    if (hedgingPolicy != null) {
+      builder.setHedgeableCalls(hedgingPolicy.getHedgeableCallsCount())
+          .setHedgesSent(hedgingPolicy.getHedgesSentCount())
+          .setHedgesWon(hedgingPolicy.getHedgesWonCount());
+    }
+    if (retryPolicy != null) {
+      builder.setRetries(retryPolicy.getRetriesCount())
+          .setTransparentRetries(retryPolicy.getTransparentRetriesCount())
+          .setThrottledRetries(retryPolicy.getThrottledRetriesCount());
+    }
+    return builder.build();
+  }
+
   /*
    * Creates a new outgoing call on the channel.
    */
@@ -544,7 +589,10 @@ public final class ManagedChannelImpl extends ManagedChannel implements WithLogI
           transportProvider,
           scheduledExecutor)
               .setDecompressorRegistry(decompressorRegistry)
-              .setCompressorRegistry(compressorRegistry);
+              .setCompressorRegistry(compressorRegistry)
+              .setRetryPolicy(retryPolicy)
+              .setHedgingPolicy(hedgingPolicy)
+              .setBufferLimits(bufferLimits);
     }
 
     @Override
@@ -618,7 +666,8 @@ public final class ManagedChannelImpl extends ManagedChannel implements WithLogI
               void onNotInUse(InternalSubchannel is) {
                 inUseStateAggregator.updateObjectInUse(is, false);
               }
-            });
+            },
+            maxConnectionsPerAddress, connectionPoolStreamThreshold);
       subchannel.subchannel = internalSubchannel;
       log.log(Level.FINE, "[{0}] {1} created for {2}",
           new Object[] {getLogId(), internalSubchannel.getLogId(), addressGroup});
@@ -63,6 +63,8 @@ public class MessageFramer implements Framer {
   private static final int HEADER_LENGTH = 5;
   private static final byte UNCOMPRESSED = 0;
   private static final byte COMPRESSED = 1;
+  // Smaller messages are cheaper to copy than to send as frames of their own.
+  private static final int MIN_ZERO_COPY_LENGTH = 4096;
 
   private final Sink sink;
   // effectively final.  Can only be set once.
@@ -205,6 +207,15 @@ public class MessageFramer implements Framer {
     ByteBuffer header = ByteBuffer.wrap(headerScratch);
     header.put(UNCOMPRESSED);
     header.putInt(messageLength);
+    ReadableBuffer payload = null;
+    if (messageLength >= MIN_ZERO_COPY_LENGTH
+        && bufferAllocator instanceof ZeroCopyWritableBufferAllocator) {
+      payload = ReadableBuffers.backingBuffer(message);
+    }
+    if (payload != null) {
+      writeRaw(headerScratch, 0, header.position());
+      return writeZeroCopy(payload.readBytes(messageLength));
+    }
     // Allocate the initial buffer chunk based on frame header + payload length.
     // Note that the allocator may allocate a buffer larger or smaller than this length
     if (buffer == null) {
@@ -214,6 +225,46 @@ public class MessageFramer implements Framer {
     return writeToOutputStream(message, outputStreamAdapter);
   }
 
+  /**
+   * Hands the bytes of {@code payload} to the transport as frames of their own instead of copying
+   * them into framer buffers. Pieces that the allocator can't adopt are copied as usual.
+   */
+  private int writeZeroCopy(ReadableBuffer payload) throws IOException {
+    ZeroCopyWritableBufferAllocator allocator = (ZeroCopyWritableBufferAllocator) bufferAllocator;
+    CompositeReadableBuffer composite = null;
+    if (payload instanceof CompositeReadableBuffer) {
+      composite = (CompositeReadableBuffer) payload;
+    }
+    int written = 0;
+    try {
+      ReadableBuffer piece = composite != null ? composite.pollBuffer() : payload;
+      while (piece != null) {
+        int length = piece.readableBytes();
+        WritableBuffer wrapped = allocator.wrap(piece);
+        if (wrapped != null) {
+          // Preserve ordering with whatever was written before, e.g. the message header.
+          commitPendingBuffer();
+          // Keep the wrapped buffer as the current one, so it's committed by the next write, flush
+          // or close like any other buffer.
+          buffer = wrapped;
+        } else {
+          try {
+            piece.readBytes(outputStreamAdapter, length);
+          } finally {
+            piece.close();
+          }
+        }
+        written += length;
+        piece = composite != null ? composite.pollBuffer() : null;
+      }
+    } finally {
+      if (composite != null) {
+        composite.close();
+      }
+    }
+    return written;
+  }
+
   /**
    * Write a message that has been serialized to a sequence of buffers.
    */
@@ -326,6 +377,16 @@ public class MessageFramer implements Framer {
     }
   }
 
+  private void commitPendingBuffer() {
+    if (buffer != null) {
+      if (buffer.readableBytes() > 0) {
+        commitToSink(false, false);
+      } else {
+        releaseBuffer();
+      }
+    }
+  }
+
   private void commitToSink(boolean endOfStream, boolean flush) {
     WritableBuffer buf = buffer;
     buffer = null;
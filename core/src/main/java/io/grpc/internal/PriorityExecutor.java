@@ -0,0 +1,151 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import io.grpc.CallPriority;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Runs at most {@code parallelism} tasks at once on a delegate executor, queueing the others by
+ * {@link CallPriority}. Whenever a task completes, the oldest task of the highest priority runs
+ * next, so low priority tasks may wait for as long as there are others.
+ *
+ * <p>Tasks are submitted through the {@link Executor} returned by {@link #forPriority}.
+ */
+@ThreadSafe
+final class PriorityExecutor {
+  private static final Logger log = Logger.getLogger(PriorityExecutor.class.getName());
+
+  private final Executor delegate;
+  private final int parallelism;
+  /** Queued tasks, indexed by the ordinal of their priority. */
+  private final List<Queue<Runnable>> queues;
+  private final List<Executor> executors;
+  /** The number of workers submitted to the delegate, each of which runs queued tasks. */
+  private final AtomicInteger workers = new AtomicInteger();
+  private final Runnable worker = new Worker();
+
+  PriorityExecutor(Executor delegate, int parallelism) {
+    checkArgument(parallelism > 0, "parallelism must be positive");
+    this.delegate = checkNotNull(delegate, "delegate");
+    this.parallelism = parallelism;
+    CallPriority[] priorities = CallPriority.values();
+    queues = new ArrayList<Queue<Runnable>>(priorities.length);
+    executors = new ArrayList<Executor>(priorities.length);
+    for (final CallPriority priority : priorities) {
+      final Queue<Runnable> queue = new ConcurrentLinkedQueue<Runnable>();
+      queues.add(queue);
+      executors.add(new Executor() {
+        @Override
+        public void execute(Runnable task) {
+          queue.add(checkNotNull(task, "task"));
+          startWorker(queue, task);
+        }
+
+        @Override
+        public String toString() {
+          return "PriorityExecutor(" + priority + ")";
+        }
+      });
+    }
+  }
+
+  /**
+   * Returns an executor that queues tasks with the given priority.
+   */
+  Executor forPriority(CallPriority priority) {
+    return executors.get(priority.ordinal());
+  }
+
+  /**
+   * Submits a worker if fewer than {@code parallelism} are running. If the delegate rejects it,
+   * the task is removed from the queue, unless another worker took it already.
+   */
+  private void startWorker(@Nullable Queue<Runnable> queue, @Nullable Runnable task) {
+    int current;
+    do {
+      current = workers.get();
+      if (current >= parallelism) {
+        // A running worker will get to it
+        return;
+      }
+    } while (!workers.compareAndSet(current, current + 1));
+    try {
+      delegate.execute(worker);
+    } catch (RuntimeException e) {
+      workers.decrementAndGet();
+      if (task != null && queue.remove(task)) {
+        throw e;
+      }
+      log.log(Level.WARNING, "Delegate rejected a worker", e);
+    }
+  }
+
+  @Nullable
+  private Runnable poll() {
+    for (Queue<Runnable> queue : queues) {
+      Runnable task = queue.poll();
+      if (task != null) {
+        return task;
+      }
+    }
+    return null;
+  }
+
+  private boolean hasQueuedTasks() {
+    for (Queue<Runnable> queue : queues) {
+      if (!queue.isEmpty()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private final class Worker implements Runnable {
+    @Override
+    public void run() {
+      try {
+        Runnable task;
+        while ((task = poll()) != null) {
+          try {
+            task.run();
+          } catch (RuntimeException e) {
+            log.log(Level.SEVERE, "Exception while executing runnable " + task, e);
+          }
+        }
+      } finally {
+        workers.decrementAndGet();
+      }
+      // A task queued after the last poll may have seen all the workers busy
+      if (hasQueuedTasks()) {
+        startWorker(null, null);
+      }
+    }
+  }
+}
@@ -139,6 +139,22 @@ public interface ReadableBuffer extends Closeable {
    */
   int arrayOffset();
 
+  /**
+   * Indicates whether or not {@link #getByteBuffer} operation is supported for this buffer.
+   */
+  boolean byteBufferSupported();
+
+  /**
+   * Gets a {@link ByteBuffer} that contains some bytes of the content next to be read from this
+   * buffer, without copying. The returned buffer shares its content with this buffer but has its
+   * own position and limit, so reading it does not change the read position of this buffer. It is
+   * only valid until the read position of this buffer is advanced or this buffer is closed. This
+   * is an optional method, so callers should first check {@link #byteBufferSupported}.
+   *
+   * @throws UnsupportedOperationException the buffer does not support this method
+   */
+  ByteBuffer getByteBuffer();
+
   /**
    * Closes this buffer and releases any resources.
    */
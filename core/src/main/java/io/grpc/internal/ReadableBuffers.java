@@ -19,12 +19,14 @@ package io.grpc.internal;
 import static com.google.common.base.Charsets.UTF_8;
 
 import com.google.common.base.Preconditions;
+import io.grpc.HasByteBuffer;
 import io.grpc.KnownLength;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import javax.annotation.Nullable;
 
 /**
  * Utility methods for creating {@link ReadableBuffer} instances.
@@ -105,6 +107,18 @@ public final class ReadableBuffers {
     return new BufferInputStream(owner ? buffer : ignoreClose(buffer));
   }
 
+  /**
+   * Returns the buffer backing {@code stream} if it was created by {@link #openStream}, or {@code
+   * null} otherwise.
+   */
+  @Nullable
+  static ReadableBuffer backingBuffer(InputStream stream) {
+    if (stream instanceof BufferInputStream) {
+      return ((BufferInputStream) stream).buffer;
+    }
+    return null;
+  }
+
   /**
    * Decorates the given {@link ReadableBuffer} to ignore calls to {@link ReadableBuffer#close}.
    *
@@ -203,6 +217,16 @@ public final class ReadableBuffers {
     public int arrayOffset() {
       return offset;
     }
+
+    @Override
+    public boolean byteBufferSupported() {
+      return true;
+    }
+
+    @Override
+    public ByteBuffer getByteBuffer() {
+      return ByteBuffer.wrap(bytes, offset, end - offset).slice();
+    }
   }
 
   /**
@@ -290,12 +314,23 @@ public final class ReadableBuffers {
     public int arrayOffset() {
       return bytes.arrayOffset() + bytes.position();
     }
+
+    @Override
+    public boolean byteBufferSupported() {
+      return true;
+    }
+
+    @Override
+    public ByteBuffer getByteBuffer() {
+      return bytes.slice();
+    }
   }
 
   /**
    * An {@link InputStream} that is backed by a {@link ReadableBuffer}.
    */
-  private static final class BufferInputStream extends InputStream implements KnownLength {
+  private static final class BufferInputStream extends InputStream
+      implements KnownLength, HasByteBuffer {
     final ReadableBuffer buffer;
 
     public BufferInputStream(ReadableBuffer buffer) {
@@ -327,6 +362,32 @@ public final class ReadableBuffers {
       buffer.readBytes(dest, destOffset, length);
       return length;
     }
+
+    @Override
+    public long skip(long n) {
+      int length = (int) Math.min(buffer.readableBytes(), n);
+      buffer.skipBytes(length);
+      return length;
+    }
+
+    @Override
+    public boolean byteBufferSupported() {
+      return buffer.byteBufferSupported();
+    }
+
+    @Nullable
+    @Override
+    public ByteBuffer getByteBuffer() {
+      if (buffer.readableBytes() == 0) {
+        return null;
+      }
+      return buffer.getByteBuffer();
+    }
+
+    @Override
+    public void close() {
+      buffer.close();
+    }
   }
 
   private ReadableBuffers() {}
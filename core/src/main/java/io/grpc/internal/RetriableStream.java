@@ -0,0 +1,728 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.grpc.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.io.ByteStreams;
+import io.grpc.Attributes;
+import io.grpc.CallOptions;
+import io.grpc.Compressor;
+import io.grpc.Context;
+import io.grpc.Decompressor;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.internal.ClientCallImpl.ClientTransportProvider;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A stream that may send the same request on several attempts, each on a newly picked transport.
+ * Outbound operations are buffered so that they can be replayed on attempts started later. Like
+ * {@link DelayedStream}, each attempt replays the buffer and then switches to pass-through, and no
+ * stream is called under the lock.
+ *
+ * <p>With a {@link RetryPolicy}, a new attempt of an {@link MethodDescriptor#isIdempotent
+ * idempotent} or {@link MethodDescriptor#isSafe safe} method is started after a backoff when an
+ * attempt fails with a retryable status before receiving headers, since the server may have
+ * processed the failed attempt. Attempts that the server is known not to have processed (see
+ * {@link ClientStreamListener.RpcProgress#REFUSED}) are retried right away for any method, without
+ * counting against the attempts or the throttle.
+ *
+ * <p>With a {@link HedgingPolicy}, the first attempt is started right away and another one every
+ * {@link HedgingPolicy#hedgingDelayNanos}, as long as the policy's budget allows. An attempt that
+ * fails with {@code UNAVAILABLE} while other attempts are outstanding is dropped.
+ *
+ * <p>In both cases, the first attempt to receive headers or to close otherwise is committed and
+ * forwarded to the listener, and the others are cancelled. If the buffer would exceed its per-call
+ * or channel-wide limit, the oldest attempt is committed and the buffer is discarded.
+ */
+final class RetriableStream implements ClientStream {
+  /**
+   * The maximum number of transparent retries per call, to avoid looping on a transport that keeps
+   * refusing streams.
+   */
+  static final int MAX_TRANSPARENT_RETRIES = 5;
+
+  private final MethodDescriptor<?, ?> method;
+  private final Metadata headers;
+  private final CallOptions callOptions;
+  private final Context context;
+  private final ClientTransportProvider transportProvider;
+  private final ScheduledExecutorService scheduledExecutor;
+  private final BufferLimits bufferLimits;
+  @Nullable
+  private final RetryPolicy retryPolicy;
+  @Nullable
+  private final HedgingPolicy hedgingPolicy;
+  private final int maxAttempts;
+
+  private final Object lock = new Object();
+  /**
+   * Outbound operations to replay on new attempts. {@code null} once no new attempts can be
+   * started and the committed attempt is pass-through, or once the limits have been exceeded.
+   */
+  @GuardedBy("lock")
+  private List<BufferEntry> buffer = new ArrayList<BufferEntry>();
+  /** Bytes of messages in the buffer, reserved from {@link #bufferLimits}. */
+  @GuardedBy("lock")
+  private long bufferedBytes;
+  /** Attempts that are neither closed nor lost. */
+  @GuardedBy("lock")
+  private List<Attempt> attempts = new ArrayList<Attempt>();
+  /** The number of attempts started, not counting transparent retries. */
+  @GuardedBy("lock")
+  private int attemptsStarted;
+  @GuardedBy("lock")
+  private int transparentRetries;
+  @GuardedBy("lock")
+  private Attempt committed;
+  @GuardedBy("lock")
+  private boolean cancelled;
+  /** Whether the listener has been closed without any attempt being committed. */
+  @GuardedBy("lock")
+  private boolean closedWithoutAttempt;
+  /** The timer for the next hedged attempt, or the backoff before the next retry. */
+  @GuardedBy("lock")
+  private ScheduledFuture<?> scheduledFuture;
+  @GuardedBy("lock")
+  private BackoffPolicy backoffPolicy;
+  /** The failure of the last attempt while waiting for the backoff before the next retry. */
+  @GuardedBy("lock")
+  private Status retryableStatus;
+  @GuardedBy("lock")
+  private Metadata retryableTrailers;
+
+  // Set before start() is called, and never changed after that
+  private ClientStreamListener listener;
+  private String authority;
+  private Integer maxInboundMessageSize;
+  private Integer maxOutboundMessageSize;
+  private Compressor compressor;
+
+  /**
+   * Creates a stream. Exactly one of {@code retryPolicy} and {@code hedgingPolicy} must be
+   * non-{@code null}.
+   */
+  RetriableStream(MethodDescriptor<?, ?> method, Metadata headers, CallOptions callOptions,
+      Context context, ClientTransportProvider transportProvider,
+      ScheduledExecutorService scheduledExecutor, BufferLimits bufferLimits,
+      @Nullable RetryPolicy retryPolicy, @Nullable HedgingPolicy hedgingPolicy) {
+    checkArgument((retryPolicy == null) != (hedgingPolicy == null),
+        "Exactly one of retryPolicy and hedgingPolicy must be set");
+    this.method = checkNotNull(method, "method");
+    // Each attempt gets its own copy, since stream tracers may add to them
+    this.headers = new Metadata();
+    this.headers.merge(checkNotNull(headers, "headers"));
+    this.callOptions = checkNotNull(callOptions, "callOptions");
+    this.context = checkNotNull(context, "context");
+    this.transportProvider = checkNotNull(transportProvider, "transportProvider");
+    this.scheduledExecutor = checkNotNull(scheduledExecutor, "scheduledExecutor");
+    this.bufferLimits = checkNotNull(bufferLimits, "bufferLimits");
+    this.retryPolicy = retryPolicy;
+    this.hedgingPolicy = hedgingPolicy;
+    this.maxAttempts = retryPolicy != null ? retryPolicy.maxAttempts : hedgingPolicy.maxAttempts;
+  }
+
+  @Override
+  public void setAuthority(String authority) {
+    checkState(listener == null, "May only be called before start");
+    this.authority = checkNotNull(authority, "authority");
+  }
+
+  @Override
+  public void setMaxInboundMessageSize(int maxSize) {
+    checkState(listener == null, "May only be called before start");
+    this.maxInboundMessageSize = maxSize;
+  }
+
+  @Override
+  public void setMaxOutboundMessageSize(int maxSize) {
+    checkState(listener == null, "May only be called before start");
+    this.maxOutboundMessageSize = maxSize;
+  }
+
+  @Override
+  public void setCompressor(Compressor compressor) {
+    checkState(listener == null, "May only be called before start");
+    this.compressor = checkNotNull(compressor, "compressor");
+  }
+
+  @Override
+  public void start(ClientStreamListener listener) {
+    checkState(this.listener == null, "already started");
+    this.listener = checkNotNull(listener, "listener");
+    if (hedgingPolicy != null) {
+      hedgingPolicy.recordCall();
+    }
+    Attempt attempt;
+    synchronized (lock) {
+      attempt = newAttempt(attemptsStarted++);
+    }
+    startAttempt(attempt);
+    if (hedgingPolicy != null) {
+      scheduleHedge();
+    }
+  }
+
+  @GuardedBy("lock")
+  private Attempt newAttempt(int index) {
+    Attempt attempt = new Attempt(index);
+    attempts.add(attempt);
+    return attempt;
+  }
+
+  private void startAttempt(Attempt attempt) {
+    Metadata attemptHeaders = new Metadata();
+    attemptHeaders.merge(headers);
+    ClientTransport transport =
+        transportProvider.get(new PickSubchannelArgsImpl(method, attemptHeaders, callOptions));
+    ClientStream stream;
+    Context origContext = context.attach();
+    try {
+      stream = transport.newStream(method, attemptHeaders, callOptions);
+    } finally {
+      context.detach(origContext);
+    }
+    if (authority != null) {
+      stream.setAuthority(authority);
+    }
+    if (maxInboundMessageSize != null) {
+      stream.setMaxInboundMessageSize(maxInboundMessageSize);
+    }
+    if (maxOutboundMessageSize != null) {
+      stream.setMaxOutboundMessageSize(maxOutboundMessageSize);
+    }
+    if (compressor != null) {
+      stream.setCompressor(compressor);
+    }
+    attempt.stream = stream;
+    stream.start(new AttemptListener(attempt));
+
+    boolean lost;
+    synchronized (lock) {
+      attempt.started = true;
+      lost = committed != null && committed != attempt;
+    }
+    if (lost) {
+      stream.cancel(Status.CANCELLED.withDescription("Another attempt was committed"));
+      return;
+    }
+    drain(attempt);
+  }
+
+  /**
+   * Replays the buffer on the attempt, then switches it to pass-through.
+   */
+  private void drain(Attempt attempt) {
+    while (true) {
+      List<BufferEntry> entries;
+      synchronized (lock) {
+        if (committed != null && committed != attempt) {
+          // Lost, and will be cancelled by commit() if it hasn't already
+          return;
+        }
+        if (buffer == null || attempt.bufferIndex == buffer.size()) {
+          attempt.passThrough = true;
+          if (committed == attempt) {
+            releaseBuffer();
+          }
+          return;
+        }
+        entries = new ArrayList<BufferEntry>(buffer.subList(attempt.bufferIndex, buffer.size()));
+        attempt.bufferIndex = buffer.size();
+      }
+      for (BufferEntry entry : entries) {
+        entry.runWith(attempt.stream);
+      }
+    }
+  }
+
+  /**
+   * Buffers the entry for attempts started later, and runs it on the pass-through attempts.
+   */
+  private void delayOrExecute(BufferEntry entry) {
+    List<Attempt> passThroughAttempts = new ArrayList<Attempt>(1);
+    synchronized (lock) {
+      if (buffer != null) {
+        buffer.add(entry);
+      }
+      for (Attempt attempt : attempts) {
+        if (attempt.passThrough) {
+          passThroughAttempts.add(attempt);
+        }
+      }
+    }
+    for (Attempt attempt : passThroughAttempts) {
+      entry.runWith(attempt.stream);
+    }
+  }
+
+  @GuardedBy("lock")
+  private void releaseBuffer() {
+    if (bufferedBytes > 0) {
+      bufferLimits.release(bufferedBytes);
+      bufferedBytes = 0;
+    }
+    buffer = null;
+  }
+
+  @GuardedBy("lock")
+  private void cancelScheduledFuture() {
+    if (scheduledFuture != null) {
+      scheduledFuture.cancel(false);
+      scheduledFuture = null;
+    }
+  }
+
+  private void scheduleHedge() {
+    synchronized (lock) {
+      if (committed == null && !cancelled && attemptsStarted < maxAttempts) {
+        scheduledFuture = scheduledExecutor.schedule(
+            new LogExceptionRunnable(new HedgeTask()), hedgingPolicy.hedgingDelayNanos,
+            TimeUnit.NANOSECONDS);
+      }
+    }
+  }
+
+  private final class HedgeTask implements Runnable {
+    @Override
+    public void run() {
+      Attempt attempt = null;
+      synchronized (lock) {
+        scheduledFuture = null;
+        if (committed == null && !cancelled && hedgingPolicy.tryAcquireHedge()) {
+          attempt = newAttempt(attemptsStarted++);
+        }
+      }
+      if (attempt != null) {
+        startAttempt(attempt);
+        scheduleHedge();
+      }
+    }
+  }
+
+  private final class RetryTask implements Runnable {
+    @Override
+    public void run() {
+      Attempt attempt = null;
+      synchronized (lock) {
+        scheduledFuture = null;
+        // Otherwise cancel() or the buffer limit has already closed the listener
+        if (committed == null && !closedWithoutAttempt) {
+          attempt = newAttempt(attemptsStarted++);
+          retryableStatus = null;
+          retryableTrailers = null;
+        }
+      }
+      if (attempt != null) {
+        startAttempt(attempt);
+      }
+    }
+  }
+
+  /**
+   * Makes the attempt the only one whose events are forwarded to the listener, returning the
+   * attempts that need to be cancelled.
+   */
+  @GuardedBy("lock")
+  private List<Attempt> commit(Attempt attempt) {
+    committed = attempt;
+    cancelScheduledFuture();
+    if (attempt.passThrough) {
+      releaseBuffer();
+    }
+    List<Attempt> losers = new ArrayList<Attempt>(attempts.size());
+    for (Attempt other : attempts) {
+      // Attempts not started yet will cancel themselves in startAttempt()
+      if (other != attempt && other.started) {
+        losers.add(other);
+      }
+    }
+    attempts = new ArrayList<Attempt>(Collections.singletonList(attempt));
+    return losers;
+  }
+
+  private static void cancelLosers(List<Attempt> losers) {
+    for (Attempt loser : losers) {
+      loser.stream.cancel(Status.CANCELLED.withDescription("Another attempt was committed"));
+    }
+  }
+
+  @Override
+  public void request(final int numMessages) {
+    delayOrExecute(new BufferEntry() {
+      @Override
+      public void runWith(ClientStream stream) {
+        stream.request(numMessages);
+      }
+    });
+  }
+
+  @Override
+  public void writeMessage(InputStream message) {
+    Attempt committedPassThrough = null;
+    synchronized (lock) {
+      if (committed != null && committed.passThrough && buffer == null) {
+        committedPassThrough = committed;
+      }
+    }
+    if (committedPassThrough != null) {
+      // Nothing will be replayed any more, so the message doesn't need to be copied
+      committedPassThrough.stream.writeMessage(message);
+      return;
+    }
+    final byte[] bytes;
+    try {
+      bytes = ByteStreams.toByteArray(message);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    List<Attempt> losers = Collections.emptyList();
+    Status savedStatus = null;
+    Metadata savedTrailers = null;
+    synchronized (lock) {
+      if (committed == null && !closedWithoutAttempt && !reserveBuffer(bytes.length)) {
+        // Too much to buffer, so no more attempts can be made
+        if (!attempts.isEmpty()) {
+          losers = commit(attempts.get(0));
+        } else {
+          // Waiting for the backoff before a retry, so the last failure becomes the result
+          cancelScheduledFuture();
+          releaseBuffer();
+          closedWithoutAttempt = true;
+          savedStatus = retryableStatus;
+          savedTrailers = retryableTrailers;
+        }
+      }
+    }
+    cancelLosers(losers);
+    if (savedStatus != null) {
+      listener.closed(savedStatus, savedTrailers);
+      return;
+    }
+    delayOrExecute(new BufferEntry() {
+      @Override
+      public void runWith(ClientStream stream) {
+        stream.writeMessage(new ByteArrayInputStream(bytes));
+      }
+    });
+  }
+
+  @GuardedBy("lock")
+  private boolean reserveBuffer(int bytes) {
+    if (buffer == null || bufferedBytes + bytes > bufferLimits.perRpcBufferLimit
+        || !bufferLimits.tryReserve(bytes)) {
+      return false;
+    }
+    bufferedBytes += bytes;
+    return true;
+  }
+
+  @Override
+  public void flush() {
+    delayOrExecute(new BufferEntry() {
+      @Override
+      public void runWith(ClientStream stream) {
+        stream.flush();
+      }
+    });
+  }
+
+  @Override
+  public void halfClose() {
+    delayOrExecute(new BufferEntry() {
+      @Override
+      public void runWith(ClientStream stream) {
+        stream.halfClose();
+      }
+    });
+  }
+
+  @Override
+  public void setMessageCompression(final boolean enable) {
+    delayOrExecute(new BufferEntry() {
+      @Override
+      public void runWith(ClientStream stream) {
+        stream.setMessageCompression(enable);
+      }
+    });
+  }
+
+  @Override
+  public void cancel(final Status reason) {
+    checkNotNull(reason, "reason");
+    boolean closeListener = false;
+    synchronized (lock) {
+      if (cancelled) {
+        return;
+      }
+      cancelled = true;
+      cancelScheduledFuture();
+      if (committed == null && attempts.isEmpty() && !closedWithoutAttempt) {
+        // Waiting for the backoff before a retry, so there is no attempt to report the cancellation
+        releaseBuffer();
+        closedWithoutAttempt = true;
+        closeListener = true;
+      }
+    }
+    if (closeListener) {
+      listener.closed(reason, new Metadata());
+      return;
+    }
+    delayOrExecute(new BufferEntry() {
+      @Override
+      public void runWith(ClientStream stream) {
+        stream.cancel(reason);
+      }
+    });
+  }
+
+  @Override
+  public void setDecompressor(Decompressor decompressor) {
+    ClientStream stream = currentStream();
+    checkState(stream != null, "Not started");
+    stream.setDecompressor(decompressor);
+  }
+
+  @Override
+  public boolean isReady() {
+    ClientStream stream = currentStream();
+    return stream != null && stream.isReady();
+  }
+
+  @Override
+  public Attributes getAttributes() {
+    ClientStream stream = currentStream();
+    return stream != null ? stream.getAttributes() : Attributes.EMPTY;
+  }
+
+  /**
+   * Returns the stream of the committed attempt, or of the oldest started attempt if none is
+   * committed.
+   */
+  @Nullable
+  private ClientStream currentStream() {
+    synchronized (lock) {
+      if (committed != null) {
+        return committed.stream;
+      }
+      for (Attempt attempt : attempts) {
+        if (attempt.started) {
+          return attempt.stream;
+        }
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Limits how much outbound data can be buffered for replay, per call and across a channel.
+   */
+  @ThreadSafe
+  static final class BufferLimits {
+    final long perRpcBufferLimit;
+    private final long channelBufferLimit;
+    private final AtomicLong channelBufferUsed = new AtomicLong();
+
+    BufferLimits(long perRpcBufferLimit, long channelBufferLimit) {
+      checkArgument(perRpcBufferLimit > 0, "perRpcBufferLimit must be positive");
+      checkArgument(channelBufferLimit > 0, "channelBufferLimit must be positive");
+      this.perRpcBufferLimit = perRpcBufferLimit;
+      this.channelBufferLimit = channelBufferLimit;
+    }
+
+    /**
+     * Reserves buffer space across the channel, returning {@code false} if there isn't enough.
+     */
+    boolean tryReserve(long bytes) {
+      while (true) {
+        long current = channelBufferUsed.get();
+        if (current + bytes > channelBufferLimit) {
+          return false;
+        }
+        if (channelBufferUsed.compareAndSet(current, current + bytes)) {
+          return true;
+        }
+      }
+    }
+
+    void release(long bytes) {
+      channelBufferUsed.addAndGet(-bytes);
+    }
+
+    /**
+     * Returns the number of bytes currently buffered across the channel.
+     */
+    long getChannelBufferUsed() {
+      return channelBufferUsed.get();
+    }
+  }
+
+  private interface BufferEntry {
+    void runWith(ClientStream stream);
+  }
+
+  private static final class Attempt {
+    final int index;
+    // Set before started
+    volatile ClientStream stream;
+    // Guarded by RetriableStream.lock
+    boolean started;
+    int bufferIndex;
+    boolean passThrough;
+
+    Attempt(int index) {
+      this.index = index;
+    }
+  }
+
+  private final class AttemptListener implements ClientStreamListener {
+    private final Attempt attempt;
+
+    AttemptListener(Attempt attempt) {
+      this.attempt = attempt;
+    }
+
+    @Override
+    public void headersRead(Metadata headers) {
+      List<Attempt> losers = Collections.emptyList();
+      synchronized (lock) {
+        if (committed == null) {
+          losers = commit(attempt);
+          recordHedgeWon();
+        } else if (committed != attempt) {
+          return;
+        }
+      }
+      cancelLosers(losers);
+      listener.headersRead(headers);
+    }
+
+    @GuardedBy("lock")
+    private void recordHedgeWon() {
+      if (hedgingPolicy != null && attempt.index > 0) {
+        hedgingPolicy.recordHedgeWon();
+      }
+    }
+
+    @Override
+    public void messageRead(InputStream message) {
+      boolean forward;
+      synchronized (lock) {
+        forward = committed == attempt;
+      }
+      if (forward) {
+        listener.messageRead(message);
+      } else {
+        try {
+          message.close();
+        } catch (IOException e) {
+          // Nothing to do for a message that is being dropped
+        }
+      }
+    }
+
+    @Override
+    public void closed(Status status, Metadata trailers) {
+      closed(status, RpcProgress.PROCESSED, trailers);
+    }
+
+    @Override
+    public void closed(Status status, RpcProgress rpcProgress, Metadata trailers) {
+      List<Attempt> losers = Collections.emptyList();
+      Attempt transparentRetry = null;
+      synchronized (lock) {
+        if (committed != null) {
+          if (committed != attempt) {
+            return;
+          }
+        } else if (hedgingPolicy != null) {
+          if (status.getCode() == Status.Code.UNAVAILABLE && !cancelled && attempts.size() > 1) {
+            attempts.remove(attempt);
+            return;
+          }
+          losers = commit(attempt);
+          recordHedgeWon();
+        } else if (cancelled || buffer == null) {
+          // Can't replay any more
+          losers = commit(attempt);
+        } else if (rpcProgress == RpcProgress.REFUSED
+            && transparentRetries < MAX_TRANSPARENT_RETRIES) {
+          attempts.remove(attempt);
+          transparentRetries++;
+          retryPolicy.recordTransparentRetry();
+          transparentRetry = newAttempt(attempt.index);
+        } else if ((method.isIdempotent() || method.isSafe())
+            && retryPolicy.isRetryable(status) && retryPolicy.onFailure()
+            && attemptsStarted < maxAttempts) {
+          attempts.remove(attempt);
+          retryPolicy.recordRetry();
+          retryableStatus = status;
+          retryableTrailers = trailers;
+          if (backoffPolicy == null) {
+            backoffPolicy = retryPolicy.newBackoffPolicy();
+          }
+          scheduledFuture = scheduledExecutor.schedule(
+              new LogExceptionRunnable(new RetryTask()), backoffPolicy.nextBackoffNanos(),
+              TimeUnit.NANOSECONDS);
+          return;
+        } else {
+          losers = commit(attempt);
+        }
+        if (transparentRetry == null) {
+          // The call is over
+          releaseBuffer();
+          if (retryPolicy != null && !retryPolicy.isRetryable(status)) {
+            retryPolicy.onSuccess();
+          }
+        }
+      }
+      if (transparentRetry != null) {
+        startAttempt(transparentRetry);
+        return;
+      }
+      cancelLosers(losers);
+      listener.closed(status, trailers);
+    }
+
+    @Override
+    public void onReady() {
+      synchronized (lock) {
+        if (committed != null && committed != attempt) {
+          return;
+        }
+      }
+      listener.onReady();
+    }
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.grpc.internal;
+
+import com.google.common.base.Preconditions;
+import io.grpc.Status;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Channel-wide retry configuration, along with the throttle that stops retries when most calls
+ * are failing and counters of how retries performed.
+ *
+ * <p>Only {@code UNAVAILABLE} is retried, which is what a client sees when a connection is reset
+ * or goes away, and only for idempotent or safe methods, since the server may have processed the
+ * failed attempt. The throttle is a token bucket that starts full: every retryable failure
+ * withdraws one token and every other outcome deposits {@code tokenRatio} tokens. Retries are only
+ * allowed while more than half of the tokens are left.
+ */
+@ThreadSafe
+final class RetryPolicy {
+  // Tokens are kept in thousandths, so that they can be updated atomically without a lock
+  private static final int TOKEN_SCALE = 1000;
+
+  final int maxAttempts;
+  private final BackoffPolicy.Provider backoffPolicyProvider;
+  private final int maxTokens;
+  private final int threshold;
+  private final int tokensPerSuccess;
+  private final AtomicInteger tokens;
+  private final AtomicLong retries = new AtomicLong();
+  private final AtomicLong transparentRetries = new AtomicLong();
+  private final AtomicLong throttledRetries = new AtomicLong();
+
+  /**
+   * Creates a policy.
+   *
+   * @param maxAttempts the maximum number of attempts per call, including the first one
+   * @param backoffPolicyProvider provides the delays between the attempts of a call
+   * @param maxTokens the size of the throttling token bucket
+   * @param tokenRatio the number of tokens deposited by every successful call
+   */
+  RetryPolicy(int maxAttempts, BackoffPolicy.Provider backoffPolicyProvider, int maxTokens,
+      double tokenRatio) {
+    Preconditions.checkArgument(maxAttempts >= 1, "maxAttempts must be positive");
+    Preconditions.checkArgument(maxTokens > 0, "maxTokens must be positive");
+    Preconditions.checkArgument(tokenRatio > 0, "tokenRatio must be positive");
+    this.maxAttempts = maxAttempts;
+    this.backoffPolicyProvider =
+        Preconditions.checkNotNull(backoffPolicyProvider, "backoffPolicyProvider");
+    this.maxTokens = maxTokens * TOKEN_SCALE;
+    this.threshold = this.maxTokens / 2;
+    this.tokensPerSuccess = (int) Math.round(tokenRatio * TOKEN_SCALE);
+    this.tokens = new AtomicInteger(this.maxTokens);
+  }
+
+  BackoffPolicy newBackoffPolicy() {
+    return backoffPolicyProvider.get();
+  }
+
+  /**
+   * Returns whether a call that failed with the status may be retried, if attempts are left.
+   */
+  boolean isRetryable(Status status) {
+    return status.getCode() == Status.Code.UNAVAILABLE;
+  }
+
+  /**
+   * Records an outcome that doesn't need a retry, adding to the throttle's tokens.
+   */
+  void onSuccess() {
+    while (true) {
+      int current = tokens.get();
+      int updated = Math.min(current + tokensPerSuccess, maxTokens);
+      if (current == updated || tokens.compareAndSet(current, updated)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Records a retryable failure, taking one token from the throttle. Returns whether a retry is
+   * still allowed.
+   */
+  boolean onFailure() {
+    while (true) {
+      int current = tokens.get();
+      int updated = Math.max(current - TOKEN_SCALE, 0);
+      if (tokens.compareAndSet(current, updated)) {
+        if (updated > threshold) {
+          return true;
+        }
+        throttledRetries.incrementAndGet();
+        return false;
+      }
+    }
+  }
+
+  void recordRetry() {
+    retries.incrementAndGet();
+  }
+
+  void recordTransparentRetry() {
+    transparentRetries.incrementAndGet();
+  }
+
+  /**
+   * Returns the number of retries, not counting transparent ones.
+   */
+  long getRetriesCount() {
+    return retries.get();
+  }
+
+  /**
+   * Returns the number of streams retried because they never reached the server.
+   */
+  long getTransparentRetriesCount() {
+    return transparentRetries.get();
+  }
+
+  /**
+   * Returns the number of retries that were not made because of throttling.
+   */
+  long getThrottledRetriesCount() {
+    return throttledRetries.get();
+  }
+}
@@ -16,21 +16,30 @@
 
 package io.grpc.internal;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import com.google.common.base.Ticker;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
 
 /**
  * Executor ensuring that all {@link Runnable} tasks submitted are executed in order
  * using the provided {@link Executor}, and serially such that no two will ever be
  * running at the same time.
+ *
+ * <p>Tasks are queued in a lock-free, multiple-producer single-consumer linked list. The underlying
+ * executor is only given a drain task when none is running, and a running one picks up the tasks
+ * submitted in the meantime.
  */
 // TODO(madongfly): figure out a way to not expose it or move it to transport package.
 public final class SerializingExecutor implements Executor, Runnable {
@@ -40,8 +49,24 @@ public final class SerializingExecutor implements Executor, Runnable {
   /** Underlying executor that all submitted Runnable objects are run on. */
   private final Executor executor;
 
-  /** A list of Runnables to be run in order. */
-  private final Queue<Runnable> runQueue = new ConcurrentLinkedQueue<Runnable>();
+  /** The most tasks to run before giving the thread back to {@link #executor}. */
+  private final int maxBatchSize;
+
+  @Nullable
+  private final Metrics metrics;
+
+  /** The number of queued tasks, only counted when there are {@link #metrics}. */
+  @Nullable
+  private final AtomicInteger queueDepth;
+
+  /**
+   * The node of the last task taken from the queue, whose {@code next} is the first queued task.
+   * Only accessed by the task draining the queue.
+   */
+  private Node head;
+
+  /** The node of the last queued task. */
+  private final AtomicReference<Node> tail;
 
   private final AtomicBoolean running = new AtomicBoolean();
 
@@ -51,8 +76,26 @@ public final class SerializingExecutor implements Executor, Runnable {
    * @param executor Executor in which tasks should be run. Must not be null.
    */
   public SerializingExecutor(Executor executor) {
+    this(executor, Integer.MAX_VALUE, null);
+  }
+
+  /**
+   * Creates a SerializingExecutor, running tasks using {@code executor}.
+   *
+   * @param executor Executor in which tasks should be run. Must not be null.
+   * @param maxBatchSize the most tasks to run each time {@code executor} runs this executor. Any
+   *     remaining tasks are handed back to {@code executor}, which lets other work run in between.
+   * @param metrics counters to record the queued tasks in, or {@code null} to not record them
+   */
+  public SerializingExecutor(Executor executor, int maxBatchSize, @Nullable Metrics metrics) {
     Preconditions.checkNotNull(executor, "'executor' must not be null.");
+    checkArgument(maxBatchSize > 0, "maxBatchSize must be positive");
     this.executor = executor;
+    this.maxBatchSize = maxBatchSize;
+    this.metrics = metrics;
+    this.queueDepth = metrics != null ? new AtomicInteger() : null;
+    this.head = new Node(null, 0);
+    this.tail = new AtomicReference<Node>(head);
   }
 
   /**
@@ -61,11 +104,20 @@ public final class SerializingExecutor implements Executor, Runnable {
    */
   @Override
   public void execute(Runnable r) {
-    runQueue.add(checkNotNull(r, "'r' must not be null."));
-    schedule(r);
+    checkNotNull(r, "'r' must not be null.");
+    Node node;
+    if (metrics != null) {
+      node = new Node(r, metrics.ticker.read());
+      metrics.taskQueued(queueDepth.incrementAndGet());
+    } else {
+      node = new Node(r, 0);
+    }
+    Node previous = tail.getAndSet(node);
+    previous.next = node;
+    schedule(node);
   }
 
-  private void schedule(@Nullable Runnable removable) {
+  private void schedule(@Nullable Node removable) {
     if (running.compareAndSet(false, true)) {
       boolean success = false;
       try {
@@ -77,15 +129,18 @@ public final class SerializingExecutor implements Executor, Runnable {
         // be recoverable.  So we update our state and propagate so that if
         // our caller deems it recoverable we won't be stuck.
         if (!success) {
-          if (removable != null) {
+          // A drain that finished just before we set running may have already run the task.
+          if (removable != null && removable.task != null) {
             // This case can only be reached if 'this' was not currently running, and we failed to
-            // reschedule.  The item should still be in the queue for removal.
-            // ConcurrentLinkedQueue claims that null elements are not allowed, but seems to not
-            // throw if the item to remove is null.  If removable is present in the queue twice,
-            // the wrong one may be removed.  It doesn't seem possible for this case to exist today.
+            // reschedule.  Since nothing is draining the queue, the task can be cleared so that it
+            // is skipped rather than removed.
             // This is important to run in case of RejectedExectuionException, so that future calls
             // to execute don't succeed and accidentally run a previous runnable.
-            runQueue.remove(removable);
+            removable.task = null;
+            if (metrics != null) {
+              queueDepth.decrementAndGet();
+              metrics.taskRemoved();
+            }
           }
           running.set(false);
         }
@@ -95,9 +150,24 @@ public final class SerializingExecutor implements Executor, Runnable {
 
   @Override
   public void run() {
-    Runnable r;
+    int ran = 0;
+    Node last = head;
     try {
-      while ((r = runQueue.poll()) != null) {
+      Node node;
+      while (ran < maxBatchSize && (node = last.next) != null) {
+        last = node;
+        head = node;
+        Runnable r = node.task;
+        if (r == null) {
+          // Its executor rejected the drain task
+          continue;
+        }
+        node.task = null;
+        ran++;
+        if (metrics != null) {
+          queueDepth.decrementAndGet();
+          metrics.taskRun(metrics.ticker.read() - node.queuedNanos);
+        }
         try {
           r.run();
         } catch (RuntimeException e) {
@@ -106,11 +176,124 @@ public final class SerializingExecutor implements Executor, Runnable {
         }
       }
     } finally {
+      if (metrics != null && ran > 0) {
+        metrics.batchRun();
+      }
       running.set(false);
     }
-    if (!runQueue.isEmpty()) {
-      // we didn't enqueue anything but someone else did.
+    // A task queued after the last one we took has either been linked already, or its execute() has
+    // yet to call schedule() and will find that we're no longer running.
+    if (last.next != null) {
       schedule(null);
     }
   }
+
+  private static final class Node {
+    /** The task to run, or {@code null} once it has run or been removed. */
+    Runnable task;
+    final long queuedNanos;
+    volatile Node next;
+
+    Node(@Nullable Runnable task, long queuedNanos) {
+      this.task = task;
+      this.queuedNanos = queuedNanos;
+    }
+  }
+
+  /**
+   * Counters of the tasks queued in {@link SerializingExecutor}s and of how long they wait to run.
+   * An instance may be shared by any number of executors.
+   */
+  @ThreadSafe
+  public static final class Metrics {
+    private final Ticker ticker;
+    private final AtomicLong queuedTasks = new AtomicLong();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    private final AtomicLong ranTasks = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong totalQueueNanos = new AtomicLong();
+    private final AtomicLong maxQueueNanos = new AtomicLong();
+
+    public Metrics() {
+      this(Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    Metrics(Ticker ticker) {
+      this.ticker = checkNotNull(ticker, "ticker");
+    }
+
+    /** Returns the number of tasks currently queued, across all executors. */
+    public long getQueuedTasks() {
+      return queuedTasks.get();
+    }
+
+    /** Returns the most tasks that were queued at once in a single executor. */
+    public int getMaxQueueDepth() {
+      return maxQueueDepth.get();
+    }
+
+    /** Returns the number of tasks that were run. */
+    public long getRanTasks() {
+      return ranTasks.get();
+    }
+
+    /**
+     * Returns the number of times the underlying executors ran a batch of tasks. Along with {@link
+     * #getRanTasks}, this tells how many tasks were run per handoff to those executors.
+     */
+    public long getBatches() {
+      return batches.get();
+    }
+
+    /** Returns the total time that the tasks which ran spent queued, in nanoseconds. */
+    public long getTotalQueueNanos() {
+      return totalQueueNanos.get();
+    }
+
+    /** Returns the longest time a task spent queued before it ran, in nanoseconds. */
+    public long getMaxQueueNanos() {
+      return maxQueueNanos.get();
+    }
+
+    void taskQueued(int queueDepth) {
+      queuedTasks.incrementAndGet();
+      int max;
+      while (queueDepth > (max = maxQueueDepth.get())) {
+        if (maxQueueDepth.compareAndSet(max, queueDepth)) {
+          break;
+        }
+      }
+    }
+
+    void taskRemoved() {
+      queuedTasks.decrementAndGet();
+    }
+
+    void taskRun(long queueNanos) {
+      queuedTasks.decrementAndGet();
+      ranTasks.incrementAndGet();
+      totalQueueNanos.addAndGet(queueNanos);
+      long max;
+      while (queueNanos > (max = maxQueueNanos.get())) {
+        if (maxQueueNanos.compareAndSet(max, queueNanos)) {
+          break;
+        }
+      }
+    }
+
+    void batchRun() {
+      batches.incrementAndGet();
+    }
+
+    @Override
+    public String toString() {
+      return "SerializingExecutor.Metrics{queuedTasks=" + getQueuedTasks()
+          + ", maxQueueDepth=" + getMaxQueueDepth()
+          + ", ranTasks=" + getRanTasks()
+          + ", batches=" + getBatches()
+          + ", totalQueueNanos=" + getTotalQueueNanos()
+          + ", maxQueueNanos=" + getMaxQueueNanos() + "}";
+    }
+  }
 }
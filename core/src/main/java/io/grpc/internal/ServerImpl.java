@@ -27,12 +27,16 @@ import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import io.grpc.Attributes;
+import io.grpc.CallPriority;
+import io.grpc.Compressor;
 import io.grpc.CompressorRegistry;
+import io.grpc.ConcurrencyLimiter;
 import io.grpc.Context;
 import io.grpc.Decompressor;
 import io.grpc.DecompressorRegistry;
 import io.grpc.HandlerRegistry;
 import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
 import io.grpc.ServerCall;
 import io.grpc.ServerMethodDefinition;
 import io.grpc.ServerServiceDefinition;
@@ -45,9 +49,11 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 
 /**
@@ -71,6 +77,12 @@ public final class ServerImpl extends io.grpc.Server implements WithLogId {
   private final ObjectPool<? extends Executor> executorPool;
   /** Executor for application processing. Safe to read after {@link #start()}. */
   private Executor executor;
+  /**
+   * Queues calls by priority on {@link #executor}, or {@code null} if its parallelism isn't
+   * limited. Safe to read after {@link #start()}.
+   */
+  @Nullable
+  private PriorityExecutor priorityExecutor;
   private final InternalHandlerRegistry registry;
   private final HandlerRegistry fallbackRegistry;
   private final List<ServerTransportFilter> transportFilters;
@@ -95,6 +107,12 @@ public final class ServerImpl extends io.grpc.Server implements WithLogId {
 
   private final DecompressorRegistry decompressorRegistry;
   private final CompressorRegistry compressorRegistry;
+  @Nullable
+  private final ConcurrencyLimiter concurrencyLimiter;
+  /** Executors by full method or service name, used instead of {@link #executor}. */
+  private final Map<String, Executor> callExecutors;
+  private final Map<String, CallPriority> callPriorities;
+  private final int executorParallelism;
 
   /**
    * Construct a server.
@@ -103,13 +121,22 @@ public final class ServerImpl extends io.grpc.Server implements WithLogId {
    * @param registry the primary method registry
    * @param fallbackRegistry the secondary method registry, used only if the primary registry
    *        doesn't have the method
+   * @param concurrencyLimiter limits the calls processed at once, or {@code null} for no limit
+   * @param callExecutors executors by full method or service name, used instead of the executor
+   *        from {@code executorPool}
+   * @param callPriorities call priorities by full method or service name
+   * @param executorParallelism how many callbacks may run at once on the executor from {@code
+   *        executorPool}, or {@link Integer#MAX_VALUE} for no limit
    */
   ServerImpl(ObjectPool<? extends Executor> executorPool,
       ObjectPool<ScheduledExecutorService> timeoutServicePool,
       InternalHandlerRegistry registry, HandlerRegistry fallbackRegistry,
       InternalServer transportServer, Context rootContext,
       DecompressorRegistry decompressorRegistry, CompressorRegistry compressorRegistry,
-      List<ServerTransportFilter> transportFilters) {
+      List<ServerTransportFilter> transportFilters,
+      @Nullable ConcurrencyLimiter concurrencyLimiter,
+      Map<String, Executor> callExecutors, Map<String, CallPriority> callPriorities,
+      int executorParallelism) {
     this.executorPool = Preconditions.checkNotNull(executorPool, "executorPool");
     this.timeoutServicePool = Preconditions.checkNotNull(timeoutServicePool, "timeoutServicePool");
     this.registry = Preconditions.checkNotNull(registry, "registry");
@@ -122,6 +149,10 @@ public final class ServerImpl extends io.grpc.Server implements WithLogId {
     this.compressorRegistry = compressorRegistry;
     this.transportFilters = Collections.unmodifiableList(
         new ArrayList<ServerTransportFilter>(transportFilters));
+    this.concurrencyLimiter = concurrencyLimiter;
+    this.callExecutors = Preconditions.checkNotNull(callExecutors, "callExecutors");
+    this.callPriorities = Preconditions.checkNotNull(callPriorities, "callPriorities");
+    this.executorParallelism = executorParallelism;
   }
 
   /**
@@ -140,6 +171,9 @@ public final class ServerImpl extends io.grpc.Server implements WithLogId {
       transportServer.start(new ServerListenerImpl());
       timeoutService = Preconditions.checkNotNull(timeoutServicePool.getObject(), "timeoutService");
       executor = Preconditions.checkNotNull(executorPool.getObject(), "executor");
+      if (executorParallelism != Integer.MAX_VALUE && executor != directExecutor()) {
+        priorityExecutor = new PriorityExecutor(executor, executorParallelism);
+      }
       started = true;
       return this;
     }
@@ -363,7 +397,22 @@ public final class ServerImpl extends io.grpc.Server implements WithLogId {
 
     @Override
     public void streamCreated(
-        final ServerStream stream, final String methodName, final Metadata headers) {
+        ServerStream transportStream, final String methodName, final Metadata headers) {
+      ConcurrencyLimiter.Permit permit = null;
+      final ServerStream stream;
+      if (concurrencyLimiter != null) {
+        // Checked first, so that rejected calls cost as little as possible
+        permit = concurrencyLimiter.tryAcquire(methodName);
+        if (permit == null) {
+          transportStream.close(
+              Status.RESOURCE_EXHAUSTED.withDescription("Server concurrency limit exceeded"),
+              new Metadata());
+          return;
+        }
+        stream = new PermitReleasingServerStream(transportStream, permit);
+      } else {
+        stream = transportStream;
+      }
       if (headers.containsKey(MESSAGE_ENCODING_KEY)) {
         String encoding = headers.get(MESSAGE_ENCODING_KEY);
         Decompressor decompressor = decompressorRegistry.lookupDecompressor(encoding);
@@ -372,6 +421,9 @@ public final class ServerImpl extends io.grpc.Server implements WithLogId {
               Status.UNIMPLEMENTED.withDescription(
                   String.format("Can't find decompressor for %s", encoding)),
               new Metadata());
+          if (permit != null) {
+            permit.release(Status.UNIMPLEMENTED);
+          }
           return;
         }
         stream.setDecompressor(decompressor);
@@ -381,13 +433,14 @@ public final class ServerImpl extends io.grpc.Server implements WithLogId {
           stream.statsTraceContext(), "statsTraceCtx not present from stream");
 
       final Context.CancellableContext context = createContext(stream, headers, statsTraceCtx);
+      Executor callExecutor = getCallExecutor(methodName);
       final Executor wrappedExecutor;
       // This is a performance optimization that avoids the synchronization and queuing overhead
       // that comes with SerializingExecutor.
-      if (executor == directExecutor()) {
+      if (callExecutor == directExecutor()) {
         wrappedExecutor = new SerializeReentrantCallsDirectExecutor();
       } else {
-        wrappedExecutor = new SerializingExecutor(executor);
+        wrappedExecutor = new SerializingExecutor(callExecutor);
       }
 
       final JumpToApplicationThreadServerStreamListener jumpListener
@@ -434,6 +487,37 @@ public final class ServerImpl extends io.grpc.Server implements WithLogId {
         });
     }
 
+    /**
+     * Returns the executor configured for the method or its service, or else the server's executor
+     * with the priority configured for them.
+     */
+    private Executor getCallExecutor(String methodName) {
+      Executor callExecutor = lookupByName(callExecutors, methodName);
+      if (callExecutor != null) {
+        return callExecutor;
+      }
+      if (priorityExecutor == null) {
+        return executor;
+      }
+      CallPriority priority = lookupByName(callPriorities, methodName);
+      return priorityExecutor.forPriority(priority != null ? priority : CallPriority.NORMAL);
+    }
+
+    @Nullable
+    private <T> T lookupByName(Map<String, T> valuesByName, String methodName) {
+      if (valuesByName.isEmpty()) {
+        return null;
+      }
+      T value = valuesByName.get(methodName);
+      if (value == null) {
+        String serviceName = MethodDescriptor.extractFullServiceName(methodName);
+        if (serviceName != null) {
+          value = valuesByName.get(serviceName);
+        }
+      }
+      return value;
+    }
+
     private Context.CancellableContext createContext(
         final ServerStream stream, Metadata headers, StatsTraceContext statsTraceCtx) {
       Long timeoutNanos = headers.get(TIMEOUT_KEY);
@@ -505,6 +589,118 @@ public final class ServerImpl extends io.grpc.Server implements WithLogId {
     public void onReady() {}
   }
 
+  /**
+   * Releases the call's {@link ConcurrencyLimiter.Permit} once the stream is closed. The transport
+   * reports a stream closed by the server as OK whatever its status, so the permit is released
+   * with the status the server closed the stream with, if any.
+   */
+  private static final class PermitReleasingServerStream implements ServerStream {
+    private final ServerStream delegate;
+    private final ConcurrencyLimiter.Permit permit;
+    @Nullable
+    private volatile Status closeStatus;
+
+    PermitReleasingServerStream(ServerStream delegate, ConcurrencyLimiter.Permit permit) {
+      this.delegate = delegate;
+      this.permit = permit;
+    }
+
+    @Override
+    public void request(int numMessages) {
+      delegate.request(numMessages);
+    }
+
+    @Override
+    public void writeMessage(InputStream message) {
+      delegate.writeMessage(message);
+    }
+
+    @Override
+    public void flush() {
+      delegate.flush();
+    }
+
+    @Override
+    public boolean isReady() {
+      return delegate.isReady();
+    }
+
+    @Override
+    public void setCompressor(Compressor compressor) {
+      delegate.setCompressor(compressor);
+    }
+
+    @Override
+    public void setDecompressor(Decompressor decompressor) {
+      delegate.setDecompressor(decompressor);
+    }
+
+    @Override
+    public void setMessageCompression(boolean enable) {
+      delegate.setMessageCompression(enable);
+    }
+
+    @Override
+    public void writeHeaders(Metadata headers) {
+      delegate.writeHeaders(headers);
+    }
+
+    @Override
+    public void close(Status status, Metadata trailers) {
+      if (closeStatus == null) {
+        closeStatus = status;
+      }
+      delegate.close(status, trailers);
+    }
+
+    @Override
+    public void cancel(Status status) {
+      delegate.cancel(status);
+    }
+
+    @Override
+    public Attributes getAttributes() {
+      return delegate.getAttributes();
+    }
+
+    @Override
+    public String getAuthority() {
+      return delegate.getAuthority();
+    }
+
+    @Override
+    public void setListener(final ServerStreamListener listener) {
+      delegate.setListener(new ServerStreamListener() {
+          @Override
+          public void messageRead(InputStream message) {
+            listener.messageRead(message);
+          }
+
+          @Override
+          public void halfClosed() {
+            listener.halfClosed();
+          }
+
+          @Override
+          public void closed(Status status) {
+            Status callStatus = closeStatus;
+            permit.release(callStatus != null ? callStatus : status);
+            listener.closed(status);
+          }
+
+          @Override
+          public void onReady() {
+            listener.onReady();
+          }
+        });
+    }
+
+    @Override
+    public StatsTraceContext statsTraceContext() {
+      return delegate.statsTraceContext();
+    }
+  }
+
   /**
    * Dispatches callbacks onto an application-provided executor and correctly propagates
    * exceptions.
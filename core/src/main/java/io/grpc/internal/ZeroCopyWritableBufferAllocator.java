@@ -0,0 +1,39 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.grpc.internal;
+
+import javax.annotation.Nullable;
+
+/**
+ * A {@link WritableBufferAllocator} that can also adopt the content of a {@link ReadableBuffer}
+ * as a {@link WritableBuffer} without copying it. {@link MessageFramer} uses this to pass
+ * messages whose bytes already live in transport buffers (for example, a message received on
+ * one call and forwarded on another) straight through to the transport.
+ */
+public interface ZeroCopyWritableBufferAllocator extends WritableBufferAllocator {
+
+  /**
+   * Returns a {@link WritableBuffer} whose readable bytes are the readable bytes of {@code
+   * buffer} and that has no writable bytes, or {@code null} if this allocator can not adopt
+   * {@code buffer} without copying it. If a buffer is returned, ownership of {@code buffer} is
+   * transferred to it and it is released when the returned buffer is released. Otherwise {@code
+   * buffer} is left untouched.
+   */
+  @Nullable
+  WritableBuffer wrap(ReadableBuffer buffer);
+}
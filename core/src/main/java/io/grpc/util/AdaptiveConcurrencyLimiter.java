@@ -0,0 +1,332 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import io.grpc.ConcurrencyLimiter;
+import io.grpc.ExperimentalApi;
+import io.grpc.Status;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A {@link ConcurrencyLimiter} that adjusts the limit to the latency of the calls.
+ *
+ * <p>The limit follows a latency gradient: the average latency of the successful calls in each
+ * window is compared with a long-term average. While they match the limit grows by about its
+ * square root per window, and as latency rises above the long-term average the limit shrinks
+ * proportionally, by at most half. Calls that exceed their deadline cut the limit by ten percent,
+ * like the multiplicative decrease of AIMD. The limit only grows while at least half of it is in
+ * use.
+ *
+ * <p>Methods whose latency says little about the load of the server, like long-lived streaming
+ * methods, should be given a fixed limit with {@link Builder#setMethodLimit}. Their calls are not
+ * counted against the adaptive limit.
+ */
+@ExperimentalApi
+@ThreadSafe
+public final class AdaptiveConcurrencyLimiter extends ConcurrencyLimiter {
+  /** The minimum duration of a window of latency samples. */
+  @VisibleForTesting
+  static final long WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+  /** The minimum number of samples in a window. */
+  @VisibleForTesting
+  static final int WINDOW_MIN_SAMPLES = 10;
+  /** The weight of a window in the long-term average latency, which spans about a minute. */
+  private static final double LONG_TERM_WEIGHT = 1.0 / 600;
+  /** The weight of a window's estimate in the limit. */
+  private static final double SMOOTHING = 0.2;
+  private static final double MIN_GRADIENT = 0.5;
+  private static final double DROP_DECREASE_RATIO = 0.9;
+
+  private final Ticker ticker;
+  private final int minLimit;
+  private final int maxLimit;
+  private final Map<String, FixedLimit> methodLimits;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicLong rejected = new AtomicLong();
+  private volatile int limit;
+
+  // Samples of the current window, which are lost if they race with the end of the window
+  private volatile long windowStartNanos;
+  private final AtomicInteger windowSamples = new AtomicInteger();
+  private final AtomicLong windowLatencySumNanos = new AtomicLong();
+  private final AtomicInteger windowMaxInFlight = new AtomicInteger();
+  private volatile boolean windowDropped;
+
+  /** Held by the thread that ends a window, which is the only one to use the fields below. */
+  private final AtomicBoolean updating = new AtomicBoolean();
+  private double estimatedLimit;
+  private double longTermLatencyNanos;
+
+  private AdaptiveConcurrencyLimiter(Builder builder) {
+    this.ticker = builder.ticker;
+    this.minLimit = builder.minLimit;
+    this.maxLimit = builder.maxLimit;
+    Map<String, FixedLimit> methodLimits = new HashMap<String, FixedLimit>();
+    for (Map.Entry<String, Integer> entry : builder.methodLimits.entrySet()) {
+      methodLimits.put(entry.getKey(), new FixedLimit(entry.getValue()));
+    }
+    this.methodLimits = Collections.unmodifiableMap(methodLimits);
+    this.estimatedLimit = builder.initialLimit;
+    this.limit = builder.initialLimit;
+    this.windowStartNanos = ticker.read();
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  @Override
+  @Nullable
+  public Permit tryAcquire(String fullMethodName) {
+    FixedLimit methodLimit = methodLimits.get(fullMethodName);
+    if (methodLimit != null) {
+      if (!methodLimit.tryAcquire()) {
+        rejected.incrementAndGet();
+        return null;
+      }
+      return new AdaptivePermit(methodLimit, 0);
+    }
+    int current;
+    do {
+      current = inFlight.get();
+      if (current >= limit) {
+        rejected.incrementAndGet();
+        return null;
+      }
+    } while (!inFlight.compareAndSet(current, current + 1));
+    int maxInFlight;
+    do {
+      maxInFlight = windowMaxInFlight.get();
+    } while (current + 1 > maxInFlight
+        && !windowMaxInFlight.compareAndSet(maxInFlight, current + 1));
+    return new AdaptivePermit(null, ticker.read());
+  }
+
+  private void onCallClosed(long latencyNanos, Status status) {
+    inFlight.decrementAndGet();
+    if (status.getCode() == Status.Code.DEADLINE_EXCEEDED) {
+      windowDropped = true;
+    } else if (status.isOk()) {
+      windowLatencySumNanos.addAndGet(latencyNanos);
+      windowSamples.incrementAndGet();
+    } else {
+      // Other failures are often fast, and would make the server look less loaded than it is
+      return;
+    }
+    long now = ticker.read();
+    if (windowSamples.get() >= WINDOW_MIN_SAMPLES && now - windowStartNanos >= WINDOW_NANOS
+        && updating.compareAndSet(false, true)) {
+      try {
+        endWindow(now);
+      } finally {
+        updating.set(false);
+      }
+    }
+  }
+
+  private void endWindow(long now) {
+    int samples = windowSamples.getAndSet(0);
+    long latencySumNanos = windowLatencySumNanos.getAndSet(0);
+    int maxInFlight = windowMaxInFlight.getAndSet(inFlight.get());
+    boolean dropped = windowDropped;
+    windowDropped = false;
+    windowStartNanos = now;
+    if (samples == 0) {
+      return;
+    }
+    double latencyNanos = (double) latencySumNanos / samples;
+    if (longTermLatencyNanos == 0) {
+      longTermLatencyNanos = latencyNanos;
+    } else {
+      longTermLatencyNanos += (latencyNanos - longTermLatencyNanos) * LONG_TERM_WEIGHT;
+    }
+    if (longTermLatencyNanos > 2 * latencyNanos) {
+      // Latency dropped for good, so the long-term average catches up faster
+      longTermLatencyNanos *= 0.95;
+    }
+
+    double newLimit;
+    if (dropped) {
+      newLimit = estimatedLimit * DROP_DECREASE_RATIO;
+    } else if (maxInFlight < estimatedLimit / 2) {
+      // Too few calls for the latency to say anything about the limit
+      return;
+    } else {
+      double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, longTermLatencyNanos / latencyNanos));
+      newLimit = estimatedLimit * (1 - SMOOTHING)
+          + (estimatedLimit * gradient + Math.sqrt(estimatedLimit)) * SMOOTHING;
+    }
+    estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    limit = (int) estimatedLimit;
+  }
+
+  /**
+   * Returns the current adaptive limit.
+   */
+  public int getLimit() {
+    return limit;
+  }
+
+  /**
+   * Returns the number of calls in flight that count against the adaptive limit.
+   */
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  /**
+   * Returns the number of calls in flight for a method with a fixed limit, or {@code -1} if the
+   * method has no fixed limit.
+   */
+  public int getInFlight(String fullMethodName) {
+    FixedLimit methodLimit = methodLimits.get(fullMethodName);
+    return methodLimit != null ? methodLimit.inFlight.get() : -1;
+  }
+
+  /**
+   * Returns the number of calls rejected so far, including those to methods with a fixed limit.
+   */
+  public long getRejectedCount() {
+    return rejected.get();
+  }
+
+  private final class AdaptivePermit extends Permit {
+    @Nullable
+    private final FixedLimit methodLimit;
+    private final long startNanos;
+
+    AdaptivePermit(@Nullable FixedLimit methodLimit, long startNanos) {
+      this.methodLimit = methodLimit;
+      this.startNanos = startNanos;
+    }
+
+    @Override
+    public void release(Status status) {
+      checkNotNull(status, "status");
+      if (methodLimit != null) {
+        methodLimit.inFlight.decrementAndGet();
+      } else {
+        onCallClosed(ticker.read() - startNanos, status);
+      }
+    }
+  }
+
+  private static final class FixedLimit {
+    final int limit;
+    final AtomicInteger inFlight = new AtomicInteger();
+
+    FixedLimit(int limit) {
+      this.limit = limit;
+    }
+
+    boolean tryAcquire() {
+      int current;
+      do {
+        current = inFlight.get();
+        if (current >= limit) {
+          return false;
+        }
+      } while (!inFlight.compareAndSet(current, current + 1));
+      return true;
+    }
+  }
+
+  /**
+   * Builder for {@link AdaptiveConcurrencyLimiter}.
+   */
+  public static final class Builder {
+    private Ticker ticker = Ticker.systemTicker();
+    private int initialLimit = 100;
+    private int minLimit = 10;
+    private int maxLimit = 1000;
+    private final Map<String, Integer> methodLimits = new HashMap<String, Integer>();
+
+    private Builder() {}
+
+    /**
+     * Sets the limit to start from. Defaults to 100.
+     */
+    public Builder setInitialLimit(int initialLimit) {
+      checkArgument(initialLimit > 0, "initialLimit must be positive");
+      this.initialLimit = initialLimit;
+      return this;
+    }
+
+    /**
+     * Sets the lowest the limit can go. Defaults to 10.
+     */
+    public Builder setMinLimit(int minLimit) {
+      checkArgument(minLimit > 0, "minLimit must be positive");
+      this.minLimit = minLimit;
+      return this;
+    }
+
+    /**
+     * Sets the highest the limit can go. Defaults to 1000.
+     */
+    public Builder setMaxLimit(int maxLimit) {
+      checkArgument(maxLimit > 0, "maxLimit must be positive");
+      this.maxLimit = maxLimit;
+      return this;
+    }
+
+    /**
+     * Gives a method a fixed limit of its own instead of the adaptive one.
+     *
+     * @param fullMethodName the full name of the method, as in {@link
+     *     io.grpc.MethodDescriptor#getFullMethodName}
+     */
+    public Builder setMethodLimit(String fullMethodName, int limit) {
+      checkNotNull(fullMethodName, "fullMethodName");
+      checkArgument(limit > 0, "limit must be positive");
+      methodLimits.put(fullMethodName, limit);
+      return this;
+    }
+
+    @VisibleForTesting
+    Builder setTicker(Ticker ticker) {
+      this.ticker = checkNotNull(ticker, "ticker");
+      return this;
+    }
+
+    /**
+     * Builds the limiter.
+     *
+     * @throws IllegalStateException if the initial limit is not between the min and max limits
+     */
+    public AdaptiveConcurrencyLimiter build() {
+      checkState(minLimit <= initialLimit && initialLimit <= maxLimit,
+          "initialLimit %s must be between minLimit %s and maxLimit %s", initialLimit, minLimit,
+          maxLimit);
+      return new AdaptiveConcurrencyLimiter(this);
+    }
+  }
+}
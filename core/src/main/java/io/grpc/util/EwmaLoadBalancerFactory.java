@@ -0,0 +1,193 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import io.grpc.ClientStreamTracer;
+import io.grpc.ExperimentalApi;
+import io.grpc.LoadBalancer;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.util.LeastRequestLoadBalancerFactory.LeastRequestLoadBalancer;
+import io.grpc.util.LeastRequestLoadBalancerFactory.LoadTracker;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * A latency-aware {@link LoadBalancer} that prefers the backends currently responding fastest.
+ *
+ * <p>For every subchannel it keeps a "peak" exponentially weighted moving average of RPC latency:
+ * a sample slower than the average replaces it immediately, while faster samples pull it down
+ * gradually. The cost of a subchannel is that average multiplied by its in-flight streams plus
+ * one, and each RPC goes to the cheaper of two randomly chosen READY subchannels. A backend that
+ * stalls, for instance in a GC pause, is therefore avoided as soon as one slow RPC completes and
+ * is tried again as its estimate decays.
+ *
+ * <p>Latency is measured from the creation of the stream to its close. Failed RPCs never lower a
+ * subchannel's estimate, so a backend that fails fast does not attract more traffic.
+ */
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/1771")
+public final class EwmaLoadBalancerFactory extends LoadBalancer.Factory {
+  private static final long DEFAULT_DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+  private static final EwmaLoadBalancerFactory INSTANCE =
+      new EwmaLoadBalancerFactory(DEFAULT_DECAY_NANOS);
+
+  private final long decayNanos;
+
+  private EwmaLoadBalancerFactory(long decayNanos) {
+    this.decayNanos = decayNanos;
+  }
+
+  /**
+   * Gets the instance of this factory that forgets old samples over about ten seconds.
+   */
+  public static EwmaLoadBalancerFactory getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Returns a factory whose latency estimates decay with the given time constant. Shorter values
+   * react faster to recovering backends; longer values smooth out noise.
+   */
+  public static EwmaLoadBalancerFactory withDecayTime(long decayTime, TimeUnit unit) {
+    checkArgument(decayTime > 0, "decayTime must be positive");
+    return new EwmaLoadBalancerFactory(unit.toNanos(decayTime));
+  }
+
+  @Override
+  public LoadBalancer newLoadBalancer(LoadBalancer.Helper helper) {
+    return new EwmaLoadBalancer(helper, new Random(), Ticker.systemTicker(), decayNanos);
+  }
+
+  @VisibleForTesting
+  static final class EwmaLoadBalancer extends LeastRequestLoadBalancer {
+    private final Ticker ticker;
+    private final long decayNanos;
+
+    EwmaLoadBalancer(Helper helper, Random random, Ticker ticker, long decayNanos) {
+      super(helper, random);
+      this.ticker = checkNotNull(ticker, "ticker");
+      this.decayNanos = decayNanos;
+    }
+
+    @Override
+    LoadTracker newLoadTracker() {
+      return new EwmaTracker(ticker, decayNanos);
+    }
+  }
+
+  /**
+   * Tracks the in-flight streams and peak EWMA latency of one subchannel.
+   */
+  @VisibleForTesting
+  static final class EwmaTracker extends LoadTracker {
+    /**
+     * Cost of a subchannel that has streams in flight but has not completed any yet. It is large
+     * enough to lose against any measured subchannel, but a subchannel with no streams and no
+     * samples costs zero so that new backends get traffic and are measured.
+     */
+    @VisibleForTesting
+    static final double PENALTY = Long.MAX_VALUE >> 16;
+
+    private final Ticker ticker;
+    private final double decayNanos;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Object lock = new Object();
+    // Written under lock, but read without it by pickers. A picker may see the average from one
+    // update and the timestamp from another, which only skews a heuristic for a single pick.
+    @GuardedBy("lock")
+    private volatile double ewmaNanos;
+    @GuardedBy("lock")
+    private volatile long lastUpdateNanos;
+
+    EwmaTracker(Ticker ticker, long decayNanos) {
+      this.ticker = ticker;
+      this.decayNanos = decayNanos;
+      this.lastUpdateNanos = ticker.read();
+    }
+
+    @Override
+    public ClientStreamTracer newClientStreamTracer(Metadata headers) {
+      inFlight.incrementAndGet();
+      final long startNanos = ticker.read();
+      return new ClientStreamTracer() {
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        @Override
+        public void streamClosed(Status status) {
+          if (closed.compareAndSet(false, true)) {
+            inFlight.decrementAndGet();
+            long now = ticker.read();
+            observe(now, now - startNanos, status.isOk());
+          }
+        }
+      };
+    }
+
+    private void observe(long now, long latencyNanos, boolean success) {
+      synchronized (lock) {
+        if (latencyNanos > ewmaNanos) {
+          ewmaNanos = latencyNanos;
+        } else if (success) {
+          double weight = Math.exp(-Math.max(0, now - lastUpdateNanos) / decayNanos);
+          ewmaNanos = ewmaNanos * weight + latencyNanos * (1 - weight);
+        } else {
+          // A fast failure says nothing about how quickly the backend serves RPCs.
+          return;
+        }
+        lastUpdateNanos = now;
+      }
+    }
+
+    /**
+     * Returns the average latency, decayed towards zero for the time since the last sample. The
+     * decay keeps a subchannel that was slow once from being starved of the traffic it needs to
+     * prove it has recovered.
+     */
+    private double decayed(long now) {
+      double ewma = ewmaNanos;
+      long elapsed = now - lastUpdateNanos;
+      if (elapsed <= 0) {
+        return ewma;
+      }
+      return ewma * Math.exp(-elapsed / decayNanos);
+    }
+
+    @Override
+    double getLoad() {
+      double ewma = decayed(ticker.read());
+      int streams = inFlight.get();
+      if (ewma == 0 && streams != 0) {
+        return PENALTY;
+      }
+      return ewma * (streams + 1);
+    }
+
+    @VisibleForTesting
+    int getInFlight() {
+      return inFlight.get();
+    }
+  }
+}
@@ -0,0 +1,319 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.util;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static io.grpc.ConnectivityState.IDLE;
+import static io.grpc.ConnectivityState.READY;
+import static io.grpc.ConnectivityState.TRANSIENT_FAILURE;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.grpc.Attributes;
+import io.grpc.ClientStreamTracer;
+import io.grpc.ConnectivityStateInfo;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.ExperimentalApi;
+import io.grpc.LoadBalancer;
+import io.grpc.LoadBalancer.PickResult;
+import io.grpc.LoadBalancer.PickSubchannelArgs;
+import io.grpc.LoadBalancer.Subchannel;
+import io.grpc.LoadBalancer.SubchannelPicker;
+import io.grpc.Metadata;
+import io.grpc.NameResolver;
+import io.grpc.Status;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link LoadBalancer} that sends each RPC to the less loaded of two randomly chosen READY
+ * subchannels, where load is the number of streams the subchannel currently has in flight. This
+ * "power of two choices" strategy keeps a slow backend from accumulating a queue while others
+ * idle, without the herding that always picking the globally least loaded backend would cause.
+ *
+ * <p>Like {@link RoundRobinLoadBalancerFactory}, each {@link EquivalentAddressGroup} from the
+ * {@link NameResolver} gets its own subchannel. In-flight streams are counted with a
+ * {@link ClientStreamTracer} attached to every pick, so only streams created through this
+ * balancer are counted.
+ */
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/1771")
+public final class LeastRequestLoadBalancerFactory extends LoadBalancer.Factory {
+  private static final LeastRequestLoadBalancerFactory INSTANCE =
+      new LeastRequestLoadBalancerFactory();
+
+  private LeastRequestLoadBalancerFactory() {
+  }
+
+  /**
+   * Gets the singleton instance of this factory.
+   */
+  public static LeastRequestLoadBalancerFactory getInstance() {
+    return INSTANCE;
+  }
+
+  @Override
+  public LoadBalancer newLoadBalancer(LoadBalancer.Helper helper) {
+    return new LeastRequestLoadBalancer(helper, new Random());
+  }
+
+  @VisibleForTesting
+  static class LeastRequestLoadBalancer extends LoadBalancer {
+    private final Helper helper;
+    private final Random random;
+    private final Map<EquivalentAddressGroup, Subchannel> subchannels =
+        new HashMap<EquivalentAddressGroup, Subchannel>();
+
+    @VisibleForTesting
+    static final Attributes.Key<AtomicReference<ConnectivityStateInfo>> STATE_INFO =
+        Attributes.Key.of("state-info");
+    @VisibleForTesting
+    static final Attributes.Key<LoadTracker> LOAD_TRACKER = Attributes.Key.of("load-tracker");
+
+    LeastRequestLoadBalancer(Helper helper, Random random) {
+      this.helper = checkNotNull(helper, "helper");
+      this.random = checkNotNull(random, "random");
+    }
+
+    @Override
+    public void handleResolvedAddressGroups(
+        List<EquivalentAddressGroup> servers, Attributes attributes) {
+      Set<EquivalentAddressGroup> currentAddrs = subchannels.keySet();
+      Set<EquivalentAddressGroup> latestAddrs = stripAttrs(servers);
+      Set<EquivalentAddressGroup> addedAddrs = setsDifference(latestAddrs, currentAddrs);
+      Set<EquivalentAddressGroup> removedAddrs = setsDifference(currentAddrs, latestAddrs);
+
+      for (EquivalentAddressGroup addressGroup : addedAddrs) {
+        Attributes subchannelAttrs = Attributes.newBuilder()
+            .set(STATE_INFO, new AtomicReference<ConnectivityStateInfo>(
+                ConnectivityStateInfo.forNonError(IDLE)))
+            .set(LOAD_TRACKER, newLoadTracker())
+            .build();
+
+        Subchannel subchannel = checkNotNull(helper.createSubchannel(addressGroup, subchannelAttrs),
+            "subchannel");
+        subchannels.put(addressGroup, subchannel);
+        subchannel.requestConnection();
+      }
+
+      for (EquivalentAddressGroup addressGroup : removedAddrs) {
+        Subchannel subchannel = subchannels.remove(addressGroup);
+        subchannel.shutdown();
+      }
+
+      updatePicker(getAggregatedError());
+    }
+
+    /**
+     * Creates the tracker that measures the load of a new subchannel.
+     */
+    LoadTracker newLoadTracker() {
+      return new InFlightTracerFactory();
+    }
+
+    @Override
+    public void handleNameResolutionError(Status error) {
+      updatePicker(error);
+    }
+
+    @Override
+    public void handleSubchannelState(Subchannel subchannel, ConnectivityStateInfo stateInfo) {
+      if (!subchannels.containsValue(subchannel)) {
+        return;
+      }
+      if (stateInfo.getState() == IDLE) {
+        subchannel.requestConnection();
+      }
+      getSubchannelStateInfoRef(subchannel).set(stateInfo);
+      updatePicker(getAggregatedError());
+    }
+
+    @Override
+    public void shutdown() {
+      for (Subchannel subchannel : getSubchannels()) {
+        subchannel.shutdown();
+      }
+    }
+
+    /**
+     * Updates picker with the list of active subchannels (state == READY).
+     */
+    private void updatePicker(@Nullable Status error) {
+      List<Subchannel> activeList = new ArrayList<Subchannel>(subchannels.size());
+      for (Subchannel subchannel : getSubchannels()) {
+        if (getSubchannelStateInfoRef(subchannel).get().getState() == READY) {
+          activeList.add(subchannel);
+        }
+      }
+      helper.updatePicker(new Picker(activeList, error, random));
+    }
+
+    private static Set<EquivalentAddressGroup> stripAttrs(List<EquivalentAddressGroup> groupList) {
+      Set<EquivalentAddressGroup> addrs = new HashSet<EquivalentAddressGroup>();
+      for (EquivalentAddressGroup group : groupList) {
+        addrs.add(new EquivalentAddressGroup(group.getAddresses()));
+      }
+      return addrs;
+    }
+
+    /**
+     * If all subchannels are TRANSIENT_FAILURE, return the Status associated with an arbitrary
+     * subchannel otherwise, return null.
+     */
+    @Nullable
+    private Status getAggregatedError() {
+      Status status = null;
+      for (Subchannel subchannel : getSubchannels()) {
+        ConnectivityStateInfo stateInfo = getSubchannelStateInfoRef(subchannel).get();
+        if (stateInfo.getState() != TRANSIENT_FAILURE) {
+          return null;
+        }
+        status = stateInfo.getStatus();
+      }
+      return status;
+    }
+
+    @VisibleForTesting
+    Collection<Subchannel> getSubchannels() {
+      return subchannels.values();
+    }
+
+    private static AtomicReference<ConnectivityStateInfo> getSubchannelStateInfoRef(
+        Subchannel subchannel) {
+      return checkNotNull(subchannel.getAttributes().get(STATE_INFO), "STATE_INFO");
+    }
+
+    private static <T> Set<T> setsDifference(Set<T> a, Set<T> b) {
+      Set<T> aCopy = new HashSet<T>(a);
+      aCopy.removeAll(b);
+      return aCopy;
+    }
+  }
+
+  /**
+   * Measures the load of one subchannel by tracing the streams created on it. One instance is
+   * shared by all picks of a subchannel, so the measurement survives picker updates.
+   */
+  abstract static class LoadTracker extends ClientStreamTracer.Factory {
+    /**
+     * Returns the current load of the subchannel; the picker prefers lower values. Called on
+     * every pick, so it must be cheap and must not block.
+     */
+    abstract double getLoad();
+  }
+
+  /**
+   * Counts the streams a subchannel has in flight.
+   */
+  @VisibleForTesting
+  static final class InFlightTracerFactory extends LoadTracker {
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    @Override
+    public ClientStreamTracer newClientStreamTracer(Metadata headers) {
+      inFlight.incrementAndGet();
+      return new ClientStreamTracer() {
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        @Override
+        public void streamClosed(Status status) {
+          if (closed.compareAndSet(false, true)) {
+            inFlight.decrementAndGet();
+          }
+        }
+      };
+    }
+
+    int get() {
+      return inFlight.get();
+    }
+
+    @Override
+    double getLoad() {
+      return inFlight.get();
+    }
+  }
+
+  /**
+   * Picks the less loaded of two distinct random subchannels. Picking only reads the load
+   * trackers and the immutable subchannel list, so concurrent picks never block each other.
+   */
+  @VisibleForTesting
+  static final class Picker extends SubchannelPicker {
+    @Nullable
+    private final Status status;
+    private final List<Subchannel> list;
+    private final Random random;
+
+    Picker(List<Subchannel> list, @Nullable Status status, Random random) {
+      this.list = Collections.unmodifiableList(new ArrayList<Subchannel>(list));
+      this.status = status;
+      this.random = random;
+    }
+
+    @Override
+    public PickResult pickSubchannel(PickSubchannelArgs args) {
+      int size = list.size();
+      if (size > 0) {
+        Subchannel subchannel = list.get(0);
+        if (size > 1) {
+          int first = random.nextInt(size);
+          int second = random.nextInt(size - 1);
+          if (second >= first) {
+            second++;
+          }
+          subchannel = list.get(first);
+          Subchannel other = list.get(second);
+          if (getLoadTracker(other).getLoad() < getLoadTracker(subchannel).getLoad()) {
+            subchannel = other;
+          }
+        }
+        return PickResult.withSubchannel(subchannel, getLoadTracker(subchannel));
+      }
+
+      if (status != null) {
+        return PickResult.withError(status);
+      }
+
+      return PickResult.withNoResult();
+    }
+
+    private static LoadTracker getLoadTracker(Subchannel subchannel) {
+      return checkNotNull(
+          subchannel.getAttributes().get(LeastRequestLoadBalancer.LOAD_TRACKER), "LOAD_TRACKER");
+    }
+
+    @VisibleForTesting
+    List<Subchannel> getList() {
+      return list;
+    }
+
+    @VisibleForTesting
+    Status getStatus() {
+      return status;
+    }
+  }
+}
@@ -0,0 +1,615 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static io.grpc.ConnectivityState.IDLE;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import io.grpc.Attributes;
+import io.grpc.ClientStreamTracer;
+import io.grpc.ConnectivityStateInfo;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.ExperimentalApi;
+import io.grpc.LoadBalancer;
+import io.grpc.LoadBalancer.PickResult;
+import io.grpc.LoadBalancer.PickSubchannelArgs;
+import io.grpc.LoadBalancer.Subchannel;
+import io.grpc.LoadBalancer.SubchannelPicker;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.NameResolver;
+import io.grpc.Status;
+import io.grpc.internal.BackoffPolicy;
+import io.grpc.internal.ExponentialBackoffPolicy;
+import io.grpc.internal.GrpcUtil;
+import io.grpc.internal.ObjectPool;
+import io.grpc.internal.SharedResourcePool;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+
+/**
+ * Wraps another {@link LoadBalancer.Factory} and temporarily ejects subchannels whose RPCs fail
+ * much more often than those of their peers, even though their connections are still READY.
+ *
+ * <p>RPC outcomes are counted per subchannel with a {@link ClientStreamTracer}. At the end of
+ * every interval, subchannels that saw enough RPCs are compared: those whose success rate is more
+ * than a given number of standard deviations below the mean, or whose failure percentage reaches
+ * a fixed threshold, are ejected. An ejected subchannel is reported to the wrapped balancer as
+ * TRANSIENT_FAILURE, so it stops receiving picks, and is restored with its real state once its
+ * ejection time is over. Ejection times grow exponentially for subchannels that are ejected again
+ * before they have completed a healthy interval.
+ *
+ * <p>Cancelled RPCs are not counted, since cancellation is initiated by the client.
+ */
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/1771")
+public final class OutlierDetectionLoadBalancerFactory extends LoadBalancer.Factory {
+  private static final Logger logger =
+      Logger.getLogger(OutlierDetectionLoadBalancerFactory.class.getName());
+
+  private final LoadBalancer.Factory delegate;
+  private final long intervalNanos;
+  private final int requestVolume;
+  private final int minimumHosts;
+  private final double stdevFactor;
+  private final int failurePercentageThreshold;
+  private final int maxEjectionPercent;
+
+  private final AtomicLong ejectionCount = new AtomicLong();
+  private final AtomicInteger ejectedSubchannels = new AtomicInteger();
+
+  private OutlierDetectionLoadBalancerFactory(Builder builder) {
+    this.delegate = builder.delegate;
+    this.intervalNanos = builder.intervalNanos;
+    this.requestVolume = builder.requestVolume;
+    this.minimumHosts = builder.minimumHosts;
+    this.stdevFactor = builder.stdevFactor;
+    this.failurePercentageThreshold = builder.failurePercentageThreshold;
+    this.maxEjectionPercent = builder.maxEjectionPercent;
+  }
+
+  /**
+   * Creates a builder for a factory that applies outlier detection to the balancers created by
+   * {@code delegate}.
+   */
+  public static Builder newBuilder(LoadBalancer.Factory delegate) {
+    return new Builder(delegate);
+  }
+
+  @Override
+  public LoadBalancer newLoadBalancer(LoadBalancer.Helper helper) {
+    return new OutlierDetectionLoadBalancer(this, helper,
+        SharedResourcePool.forResource(GrpcUtil.TIMER_SERVICE), Ticker.systemTicker(),
+        new ExponentialBackoffPolicy.Provider());
+  }
+
+  /**
+   * Returns the number of ejections performed by all balancers created by this factory.
+   */
+  public long getEjectionCount() {
+    return ejectionCount.get();
+  }
+
+  /**
+   * Returns the number of subchannels currently ejected by all balancers created by this factory.
+   */
+  public int getEjectedSubchannelCount() {
+    return ejectedSubchannels.get();
+  }
+
+  /**
+   * Builder for {@link OutlierDetectionLoadBalancerFactory}.
+   */
+  public static final class Builder {
+    private final LoadBalancer.Factory delegate;
+    private long intervalNanos = TimeUnit.SECONDS.toNanos(10);
+    private int requestVolume = 100;
+    private int minimumHosts = 5;
+    private double stdevFactor = 1.9;
+    private int failurePercentageThreshold = 85;
+    private int maxEjectionPercent = 10;
+
+    private Builder(LoadBalancer.Factory delegate) {
+      this.delegate = checkNotNull(delegate, "delegate");
+    }
+
+    /**
+     * Sets how often subchannels are evaluated. RPCs are counted over one interval at a time.
+     * Defaults to 10 seconds.
+     */
+    public Builder setInterval(long interval, TimeUnit unit) {
+      checkArgument(interval > 0, "interval must be positive");
+      this.intervalNanos = unit.toNanos(interval);
+      return this;
+    }
+
+    /**
+     * Sets the number of RPCs a subchannel must complete in an interval to be evaluated.
+     * Defaults to 100.
+     */
+    public Builder setRequestVolume(int requestVolume) {
+      checkArgument(requestVolume > 0, "requestVolume must be positive");
+      this.requestVolume = requestVolume;
+      return this;
+    }
+
+    /**
+     * Sets the number of subchannels that must reach the request volume before any are ejected,
+     * so that a small sample is not mistaken for an outlier. Defaults to 5.
+     */
+    public Builder setMinimumHosts(int minimumHosts) {
+      checkArgument(minimumHosts > 0, "minimumHosts must be positive");
+      this.minimumHosts = minimumHosts;
+      return this;
+    }
+
+    /**
+     * Sets how many standard deviations below the mean success rate a subchannel must fall to be
+     * ejected. Defaults to 1.9.
+     */
+    public Builder setSuccessRateStdevFactor(double stdevFactor) {
+      checkArgument(stdevFactor > 0, "stdevFactor must be positive");
+      this.stdevFactor = stdevFactor;
+      return this;
+    }
+
+    /**
+     * Sets the percentage of failed RPCs at which a subchannel is ejected regardless of its
+     * peers. Defaults to 85; 100 only ejects subchannels whose RPCs all fail.
+     */
+    public Builder setFailurePercentageThreshold(int failurePercentageThreshold) {
+      checkArgument(failurePercentageThreshold > 0 && failurePercentageThreshold <= 100,
+          "failurePercentageThreshold must be in (0, 100]");
+      this.failurePercentageThreshold = failurePercentageThreshold;
+      return this;
+    }
+
+    /**
+     * Sets the percentage of subchannels below which outliers may be ejected. Outliers are ejected
+     * while fewer than this percentage of subchannels are, so the last ejection may go over it, and
+     * one subchannel can always be ejected while none are unless this is 0. Defaults to 10.
+     */
+    public Builder setMaxEjectionPercent(int maxEjectionPercent) {
+      checkArgument(maxEjectionPercent >= 0 && maxEjectionPercent <= 100,
+          "maxEjectionPercent must be in [0, 100]");
+      this.maxEjectionPercent = maxEjectionPercent;
+      return this;
+    }
+
+    public OutlierDetectionLoadBalancerFactory build() {
+      return new OutlierDetectionLoadBalancerFactory(this);
+    }
+  }
+
+  @VisibleForTesting
+  static final class OutlierDetectionLoadBalancer extends LoadBalancer {
+    private final OutlierDetectionLoadBalancerFactory config;
+    private final Helper helper;
+    private final LoadBalancer delegate;
+    private final ObjectPool<ScheduledExecutorService> timerServicePool;
+    private final ScheduledExecutorService timerService;
+    private final Runnable detectionTask = new Runnable() {
+        @Override
+        public void run() {
+          helper.runSerialized(new Runnable() {
+              @Override
+              public void run() {
+                detectOutliers();
+              }
+            });
+        }
+      };
+    private ScheduledFuture<?> detectionTimer;
+    private final Ticker ticker;
+    private final BackoffPolicy.Provider backoffPolicyProvider;
+    // Keyed by the channel's subchannel; the delegate only ever sees the wrappers.
+    private final Map<Subchannel, OutlierSubchannel> subchannels =
+        new HashMap<Subchannel, OutlierSubchannel>();
+    private boolean shutdown;
+
+    OutlierDetectionLoadBalancer(OutlierDetectionLoadBalancerFactory config, Helper helper,
+        ObjectPool<ScheduledExecutorService> timerServicePool, Ticker ticker,
+        BackoffPolicy.Provider backoffPolicyProvider) {
+      this.config = config;
+      this.helper = checkNotNull(helper, "helper");
+      this.timerServicePool = checkNotNull(timerServicePool, "timerServicePool");
+      this.ticker = checkNotNull(ticker, "ticker");
+      this.backoffPolicyProvider = checkNotNull(backoffPolicyProvider, "backoffPolicyProvider");
+      this.delegate = config.delegate.newLoadBalancer(new DetectingHelper());
+      this.timerService = timerServicePool.getObject();
+      scheduleDetection();
+    }
+
+    private void scheduleDetection() {
+      detectionTimer =
+          timerService.schedule(detectionTask, config.intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void handleResolvedAddressGroups(
+        List<EquivalentAddressGroup> servers, Attributes attributes) {
+      delegate.handleResolvedAddressGroups(servers, attributes);
+    }
+
+    @Override
+    public void handleNameResolutionError(Status error) {
+      delegate.handleNameResolutionError(error);
+    }
+
+    @Override
+    public void handleSubchannelState(Subchannel subchannel, ConnectivityStateInfo stateInfo) {
+      OutlierSubchannel wrapper = subchannels.get(subchannel);
+      if (wrapper == null) {
+        return;
+      }
+      wrapper.stateInfo = stateInfo;
+      if (!wrapper.ejected) {
+        delegate.handleSubchannelState(wrapper, stateInfo);
+      }
+    }
+
+    @Override
+    public void shutdown() {
+      if (shutdown) {
+        return;
+      }
+      shutdown = true;
+      detectionTimer.cancel(false);
+      timerServicePool.returnObject(timerService);
+      for (OutlierSubchannel subchannel : subchannels.values()) {
+        if (subchannel.ejected) {
+          config.ejectedSubchannels.decrementAndGet();
+        }
+      }
+      delegate.shutdown();
+    }
+
+    /**
+     * Closes the current interval: restores subchannels whose ejection time is over, then ejects
+     * the outliers among the subchannels that saw enough RPCs.
+     */
+    @VisibleForTesting
+    void detectOutliers() {
+      if (shutdown) {
+        return;
+      }
+      scheduleDetection();
+      long now = ticker.read();
+      List<OutlierSubchannel> candidates = new ArrayList<OutlierSubchannel>();
+      int ejected = 0;
+      for (OutlierSubchannel subchannel : subchannels.values()) {
+        if (subchannel.ejected && now - subchannel.ejectionEndNanos >= 0) {
+          uneject(subchannel);
+        }
+        if (subchannel.ejected) {
+          ejected++;
+        }
+        subchannel.closeInterval();
+        if (!subchannel.ejected && subchannel.intervalTotal() >= config.requestVolume) {
+          candidates.add(subchannel);
+        }
+      }
+      if (candidates.size() < config.minimumHosts) {
+        return;
+      }
+
+      double sum = 0;
+      for (OutlierSubchannel subchannel : candidates) {
+        sum += subchannel.intervalSuccessRate();
+      }
+      double mean = sum / candidates.size();
+      double squaredDiffs = 0;
+      for (OutlierSubchannel subchannel : candidates) {
+        double diff = subchannel.intervalSuccessRate() - mean;
+        squaredDiffs += diff * diff;
+      }
+      double stdev = Math.sqrt(squaredDiffs / candidates.size());
+      double successRateThreshold = mean - config.stdevFactor * stdev;
+
+      int total = subchannels.size();
+      for (OutlierSubchannel subchannel : candidates) {
+        double successRate = subchannel.intervalSuccessRate();
+        boolean outlier = successRate < successRateThreshold
+            || (1 - successRate) * 100 >= config.failurePercentageThreshold;
+        if (!outlier) {
+          // A full healthy interval forgives earlier ejections.
+          subchannel.backoffPolicy = null;
+        } else if (ejected * 100 < config.maxEjectionPercent * total) {
+          eject(subchannel, now, successRate);
+          ejected++;
+        }
+      }
+    }
+
+    private void eject(OutlierSubchannel subchannel, long now, double successRate) {
+      if (subchannel.backoffPolicy == null) {
+        subchannel.backoffPolicy = backoffPolicyProvider.get();
+      }
+      long ejectionNanos = subchannel.backoffPolicy.nextBackoffNanos();
+      subchannel.ejected = true;
+      subchannel.ejectionEndNanos = now + ejectionNanos;
+      config.ejectionCount.incrementAndGet();
+      config.ejectedSubchannels.incrementAndGet();
+      logger.log(Level.INFO, "Ejecting {0} for {1} ms: success rate {2}",
+          new Object[] {subchannel.getAddresses(), TimeUnit.NANOSECONDS.toMillis(ejectionNanos),
+              successRate});
+      delegate.handleSubchannelState(subchannel, ConnectivityStateInfo.forTransientFailure(
+          Status.UNAVAILABLE.withDescription("Ejected by outlier detection")));
+    }
+
+    private void uneject(OutlierSubchannel subchannel) {
+      subchannel.ejected = false;
+      config.ejectedSubchannels.decrementAndGet();
+      logger.log(Level.FINE, "Restoring {0}", subchannel.getAddresses());
+      delegate.handleSubchannelState(subchannel, subchannel.stateInfo);
+    }
+
+    @VisibleForTesting
+    @Nullable
+    OutlierSubchannel getOutlierSubchannel(Subchannel subchannel) {
+      return subchannels.get(subchannel);
+    }
+
+    /**
+     * Gives the delegate wrapped subchannels and wraps its pickers so that they count RPCs.
+     */
+    private final class DetectingHelper extends Helper {
+      @Override
+      public Subchannel createSubchannel(EquivalentAddressGroup addrs, Attributes attrs) {
+        Subchannel subchannel = helper.createSubchannel(addrs, attrs);
+        OutlierSubchannel wrapper = new OutlierSubchannel(subchannel);
+        subchannels.put(subchannel, wrapper);
+        return wrapper;
+      }
+
+      @Override
+      public void updateSubchannelAddresses(Subchannel subchannel, EquivalentAddressGroup addrs) {
+        helper.updateSubchannelAddresses(unwrap(subchannel), addrs);
+      }
+
+      @Override
+      public ManagedChannel createOobChannel(EquivalentAddressGroup eag, String authority) {
+        return helper.createOobChannel(eag, authority);
+      }
+
+      @Override
+      public void updateOobChannelAddresses(ManagedChannel channel, EquivalentAddressGroup eag) {
+        helper.updateOobChannelAddresses(channel, eag);
+      }
+
+      @Override
+      public void updatePicker(SubchannelPicker picker) {
+        helper.updatePicker(new CountingPicker(picker));
+      }
+
+      @Override
+      public void runSerialized(Runnable task) {
+        helper.runSerialized(task);
+      }
+
+      @Override
+      public NameResolver.Factory getNameResolverFactory() {
+        return helper.getNameResolverFactory();
+      }
+
+      @Override
+      public String getAuthority() {
+        return helper.getAuthority();
+      }
+
+      private Subchannel unwrap(Subchannel subchannel) {
+        if (subchannel instanceof OutlierSubchannel) {
+          return ((OutlierSubchannel) subchannel).delegate;
+        }
+        return subchannel;
+      }
+    }
+
+    @VisibleForTesting
+    final class OutlierSubchannel extends Subchannel {
+      final Subchannel delegate;
+      final CallCounter counter = new CallCounter();
+      ConnectivityStateInfo stateInfo = ConnectivityStateInfo.forNonError(IDLE);
+      boolean ejected;
+      long ejectionEndNanos;
+      @Nullable
+      BackoffPolicy backoffPolicy;
+      private long intervalSuccesses;
+      private long intervalFailures;
+
+      OutlierSubchannel(Subchannel delegate) {
+        this.delegate = checkNotNull(delegate, "delegate");
+      }
+
+      @Override
+      public void shutdown() {
+        if (subchannels.remove(delegate) != null && ejected) {
+          ejected = false;
+          config.ejectedSubchannels.decrementAndGet();
+        }
+        delegate.shutdown();
+      }
+
+      @Override
+      public void requestConnection() {
+        delegate.requestConnection();
+      }
+
+      @Override
+      public EquivalentAddressGroup getAddresses() {
+        return delegate.getAddresses();
+      }
+
+      @Override
+      public Attributes getAttributes() {
+        return delegate.getAttributes();
+      }
+
+      void closeInterval() {
+        intervalSuccesses = counter.successes.getAndSet(0);
+        intervalFailures = counter.failures.getAndSet(0);
+      }
+
+      long intervalTotal() {
+        return intervalSuccesses + intervalFailures;
+      }
+
+      double intervalSuccessRate() {
+        return (double) intervalSuccesses / intervalTotal();
+      }
+    }
+  }
+
+  /**
+   * Counts the outcome of the RPCs sent to one subchannel.
+   */
+  @VisibleForTesting
+  static final class CallCounter extends ClientStreamTracer.Factory {
+    final AtomicLong successes = new AtomicLong();
+    final AtomicLong failures = new AtomicLong();
+
+    @Override
+    public ClientStreamTracer newClientStreamTracer(Metadata headers) {
+      return new ClientStreamTracer() {
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        @Override
+        public void streamClosed(Status status) {
+          if (!closed.compareAndSet(false, true)) {
+            return;
+          }
+          if (status.isOk()) {
+            successes.incrementAndGet();
+          } else if (status.getCode() != Status.Code.CANCELLED) {
+            failures.incrementAndGet();
+          }
+        }
+      };
+    }
+  }
+
+  /**
+   * Replaces the wrapped subchannel in each pick with the channel's own, and counts its RPCs.
+   */
+  private static final class CountingPicker extends SubchannelPicker {
+    private final SubchannelPicker delegate;
+
+    CountingPicker(SubchannelPicker delegate) {
+      this.delegate = checkNotNull(delegate, "delegate");
+    }
+
+    @Override
+    public PickResult pickSubchannel(PickSubchannelArgs args) {
+      PickResult result = delegate.pickSubchannel(args);
+      Subchannel subchannel = result.getSubchannel();
+      if (!(subchannel instanceof OutlierDetectionLoadBalancer.OutlierSubchannel)) {
+        return result;
+      }
+      OutlierDetectionLoadBalancer.OutlierSubchannel wrapper =
+          (OutlierDetectionLoadBalancer.OutlierSubchannel) subchannel;
+      ClientStreamTracer.Factory tracerFactory = wrapper.counter;
+      if (result.getStreamTracerFactory() != null) {
+        tracerFactory = new ChainedTracerFactory(wrapper.counter, result.getStreamTracerFactory());
+      }
+      return PickResult.withSubchannel(wrapper.delegate, tracerFactory);
+    }
+  }
+
+  private static final class ChainedTracerFactory extends ClientStreamTracer.Factory {
+    private final ClientStreamTracer.Factory first;
+    private final ClientStreamTracer.Factory second;
+
+    ChainedTracerFactory(ClientStreamTracer.Factory first, ClientStreamTracer.Factory second) {
+      this.first = first;
+      this.second = second;
+    }
+
+    @Override
+    public ClientStreamTracer newClientStreamTracer(Metadata headers) {
+      final ClientStreamTracer a = first.newClientStreamTracer(headers);
+      final ClientStreamTracer b = second.newClientStreamTracer(headers);
+      return new ClientStreamTracer() {
+        @Override
+        public void outboundHeaders() {
+          a.outboundHeaders();
+          b.outboundHeaders();
+        }
+
+        @Override
+        public void inboundHeaders() {
+          a.inboundHeaders();
+          b.inboundHeaders();
+        }
+
+        @Override
+        public void streamClosed(Status status) {
+          a.streamClosed(status);
+          b.streamClosed(status);
+        }
+
+        @Override
+        public void outboundMessage() {
+          a.outboundMessage();
+          b.outboundMessage();
+        }
+
+        @Override
+        public void inboundMessage() {
+          a.inboundMessage();
+          b.inboundMessage();
+        }
+
+        @Override
+        public void outboundWireSize(long bytes) {
+          a.outboundWireSize(bytes);
+          b.outboundWireSize(bytes);
+        }
+
+        @Override
+        public void outboundUncompressedSize(long bytes) {
+          a.outboundUncompressedSize(bytes);
+          b.outboundUncompressedSize(bytes);
+        }
+
+        @Override
+        public void inboundWireSize(long bytes) {
+          a.inboundWireSize(bytes);
+          b.inboundWireSize(bytes);
+        }
+
+        @Override
+        public void inboundUncompressedSize(long bytes) {
+          a.inboundUncompressedSize(bytes);
+          b.inboundUncompressedSize(bytes);
+        }
+      };
+    }
+  }
+}
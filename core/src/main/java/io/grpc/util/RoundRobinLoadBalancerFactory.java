@@ -16,6 +16,7 @@
 
 package io.grpc.util;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static io.grpc.ConnectivityState.IDLE;
 import static io.grpc.ConnectivityState.READY;
@@ -42,22 +43,39 @@ import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import javax.annotation.Nullable;
-import javax.annotation.concurrent.GuardedBy;
 
 /**
  * A {@link LoadBalancer} that provides round-robin load balancing mechanism over the
  * addresses from the {@link NameResolver}.  The sub-lists received from the name resolver
  * are considered to be an {@link EquivalentAddressGroup} and each of these sub-lists is
  * what is then balanced across.
+ *
+ * <p>The {@link #getWeightedInstance weighted} variant additionally reads {@link #WEIGHT} from the
+ * attributes of each {@link EquivalentAddressGroup} and uses smooth weighted round-robin, so that
+ * a group with weight 3 receives three times as many picks as a group with weight 1, interleaved
+ * rather than in bursts.
  */
 @ExperimentalApi("https://github.com/grpc/grpc-java/issues/1771")
 public class RoundRobinLoadBalancerFactory extends LoadBalancer.Factory {
+  /**
+   * Relative weight of an {@link EquivalentAddressGroup}, set by the name resolver in the group's
+   * attributes. Only honored by the {@link #getWeightedInstance weighted} factory. Groups without
+   * a weight, or with a weight less than 1, are given weight 1.
+   */
+  public static final Attributes.Key<Integer> WEIGHT = Attributes.Key.of("io.grpc.rr.weight");
+
   private static final RoundRobinLoadBalancerFactory INSTANCE =
-      new RoundRobinLoadBalancerFactory();
+      new RoundRobinLoadBalancerFactory(false);
+  private static final RoundRobinLoadBalancerFactory WEIGHTED_INSTANCE =
+      new RoundRobinLoadBalancerFactory(true);
+
+  private final boolean weighted;
 
-  private RoundRobinLoadBalancerFactory() {
+  private RoundRobinLoadBalancerFactory(boolean weighted) {
+    this.weighted = weighted;
   }
 
   /**
@@ -67,23 +85,38 @@ public class RoundRobinLoadBalancerFactory extends LoadBalancer.Factory {
     return INSTANCE;
   }
 
+  /**
+   * Gets the singleton instance of this factory that balances according to {@link #WEIGHT}.
+   */
+  public static RoundRobinLoadBalancerFactory getWeightedInstance() {
+    return WEIGHTED_INSTANCE;
+  }
+
   @Override
   public LoadBalancer newLoadBalancer(LoadBalancer.Helper helper) {
-    return new RoundRobinLoadBalancer(helper);
+    return new RoundRobinLoadBalancer(helper, weighted);
   }
 
   @VisibleForTesting
   static class RoundRobinLoadBalancer extends LoadBalancer {
     private final Helper helper;
+    private final boolean weighted;
     private final Map<EquivalentAddressGroup, Subchannel> subchannels =
         new HashMap<EquivalentAddressGroup, Subchannel>();
+    private final Map<EquivalentAddressGroup, Integer> weights =
+        new HashMap<EquivalentAddressGroup, Integer>();
 
     @VisibleForTesting
     static final Attributes.Key<AtomicReference<ConnectivityStateInfo>> STATE_INFO =
         Attributes.Key.of("state-info");
 
     RoundRobinLoadBalancer(Helper helper) {
+      this(helper, false);
+    }
+
+    RoundRobinLoadBalancer(Helper helper, boolean weighted) {
       this.helper = checkNotNull(helper, "helper");
+      this.weighted = weighted;
     }
 
     @Override
@@ -94,6 +127,17 @@ public class RoundRobinLoadBalancerFactory extends LoadBalancer.Factory {
       Set<EquivalentAddressGroup> addedAddrs = setsDifference(latestAddrs, currentAddrs);
       Set<EquivalentAddressGroup> removedAddrs = setsDifference(currentAddrs, latestAddrs);
 
+      if (weighted) {
+        // Weights may change without the address set changing, so refresh them every time.
+        weights.clear();
+        for (EquivalentAddressGroup group : servers) {
+          Integer weight = group.getAttributes().get(WEIGHT);
+          if (weight != null && weight > 1) {
+            weights.put(new EquivalentAddressGroup(group.getAddresses()), weight);
+          }
+        }
+      }
+
       // Create new subchannels for new addresses.
       for (EquivalentAddressGroup addressGroup : addedAddrs) {
         // NB(lukaszx0): we don't merge `attributes` with `subchannelAttr` because subchannel
@@ -150,8 +194,22 @@ public class RoundRobinLoadBalancerFactory extends LoadBalancer.Factory {
      * Updates picker with the list of active subchannels (state == READY).
      */
     private void updatePicker(@Nullable Status error) {
-      List<Subchannel> activeList = filterNonFailingSubchannels(getSubchannels());
-      helper.updatePicker(new Picker(activeList, error));
+      if (!weighted) {
+        List<Subchannel> activeList = filterNonFailingSubchannels(getSubchannels());
+        helper.updatePicker(new Picker(activeList, error));
+        return;
+      }
+      List<Subchannel> activeList = new ArrayList<Subchannel>(subchannels.size());
+      List<Integer> activeWeights = new ArrayList<Integer>(subchannels.size());
+      for (Map.Entry<EquivalentAddressGroup, Subchannel> entry : subchannels.entrySet()) {
+        Subchannel subchannel = entry.getValue();
+        if (getSubchannelStateInfoRef(subchannel).get().getState() == READY) {
+          Integer weight = weights.get(entry.getKey());
+          activeList.add(subchannel);
+          activeWeights.add(weight == null ? 1 : weight);
+        }
+      }
+      helper.updatePicker(new Picker(activeList, activeWeights, error));
     }
 
     /**
@@ -214,21 +272,41 @@ public class RoundRobinLoadBalancerFactory extends LoadBalancer.Factory {
     }
   }
 
+  /**
+   * Picks from a precomputed schedule using a shared atomic counter, so concurrent picks never
+   * contend on a lock. For the unweighted case the schedule is simply the list of subchannels.
+   */
   @VisibleForTesting
   static final class Picker extends SubchannelPicker {
+    /**
+     * Upper bound on the length of a weighted schedule. Larger weight totals are scaled down,
+     * trading some precision for a bounded picker size.
+     */
+    @VisibleForTesting
+    static final int MAX_SCHEDULE_SIZE = 1024;
+
     @Nullable
     private final Status status;
     private final List<Subchannel> list;
+    private final List<Subchannel> schedule;
     private final int size;
-    @GuardedBy("this")
-    private int index = 0;
+    private final AtomicInteger index = new AtomicInteger();
 
     Picker(List<Subchannel> list, @Nullable Status status) {
       this.list = Collections.unmodifiableList(list);
+      this.schedule = this.list;
       this.size = list.size();
       this.status = status;
     }
 
+    Picker(List<Subchannel> list, List<Integer> weights, @Nullable Status status) {
+      checkArgument(list.size() == weights.size(), "list and weights differ in size");
+      this.list = Collections.unmodifiableList(list);
+      this.schedule = buildSchedule(this.list, weights);
+      this.size = schedule.size();
+      this.status = status;
+    }
+
     @Override
     public PickResult pickSubchannel(PickSubchannelArgs args) {
       if (size > 0) {
@@ -246,14 +324,71 @@ public class RoundRobinLoadBalancerFactory extends LoadBalancer.Factory {
       if (size == 0) {
         throw new NoSuchElementException();
       }
-      synchronized (this) {
-        Subchannel val = list.get(index);
-        index++;
-        if (index >= size) {
-          index = 0;
+      // Masking keeps the index non-negative once the counter overflows. That causes a single
+      // out-of-sequence pick every 2^31 picks, which is not worth a CAS loop to avoid.
+      int i = index.getAndIncrement() & Integer.MAX_VALUE;
+      return schedule.get(i % size);
+    }
+
+    /**
+     * Expands the weights into the sequence produced by smooth weighted round-robin: on each step
+     * every entry gains its weight, the entry with the largest accumulated value is picked and is
+     * then charged the total weight. This spreads the picks of heavy entries evenly over the
+     * cycle instead of issuing them back to back.
+     */
+    private static List<Subchannel> buildSchedule(List<Subchannel> list, List<Integer> weights) {
+      int n = list.size();
+      int[] scaled = new int[n];
+      long total = 0;
+      boolean uniform = true;
+      for (int i = 0; i < n; i++) {
+        scaled[i] = Math.max(1, weights.get(i));
+        total += scaled[i];
+        uniform &= scaled[i] == scaled[0];
+      }
+      if (uniform) {
+        return list;
+      }
+      if (total > MAX_SCHEDULE_SIZE) {
+        long newTotal = 0;
+        for (int i = 0; i < n; i++) {
+          scaled[i] = (int) Math.max(1, (long) scaled[i] * MAX_SCHEDULE_SIZE / total);
+          newTotal += scaled[i];
         }
-        return val;
+        total = newTotal;
       }
+      int gcd = 0;
+      for (int i = 0; i < n; i++) {
+        gcd = gcd(gcd, scaled[i]);
+      }
+      total /= gcd;
+      for (int i = 0; i < n; i++) {
+        scaled[i] /= gcd;
+      }
+
+      List<Subchannel> schedule = new ArrayList<Subchannel>((int) total);
+      long[] current = new long[n];
+      for (int step = 0; step < total; step++) {
+        int best = 0;
+        for (int i = 0; i < n; i++) {
+          current[i] += scaled[i];
+          if (current[i] > current[best]) {
+            best = i;
+          }
+        }
+        current[best] -= total;
+        schedule.add(list.get(best));
+      }
+      return Collections.unmodifiableList(schedule);
+    }
+
+    private static int gcd(int a, int b) {
+      while (b != 0) {
+        int t = a % b;
+        a = b;
+        b = t;
+      }
+      return a;
     }
 
     @VisibleForTesting
@@ -261,6 +396,11 @@ public class RoundRobinLoadBalancerFactory extends LoadBalancer.Factory {
       return list;
     }
 
+    @VisibleForTesting
+    List<Subchannel> getSchedule() {
+      return schedule;
+    }
+
     @VisibleForTesting
     Status getStatus() {
       return status;
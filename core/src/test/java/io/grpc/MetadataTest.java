@@ -22,6 +22,7 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -345,6 +346,89 @@ public class MetadataTest {
     }
   }
 
+  @Test
+  public void wellKnownNamesFromTransportMatchKeys() {
+    Key<String> userAgent = Key.of("user-agent", Metadata.ASCII_STRING_MARSHALLER);
+    Metadata metadata = new Metadata(
+        "user-agent".getBytes(US_ASCII), "agent".getBytes(US_ASCII),
+        "te".getBytes(US_ASCII), "trailers".getBytes(US_ASCII));
+
+    assertEquals("agent", metadata.get(userAgent));
+    assertTrue(metadata.containsKey(userAgent));
+    assertFalse(metadata.containsKey(GrpcUtil.CONTENT_TYPE_KEY));
+    assertEquals("trailers", metadata.get(Key.of("TE", Metadata.ASCII_STRING_MARSHALLER)));
+  }
+
+  @Test
+  public void parsedValuesAreCached() {
+    CountingMarshaller marshaller = new CountingMarshaller();
+    Key<String> key = Key.of("test", marshaller);
+    Metadata metadata = new Metadata();
+    metadata.put(key, "value");
+
+    assertEquals("value", metadata.get(key));
+    assertEquals("value", metadata.get(key));
+    assertEquals(Arrays.asList("value"), Lists.newArrayList(metadata.getAll(key)));
+    assertEquals(1, marshaller.parses);
+  }
+
+  @Test
+  public void parsedValuesAreNotSharedBetweenKeys() {
+    CountingMarshaller marshaller = new CountingMarshaller();
+    Key<String> key = Key.of("test", Metadata.ASCII_STRING_MARSHALLER);
+    Key<String> sameName = Key.of("test", marshaller);
+    Metadata metadata = new Metadata();
+    metadata.put(key, "value");
+
+    assertEquals("value", metadata.get(key));
+    assertEquals("value", metadata.get(sameName));
+    assertEquals(1, marshaller.parses);
+  }
+
+  @Test
+  public void mutableValuesAreNotCached() {
+    Fish lance = new Fish(LANCE);
+    Metadata metadata = new Metadata();
+    metadata.put(KEY, lance);
+
+    Fish first = metadata.get(KEY);
+    Fish second = metadata.get(KEY);
+    assertEquals(first, second);
+    assertNotSame(first, second);
+  }
+
+  @Test
+  public void removalDropsParsedValues() {
+    Key<String> key = Key.of("test", Metadata.ASCII_STRING_MARSHALLER);
+    Key<String> other = Key.of("other", Metadata.ASCII_STRING_MARSHALLER);
+    Metadata metadata = new Metadata();
+    metadata.put(key, "value");
+    metadata.put(other, "other-value");
+    assertEquals("value", metadata.get(key));
+    assertEquals("other-value", metadata.get(other));
+
+    metadata.discardAll(key);
+    assertNull(metadata.get(key));
+    assertEquals("other-value", metadata.get(other));
+    metadata.put(key, "new-value");
+    assertEquals("new-value", metadata.get(key));
+  }
+
+  private static final class CountingMarshaller implements Metadata.AsciiMarshaller<String> {
+    int parses;
+
+    @Override
+    public String toAsciiString(String value) {
+      return value;
+    }
+
+    @Override
+    public String parseAsciiString(String serialized) {
+      parses++;
+      return serialized;
+    }
+  }
+
   private static class Fish {
     private String name;
 
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc;
+
+import static com.google.common.base.Charsets.US_ASCII;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for {@link WellKnownHeaderNames}.
+ */
+@RunWith(JUnit4.class)
+public class WellKnownHeaderNamesTest {
+
+  @Test
+  public void wellKnownNamesAreInterned() {
+    for (String name : WellKnownHeaderNames.NAMES) {
+      byte[] canonical = WellKnownHeaderNames.intern(name.getBytes(US_ASCII));
+      assertSame(canonical, WellKnownHeaderNames.intern(name.getBytes(US_ASCII)));
+    }
+  }
+
+  @Test
+  public void otherNamesAreReturnedAsIs() {
+    byte[] name = "authorization".getBytes(US_ASCII);
+    assertSame(name, WellKnownHeaderNames.intern(name));
+
+    byte[] empty = new byte[0];
+    assertSame(empty, WellKnownHeaderNames.intern(empty));
+  }
+}
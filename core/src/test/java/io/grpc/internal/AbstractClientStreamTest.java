@@ -34,6 +34,7 @@ import io.grpc.Status;
 import io.grpc.Status.Code;
 import io.grpc.StreamTracer;
 import io.grpc.internal.AbstractClientStream.TransportState;
+import io.grpc.internal.ClientStreamListener.RpcProgress;
 import io.grpc.internal.MessageFramerTest.ByteWritableBuffer;
 import java.io.ByteArrayInputStream;
 import org.junit.Before;
@@ -208,6 +209,18 @@ public class AbstractClientStreamTest {
 
     verify(mockListener).closed(any(Status.class), any(Metadata.class));
   }
+
+  @Test
+  public void refusedStreamReportsRpcProgress() {
+    AbstractClientStream stream = new BaseAbstractClientStream(allocator, statsTraceCtx);
+    stream.start(mockListener);
+    Metadata trailers = new Metadata();
+    stream.transportState().transportReportStatus(
+        Status.UNAVAILABLE, RpcProgress.REFUSED, false, trailers);
+
+    verify(mockListener).closed(Status.UNAVAILABLE, RpcProgress.REFUSED, trailers);
+    verify(mockListener, never()).closed(any(Status.class), any(Metadata.class));
+  }
   
   @Test
   public void getRequest() {
@@ -17,9 +17,11 @@
 package io.grpc.internal;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
@@ -72,6 +74,16 @@ public class AbstractManagedChannelImplBuilderTest {
     assertEquals(MoreExecutors.directExecutor(), builder.executorPool.getObject());
   }
 
+  @Test
+  public void threadPerCallExecutor() {
+    ObjectPool<? extends Executor> defaultValue = builder.executorPool;
+    assertEquals(builder, builder.threadPerCallExecutor());
+    assertNotEquals(defaultValue, builder.executorPool);
+
+    builder.executor(null);
+    assertEquals(defaultValue, builder.executorPool);
+  }
+
   @Test
   public void nameResolverFactory_default() {
     assertNotNull(builder.nameResolverFactory);
@@ -249,6 +261,82 @@ public class AbstractManagedChannelImplBuilderTest {
     assertEquals(TimeUnit.SECONDS.toMillis(30), builder.getIdleTimeoutMillis());
   }
 
+  @Test
+  public void connectionPool() {
+    Builder builder = new Builder("target");
+
+    assertEquals(1, builder.maxConnectionsPerAddress);
+    assertEquals(AbstractManagedChannelImplBuilder.DEFAULT_CONNECTION_POOL_STREAM_THRESHOLD,
+        builder.connectionPoolStreamThreshold);
+
+    assertEquals(builder, builder.maxConnectionsPerAddress(4));
+    assertEquals(4, builder.maxConnectionsPerAddress);
+    assertEquals(builder, builder.connectionPoolStreamThreshold(10));
+    assertEquals(10, builder.connectionPoolStreamThreshold);
+
+    try {
+      builder.maxConnectionsPerAddress(0);
+      fail("Should throw");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      builder.connectionPoolStreamThreshold(0);
+      fail("Should throw");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void retry() {
+    Builder builder = new Builder("target");
+
+    assertFalse(builder.retryEnabled);
+    assertEquals(AbstractManagedChannelImplBuilder.DEFAULT_MAX_RETRY_ATTEMPTS,
+        builder.maxRetryAttempts);
+    assertEquals(AbstractManagedChannelImplBuilder.DEFAULT_RETRY_BUFFER_SIZE_IN_BYTES,
+        builder.retryBufferSize);
+    assertEquals(AbstractManagedChannelImplBuilder.DEFAULT_PER_RPC_BUFFER_LIMIT_IN_BYTES,
+        builder.perRpcBufferLimit);
+
+    assertEquals(builder, builder.enableRetry());
+    assertTrue(builder.retryEnabled);
+    assertEquals(builder, builder.maxRetryAttempts(3));
+    assertEquals(3, builder.maxRetryAttempts);
+    assertEquals(builder, builder.retryBackoff(1, 2, TimeUnit.SECONDS));
+    assertEquals(TimeUnit.SECONDS.toNanos(1), builder.retryInitialBackoffNanos);
+    assertEquals(TimeUnit.SECONDS.toNanos(2), builder.retryMaxBackoffNanos);
+    assertEquals(builder, builder.retryThrottling(20, 0.5));
+    assertEquals(20, builder.retryMaxTokens);
+    assertEquals(0.5, builder.retryTokenRatio, 0);
+    assertEquals(builder, builder.retryBufferSize(100));
+    assertEquals(100, builder.retryBufferSize);
+    assertEquals(builder, builder.perRpcBufferLimit(10));
+    assertEquals(10, builder.perRpcBufferLimit);
+    assertEquals(builder, builder.disableRetry());
+    assertFalse(builder.retryEnabled);
+
+    try {
+      builder.maxRetryAttempts(1);
+      fail("Should throw");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      builder.retryBackoff(2, 1, TimeUnit.SECONDS);
+      fail("Should throw");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      builder.perRpcBufferLimit(0);
+      fail("Should throw");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
   @Test
   public void overrideAuthorityNameResolverWrapsDelegateTest() {
     NameResolver nameResolverMock = mock(NameResolver.class);
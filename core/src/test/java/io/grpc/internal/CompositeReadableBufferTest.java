@@ -18,6 +18,8 @@ package io.grpc.internal;
 
 import static com.google.common.base.Charsets.UTF_8;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 
@@ -156,6 +158,32 @@ public class CompositeReadableBufferTest {
     verify(mock2).close();
   }
 
+  @Test
+  public void getByteBufferShouldReturnFirstNonEmptyBuffer() {
+    composite = new CompositeReadableBuffer();
+    composite.addBuffer(ReadableBuffers.empty());
+    composite.addBuffer(ReadableBuffers.wrap("hello".getBytes(UTF_8)));
+    composite.addBuffer(ReadableBuffers.wrap(" world".getBytes(UTF_8)));
+    assertTrue(composite.byteBufferSupported());
+
+    ByteBuffer byteBuffer = composite.getByteBuffer();
+    assertEquals(5, byteBuffer.remaining());
+    assertEquals('h', byteBuffer.get());
+
+    composite.skipBytes(5);
+    assertEquals(6, composite.getByteBuffer().remaining());
+  }
+
+  @Test
+  public void byteBufferNotSupportedIfAnyBufferIsNot() {
+    composite = new CompositeReadableBuffer();
+    ReadableBuffer mock = mock(ReadableBuffer.class);
+    composite.addBuffer(ReadableBuffers.wrap("hello".getBytes(UTF_8)));
+    composite.addBuffer(mock);
+
+    assertFalse(composite.byteBufferSupported());
+  }
+
   private void splitAndAdd(String value) {
     int partLength = Math.max(1, value.length() / 4);
     for (int startIndex = 0, endIndex = 0; startIndex < value.length(); startIndex = endIndex) {
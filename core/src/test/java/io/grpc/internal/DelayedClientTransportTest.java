@@ -43,6 +43,9 @@ import io.grpc.MethodDescriptor;
 import io.grpc.MethodDescriptor.MethodType;
 import io.grpc.Status;
 import io.grpc.StringMarshaller;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
@@ -277,6 +280,76 @@ public class DelayedClientTransportTest {
     assertEquals(Status.Code.UNAVAILABLE, statusCaptor.getValue().getCode());
   }
 
+  @Test public void streamsFromManyThreadsAreAllReprocessed() throws Exception {
+    final int threads = DelayedClientTransport.STRIPE_COUNT * 2;
+    final List<ClientStream> streams = Collections.synchronizedList(new ArrayList<ClientStream>());
+    List<Thread> creators = new ArrayList<Thread>();
+    for (int i = 0; i < threads; i++) {
+      Thread thread = new Thread(new Runnable() {
+          @Override
+          public void run() {
+            streams.add(delayedTransport.newStream(method, headers, callOptions));
+          }
+        });
+      creators.add(thread);
+      thread.start();
+    }
+    for (Thread thread : creators) {
+      thread.join(5000);
+    }
+    assertEquals(threads, delayedTransport.getPendingStreamsCount());
+    verify(transportListener).transportInUse(true);
+
+    delayedTransport.reprocess(mockPicker);
+
+    assertEquals(0, delayedTransport.getPendingStreamsCount());
+    verify(transportListener).transportInUse(false);
+    fakeExecutor.runDueTasks();
+    verify(mockRealTransport, times(threads))
+        .newStream(same(method), same(headers), same(callOptions));
+    for (ClientStream stream : streams) {
+      assertSame(mockRealStream, ((DelayedStream) stream).getRealStream());
+    }
+  }
+
+  @Test public void reprocessDispatchesInBatchesAndRecordsDelay() {
+    int count = DelayedClientTransport.DISPATCH_BATCH_SIZE * 2 + 1;
+    for (int i = 0; i < count; i++) {
+      delayedTransport.newStream(method, headers, callOptions);
+    }
+    assertEquals(0, delayedTransport.getDispatchedStreamsCount());
+
+    delayedTransport.reprocess(mockPicker);
+
+    assertEquals(3, fakeExecutor.runDueTasks());
+    verify(mockRealTransport, times(count))
+        .newStream(same(method), same(headers), same(callOptions));
+    assertEquals(count, delayedTransport.getDispatchedStreamsCount());
+    assertTrue(delayedTransport.getTotalPickDelayNanos() >= 0);
+  }
+
+  @Test public void shutdownNowCancelsStreamsInAllStripes() throws Exception {
+    ClientStream stream1 = delayedTransport.newStream(method, headers, callOptions);
+    stream1.start(streamListener);
+    final ClientStreamListener streamListener2 = mock(ClientStreamListener.class);
+    Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          delayedTransport.newStream(method, headers, callOptions).start(streamListener2);
+        }
+      });
+    thread.start();
+    thread.join(5000);
+    assertEquals(2, delayedTransport.getPendingStreamsCount());
+
+    delayedTransport.shutdownNow(Status.UNAVAILABLE);
+
+    verify(streamListener).closed(same(Status.UNAVAILABLE), any(Metadata.class));
+    verify(streamListener2).closed(same(Status.UNAVAILABLE), any(Metadata.class));
+    verify(transportListener).transportTerminated();
+    assertEquals(0, delayedTransport.getPendingStreamsCount());
+  }
+
   @Test public void reprocessSemantics() {
     CallOptions failFastCallOptions = CallOptions.DEFAULT.withOption(SHARD_ID, 1);
     CallOptions waitForReadyCallOptions = CallOptions.DEFAULT.withOption(SHARD_ID, 2)
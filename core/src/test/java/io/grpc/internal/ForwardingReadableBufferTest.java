@@ -21,6 +21,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -134,6 +135,21 @@ public class ForwardingReadableBufferTest {
     assertEquals(1, buffer.arrayOffset());
   }
 
+  @Test
+  public void byteBufferSupported() {
+    when(delegate.byteBufferSupported()).thenReturn(true);
+
+    assertEquals(true, buffer.byteBufferSupported());
+  }
+
+  @Test
+  public void getByteBuffer() {
+    ByteBuffer byteBuffer = ByteBuffer.allocate(1);
+    when(delegate.getByteBuffer()).thenReturn(byteBuffer);
+
+    assertEquals(byteBuffer, buffer.getByteBuffer());
+  }
+
   @Test
   public void close() {
     buffer.close();
@@ -24,6 +24,9 @@ import static org.junit.Assert.assertTrue;
 
 import io.grpc.Status;
 import io.grpc.internal.GrpcUtil.Http2Error;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -115,6 +118,25 @@ public class GrpcUtilTest {
     assertEquals(Long.MAX_VALUE, (long) marshaller.parseAsciiString("2562048H"));
   }
 
+  @Test
+  public void threadPerCallExecutor() throws Exception {
+    ExecutorService executor = GrpcUtil.SHARED_THREAD_PER_CALL_EXECUTOR.create();
+    try {
+      final CountDownLatch latch = new CountDownLatch(2);
+      Runnable countDown = new Runnable() {
+        @Override
+        public void run() {
+          latch.countDown();
+        }
+      };
+      executor.execute(countDown);
+      executor.execute(countDown);
+      assertTrue(latch.await(5, TimeUnit.SECONDS));
+    } finally {
+      GrpcUtil.SHARED_THREAD_PER_CALL_EXECUTOR.close(executor);
+    }
+  }
+
   @Test
   public void grpcUserAgent() {
     assertTrue(GrpcUtil.getGrpcUserAgent("netty", null).startsWith("grpc-java-netty"));
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for {@link HashedWheelTimerService}.
+ */
+@RunWith(JUnit4.class)
+public class HashedWheelTimerServiceTest {
+  private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final FakeClock fakeClock = new FakeClock();
+  private final HashedWheelTimerService timerService =
+      new HashedWheelTimerService(fakeClock.getTicker(), TICK_NANOS);
+  private final List<Long> runTimes = new ArrayList<Long>();
+
+  @Test
+  public void runsTimerWhenDue() {
+    timerService.schedule(new RecordRun(), 10, TimeUnit.MILLISECONDS);
+    forwardAndExpire(TimeUnit.MILLISECONDS.toNanos(10) - 1);
+    assertEquals(0, runTimes.size());
+
+    forwardAndExpire(1);
+    assertEquals(1, runTimes.size());
+  }
+
+  @Test
+  public void delaysAreRoundedUpToTick() {
+    timerService.schedule(new RecordRun(), TICK_NANOS + TICK_NANOS / 2, TimeUnit.NANOSECONDS);
+    forwardAndExpire(TICK_NANOS);
+    assertEquals(0, runTimes.size());
+
+    forwardAndExpire(TICK_NANOS);
+    assertEquals(1, runTimes.size());
+  }
+
+  @Test
+  public void executeRunsOnNextExpiry() {
+    timerService.execute(new RecordRun());
+    timerService.schedule(new RecordRun(), 0, TimeUnit.NANOSECONDS);
+    assertEquals(0, runTimes.size());
+
+    timerService.expireTimers();
+    assertEquals(2, runTimes.size());
+  }
+
+  @Test
+  public void timersWithTheSameDeadlineRunInOrder() {
+    final List<Integer> order = new ArrayList<Integer>();
+    for (int i = 0; i < 3; i++) {
+      final int index = i;
+      timerService.schedule(new Runnable() {
+        @Override
+        public void run() {
+          order.add(index);
+        }
+      }, 5, TimeUnit.MILLISECONDS);
+    }
+    forwardAndExpire(TimeUnit.MILLISECONDS.toNanos(5));
+    assertEquals(3, order.size());
+    assertEquals(0, (int) order.get(0));
+    assertEquals(1, (int) order.get(1));
+    assertEquals(2, (int) order.get(2));
+  }
+
+  @Test
+  public void cancelledTimerIsRemoved() {
+    ScheduledFuture<?> future = timerService.schedule(new RecordRun(), 10, TimeUnit.SECONDS);
+    assertEquals(HashedWheelTimerService.WHEEL_SIZE, timerService.expireTimers());
+
+    assertTrue(future.cancel(false));
+    assertEquals(Long.MAX_VALUE, timerService.expireTimers());
+    forwardAndExpire(TimeUnit.SECONDS.toNanos(10));
+    assertEquals(0, runTimes.size());
+  }
+
+  @Test
+  public void cancelBeforeAdded() {
+    ScheduledFuture<?> future = timerService.schedule(new RecordRun(), 10, TimeUnit.MILLISECONDS);
+    assertTrue(future.cancel(false));
+    assertEquals(Long.MAX_VALUE, timerService.expireTimers());
+    assertTrue(future.isCancelled());
+  }
+
+  @Test
+  public void timersInUpperWheelsAreCascaded() {
+    // One timer in each wheel, the last in the top one
+    long[] delayTicks = new long[] {200, 300, 70000, (1L << 24) + 5};
+    for (long ticks : delayTicks) {
+      timerService.schedule(new RecordRun(), ticks * TICK_NANOS, TimeUnit.NANOSECONDS);
+    }
+    long startNanos = fakeClock.getTicker().read();
+    runLikeWorker(startNanos + ((1L << 24) + 10) * TICK_NANOS);
+
+    assertEquals(delayTicks.length, runTimes.size());
+    for (int i = 0; i < delayTicks.length; i++) {
+      assertEquals(startNanos + delayTicks[i] * TICK_NANOS, (long) runTimes.get(i));
+    }
+  }
+
+  @Test
+  public void timerScheduledWhileTicksAreSkipped() {
+    // With no timers, expiring catches up at once
+    fakeClock.forwardNanos(TimeUnit.HOURS.toNanos(1));
+    timerService.expireTimers();
+
+    timerService.schedule(new RecordRun(), 3, TimeUnit.MILLISECONDS);
+    forwardAndExpire(TimeUnit.MILLISECONDS.toNanos(3));
+    assertEquals(1, runTimes.size());
+  }
+
+  @Test
+  public void scheduleAtFixedRate() {
+    ScheduledFuture<?> future =
+        timerService.scheduleAtFixedRate(new RecordRun(), 5, 10, TimeUnit.MILLISECONDS);
+    forwardAndExpire(TimeUnit.MILLISECONDS.toNanos(5));
+    assertEquals(1, runTimes.size());
+    forwardAndExpire(TimeUnit.MILLISECONDS.toNanos(10));
+    assertEquals(2, runTimes.size());
+    forwardAndExpire(TimeUnit.MILLISECONDS.toNanos(10));
+    assertEquals(3, runTimes.size());
+
+    future.cancel(false);
+    forwardAndExpire(TimeUnit.MILLISECONDS.toNanos(10));
+    assertEquals(3, runTimes.size());
+  }
+
+  @Test
+  public void scheduleCallable() throws Exception {
+    ScheduledFuture<String> future = timerService.schedule(new Callable<String>() {
+      @Override
+      public String call() {
+        return "result";
+      }
+    }, 1, TimeUnit.MILLISECONDS);
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(1), future.getDelay(TimeUnit.NANOSECONDS));
+    forwardAndExpire(TICK_NANOS);
+    assertTrue(future.isDone());
+    assertEquals("result", future.get());
+  }
+
+  @Test
+  public void shutdownCancelsTimers() {
+    ScheduledFuture<?> future = timerService.schedule(new RecordRun(), 1, TimeUnit.SECONDS);
+    timerService.expireTimers();
+    timerService.shutdown();
+    assertTrue(timerService.isShutdown());
+    assertTrue(timerService.isTerminated());
+    assertTrue(future.isCancelled());
+
+    try {
+      timerService.schedule(new RecordRun(), 1, TimeUnit.SECONDS);
+      fail("Should throw");
+    } catch (RejectedExecutionException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void workerRunsTimers() throws Exception {
+    HashedWheelTimerService service =
+        new HashedWheelTimerService(Executors.defaultThreadFactory());
+    try {
+      final CountDownLatch latch = new CountDownLatch(2);
+      Runnable countDown = new Runnable() {
+        @Override
+        public void run() {
+          latch.countDown();
+        }
+      };
+      // The worker first sleeps for the longer timer, and is woken up by the shorter one
+      ScheduledFuture<?> longTimer = service.schedule(countDown, 1, TimeUnit.HOURS);
+      Thread.sleep(10);
+      service.schedule(countDown, 1, TimeUnit.MILLISECONDS);
+      service.execute(countDown);
+      assertTrue(latch.await(5, TimeUnit.SECONDS));
+      assertFalse(longTimer.isDone());
+    } finally {
+      service.shutdown();
+    }
+    assertTrue(service.awaitTermination(5, TimeUnit.SECONDS));
+  }
+
+  private void forwardAndExpire(long nanos) {
+    fakeClock.forwardNanos(nanos);
+    timerService.expireTimers();
+  }
+
+  /**
+   * Advances the clock to each tick the worker would wake up at, until the given time.
+   */
+  private void runLikeWorker(long endNanos) {
+    long startNanos = fakeClock.getTicker().read();
+    long nextTick = timerService.expireTimers();
+    while (nextTick != Long.MAX_VALUE) {
+      long wakeUpNanos = startNanos + nextTick * TICK_NANOS;
+      if (wakeUpNanos > endNanos) {
+        return;
+      }
+      fakeClock.forwardNanos(wakeUpNanos - fakeClock.getTicker().read());
+      nextTick = timerService.expireTimers();
+    }
+  }
+
+  private final class RecordRun implements Runnable {
+    @Override
+    public void run() {
+      runTimes.add(fakeClock.getTicker().read());
+    }
+  }
+}
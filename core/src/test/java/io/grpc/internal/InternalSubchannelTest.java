@@ -24,6 +24,7 @@ import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -31,14 +32,20 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import io.grpc.CallOptions;
+import io.grpc.ClientStreamTracer;
 import io.grpc.ConnectivityState;
 import io.grpc.ConnectivityStateInfo;
 import io.grpc.EquivalentAddressGroup;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
 import io.grpc.Status;
 import io.grpc.internal.TestUtils.MockClientTransportInfo;
+import io.grpc.testing.TestMethodDescriptors;
 import java.net.SocketAddress;
 import java.util.Arrays;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.After;
@@ -46,6 +53,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
@@ -845,6 +853,159 @@ public class InternalSubchannelTest {
     assertEquals(3, runnableInvokes.get());
   }
 
+  @Test
+  public void pooling_disabledByDefault() {
+    SocketAddress addr = mock(SocketAddress.class);
+    createInternalSubchannel(addr);
+    internalSubchannel.obtainActiveTransport();
+    MockClientTransportInfo t0 = transports.poll();
+    t0.listener.transportReady();
+    assertExactCallbackInvokes("onStateChange:CONNECTING", "onStateChange:READY");
+
+    for (int i = 0; i < 10; i++) {
+      assertSame(t0.transport, internalSubchannel.obtainActiveTransport());
+    }
+    verify(mockTransportFactory).newClientTransport(addr, AUTHORITY, USER_AGENT);
+  }
+
+  @Test
+  public void pooling_opensTransportsWhenSaturated() {
+    SocketAddress addr = mock(SocketAddress.class);
+    createPooledInternalSubchannel(2, 2, addr);
+    internalSubchannel.obtainActiveTransport();
+    MockClientTransportInfo t0 = transports.poll();
+    t0.listener.transportReady();
+    assertExactCallbackInvokes("onStateChange:CONNECTING", "onStateChange:READY");
+
+    startStream(t0);
+    startStream(t0);
+    verify(mockTransportFactory).newClientTransport(addr, AUTHORITY, USER_AGENT);
+    assertEquals(0, transports.size());
+
+    // Both streams are on the only transport, so the next pick grows the pool
+    internalSubchannel.obtainActiveTransport();
+    verify(mockTransportFactory, times(2)).newClientTransport(addr, AUTHORITY, USER_AGENT);
+    MockClientTransportInfo t1 = transports.poll();
+    // Only one transport is opened at a time
+    internalSubchannel.obtainActiveTransport();
+    verify(mockTransportFactory, times(2)).newClientTransport(addr, AUTHORITY, USER_AGENT);
+
+    // The new transport doesn't change the subchannel state, and takes the next streams
+    t1.listener.transportReady();
+    assertNoCallbackInvoke();
+    startStream(t1);
+    startStream(t1);
+
+    // The pool is full
+    internalSubchannel.obtainActiveTransport();
+    verify(mockTransportFactory, times(2)).newClientTransport(addr, AUTHORITY, USER_AGENT);
+
+    internalSubchannel.shutdown();
+    verify(t0.transport).shutdown();
+    verify(t1.transport).shutdown();
+    assertExactCallbackInvokes("onStateChange:SHUTDOWN");
+  }
+
+  @Test
+  public void pooling_closesIdleTransport() {
+    SocketAddress addr = mock(SocketAddress.class);
+    createPooledInternalSubchannel(2, 1, addr);
+    internalSubchannel.obtainActiveTransport();
+    MockClientTransportInfo t0 = transports.poll();
+    t0.listener.transportReady();
+    assertExactCallbackInvokes("onStateChange:CONNECTING", "onStateChange:READY");
+
+    startStream(t0);
+    internalSubchannel.obtainActiveTransport();
+    MockClientTransportInfo t1 = transports.poll();
+    t1.listener.transportReady();
+    ClientStreamTracer tracer = startStream(t1);
+
+    // Still busy when the first idle check runs
+    fakeClock.forwardNanos(InternalSubchannel.POOLED_TRANSPORT_IDLE_NANOS);
+    verify(t1.transport, never()).shutdown();
+
+    tracer.streamClosed(Status.OK);
+    t1.listener.transportInUse(false);
+    fakeClock.forwardNanos(InternalSubchannel.POOLED_TRANSPORT_IDLE_NANOS - 1);
+    verify(t1.transport, never()).shutdown();
+    fakeClock.forwardNanos(1);
+    verify(t1.transport).shutdown();
+    t1.listener.transportShutdown(Status.UNAVAILABLE);
+    t1.listener.transportTerminated();
+
+    // The primary transport is never closed for being idle
+    verify(t0.transport, never()).shutdown();
+    assertEquals(ConnectivityState.READY, internalSubchannel.getState());
+    assertNoCallbackInvoke();
+  }
+
+  @Test
+  public void pooling_primaryShutdownPromotesReadyTransport() {
+    SocketAddress addr = mock(SocketAddress.class);
+    createPooledInternalSubchannel(2, 1, addr);
+    internalSubchannel.obtainActiveTransport();
+    MockClientTransportInfo t0 = transports.poll();
+    t0.listener.transportReady();
+    assertExactCallbackInvokes("onStateChange:CONNECTING", "onStateChange:READY");
+
+    startStream(t0);
+    internalSubchannel.obtainActiveTransport();
+    MockClientTransportInfo t1 = transports.poll();
+    t1.listener.transportReady();
+
+    t0.listener.transportShutdown(Status.UNAVAILABLE);
+    assertNoCallbackInvoke();
+    assertEquals(ConnectivityState.READY, internalSubchannel.getState());
+    startStream(t1);
+
+    // Once the last transport goes away the subchannel is IDLE
+    t1.listener.transportShutdown(Status.UNAVAILABLE);
+    assertExactCallbackInvokes("onStateChange:IDLE");
+    assertEquals(0, fakeClock.numPendingTasks());
+  }
+
+  @Test
+  public void pooling_failedTransportDelaysRetry() {
+    SocketAddress addr = mock(SocketAddress.class);
+    createPooledInternalSubchannel(2, 1, addr);
+    internalSubchannel.obtainActiveTransport();
+    MockClientTransportInfo t0 = transports.poll();
+    t0.listener.transportReady();
+    assertExactCallbackInvokes("onStateChange:CONNECTING", "onStateChange:READY");
+
+    startStream(t0);
+    internalSubchannel.obtainActiveTransport();
+    transports.poll().listener.transportShutdown(Status.UNAVAILABLE);
+    // The subchannel is unaffected
+    assertNoCallbackInvoke();
+    assertEquals(ConnectivityState.READY, internalSubchannel.getState());
+
+    internalSubchannel.obtainActiveTransport();
+    verify(mockTransportFactory, times(2)).newClientTransport(addr, AUTHORITY, USER_AGENT);
+    fakeClock.forwardNanos(InternalSubchannel.POOLED_TRANSPORT_RETRY_NANOS);
+    internalSubchannel.obtainActiveTransport();
+    verify(mockTransportFactory, times(3)).newClientTransport(addr, AUTHORITY, USER_AGENT);
+    transports.poll().listener.transportShutdown(Status.UNAVAILABLE);
+    fakeClock.forwardNanos(InternalSubchannel.POOLED_TRANSPORT_RETRY_NANOS);
+  }
+
+  /**
+   * Starts a stream on the subchannel, expecting it to be created on {@code expected}, and returns
+   * the tracer the subchannel counts it with.
+   */
+  private ClientStreamTracer startStream(MockClientTransportInfo expected) {
+    MethodDescriptor<Void, Void> method = TestMethodDescriptors.voidMethod();
+    ClientTransport transport = internalSubchannel.obtainActiveTransport();
+    transport.newStream(method, new Metadata(), CallOptions.DEFAULT);
+    ArgumentCaptor<CallOptions> callOptionsCaptor = ArgumentCaptor.forClass(CallOptions.class);
+    verify(expected.transport, atLeastOnce())
+        .newStream(same(method), any(Metadata.class), callOptionsCaptor.capture());
+    List<ClientStreamTracer.Factory> factories =
+        callOptionsCaptor.getValue().getStreamTracerFactories();
+    return factories.get(factories.size() - 1).newClientStreamTracer(new Metadata());
+  }
+
   private void createInternalSubchannel(SocketAddress ... addrs) {
     addressGroup = new EquivalentAddressGroup(Arrays.asList(addrs));
     internalSubchannel = new InternalSubchannel(addressGroup, AUTHORITY, USER_AGENT,
@@ -852,6 +1013,15 @@ public class InternalSubchannelTest {
         fakeClock.getStopwatchSupplier(), channelExecutor, mockInternalSubchannelCallback);
   }
 
+  private void createPooledInternalSubchannel(
+      int maxConnections, int streamsPerConnection, SocketAddress ... addrs) {
+    addressGroup = new EquivalentAddressGroup(Arrays.asList(addrs));
+    internalSubchannel = new InternalSubchannel(addressGroup, AUTHORITY, USER_AGENT,
+        mockBackoffPolicyProvider, mockTransportFactory, fakeClock.getScheduledExecutorService(),
+        fakeClock.getStopwatchSupplier(), channelExecutor, mockInternalSubchannelCallback,
+        maxConnections, streamsPerConnection);
+  }
+
   private void assertNoCallbackInvoke() {
     while (fakeExecutor.runDueTasks() > 0) {}
     assertEquals(0, callbackInvokes.size());
@@ -49,6 +49,7 @@ import io.grpc.CallCredentials;
 import io.grpc.CallCredentials.MetadataApplier;
 import io.grpc.CallOptions;
 import io.grpc.Channel;
+import io.grpc.ChannelStats;
 import io.grpc.ClientCall;
 import io.grpc.ClientInterceptor;
 import io.grpc.ClientStreamTracer;
@@ -474,6 +475,32 @@ public class ManagedChannelImplTest {
     verify(mockCallListener).onClose(same(Status.CANCELLED), same(trailers));
   }
 
+  @Test
+  public void getStats_countsPicks() {
+    Metadata headers = new Metadata();
+    createChannel(new FakeNameResolverFactory(true), NO_INTERCEPTOR);
+    ClientCall<String, Integer> call = channel.newCall(method, CallOptions.DEFAULT);
+    call.start(mockCallListener, headers);
+    assertEquals(1, channel.getStats().getPendingPicks());
+    assertEquals(0, channel.getStats().getCompletedPicks());
+
+    Subchannel subchannel = helper.createSubchannel(addressGroup, Attributes.EMPTY);
+    subchannel.requestConnection();
+    MockClientTransportInfo transportInfo = transports.poll();
+    when(transportInfo.transport.newStream(same(method), same(headers), any(CallOptions.class)))
+        .thenReturn(mock(ClientStream.class));
+    transportInfo.listener.transportReady();
+    when(mockPicker.pickSubchannel(any(PickSubchannelArgs.class)))
+        .thenReturn(PickResult.withSubchannel(subchannel));
+    helper.updatePicker(mockPicker);
+    executor.runDueTasks();
+
+    ChannelStats stats = channel.getStats();
+    assertEquals(0, stats.getPendingPicks());
+    assertEquals(1, stats.getCompletedPicks());
+    assertTrue(stats.getTotalPickDelayNanos() >= 0);
+  }
+
   @Test
   public void nameResolutionFailed() {
     Status error = Status.UNAVAILABLE.withCause(new Throwable("fake name resolution error"));
@@ -21,6 +21,7 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -39,6 +40,7 @@ import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
@@ -348,6 +350,48 @@ public class MessageFramerTest {
     checkStats(1, 0, 0);
   }
 
+  @Test
+  public void largeBufferBackedPayloadIsWrapped() {
+    ZeroCopyBytesWritableBufferAllocator allocator =
+        new ZeroCopyBytesWritableBufferAllocator(1000, 1000);
+    framer = new MessageFramer(sink, allocator, statsTraceCtx);
+    byte[] first = new byte[5000];
+    byte[] second = new byte[3000];
+    Arrays.fill(first, (byte) 1);
+    Arrays.fill(second, (byte) 2);
+    CompositeReadableBuffer payload = new CompositeReadableBuffer();
+    payload.addBuffer(ReadableBuffers.wrap(first));
+    payload.addBuffer(ReadableBuffers.wrap(second));
+
+    framer.writePayload(ReadableBuffers.openStream(payload, true));
+    framer.flush();
+
+    InOrder inOrder = inOrder(sink);
+    inOrder.verify(sink).deliverFrame(
+        toWriteBuffer(new byte[] {0, 0, 0, 0x1f, 0x40}), false, false);
+    inOrder.verify(sink).deliverFrame(toWriteBuffer(first), false, false);
+    inOrder.verify(sink).deliverFrame(toWriteBuffer(second), false, true);
+    verifyNoMoreInteractions(sink);
+    assertEquals(2, allocator.wrapCount);
+    assertEquals(0, payload.readableBytes());
+    checkStats(1, 8000, 8000);
+  }
+
+  @Test
+  public void smallBufferBackedPayloadIsCopied() {
+    ZeroCopyBytesWritableBufferAllocator allocator =
+        new ZeroCopyBytesWritableBufferAllocator(1000, 1000);
+    framer = new MessageFramer(sink, allocator, statsTraceCtx);
+
+    framer.writePayload(ReadableBuffers.openStream(ReadableBuffers.wrap(new byte[]{3, 14}), true));
+    framer.flush();
+
+    verify(sink).deliverFrame(toWriteBuffer(new byte[] {0, 0, 0, 0, 2, 3, 14}), false, true);
+    verifyNoMoreInteractions(sink);
+    assertEquals(0, allocator.wrapCount);
+    checkStats(1, 2, 2);
+  }
+
   private static WritableBuffer toWriteBuffer(byte[] data) {
     return toWriteBufferWithMinSize(data, 0);
   }
@@ -460,4 +504,28 @@ public class MessageFramerTest {
       return new ByteWritableBuffer(Math.min(maxSize, Math.max(capacityHint, minSize)));
     }
   }
+
+  /**
+   * Simulates adopting array-backed buffers by giving each one a frame of its own.
+   */
+  static class ZeroCopyBytesWritableBufferAllocator extends BytesWritableBufferAllocator
+      implements ZeroCopyWritableBufferAllocator {
+    public int wrapCount = 0;
+
+    ZeroCopyBytesWritableBufferAllocator(int minSize, int maxSize) {
+      super(minSize, maxSize);
+    }
+
+    @Override
+    public WritableBuffer wrap(ReadableBuffer buffer) {
+      if (!buffer.hasArray()) {
+        return null;
+      }
+      wrapCount++;
+      ByteWritableBuffer wrapped = new ByteWritableBuffer(buffer.readableBytes());
+      wrapped.write(buffer.array(), buffer.arrayOffset(), buffer.readableBytes());
+      buffer.close();
+      return wrapped;
+    }
+  }
 }
@@ -35,4 +35,7 @@ class NoopClientStreamListener implements ClientStreamListener {
 
   @Override
   public void closed(Status status, Metadata trailers) {}
+
+  @Override
+  public void closed(Status status, RpcProgress rpcProgress, Metadata trailers) {}
 }
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import io.grpc.CallPriority;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Unit tests for {@link PriorityExecutor}.
+ */
+@RunWith(JUnit4.class)
+public class PriorityExecutorTest {
+  private final FakeClock delegate = new FakeClock();
+  private final List<Integer> runs = new ArrayList<Integer>();
+
+  private class AddToRuns implements Runnable {
+    private final int val;
+
+    AddToRuns(int val) {
+      this.val = val;
+    }
+
+    @Override
+    public void run() {
+      runs.add(val);
+    }
+  }
+
+  @Test
+  public void highPriorityRunsFirst() {
+    PriorityExecutor executor = new PriorityExecutor(delegate.getScheduledExecutorService(), 1);
+    executor.forPriority(CallPriority.LOW).execute(new AddToRuns(1));
+    executor.forPriority(CallPriority.NORMAL).execute(new AddToRuns(2));
+    executor.forPriority(CallPriority.LOW).execute(new AddToRuns(3));
+    executor.forPriority(CallPriority.HIGH).execute(new AddToRuns(4));
+
+    assertEquals(1, delegate.numPendingTasks());
+    assertEquals(1, delegate.runDueTasks());
+    assertThat(runs).containsExactly(4, 2, 1, 3).inOrder();
+  }
+
+  @Test
+  public void parallelismLimitsWorkers() {
+    PriorityExecutor executor = new PriorityExecutor(delegate.getScheduledExecutorService(), 2);
+    for (int i = 0; i < 5; i++) {
+      executor.forPriority(CallPriority.NORMAL).execute(new AddToRuns(i));
+    }
+
+    assertEquals(2, delegate.numPendingTasks());
+    delegate.runDueTasks();
+    assertThat(runs).containsExactly(0, 1, 2, 3, 4).inOrder();
+    assertEquals(0, delegate.numPendingTasks());
+
+    // Workers are submitted again once the queues have drained
+    executor.forPriority(CallPriority.NORMAL).execute(new AddToRuns(5));
+    assertEquals(1, delegate.numPendingTasks());
+  }
+
+  @Test
+  public void exceptionDoesNotStopWorker() {
+    PriorityExecutor executor = new PriorityExecutor(delegate.getScheduledExecutorService(), 1);
+    executor.forPriority(CallPriority.NORMAL).execute(new Runnable() {
+      @Override
+      public void run() {
+        throw new RuntimeException("Simulated failure");
+      }
+    });
+    executor.forPriority(CallPriority.NORMAL).execute(new AddToRuns(1));
+
+    delegate.runDueTasks();
+    assertThat(runs).containsExactly(1);
+  }
+
+  @Test
+  public void rejectedTaskIsRemoved() {
+    class CoyExecutor implements Executor {
+      int runCount;
+
+      @Override
+      public void execute(Runnable command) {
+        runCount++;
+        if (runCount == 1) {
+          throw new RejectedExecutionException();
+        }
+        command.run();
+      }
+    }
+
+    PriorityExecutor executor = new PriorityExecutor(new CoyExecutor(), 1);
+    try {
+      executor.forPriority(CallPriority.NORMAL).execute(new AddToRuns(1));
+      fail("Expected exception");
+    } catch (RejectedExecutionException expected) {
+    }
+
+    executor.forPriority(CallPriority.NORMAL).execute(new AddToRuns(2));
+    assertThat(runs).containsExactly(2);
+  }
+}
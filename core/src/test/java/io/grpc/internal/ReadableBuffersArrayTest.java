@@ -22,6 +22,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.nio.ByteBuffer;
 import org.junit.Test;
 
 /**
@@ -43,6 +44,22 @@ public class ReadableBuffersArrayTest extends ReadableBufferTestBase {
     assertEquals(2, buffer.arrayOffset());
   }
 
+  @Test
+  public void byteBufferShouldShareArray() {
+    byte[] array = msg.getBytes(UTF_8);
+    ReadableBuffer buffer = wrap(array, 1, msg.length() - 1);
+    assertTrue(buffer.byteBufferSupported());
+    buffer.readUnsignedByte();
+
+    ByteBuffer byteBuffer = buffer.getByteBuffer();
+    assertSame(array, byteBuffer.array());
+    assertEquals(2, byteBuffer.arrayOffset() + byteBuffer.position());
+    assertEquals(msg.length() - 2, byteBuffer.remaining());
+    // Reading the returned buffer does not advance this buffer.
+    byteBuffer.get();
+    assertEquals(msg.length() - 2, buffer.readableBytes());
+  }
+
   @Override
   protected ReadableBuffer buffer() {
     return ReadableBuffers.wrap(msg.getBytes(UTF_8), 0, msg.length());
@@ -0,0 +1,471 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.grpc.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.io.ByteStreams;
+import io.grpc.CallOptions;
+import io.grpc.Context;
+import io.grpc.LoadBalancer.PickSubchannelArgs;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.internal.ClientCallImpl.ClientTransportProvider;
+import io.grpc.internal.ClientStreamListener.RpcProgress;
+import io.grpc.testing.TestMethodDescriptors;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+/**
+ * Tests for {@link RetriableStream}.
+ */
+@RunWith(JUnit4.class)
+public class RetriableStreamTest {
+  private static final long HEDGING_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+  private static final long BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+  private static final byte[] REQUEST = new byte[] {'a', 'b', 'c'};
+
+  private final FakeClock fakeClock = new FakeClock();
+  private MethodDescriptor<Void, Void> method =
+      TestMethodDescriptors.voidMethod().toBuilder().setIdempotent(true).build();
+
+  @Mock private ClientTransportProvider transportProvider;
+  @Mock private ClientTransport transport;
+  @Mock private ClientStream stream1;
+  @Mock private ClientStream stream2;
+  @Mock private ClientStream stream3;
+  @Mock private ClientStreamListener listener;
+  @Mock private BackoffPolicy.Provider backoffPolicyProvider;
+  @Mock private BackoffPolicy backoffPolicy;
+
+  private HedgingPolicy policy = new HedgingPolicy(HEDGING_DELAY_NANOS, 3, 1);
+  private RetryPolicy retryPolicy;
+  private RetriableStream.BufferLimits bufferLimits = new RetriableStream.BufferLimits(1024, 4096);
+
+  @Before
+  public void setUp() {
+    MockitoAnnotations.initMocks(this);
+    when(transportProvider.get(any(PickSubchannelArgs.class))).thenReturn(transport);
+    when(transport.newStream(
+            any(MethodDescriptor.class), any(Metadata.class), any(CallOptions.class)))
+        .thenReturn(stream1, stream2, stream3);
+    when(backoffPolicyProvider.get()).thenReturn(backoffPolicy);
+    when(backoffPolicy.nextBackoffNanos()).thenReturn(BACKOFF_NANOS, 2 * BACKOFF_NANOS);
+    retryPolicy = new RetryPolicy(3, backoffPolicyProvider, 10, 1);
+  }
+
+  @Test
+  public void responseBeforeDelay_noHedge() {
+    RetriableStream stream = startHedgedCall();
+    ClientStreamListener listener1 = captureListener(stream1);
+    Metadata headers = new Metadata();
+    listener1.headersRead(headers);
+    verify(listener).headersRead(headers);
+
+    fakeClock.forwardNanos(HEDGING_DELAY_NANOS);
+    verify(transport).newStream(same(method), any(Metadata.class), any(CallOptions.class));
+    assertEquals(0, fakeClock.numPendingTasks());
+
+    Metadata trailers = new Metadata();
+    listener1.closed(Status.OK, trailers);
+    verify(listener).closed(Status.OK, trailers);
+    assertEquals(1, policy.getHedgeableCallsCount());
+    assertEquals(0, policy.getHedgesSentCount());
+  }
+
+  @Test
+  public void hedgeReplaysRequest() throws Exception {
+    RetriableStream stream = startHedgedCall();
+    verify(transport).newStream(same(method), any(Metadata.class), any(CallOptions.class));
+
+    fakeClock.forwardNanos(HEDGING_DELAY_NANOS - 1);
+    verify(transport).newStream(same(method), any(Metadata.class), any(CallOptions.class));
+    fakeClock.forwardNanos(1);
+    verify(transport, times(2))
+        .newStream(same(method), any(Metadata.class), any(CallOptions.class));
+
+    ArgumentCaptor<InputStream> messageCaptor = ArgumentCaptor.forClass(InputStream.class);
+    InOrder inOrder = inOrder(stream2);
+    inOrder.verify(stream2).start(any(ClientStreamListener.class));
+    inOrder.verify(stream2).request(1);
+    inOrder.verify(stream2).writeMessage(messageCaptor.capture());
+    inOrder.verify(stream2).halfClose();
+    assertArrayEquals(REQUEST, ByteStreams.toByteArray(messageCaptor.getValue()));
+
+    // Operations after the hedge go to both attempts
+    stream.request(2);
+    verify(stream1).request(2);
+    verify(stream2).request(2);
+    assertEquals(1, policy.getHedgesSentCount());
+
+    fakeClock.forwardNanos(HEDGING_DELAY_NANOS);
+    verify(transport, times(3))
+        .newStream(same(method), any(Metadata.class), any(CallOptions.class));
+    // maxAttempts reached
+    assertEquals(0, fakeClock.numPendingTasks());
+  }
+
+  @Test
+  public void firstResponseWins() {
+    RetriableStream stream = startHedgedCall();
+    fakeClock.forwardNanos(HEDGING_DELAY_NANOS);
+    ClientStreamListener listener1 = captureListener(stream1);
+    ClientStreamListener listener2 = captureListener(stream2);
+
+    Metadata headers = new Metadata();
+    listener2.headersRead(headers);
+    verify(listener).headersRead(headers);
+    verify(stream1).cancel(any(Status.class));
+    verify(stream2, never()).cancel(any(Status.class));
+    // No more hedges once committed
+    assertEquals(0, fakeClock.numPendingTasks());
+    assertEquals(1, policy.getHedgesWonCount());
+
+    // Events from the losing attempt are dropped
+    listener1.headersRead(new Metadata());
+    listener1.messageRead(new ByteArrayInputStream(REQUEST));
+    listener1.closed(Status.CANCELLED, new Metadata());
+    verify(listener, times(1)).headersRead(any(Metadata.class));
+    verify(listener, never()).messageRead(any(InputStream.class));
+    verify(listener, never()).closed(any(Status.class), any(Metadata.class));
+
+    InputStream message = new ByteArrayInputStream(REQUEST);
+    listener2.messageRead(message);
+    verify(listener).messageRead(message);
+
+    // Only the winner sees later operations
+    stream.request(5);
+    verify(stream1, never()).request(5);
+    verify(stream2).request(5);
+  }
+
+  @Test
+  public void unavailableAttemptDroppedWhileOthersOutstanding() {
+    startHedgedCall();
+    fakeClock.forwardNanos(HEDGING_DELAY_NANOS);
+    ClientStreamListener listener1 = captureListener(stream1);
+    ClientStreamListener listener2 = captureListener(stream2);
+
+    listener1.closed(Status.UNAVAILABLE, new Metadata());
+    verify(listener, never()).closed(any(Status.class), any(Metadata.class));
+
+    // Other failures are responses from the server
+    Metadata trailers = new Metadata();
+    listener2.closed(Status.INVALID_ARGUMENT, trailers);
+    verify(listener).closed(Status.INVALID_ARGUMENT, trailers);
+    assertEquals(0, fakeClock.numPendingTasks());
+  }
+
+  @Test
+  public void lastAttemptFailureIsForwarded() {
+    startHedgedCall();
+    ClientStreamListener listener1 = captureListener(stream1);
+
+    Metadata trailers = new Metadata();
+    listener1.closed(Status.UNAVAILABLE, trailers);
+    verify(listener).closed(Status.UNAVAILABLE, trailers);
+    assertEquals(0, fakeClock.numPendingTasks());
+  }
+
+  @Test
+  public void exhaustedBudget_noHedge() {
+    policy = new HedgingPolicy(HEDGING_DELAY_NANOS, 3, 0);
+    for (int i = 0; i < HedgingPolicy.MAX_TOKENS; i++) {
+      assertTrue(policy.tryAcquireHedge());
+    }
+    assertFalse(policy.tryAcquireHedge());
+
+    startHedgedCall();
+    fakeClock.forwardNanos(HEDGING_DELAY_NANOS);
+    verify(transport).newStream(same(method), any(Metadata.class), any(CallOptions.class));
+    assertEquals(0, fakeClock.numPendingTasks());
+  }
+
+  @Test
+  public void budgetRefillsWithCalls() {
+    policy = new HedgingPolicy(HEDGING_DELAY_NANOS, 2, 0.5);
+    for (int i = 0; i < HedgingPolicy.MAX_TOKENS; i++) {
+      assertTrue(policy.tryAcquireHedge());
+    }
+    policy.recordCall();
+    assertFalse(policy.tryAcquireHedge());
+    policy.recordCall();
+    assertTrue(policy.tryAcquireHedge());
+    assertFalse(policy.tryAcquireHedge());
+
+    // The budget is capped
+    for (int i = 0; i < 100; i++) {
+      policy.recordCall();
+    }
+    assertEquals(HedgingPolicy.MAX_TOKENS, policy.getAvailableTokens(), 0);
+  }
+
+  @Test
+  public void cancelCancelsAllAttempts() {
+    RetriableStream stream = startHedgedCall();
+    fakeClock.forwardNanos(HEDGING_DELAY_NANOS);
+
+    stream.cancel(Status.CANCELLED);
+    verify(stream1).cancel(Status.CANCELLED);
+    verify(stream2).cancel(Status.CANCELLED);
+    assertEquals(0, fakeClock.numPendingTasks());
+
+    // The first attempt to close is forwarded, even when the others are outstanding
+    captureListener(stream2).closed(Status.CANCELLED, new Metadata());
+    verify(listener).closed(same(Status.CANCELLED), any(Metadata.class));
+  }
+
+  @Test
+  public void headersAreCopiedForEachAttempt() {
+    startHedgedCall();
+    fakeClock.forwardNanos(HEDGING_DELAY_NANOS);
+
+    ArgumentCaptor<Metadata> headersCaptor = ArgumentCaptor.forClass(Metadata.class);
+    verify(transport, times(2))
+        .newStream(same(method), headersCaptor.capture(), any(CallOptions.class));
+    assertFalse(headersCaptor.getAllValues().get(0) == headersCaptor.getAllValues().get(1));
+  }
+
+  @Test
+  public void retryAfterBackoffReplaysRequest() throws Exception {
+    RetriableStream stream = startRetriedCall();
+    Metadata trailers = new Metadata();
+    captureListener(stream1).closed(Status.UNAVAILABLE, trailers);
+    verify(listener, never()).closed(any(Status.class), any(Metadata.class));
+    assertEquals(1, retryPolicy.getRetriesCount());
+
+    // Messages written while waiting for the backoff are replayed too
+    stream.request(2);
+    fakeClock.forwardNanos(BACKOFF_NANOS - 1);
+    verify(transport).newStream(same(method), any(Metadata.class), any(CallOptions.class));
+    fakeClock.forwardNanos(1);
+
+    ArgumentCaptor<InputStream> messageCaptor = ArgumentCaptor.forClass(InputStream.class);
+    InOrder inOrder = inOrder(stream2);
+    inOrder.verify(stream2).start(any(ClientStreamListener.class));
+    inOrder.verify(stream2).request(1);
+    inOrder.verify(stream2).writeMessage(messageCaptor.capture());
+    inOrder.verify(stream2).halfClose();
+    inOrder.verify(stream2).request(2);
+    assertArrayEquals(REQUEST, ByteStreams.toByteArray(messageCaptor.getValue()));
+
+    // Backoff grows with each retry
+    captureListener(stream2).closed(Status.UNAVAILABLE, new Metadata());
+    fakeClock.forwardNanos(BACKOFF_NANOS);
+    verify(stream3, never()).start(any(ClientStreamListener.class));
+    fakeClock.forwardNanos(BACKOFF_NANOS);
+    verify(stream3).start(any(ClientStreamListener.class));
+    verify(backoffPolicyProvider).get();
+
+    Metadata headers = new Metadata();
+    captureListener(stream3).headersRead(headers);
+    verify(listener).headersRead(headers);
+    assertEquals(0, bufferLimits.getChannelBufferUsed());
+  }
+
+  @Test
+  public void maxAttemptsReached_failureIsForwarded() {
+    startRetriedCall();
+    captureListener(stream1).closed(Status.UNAVAILABLE, new Metadata());
+    fakeClock.forwardNanos(BACKOFF_NANOS);
+    captureListener(stream2).closed(Status.UNAVAILABLE, new Metadata());
+    fakeClock.forwardNanos(2 * BACKOFF_NANOS);
+
+    Metadata trailers = new Metadata();
+    captureListener(stream3).closed(Status.UNAVAILABLE, trailers);
+    verify(listener).closed(Status.UNAVAILABLE, trailers);
+    assertEquals(2, retryPolicy.getRetriesCount());
+    assertEquals(0, fakeClock.numPendingTasks());
+  }
+
+  @Test
+  public void nonRetryableStatusIsForwarded() {
+    startRetriedCall();
+    Metadata trailers = new Metadata();
+    captureListener(stream1).closed(Status.INTERNAL, trailers);
+    verify(listener).closed(Status.INTERNAL, trailers);
+    assertEquals(0, retryPolicy.getRetriesCount());
+    assertEquals(0, fakeClock.numPendingTasks());
+  }
+
+  @Test
+  public void noRetryAfterHeaders() {
+    startRetriedCall();
+    ClientStreamListener listener1 = captureListener(stream1);
+    listener1.headersRead(new Metadata());
+
+    Metadata trailers = new Metadata();
+    listener1.closed(Status.UNAVAILABLE, trailers);
+    verify(listener).closed(Status.UNAVAILABLE, trailers);
+    assertEquals(0, fakeClock.numPendingTasks());
+  }
+
+  @Test
+  public void nonIdempotentMethod_onlyRetriedTransparently() {
+    method = TestMethodDescriptors.voidMethod();
+    startRetriedCall();
+    captureListener(stream1).closed(Status.UNAVAILABLE, RpcProgress.REFUSED, new Metadata());
+    verify(stream2).start(any(ClientStreamListener.class));
+
+    Metadata trailers = new Metadata();
+    captureListener(stream2).closed(Status.UNAVAILABLE, trailers);
+    verify(listener).closed(Status.UNAVAILABLE, trailers);
+    assertEquals(0, retryPolicy.getRetriesCount());
+    assertEquals(0, fakeClock.numPendingTasks());
+  }
+
+  @Test
+  public void messagesNotCopiedAfterCommit() {
+    RetriableStream retriableStream = startRetriedCall();
+    captureListener(stream1).headersRead(new Metadata());
+
+    InputStream message = new ByteArrayInputStream(REQUEST);
+    retriableStream.writeMessage(message);
+    verify(stream1).writeMessage(same(message));
+  }
+
+  @Test
+  public void refusedStream_retriedTransparently() {
+    startRetriedCall();
+    captureListener(stream1).closed(Status.UNAVAILABLE, RpcProgress.REFUSED, new Metadata());
+
+    // No backoff, and the attempt isn't counted
+    verify(stream2).start(any(ClientStreamListener.class));
+    verify(stream2).writeMessage(any(InputStream.class));
+    assertEquals(1, retryPolicy.getTransparentRetriesCount());
+    assertEquals(0, retryPolicy.getRetriesCount());
+
+    captureListener(stream2).closed(Status.UNAVAILABLE, new Metadata());
+    fakeClock.forwardNanos(BACKOFF_NANOS);
+    verify(stream3).start(any(ClientStreamListener.class));
+    assertEquals(1, retryPolicy.getRetriesCount());
+  }
+
+  @Test
+  public void refusedStream_forwardedAsPlainClose() {
+    startRetriedCall().cancel(Status.CANCELLED);
+    Metadata trailers = new Metadata();
+    captureListener(stream1).closed(Status.CANCELLED, RpcProgress.REFUSED, trailers);
+    verify(listener).closed(Status.CANCELLED, trailers);
+  }
+
+  @Test
+  public void throttledRetry_failureIsForwarded() {
+    retryPolicy = new RetryPolicy(3, backoffPolicyProvider, 4, 2);
+    // Leaves 3 of the 4 tokens, so that the next failure reaches the threshold
+    assertTrue(retryPolicy.onFailure());
+
+    startRetriedCall();
+    Metadata trailers = new Metadata();
+    captureListener(stream1).closed(Status.UNAVAILABLE, trailers);
+    verify(listener).closed(Status.UNAVAILABLE, trailers);
+    assertEquals(1, retryPolicy.getThrottledRetriesCount());
+    assertEquals(0, fakeClock.numPendingTasks());
+
+    // Successful calls refill the tokens
+    retryPolicy.onSuccess();
+    assertTrue(retryPolicy.onFailure());
+  }
+
+  @Test
+  public void bufferLimitExceeded_commitsAttempt() {
+    bufferLimits = new RetriableStream.BufferLimits(REQUEST.length + 1, 4096);
+    RetriableStream stream = startRetriedCall();
+    assertEquals(REQUEST.length, bufferLimits.getChannelBufferUsed());
+
+    stream.writeMessage(new ByteArrayInputStream(REQUEST));
+    verify(stream1, times(2)).writeMessage(any(InputStream.class));
+    assertEquals(0, bufferLimits.getChannelBufferUsed());
+
+    Metadata trailers = new Metadata();
+    captureListener(stream1).closed(Status.UNAVAILABLE, trailers);
+    verify(listener).closed(Status.UNAVAILABLE, trailers);
+    assertEquals(0, fakeClock.numPendingTasks());
+  }
+
+  @Test
+  public void channelBufferLimitExceeded_duringBackoff() {
+    bufferLimits = new RetriableStream.BufferLimits(1024, REQUEST.length + 1);
+    RetriableStream stream = startRetriedCall();
+    Metadata trailers = new Metadata();
+    captureListener(stream1).closed(Status.UNAVAILABLE, trailers);
+
+    stream.writeMessage(new ByteArrayInputStream(REQUEST));
+    verify(listener).closed(Status.UNAVAILABLE, trailers);
+    assertEquals(0, fakeClock.numPendingTasks());
+    assertEquals(0, bufferLimits.getChannelBufferUsed());
+  }
+
+  @Test
+  public void cancelDuringBackoff_closesListener() {
+    RetriableStream stream = startRetriedCall();
+    captureListener(stream1).closed(Status.UNAVAILABLE, new Metadata());
+
+    stream.cancel(Status.DEADLINE_EXCEEDED);
+    verify(listener).closed(same(Status.DEADLINE_EXCEEDED), any(Metadata.class));
+    assertEquals(0, fakeClock.numPendingTasks());
+    verify(transport).newStream(same(method), any(Metadata.class), any(CallOptions.class));
+  }
+
+  private RetriableStream startHedgedCall() {
+    return startCall(null, policy);
+  }
+
+  private RetriableStream startRetriedCall() {
+    return startCall(retryPolicy, null);
+  }
+
+  private RetriableStream startCall(RetryPolicy retryPolicy, HedgingPolicy hedgingPolicy) {
+    RetriableStream stream = new RetriableStream(method, new Metadata(), CallOptions.DEFAULT,
+        Context.ROOT, transportProvider, fakeClock.getScheduledExecutorService(), bufferLimits,
+        retryPolicy, hedgingPolicy);
+    stream.start(listener);
+    stream.request(1);
+    stream.writeMessage(new ByteArrayInputStream(REQUEST));
+    stream.halfClose();
+    return stream;
+  }
+
+  private static ClientStreamListener captureListener(ClientStream mockStream) {
+    ArgumentCaptor<ClientStreamListener> listenerCaptor =
+        ArgumentCaptor.forClass(ClientStreamListener.class);
+    verify(mockStream).start(listenerCaptor.capture());
+    return listenerCaptor.getValue();
+  }
+}
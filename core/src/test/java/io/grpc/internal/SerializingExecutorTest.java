@@ -18,6 +18,7 @@ package io.grpc.internal;
 
 import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
@@ -183,6 +184,62 @@ public class SerializingExecutorTest {
     assertEquals(Arrays.asList(2, 3), runs);
   }
 
+  @Test
+  public void taskQueuedWhileRunningDoesNotReschedule() {
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        // SingleExecutor fails if the executor is scheduled twice
+        executor.execute(new AddToRuns(2));
+        runs.add(1);
+      }
+    });
+    singleExecutor.drain();
+    assertEquals(Arrays.asList(1, 2), runs);
+  }
+
+  @Test
+  public void maxBatchSize() {
+    executor = new SerializingExecutor(singleExecutor, 2, null);
+    for (int i = 1; i <= 5; i++) {
+      executor.execute(new AddToRuns(i));
+    }
+    singleExecutor.drain();
+    assertEquals(Arrays.asList(1, 2), runs);
+    singleExecutor.drain();
+    assertEquals(Arrays.asList(1, 2, 3, 4), runs);
+    singleExecutor.drain();
+    assertEquals(Arrays.asList(1, 2, 3, 4, 5), runs);
+    assertNull(singleExecutor.runnable);
+  }
+
+  @Test
+  public void metrics() {
+    FakeClock fakeClock = new FakeClock();
+    SerializingExecutor.Metrics metrics = new SerializingExecutor.Metrics(fakeClock.getTicker());
+    executor = new SerializingExecutor(singleExecutor, Integer.MAX_VALUE, metrics);
+    executor.execute(new AddToRuns(1));
+    fakeClock.forwardNanos(10);
+    executor.execute(new AddToRuns(2));
+    executor.execute(new AddToRuns(3));
+    assertEquals(3, metrics.getQueuedTasks());
+    assertEquals(3, metrics.getMaxQueueDepth());
+
+    fakeClock.forwardNanos(5);
+    singleExecutor.drain();
+    assertEquals(0, metrics.getQueuedTasks());
+    assertEquals(3, metrics.getRanTasks());
+    assertEquals(1, metrics.getBatches());
+    assertEquals(15 + 5 + 5, metrics.getTotalQueueNanos());
+    assertEquals(15, metrics.getMaxQueueNanos());
+
+    executor.execute(new AddToRuns(4));
+    singleExecutor.drain();
+    assertEquals(4, metrics.getRanTasks());
+    assertEquals(2, metrics.getBatches());
+    assertEquals(3, metrics.getMaxQueueDepth());
+  }
+
   @Test
   public void direct() {
     executor = new SerializingExecutor(MoreExecutors.directExecutor());
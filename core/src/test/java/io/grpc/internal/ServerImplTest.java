@@ -34,6 +34,7 @@ import static org.mockito.Matchers.notNull;
 import static org.mockito.Matchers.same;
 import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
@@ -46,8 +47,10 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.truth.Truth;
 import com.google.common.util.concurrent.MoreExecutors;
 import io.grpc.Attributes;
+import io.grpc.CallPriority;
 import io.grpc.Compressor;
 import io.grpc.CompressorRegistry;
+import io.grpc.ConcurrencyLimiter;
 import io.grpc.Context;
 import io.grpc.DecompressorRegistry;
 import io.grpc.Grpc;
@@ -64,13 +67,16 @@ import io.grpc.ServiceDescriptor;
 import io.grpc.Status;
 import io.grpc.StringMarshaller;
 import io.grpc.internal.ServerImpl.JumpToApplicationThreadServerStreamListener;
+import io.grpc.util.AdaptiveConcurrencyLimiter;
 import io.grpc.util.MutableHandlerRegistry;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.SocketAddress;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledExecutorService;
@@ -87,6 +93,7 @@ import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
+import org.mockito.InOrder;
 import org.mockito.Matchers;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
@@ -141,6 +148,10 @@ public class ServerImplTest {
   private MutableHandlerRegistry mutableFallbackRegistry = new MutableHandlerRegistry();
   private HandlerRegistry fallbackRegistry = mutableFallbackRegistry;
   private SimpleServer transportServer = new SimpleServer();
+  private ConcurrencyLimiter concurrencyLimiter;
+  private Map<String, Executor> callExecutors = new HashMap<String, Executor>();
+  private Map<String, CallPriority> callPriorities = new HashMap<String, CallPriority>();
+  private int executorParallelism = Integer.MAX_VALUE;
   private ServerImpl server;
 
   @Captor
@@ -392,6 +403,107 @@ public class ServerImplTest {
     verifyNoMoreInteractions(stream);
   }
 
+  @Test
+  public void concurrencyLimitExceeded() throws Exception {
+    AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.newBuilder()
+        .setInitialLimit(1).setMinLimit(1).setMaxLimit(1).build();
+    concurrencyLimiter = limiter;
+    createAndStartServer(NO_FILTERS);
+    ServerTransportListener transportListener
+        = transportServer.registerNewServerTransport(new SimpleServerTransport());
+    Metadata requestHeaders = new Metadata();
+    StatsTraceContext statsTraceCtx =
+        StatsTraceContext.newServerContext(
+            streamTracerFactories, "Waiter/nonexist", requestHeaders);
+    when(stream.statsTraceContext()).thenReturn(statsTraceCtx);
+    transportListener.streamCreated(stream, "Waiter/nonexist", requestHeaders);
+    verify(stream).setListener(streamListenerCaptor.capture());
+    assertEquals(1, executor.runDueTasks());
+    assertEquals(1, limiter.getInFlight());
+
+    // Rejected before anything else is done with the stream
+    ServerStream stream2 = mock(ServerStream.class);
+    transportListener.streamCreated(stream2, "Waiter/nonexist", new Metadata());
+    verify(stream2).close(statusCaptor.capture(), any(Metadata.class));
+    assertEquals(Status.Code.RESOURCE_EXHAUSTED, statusCaptor.getValue().getCode());
+    verifyNoMoreInteractions(stream2);
+    assertEquals(1, limiter.getRejectedCount());
+
+    streamListenerCaptor.getValue().closed(Status.OK);
+    executor.runDueTasks();
+    assertEquals(0, limiter.getInFlight());
+  }
+
+  @Test
+  public void concurrencyLimiterPermitReleasedWithCallStatus() throws Exception {
+    ConcurrencyLimiter.Permit permit = mock(ConcurrencyLimiter.Permit.class);
+    concurrencyLimiter = mock(ConcurrencyLimiter.class);
+    when(concurrencyLimiter.tryAcquire("Waiter/nonexist")).thenReturn(permit);
+    createAndStartServer(NO_FILTERS);
+    ServerTransportListener transportListener
+        = transportServer.registerNewServerTransport(new SimpleServerTransport());
+    Metadata requestHeaders = new Metadata();
+    StatsTraceContext statsTraceCtx =
+        StatsTraceContext.newServerContext(
+            streamTracerFactories, "Waiter/nonexist", requestHeaders);
+    when(stream.statsTraceContext()).thenReturn(statsTraceCtx);
+    transportListener.streamCreated(stream, "Waiter/nonexist", requestHeaders);
+    verify(stream).setListener(streamListenerCaptor.capture());
+    assertEquals(1, executor.runDueTasks());
+    verify(stream).close(statusCaptor.capture(), any(Metadata.class));
+    assertEquals(Status.Code.UNIMPLEMENTED, statusCaptor.getValue().getCode());
+    verify(permit, never()).release(any(Status.class));
+
+    // The transport only reports that the stream completed
+    streamListenerCaptor.getValue().closed(Status.OK);
+    executor.runDueTasks();
+    verify(permit).release(statusCaptor.capture());
+    assertEquals(Status.Code.UNIMPLEMENTED, statusCaptor.getValue().getCode());
+  }
+
+  @Test
+  public void serviceExecutorUsedForCall() throws Exception {
+    FakeClock serviceExecutor = new FakeClock();
+    callExecutors.put("Waiter", serviceExecutor.getScheduledExecutorService());
+    createAndStartServer(NO_FILTERS);
+    ServerTransportListener transportListener
+        = transportServer.registerNewServerTransport(new SimpleServerTransport());
+    Metadata requestHeaders = new Metadata();
+    StatsTraceContext statsTraceCtx =
+        StatsTraceContext.newServerContext(
+            streamTracerFactories, "Waiter/nonexist", requestHeaders);
+    when(stream.statsTraceContext()).thenReturn(statsTraceCtx);
+    transportListener.streamCreated(stream, "Waiter/nonexist", requestHeaders);
+
+    assertEquals(0, executor.numPendingTasks());
+    assertEquals(1, serviceExecutor.runDueTasks());
+    verify(stream).close(statusCaptor.capture(), any(Metadata.class));
+    assertEquals(Status.Code.UNIMPLEMENTED, statusCaptor.getValue().getCode());
+  }
+
+  @Test
+  public void callsQueuedByPriorityWhenParallelismLimited() throws Exception {
+    callPriorities.put("Waiter/urgent", CallPriority.HIGH);
+    executorParallelism = 1;
+    createAndStartServer(NO_FILTERS);
+    ServerTransportListener transportListener
+        = transportServer.registerNewServerTransport(new SimpleServerTransport());
+    ServerStream bulkStream1 = newUnimplementedStream("Waiter/bulk");
+    ServerStream bulkStream2 = newUnimplementedStream("Waiter/bulk");
+    ServerStream urgentStream = newUnimplementedStream("Waiter/urgent");
+    transportListener.streamCreated(bulkStream1, "Waiter/bulk", new Metadata());
+    transportListener.streamCreated(bulkStream2, "Waiter/bulk", new Metadata());
+    transportListener.streamCreated(urgentStream, "Waiter/urgent", new Metadata());
+
+    // A single worker drains the queued calls, highest priority first
+    assertEquals(1, executor.numPendingTasks());
+    assertEquals(1, executor.runDueTasks());
+    InOrder inOrder = inOrder(urgentStream, bulkStream1, bulkStream2);
+    inOrder.verify(urgentStream).close(any(Status.class), any(Metadata.class));
+    inOrder.verify(bulkStream1).close(any(Status.class), any(Metadata.class));
+    inOrder.verify(bulkStream2).close(any(Status.class), any(Metadata.class));
+  }
+
   @Test
   public void basicExchangeSuccessful() throws Exception {
     createAndStartServer(NO_FILTERS);
@@ -1115,7 +1227,8 @@ public class ServerImplTest {
   private void createServer(List<ServerTransportFilter> filters) {
     assertNull(server);
     server = new ServerImpl(executorPool, timerPool, registry, fallbackRegistry,
-        transportServer, SERVER_CONTEXT, decompressorRegistry, compressorRegistry, filters);
+        transportServer, SERVER_CONTEXT, decompressorRegistry, compressorRegistry, filters,
+        concurrencyLimiter, callExecutors, callPriorities, executorParallelism);
   }
 
   private void verifyExecutorsAcquired() {
@@ -1137,6 +1250,14 @@ public class ServerImplTest {
     verifyNoMoreInteractions(timerPool);
   }
 
+  private ServerStream newUnimplementedStream(String methodName) {
+    StatsTraceContext statsTraceCtx =
+        StatsTraceContext.newServerContext(streamTracerFactories, methodName, new Metadata());
+    ServerStream stream = mock(ServerStream.class);
+    when(stream.statsTraceContext()).thenReturn(statsTraceCtx);
+    return stream;
+  }
+
   private static class SimpleServer implements io.grpc.internal.InternalServer {
     ServerListener listener;
 
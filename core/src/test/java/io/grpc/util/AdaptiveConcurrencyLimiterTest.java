@@ -0,0 +1,179 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.grpc.ConcurrencyLimiter;
+import io.grpc.Status;
+import io.grpc.internal.FakeClock;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for {@link AdaptiveConcurrencyLimiter}.
+ */
+@RunWith(JUnit4.class)
+public class AdaptiveConcurrencyLimiterTest {
+  private static final String METHOD = "service/method";
+  private static final String STREAMING_METHOD = "service/streamingMethod";
+  private static final long LATENCY_NANOS = AdaptiveConcurrencyLimiter.WINDOW_NANOS;
+
+  private final FakeClock fakeClock = new FakeClock();
+
+  @Test
+  public void rejectsOverLimit() {
+    AdaptiveConcurrencyLimiter limiter = newBuilder()
+        .setInitialLimit(2).setMinLimit(2).setMaxLimit(2).build();
+    ConcurrencyLimiter.Permit permit = limiter.tryAcquire(METHOD);
+    assertNotNull(permit);
+    assertNotNull(limiter.tryAcquire(METHOD));
+    assertNull(limiter.tryAcquire(METHOD));
+    assertEquals(2, limiter.getInFlight());
+    assertEquals(1, limiter.getRejectedCount());
+
+    permit.release(Status.OK);
+    assertEquals(1, limiter.getInFlight());
+    assertNotNull(limiter.tryAcquire(METHOD));
+  }
+
+  @Test
+  public void methodLimitIsSeparate() {
+    AdaptiveConcurrencyLimiter limiter = newBuilder()
+        .setInitialLimit(10).setMethodLimit(STREAMING_METHOD, 1).build();
+    ConcurrencyLimiter.Permit permit = limiter.tryAcquire(STREAMING_METHOD);
+    assertNotNull(permit);
+    assertNull(limiter.tryAcquire(STREAMING_METHOD));
+    assertEquals(1, limiter.getInFlight(STREAMING_METHOD));
+    assertEquals(0, limiter.getInFlight());
+    assertEquals(-1, limiter.getInFlight(METHOD));
+    assertEquals(1, limiter.getRejectedCount());
+
+    permit.release(Status.OK);
+    assertEquals(0, limiter.getInFlight(STREAMING_METHOD));
+  }
+
+  @Test
+  public void limitGrowsWhileLatencyIsSteady() {
+    AdaptiveConcurrencyLimiter limiter = newBuilder().setInitialLimit(20).build();
+    for (int i = 0; i < 10; i++) {
+      runWindow(limiter, LATENCY_NANOS);
+    }
+    assertTrue(limiter.getLimit() > 25);
+  }
+
+  @Test
+  public void limitShrinksAsLatencyRises() {
+    AdaptiveConcurrencyLimiter limiter = newBuilder().setInitialLimit(100).build();
+    runWindow(limiter, LATENCY_NANOS);
+    int limit = limiter.getLimit();
+    for (int i = 0; i < 10; i++) {
+      runWindow(limiter, 4 * LATENCY_NANOS);
+    }
+    assertTrue(limiter.getLimit() < limit / 2 + 10);
+  }
+
+  @Test
+  public void limitStaysAboveMin() {
+    AdaptiveConcurrencyLimiter limiter =
+        newBuilder().setInitialLimit(20).setMinLimit(15).build();
+    runWindow(limiter, LATENCY_NANOS);
+    for (int i = 0; i < 20; i++) {
+      runWindow(limiter, 10 * LATENCY_NANOS);
+    }
+    assertEquals(15, limiter.getLimit());
+  }
+
+  @Test
+  public void deadlineExceededCutsLimit() {
+    AdaptiveConcurrencyLimiter limiter = newBuilder().setInitialLimit(100).build();
+    List<ConcurrencyLimiter.Permit> permits = acquire(limiter, 11);
+    fakeClock.forwardNanos(LATENCY_NANOS);
+    permits.get(0).release(Status.DEADLINE_EXCEEDED);
+    for (ConcurrencyLimiter.Permit permit : permits.subList(1, permits.size())) {
+      permit.release(Status.OK);
+    }
+    assertEquals(90, limiter.getLimit());
+  }
+
+  @Test
+  public void limitDoesNotGrowWhenMostlyUnused() {
+    AdaptiveConcurrencyLimiter limiter = newBuilder().setInitialLimit(100).build();
+    for (int i = 0; i < 5; i++) {
+      List<ConcurrencyLimiter.Permit> permits = acquire(limiter, 20);
+      fakeClock.forwardNanos(LATENCY_NANOS);
+      release(permits, Status.OK);
+    }
+    assertEquals(100, limiter.getLimit());
+  }
+
+  @Test
+  public void failuresAreNotSampled() {
+    AdaptiveConcurrencyLimiter limiter = newBuilder().setInitialLimit(20).build();
+    runWindow(limiter, LATENCY_NANOS);
+    int limit = limiter.getLimit();
+
+    // Would make the limit grow if they counted, since they are faster
+    List<ConcurrencyLimiter.Permit> permits = acquire(limiter, limit);
+    fakeClock.forwardNanos(LATENCY_NANOS);
+    release(permits, Status.UNAVAILABLE);
+    assertEquals(limit, limiter.getLimit());
+    assertEquals(0, limiter.getInFlight());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void initialLimitOutOfRange() {
+    newBuilder().setInitialLimit(5).setMinLimit(10).build();
+  }
+
+  private AdaptiveConcurrencyLimiter.Builder newBuilder() {
+    return AdaptiveConcurrencyLimiter.newBuilder().setTicker(fakeClock.getTicker());
+  }
+
+  /**
+   * Runs as many calls as the limit allows, which all succeed with the given latency.
+   */
+  private void runWindow(AdaptiveConcurrencyLimiter limiter, long latencyNanos) {
+    List<ConcurrencyLimiter.Permit> permits = acquire(limiter, limiter.getLimit());
+    fakeClock.forwardNanos(latencyNanos);
+    release(permits, Status.OK);
+  }
+
+  private static List<ConcurrencyLimiter.Permit> acquire(
+      AdaptiveConcurrencyLimiter limiter, int count) {
+    List<ConcurrencyLimiter.Permit> permits =
+        new ArrayList<ConcurrencyLimiter.Permit>();
+    for (int i = 0; i < count; i++) {
+      ConcurrencyLimiter.Permit permit = limiter.tryAcquire(METHOD);
+      assertNotNull(permit);
+      permits.add(permit);
+    }
+    return permits;
+  }
+
+  private static void release(List<ConcurrencyLimiter.Permit> permits, Status status) {
+    for (ConcurrencyLimiter.Permit permit : permits) {
+      permit.release(status);
+    }
+  }
+}
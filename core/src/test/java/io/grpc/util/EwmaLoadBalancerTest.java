@@ -0,0 +1,205 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static io.grpc.ConnectivityState.READY;
+import static io.grpc.util.LeastRequestLoadBalancerFactory.LeastRequestLoadBalancer.LOAD_TRACKER;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.grpc.Attributes;
+import io.grpc.ClientStreamTracer;
+import io.grpc.ConnectivityStateInfo;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.LoadBalancer.Helper;
+import io.grpc.LoadBalancer.PickSubchannelArgs;
+import io.grpc.LoadBalancer.Subchannel;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.internal.FakeClock;
+import io.grpc.util.EwmaLoadBalancerFactory.EwmaLoadBalancer;
+import io.grpc.util.EwmaLoadBalancerFactory.EwmaTracker;
+import io.grpc.util.LeastRequestLoadBalancerFactory.Picker;
+import java.net.SocketAddress;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/** Unit test for {@link EwmaLoadBalancerFactory}. */
+@RunWith(JUnit4.class)
+public class EwmaLoadBalancerTest {
+  private static final long DECAY_NANOS = TimeUnit.SECONDS.toNanos(1);
+  private static final double MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final FakeClock fakeClock = new FakeClock();
+  private EwmaTracker tracker;
+
+  @Before
+  public void setUp() {
+    tracker = new EwmaTracker(fakeClock.getTicker(), DECAY_NANOS);
+  }
+
+  @Test
+  public void latencyIsMeasuredFromStreamCreationToClose() {
+    assertEquals(0, tracker.getLoad(), 0);
+
+    sample(10, Status.OK);
+
+    assertEquals(10 * MS, tracker.getLoad(), 0);
+    assertEquals(0, tracker.getInFlight());
+  }
+
+  @Test
+  public void slowSampleRaisesEstimateImmediately() {
+    sample(10, Status.OK);
+    sample(100, Status.OK);
+
+    assertEquals(100 * MS, tracker.getLoad(), 0);
+  }
+
+  @Test
+  public void fastSamplesLowerEstimateGradually() {
+    sample(100, Status.OK);
+    sample(10, Status.OK);
+
+    double expected = 100 * MS * Math.exp(-10 * MS / DECAY_NANOS)
+        + 10 * MS * (1 - Math.exp(-10 * MS / DECAY_NANOS));
+    assertEquals(expected, tracker.getLoad(), 1);
+    assertThat(tracker.getLoad()).isGreaterThan(10 * MS);
+  }
+
+  @Test
+  public void estimateDecaysWhileIdle() {
+    sample(100, Status.OK);
+
+    fakeClock.forwardNanos(DECAY_NANOS);
+
+    assertEquals(100 * MS / Math.E, tracker.getLoad(), 1);
+  }
+
+  @Test
+  public void fastFailureDoesNotLowerEstimate() {
+    sample(100, Status.OK);
+    sample(1, Status.UNAVAILABLE);
+
+    assertEquals(100 * MS * Math.exp(-1 * MS / DECAY_NANOS), tracker.getLoad(), 1);
+  }
+
+  @Test
+  public void slowFailureRaisesEstimate() {
+    sample(10, Status.OK);
+    sample(100, Status.DEADLINE_EXCEEDED);
+
+    assertEquals(100 * MS, tracker.getLoad(), 0);
+  }
+
+  @Test
+  public void inFlightStreamsMultiplyCost() {
+    sample(10, Status.OK);
+    tracker.newClientStreamTracer(new Metadata());
+    tracker.newClientStreamTracer(new Metadata());
+
+    assertEquals(30 * MS, tracker.getLoad(), 0);
+  }
+
+  @Test
+  public void unmeasuredSubchannelWithStreamsIsPenalized() {
+    ClientStreamTracer tracer = tracker.newClientStreamTracer(new Metadata());
+    assertEquals(EwmaTracker.PENALTY, tracker.getLoad(), 0);
+
+    // Closing twice is only counted once
+    tracer.streamClosed(Status.CANCELLED);
+    tracer.streamClosed(Status.CANCELLED);
+    assertEquals(0, tracker.getInFlight());
+  }
+
+  @Test
+  public void balancerPrefersFasterSubchannel() {
+    Helper helper = mock(Helper.class);
+    when(helper.createSubchannel(any(EquivalentAddressGroup.class), any(Attributes.class)))
+        .then(new Answer<Subchannel>() {
+          @Override
+          public Subchannel answer(InvocationOnMock invocation) throws Throwable {
+            Subchannel subchannel = mock(Subchannel.class);
+            when(subchannel.getAttributes())
+                .thenReturn((Attributes) invocation.getArguments()[1]);
+            return subchannel;
+          }
+        });
+    EwmaLoadBalancer loadBalancer =
+        new EwmaLoadBalancer(helper, new Random(1), fakeClock.getTicker(), DECAY_NANOS);
+    loadBalancer.handleResolvedAddressGroups(Arrays.asList(
+        new EquivalentAddressGroup(new FakeSocketAddress("server0")),
+        new EquivalentAddressGroup(new FakeSocketAddress("server1"))), Attributes.EMPTY);
+    verify(helper, times(2)).createSubchannel(any(EquivalentAddressGroup.class),
+        any(Attributes.class));
+    for (Subchannel subchannel : loadBalancer.getSubchannels()) {
+      loadBalancer.handleSubchannelState(subchannel, ConnectivityStateInfo.forNonError(READY));
+    }
+    Subchannel[] subchannels = loadBalancer.getSubchannels().toArray(new Subchannel[0]);
+    Subchannel fast = subchannels[0];
+    Subchannel slow = subchannels[1];
+    ClientStreamTracer fastTracer =
+        fast.getAttributes().get(LOAD_TRACKER).newClientStreamTracer(new Metadata());
+    ClientStreamTracer slowTracer =
+        slow.getAttributes().get(LOAD_TRACKER).newClientStreamTracer(new Metadata());
+    fakeClock.forwardTime(1, TimeUnit.MILLISECONDS);
+    fastTracer.streamClosed(Status.OK);
+    fakeClock.forwardTime(50, TimeUnit.MILLISECONDS);
+    slowTracer.streamClosed(Status.OK);
+
+    ArgumentCaptor<Picker> pickerCaptor = ArgumentCaptor.forClass(Picker.class);
+    verify(helper, times(3)).updatePicker(pickerCaptor.capture());
+    Picker picker = pickerCaptor.getValue();
+    PickSubchannelArgs args = mock(PickSubchannelArgs.class);
+    for (int i = 0; i < 10; i++) {
+      assertSame(fast, picker.pickSubchannel(args).getSubchannel());
+    }
+  }
+
+  private void sample(long latencyMillis, Status status) {
+    ClientStreamTracer tracer = tracker.newClientStreamTracer(new Metadata());
+    fakeClock.forwardTime(latencyMillis, TimeUnit.MILLISECONDS);
+    tracer.streamClosed(status);
+  }
+
+  private static class FakeSocketAddress extends SocketAddress {
+    final String name;
+
+    FakeSocketAddress(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public String toString() {
+      return "FakeSocketAddress-" + name;
+    }
+  }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static io.grpc.ConnectivityState.READY;
+import static io.grpc.util.LeastRequestLoadBalancerFactory.LeastRequestLoadBalancer.LOAD_TRACKER;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import io.grpc.Attributes;
+import io.grpc.ClientStreamTracer;
+import io.grpc.ConnectivityStateInfo;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.LoadBalancer.Helper;
+import io.grpc.LoadBalancer.PickResult;
+import io.grpc.LoadBalancer.PickSubchannelArgs;
+import io.grpc.LoadBalancer.Subchannel;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.util.LeastRequestLoadBalancerFactory.InFlightTracerFactory;
+import io.grpc.util.LeastRequestLoadBalancerFactory.LeastRequestLoadBalancer;
+import io.grpc.util.LeastRequestLoadBalancerFactory.Picker;
+import java.net.SocketAddress;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/** Unit test for {@link LeastRequestLoadBalancerFactory}. */
+@RunWith(JUnit4.class)
+public class LeastRequestLoadBalancerTest {
+  private LeastRequestLoadBalancer loadBalancer;
+  private List<EquivalentAddressGroup> servers = Lists.newArrayList();
+  private Map<EquivalentAddressGroup, Subchannel> subchannels = Maps.newLinkedHashMap();
+  private final Random random = new Random(1);
+
+  @Captor
+  private ArgumentCaptor<Picker> pickerCaptor;
+  @Mock
+  private Helper mockHelper;
+  @Mock // This LoadBalancer doesn't use any of the arg fields, as verified in tearDown().
+  private PickSubchannelArgs mockArgs;
+
+  @Before
+  public void setUp() {
+    MockitoAnnotations.initMocks(this);
+
+    for (int i = 0; i < 3; i++) {
+      SocketAddress addr = new FakeSocketAddress("server" + i);
+      EquivalentAddressGroup eag = new EquivalentAddressGroup(addr);
+      servers.add(eag);
+      subchannels.put(eag, mock(Subchannel.class));
+    }
+
+    when(mockHelper.createSubchannel(any(EquivalentAddressGroup.class), any(Attributes.class)))
+        .then(new Answer<Subchannel>() {
+          @Override
+          public Subchannel answer(InvocationOnMock invocation) throws Throwable {
+            Object[] args = invocation.getArguments();
+            Subchannel subchannel = subchannels.get(args[0]);
+            when(subchannel.getAttributes()).thenReturn((Attributes) args[1]);
+            return subchannel;
+          }
+        });
+
+    loadBalancer = new LeastRequestLoadBalancer(mockHelper, random);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    verifyNoMoreInteractions(mockArgs);
+  }
+
+  @Test
+  public void pickAttachesInFlightTracer() throws Exception {
+    loadBalancer.handleResolvedAddressGroups(servers, Attributes.EMPTY);
+    Subchannel subchannel = subchannels.values().iterator().next();
+    loadBalancer.handleSubchannelState(subchannel, ConnectivityStateInfo.forNonError(READY));
+
+    verify(mockHelper, times(2)).updatePicker(pickerCaptor.capture());
+    PickResult result = pickerCaptor.getValue().pickSubchannel(mockArgs);
+    assertSame(subchannel, result.getSubchannel());
+    assertSame(subchannel.getAttributes().get(LOAD_TRACKER), result.getStreamTracerFactory());
+  }
+
+  @Test
+  public void pickerPrefersLessLoadedSubchannel() throws Exception {
+    loadBalancer.handleResolvedAddressGroups(servers.subList(0, 2), Attributes.EMPTY);
+    Iterator<Subchannel> subchannelIterator = subchannels.values().iterator();
+    Subchannel busy = subchannelIterator.next();
+    Subchannel idle = subchannelIterator.next();
+    loadBalancer.handleSubchannelState(busy, ConnectivityStateInfo.forNonError(READY));
+    loadBalancer.handleSubchannelState(idle, ConnectivityStateInfo.forNonError(READY));
+    busy.getAttributes().get(LOAD_TRACKER).newClientStreamTracer(new Metadata());
+
+    verify(mockHelper, times(3)).updatePicker(pickerCaptor.capture());
+    Picker picker = pickerCaptor.getValue();
+    // With two subchannels both are always sampled, so the idle one always wins.
+    for (int i = 0; i < 10; i++) {
+      assertSame(idle, picker.pickSubchannel(mockArgs).getSubchannel());
+    }
+  }
+
+  @Test
+  public void pickerSpreadsLoadAsStreamsStart() throws Exception {
+    loadBalancer.handleResolvedAddressGroups(servers, Attributes.EMPTY);
+    for (Subchannel subchannel : subchannels.values()) {
+      loadBalancer.handleSubchannelState(subchannel, ConnectivityStateInfo.forNonError(READY));
+    }
+
+    verify(mockHelper, times(4)).updatePicker(pickerCaptor.capture());
+    Picker picker = pickerCaptor.getValue();
+    for (int i = 0; i < 30; i++) {
+      PickResult result = picker.pickSubchannel(mockArgs);
+      result.getStreamTracerFactory().newClientStreamTracer(new Metadata());
+    }
+
+    // A subchannel is only picked while it is no busier than the other sampled subchannel, so the
+    // busiest subchannel is never more than one stream ahead of the runner-up.
+    List<Integer> counts = Lists.newArrayList();
+    for (Subchannel subchannel : subchannels.values()) {
+      counts.add((int) subchannel.getAttributes().get(LOAD_TRACKER).getLoad());
+    }
+    Collections.sort(counts);
+    assertEquals(30, counts.get(0) + counts.get(1) + counts.get(2));
+    assertThat(counts.get(2) - counts.get(1)).isAtMost(1);
+  }
+
+  @Test
+  public void tracerCountsStreamsUntilClosed() throws Exception {
+    InFlightTracerFactory factory = new InFlightTracerFactory();
+    ClientStreamTracer tracer1 = factory.newClientStreamTracer(new Metadata());
+    ClientStreamTracer tracer2 = factory.newClientStreamTracer(new Metadata());
+    assertEquals(2, factory.get());
+
+    tracer1.streamClosed(Status.OK);
+    assertEquals(1, factory.get());
+    // Closing twice must not double count
+    tracer1.streamClosed(Status.OK);
+    assertEquals(1, factory.get());
+
+    tracer2.streamClosed(Status.CANCELLED);
+    assertEquals(0, factory.get());
+  }
+
+  @Test
+  public void pickerEmptyList() throws Exception {
+    Picker picker = new Picker(Lists.<Subchannel>newArrayList(), Status.UNKNOWN, random);
+
+    assertNull(picker.pickSubchannel(mockArgs).getSubchannel());
+    assertEquals(Status.UNKNOWN, picker.pickSubchannel(mockArgs).getStatus());
+
+    picker = new Picker(Lists.<Subchannel>newArrayList(), null, random);
+    assertSame(PickResult.withNoResult(), picker.pickSubchannel(mockArgs));
+  }
+
+  @Test
+  public void removedAddressesAreShutDown() throws Exception {
+    loadBalancer.handleResolvedAddressGroups(servers, Attributes.EMPTY);
+    loadBalancer.handleResolvedAddressGroups(servers.subList(1, 3), Attributes.EMPTY);
+
+    verify(subchannels.get(servers.get(0))).shutdown();
+    assertThat(loadBalancer.getSubchannels()).containsExactly(
+        subchannels.get(servers.get(1)), subchannels.get(servers.get(2)));
+  }
+
+  @Test
+  public void nameResolutionErrorWithNoChannels() throws Exception {
+    loadBalancer.handleNameResolutionError(Status.NOT_FOUND);
+
+    verify(mockHelper).updatePicker(pickerCaptor.capture());
+    PickResult pickResult = pickerCaptor.getValue().pickSubchannel(mockArgs);
+    assertNull(pickResult.getSubchannel());
+    assertEquals(Status.NOT_FOUND, pickResult.getStatus());
+  }
+
+  private static class FakeSocketAddress extends SocketAddress {
+    final String name;
+
+    FakeSocketAddress(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public String toString() {
+      return "FakeSocketAddress-" + name;
+    }
+  }
+}
@@ -0,0 +1,348 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.util;
+
+import static io.grpc.ConnectivityState.IDLE;
+import static io.grpc.ConnectivityState.READY;
+import static io.grpc.ConnectivityState.TRANSIENT_FAILURE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.argThat;
+import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.grpc.Attributes;
+import io.grpc.ClientStreamTracer;
+import io.grpc.ConnectivityState;
+import io.grpc.ConnectivityStateInfo;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.LoadBalancer;
+import io.grpc.LoadBalancer.Helper;
+import io.grpc.LoadBalancer.PickResult;
+import io.grpc.LoadBalancer.PickSubchannelArgs;
+import io.grpc.LoadBalancer.Subchannel;
+import io.grpc.LoadBalancer.SubchannelPicker;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.internal.BackoffPolicy;
+import io.grpc.internal.FakeClock;
+import io.grpc.internal.ObjectPool;
+import io.grpc.util.OutlierDetectionLoadBalancerFactory.OutlierDetectionLoadBalancer;
+import io.grpc.util.OutlierDetectionLoadBalancerFactory.OutlierDetectionLoadBalancer.OutlierSubchannel;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatcher;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/** Unit test for {@link OutlierDetectionLoadBalancerFactory}. */
+@RunWith(JUnit4.class)
+public class OutlierDetectionLoadBalancerTest {
+  private static final long INTERVAL_SECONDS = 10;
+
+  private final FakeClock fakeClock = new FakeClock();
+  private final List<Subchannel> realSubchannels = new ArrayList<Subchannel>();
+  private final List<Subchannel> subchannels = new ArrayList<Subchannel>();
+  private int backoffPolicyCount;
+  private int returnedTimers;
+
+  @Mock
+  private Helper mockHelper;
+  @Mock
+  private LoadBalancer.Factory mockDelegateFactory;
+  @Mock
+  private LoadBalancer mockDelegate;
+  @Mock
+  private PickSubchannelArgs mockArgs;
+
+  private OutlierDetectionLoadBalancerFactory factory;
+  private OutlierDetectionLoadBalancer loadBalancer;
+  private Helper delegateHelper;
+
+  private final ObjectPool<ScheduledExecutorService> timerServicePool =
+      new ObjectPool<ScheduledExecutorService>() {
+        @Override
+        public ScheduledExecutorService getObject() {
+          return fakeClock.getScheduledExecutorService();
+        }
+
+        @Override
+        public ScheduledExecutorService returnObject(Object object) {
+          returnedTimers++;
+          return null;
+        }
+      };
+
+  // Ejects for 1s, then 2s, 3s, ... for each policy it hands out.
+  private final BackoffPolicy.Provider backoffPolicyProvider = new BackoffPolicy.Provider() {
+    @Override
+    public BackoffPolicy get() {
+      backoffPolicyCount++;
+      return new BackoffPolicy() {
+        private int attempts;
+
+        @Override
+        public long nextBackoffNanos() {
+          return TimeUnit.SECONDS.toNanos(++attempts);
+        }
+      };
+    }
+  };
+
+  @Before
+  public void setUp() {
+    MockitoAnnotations.initMocks(this);
+    when(mockHelper.createSubchannel(any(EquivalentAddressGroup.class), any(Attributes.class)))
+        .then(new Answer<Subchannel>() {
+          @Override
+          public Subchannel answer(InvocationOnMock invocation) throws Throwable {
+            Subchannel subchannel = mock(Subchannel.class);
+            realSubchannels.add(subchannel);
+            return subchannel;
+          }
+        });
+    doRunSerializedInline();
+    ArgumentCaptor<Helper> helperCaptor = ArgumentCaptor.forClass(Helper.class);
+    when(mockDelegateFactory.newLoadBalancer(helperCaptor.capture())).thenReturn(mockDelegate);
+
+    factory = OutlierDetectionLoadBalancerFactory.newBuilder(mockDelegateFactory)
+        .setInterval(INTERVAL_SECONDS, TimeUnit.SECONDS)
+        .setRequestVolume(10)
+        .setMinimumHosts(3)
+        .setMaxEjectionPercent(50)
+        // With four subchannels, a single outlier is at most sqrt(3) deviations from the mean
+        .setSuccessRateStdevFactor(1.5)
+        .build();
+    loadBalancer = new OutlierDetectionLoadBalancer(factory, mockHelper, timerServicePool,
+        fakeClock.getTicker(), backoffPolicyProvider);
+    delegateHelper = helperCaptor.getValue();
+
+    for (int i = 0; i < 4; i++) {
+      subchannels.add(delegateHelper.createSubchannel(
+          new EquivalentAddressGroup(new InetSocketAddress(i)), Attributes.EMPTY));
+    }
+  }
+
+  @Test
+  public void picksReturnChannelSubchannelsWithCountingTracer() {
+    Subchannel wrapper = subchannels.get(0);
+    assertNotSame(realSubchannels.get(0), wrapper);
+    delegateHelper.updatePicker(pickerFor(wrapper, null));
+
+    PickResult result = capturePicker().pickSubchannel(mockArgs);
+
+    assertSame(realSubchannels.get(0), result.getSubchannel());
+    result.getStreamTracerFactory().newClientStreamTracer(new Metadata())
+        .streamClosed(Status.OK);
+    assertEquals(1, ((OutlierSubchannel) wrapper).counter.successes.get());
+  }
+
+  @Test
+  public void delegateTracerFactoryIsKept() {
+    ClientStreamTracer delegateTracer = mock(ClientStreamTracer.class);
+    ClientStreamTracer.Factory delegateTracerFactory = mock(ClientStreamTracer.Factory.class);
+    when(delegateTracerFactory.newClientStreamTracer(any(Metadata.class)))
+        .thenReturn(delegateTracer);
+    delegateHelper.updatePicker(pickerFor(subchannels.get(0), delegateTracerFactory));
+
+    PickResult result = capturePicker().pickSubchannel(mockArgs);
+    ClientStreamTracer tracer =
+        result.getStreamTracerFactory().newClientStreamTracer(new Metadata());
+    tracer.inboundMessage();
+    tracer.streamClosed(Status.UNAVAILABLE);
+
+    verify(delegateTracer).inboundMessage();
+    verify(delegateTracer).streamClosed(Status.UNAVAILABLE);
+    assertEquals(1, ((OutlierSubchannel) subchannels.get(0)).counter.failures.get());
+  }
+
+  @Test
+  public void failingSubchannelIsEjectedAndRestored() {
+    ConnectivityStateInfo ready = ConnectivityStateInfo.forNonError(READY);
+    loadBalancer.handleSubchannelState(realSubchannels.get(3), ready);
+    verify(mockDelegate).handleSubchannelState(subchannels.get(3), ready);
+    recordCalls(0, 20, Status.OK);
+    recordCalls(1, 20, Status.OK);
+    recordCalls(2, 20, Status.OK);
+    recordCalls(3, 20, Status.UNAVAILABLE);
+
+    fakeClock.forwardTime(INTERVAL_SECONDS, TimeUnit.SECONDS);
+
+    verify(mockDelegate).handleSubchannelState(
+        same(subchannels.get(3)), argThat(hasState(TRANSIENT_FAILURE)));
+    assertTrue(((OutlierSubchannel) subchannels.get(3)).ejected);
+    assertEquals(1, factory.getEjectionCount());
+    assertEquals(1, factory.getEjectedSubchannelCount());
+
+    // State changes of an ejected subchannel are remembered but not passed on
+    ConnectivityStateInfo idle = ConnectivityStateInfo.forNonError(IDLE);
+    loadBalancer.handleSubchannelState(realSubchannels.get(3), idle);
+    verify(mockDelegate, never()).handleSubchannelState(subchannels.get(3), idle);
+
+    fakeClock.forwardTime(INTERVAL_SECONDS, TimeUnit.SECONDS);
+
+    verify(mockDelegate).handleSubchannelState(subchannels.get(3), idle);
+    assertFalse(((OutlierSubchannel) subchannels.get(3)).ejected);
+    assertEquals(1, factory.getEjectionCount());
+    assertEquals(0, factory.getEjectedSubchannelCount());
+  }
+
+  @Test
+  public void statisticalOutlierIsEjected() {
+    recordCalls(0, 100, Status.OK);
+    recordCalls(1, 100, Status.OK);
+    recordCalls(2, 100, Status.OK);
+    recordCalls(3, 60, Status.OK);
+    recordCalls(3, 40, Status.DEADLINE_EXCEEDED);
+
+    fakeClock.forwardTime(INTERVAL_SECONDS, TimeUnit.SECONDS);
+
+    // 40% failures is below the failure percentage threshold, but far from its peers
+    assertTrue(((OutlierSubchannel) subchannels.get(3)).ejected);
+    assertFalse(((OutlierSubchannel) subchannels.get(0)).ejected);
+  }
+
+  @Test
+  public void noEjectionBelowRequestVolumeOrMinimumHosts() {
+    recordCalls(0, 20, Status.OK);
+    recordCalls(1, 20, Status.OK);
+    recordCalls(2, 9, Status.OK);
+    recordCalls(3, 9, Status.UNAVAILABLE);
+
+    fakeClock.forwardTime(INTERVAL_SECONDS, TimeUnit.SECONDS);
+
+    assertEquals(0, factory.getEjectionCount());
+  }
+
+  @Test
+  public void cancelledCallsAreNotCounted() {
+    recordCalls(0, 20, Status.CANCELLED);
+
+    assertEquals(0, ((OutlierSubchannel) subchannels.get(0)).counter.failures.get());
+  }
+
+  @Test
+  public void maxEjectionPercentLimitsEjections() {
+    recordCalls(0, 20, Status.OK);
+    recordCalls(1, 20, Status.UNAVAILABLE);
+    recordCalls(2, 20, Status.UNAVAILABLE);
+    recordCalls(3, 20, Status.UNAVAILABLE);
+
+    fakeClock.forwardTime(INTERVAL_SECONDS, TimeUnit.SECONDS);
+
+    // Ejections stop once 2 of 4, that is the 50% limit, are ejected
+    assertEquals(2, factory.getEjectedSubchannelCount());
+  }
+
+  @Test
+  public void repeatedEjectionsBackOff() {
+    OutlierSubchannel outlier = (OutlierSubchannel) subchannels.get(3);
+    recordCalls(0, 20, Status.OK);
+    recordCalls(1, 20, Status.OK);
+    recordCalls(2, 20, Status.OK);
+    recordCalls(3, 20, Status.UNAVAILABLE);
+    fakeClock.forwardTime(INTERVAL_SECONDS, TimeUnit.SECONDS);
+    assertEquals(fakeClock.getTicker().read() + TimeUnit.SECONDS.toNanos(1),
+        outlier.ejectionEndNanos);
+
+    // Restored at the next interval, and ejected again at the one after
+    fakeClock.forwardTime(INTERVAL_SECONDS, TimeUnit.SECONDS);
+    assertFalse(outlier.ejected);
+    recordCalls(0, 20, Status.OK);
+    recordCalls(1, 20, Status.OK);
+    recordCalls(2, 20, Status.OK);
+    recordCalls(3, 20, Status.UNAVAILABLE);
+    fakeClock.forwardTime(INTERVAL_SECONDS, TimeUnit.SECONDS);
+
+    assertTrue(outlier.ejected);
+    assertEquals(fakeClock.getTicker().read() + TimeUnit.SECONDS.toNanos(2),
+        outlier.ejectionEndNanos);
+    assertEquals(1, backoffPolicyCount);
+  }
+
+  @Test
+  public void shutdownStopsDetection() {
+    assertEquals(1, fakeClock.numPendingTasks());
+
+    loadBalancer.shutdown();
+
+    verify(mockDelegate).shutdown();
+    assertEquals(0, fakeClock.numPendingTasks());
+    assertEquals(1, returnedTimers);
+  }
+
+  private void recordCalls(int index, int count, Status status) {
+    ClientStreamTracer.Factory counter = ((OutlierSubchannel) subchannels.get(index)).counter;
+    for (int i = 0; i < count; i++) {
+      counter.newClientStreamTracer(new Metadata()).streamClosed(status);
+    }
+  }
+
+  private SubchannelPicker capturePicker() {
+    ArgumentCaptor<SubchannelPicker> pickerCaptor = ArgumentCaptor.forClass(SubchannelPicker.class);
+    verify(mockHelper).updatePicker(pickerCaptor.capture());
+    return pickerCaptor.getValue();
+  }
+
+  private void doRunSerializedInline() {
+    doAnswer(new Answer<Void>() {
+        @Override
+        public Void answer(InvocationOnMock invocation) {
+          ((Runnable) invocation.getArguments()[0]).run();
+          return null;
+        }
+      }).when(mockHelper).runSerialized(any(Runnable.class));
+  }
+
+  private static SubchannelPicker pickerFor(
+      final Subchannel subchannel, final ClientStreamTracer.Factory tracerFactory) {
+    return new SubchannelPicker() {
+      @Override
+      public PickResult pickSubchannel(PickSubchannelArgs args) {
+        return PickResult.withSubchannel(subchannel, tracerFactory);
+      }
+    };
+  }
+
+  private static ArgumentMatcher<ConnectivityStateInfo> hasState(
+      final ConnectivityState state) {
+    return new ArgumentMatcher<ConnectivityStateInfo>() {
+      @Override
+      public boolean matches(Object argument) {
+        return ((ConnectivityStateInfo) argument).getState() == state;
+      }
+    };
+  }
+}
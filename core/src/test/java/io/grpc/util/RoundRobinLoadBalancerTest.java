@@ -51,6 +51,8 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import org.junit.After;
 import org.junit.Before;
@@ -287,6 +289,75 @@ public class RoundRobinLoadBalancerTest {
     assertEquals(subchannel, picker.pickSubchannel(mockArgs).getSubchannel());
   }
 
+  @Test
+  public void pickerWeighted() throws Exception {
+    Subchannel subchannel = mock(Subchannel.class);
+    Subchannel subchannel1 = mock(Subchannel.class);
+    Subchannel subchannel2 = mock(Subchannel.class);
+
+    Picker picker = new Picker(
+        Lists.<Subchannel>newArrayList(subchannel, subchannel1, subchannel2),
+        Lists.newArrayList(4, 2, 2), null);
+
+    assertThat(picker.getList()).containsExactly(subchannel, subchannel1, subchannel2);
+    // Weights are reduced by their common divisor and the heavy subchannel is interleaved.
+    assertThat(picker.getSchedule())
+        .containsExactly(subchannel, subchannel1, subchannel2, subchannel).inOrder();
+    for (int i = 0; i < 2; i++) {
+      assertEquals(subchannel, picker.pickSubchannel(mockArgs).getSubchannel());
+      assertEquals(subchannel1, picker.pickSubchannel(mockArgs).getSubchannel());
+      assertEquals(subchannel2, picker.pickSubchannel(mockArgs).getSubchannel());
+      assertEquals(subchannel, picker.pickSubchannel(mockArgs).getSubchannel());
+    }
+  }
+
+  @Test
+  public void pickerWeightedScheduleIsBounded() throws Exception {
+    Subchannel subchannel = mock(Subchannel.class);
+    Subchannel subchannel1 = mock(Subchannel.class);
+
+    Picker picker = new Picker(Lists.<Subchannel>newArrayList(subchannel, subchannel1),
+        Lists.newArrayList(Integer.MAX_VALUE, 1), null);
+
+    List<Subchannel> schedule = picker.getSchedule();
+    assertThat(schedule.size()).isAtMost(Picker.MAX_SCHEDULE_SIZE);
+    assertEquals(1, Collections.frequency(schedule, subchannel1));
+  }
+
+  @Test
+  public void pickerConcurrentPicksAreEvenlySpread() throws Exception {
+    final int threads = 4;
+    final int picksPerThread = 3000;
+    final List<Subchannel> list = Lists.newArrayList(
+        mock(Subchannel.class), mock(Subchannel.class), mock(Subchannel.class));
+    final Picker picker = new Picker(list, null);
+    final ConcurrentMap<Subchannel, AtomicInteger> counts = Maps.newConcurrentMap();
+    for (Subchannel subchannel : list) {
+      counts.put(subchannel, new AtomicInteger());
+    }
+    final PickSubchannelArgs args = mock(PickSubchannelArgs.class);
+    List<Thread> pickers = Lists.newArrayList();
+    for (int i = 0; i < threads; i++) {
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int j = 0; j < picksPerThread; j++) {
+            counts.get(picker.pickSubchannel(args).getSubchannel()).incrementAndGet();
+          }
+        }
+      });
+      pickers.add(thread);
+      thread.start();
+    }
+    for (Thread thread : pickers) {
+      thread.join();
+    }
+
+    for (Subchannel subchannel : list) {
+      assertEquals(threads * picksPerThread / list.size(), counts.get(subchannel).get());
+    }
+  }
+
   @Test
   public void pickerEmptyList() throws Exception {
     Picker picker = new Picker(Lists.<Subchannel>newArrayList(), Status.UNKNOWN);
@@ -362,6 +433,47 @@ public class RoundRobinLoadBalancerTest {
     assertThat(pickers.hasNext()).isFalse();
   }
 
+  @Test
+  public void weightedBalancerUsesAddressWeights() throws Exception {
+    loadBalancer = (RoundRobinLoadBalancer) RoundRobinLoadBalancerFactory.getWeightedInstance()
+        .newLoadBalancer(mockHelper);
+    List<EquivalentAddressGroup> weightedServers = Lists.newArrayList();
+    for (int i = 0; i < servers.size(); i++) {
+      weightedServers.add(new EquivalentAddressGroup(servers.get(i).getAddresses(),
+          Attributes.newBuilder().set(RoundRobinLoadBalancerFactory.WEIGHT, i + 1).build()));
+    }
+
+    loadBalancer.handleResolvedAddressGroups(weightedServers, Attributes.EMPTY);
+    for (Subchannel subchannel : subchannels.values()) {
+      loadBalancer.handleSubchannelState(subchannel, ConnectivityStateInfo.forNonError(READY));
+    }
+
+    verify(mockHelper, times(4)).updatePicker(pickerCaptor.capture());
+    Picker picker = pickerCaptor.getValue();
+    for (int i = 0; i < servers.size(); i++) {
+      Subchannel subchannel = subchannels.get(servers.get(i));
+      assertEquals(i + 1, Collections.frequency(picker.getSchedule(), subchannel));
+    }
+  }
+
+  @Test
+  public void unweightedBalancerIgnoresAddressWeights() throws Exception {
+    List<EquivalentAddressGroup> weightedServers = Lists.newArrayList();
+    for (EquivalentAddressGroup server : servers) {
+      weightedServers.add(new EquivalentAddressGroup(server.getAddresses(),
+          Attributes.newBuilder().set(RoundRobinLoadBalancerFactory.WEIGHT, 5).build()));
+    }
+    weightedServers.set(0, servers.get(0));
+
+    loadBalancer.handleResolvedAddressGroups(weightedServers, Attributes.EMPTY);
+    for (Subchannel subchannel : subchannels.values()) {
+      loadBalancer.handleSubchannelState(subchannel, ConnectivityStateInfo.forNonError(READY));
+    }
+
+    verify(mockHelper, times(4)).updatePicker(pickerCaptor.capture());
+    assertThat(pickerCaptor.getValue().getSchedule()).hasSize(servers.size());
+  }
+
   private static class FakeSocketAddress extends SocketAddress {
     final String name;
 
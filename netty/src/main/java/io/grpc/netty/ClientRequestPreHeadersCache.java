@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.grpc.netty;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import io.grpc.netty.GrpcHttp2OutboundHeaders.ClientRequestPreHeaders;
+import io.netty.util.AsciiString;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nullable;
+
+/**
+ * The request headers gRPC adds itself, built once per method and authority for a transport and
+ * shared by the streams of that method. Only the transport's own authority is cached, so streams
+ * with an overridden authority build their headers themselves instead of replacing entries. The
+ * cache stops growing after {@link #MAX_SIZE} methods, so method descriptors built per call, like
+ * those of a generic proxy, can't grow it without bound.
+ */
+final class ClientRequestPreHeadersCache {
+  static final int MAX_SIZE = 1000;
+
+  private final AsciiString authority;
+  private final ConcurrentMap<String, ClientRequestPreHeaders> byMethodName =
+      new ConcurrentHashMap<String, ClientRequestPreHeaders>();
+
+  ClientRequestPreHeadersCache(AsciiString authority) {
+    this.authority = checkNotNull(authority, "authority");
+  }
+
+  /**
+   * Returns the headers cached for the method and authority, or {@code null}.
+   */
+  @Nullable
+  ClientRequestPreHeaders get(String fullMethodName, AsciiString authority) {
+    if (!this.authority.equals(authority)) {
+      return null;
+    }
+    return byMethodName.get(fullMethodName);
+  }
+
+  /**
+   * Caches the headers for the method, unless they are for another authority or the cache is full.
+   */
+  void put(String fullMethodName, ClientRequestPreHeaders preHeaders) {
+    if (!authority.equals(preHeaders.authority()) || byMethodName.size() >= MAX_SIZE) {
+      return;
+    }
+    byMethodName.put(fullMethodName, preHeaders);
+  }
+
+  int size() {
+    return byMethodName.size();
+  }
+}
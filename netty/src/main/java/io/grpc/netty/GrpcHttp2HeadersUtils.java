@@ -33,6 +33,7 @@ package io.grpc.netty;
 
 import static com.google.common.base.Charsets.US_ASCII;
 import static com.google.common.base.Preconditions.checkArgument;
+import static io.grpc.netty.Utils.CONTENT_TYPE_HEADER;
 import static io.grpc.netty.Utils.TE_HEADER;
 import static io.netty.handler.codec.http2.Http2Error.PROTOCOL_ERROR;
 import static io.netty.handler.codec.http2.Http2Exception.connectionError;
@@ -90,15 +91,16 @@ class GrpcHttp2HeadersUtils {
 
     private static final AsciiString binaryHeaderSuffix =
         new AsciiString(Metadata.BINARY_HEADER_SUFFIX.getBytes(US_ASCII));
+    private static final BaseEncoding base64OmitPadding = BaseEncoding.base64().omitPadding();
 
+    // Names and values are decoded straight into the array that later backs the Metadata. The
+    // AsciiString form of a value is only created when it is asked for, which is rare.
     private byte[][] namesAndValues;
-    private AsciiString[] values;
     private int namesAndValuesIdx;
 
     GrpcHttp2InboundHeaders(int numHeadersGuess) {
       checkArgument(numHeadersGuess > 0, "numHeadersGuess needs to be gt zero.");
       namesAndValues = new byte[numHeadersGuess * 2][];
-      values = new AsciiString[numHeadersGuess];
     }
 
     protected Http2Headers add(AsciiString name, AsciiString value) {
@@ -107,7 +109,6 @@ class GrpcHttp2HeadersUtils {
       }
       byte[] nameBytes = bytes(name);
       byte[] valueBytes = toBinaryValue(name, value);
-      values[namesAndValuesIdx / 2] = value;
       namesAndValues[namesAndValuesIdx] = nameBytes;
       namesAndValuesIdx++;
       namesAndValues[namesAndValuesIdx] = valueBytes;
@@ -118,7 +119,7 @@ class GrpcHttp2HeadersUtils {
     protected CharSequence get(AsciiString name) {
       for (int i = 0; i < namesAndValuesIdx; i += 2) {
         if (equals(name, namesAndValues[i])) {
-          return values[i / 2];
+          return value(i);
         }
       }
       return null;
@@ -130,12 +131,31 @@ class GrpcHttp2HeadersUtils {
       List<CharSequence> returnValues = new ArrayList<CharSequence>(4);
       for (int i = 0; i < namesAndValuesIdx; i += 2) {
         if (equals(name, namesAndValues[i])) {
-          returnValues.add(values[i / 2]);
+          returnValues.add(value(i));
         }
       }
       return returnValues;
     }
 
+    /**
+     * Returns the value of the header whose name is at index {@code nameIdx}, in the form it was
+     * received in. Values of binary headers are base64 encoded again, without padding.
+     */
+    private AsciiString value(int nameIdx) {
+      byte[] value = namesAndValues[nameIdx + 1];
+      if (endsWith(namesAndValues[nameIdx], binaryHeaderSuffix)) {
+        return new AsciiString(base64OmitPadding.encode(value).getBytes(US_ASCII), false);
+      }
+      return new AsciiString(value, false);
+    }
+
+    private static boolean endsWith(byte[] name, AsciiString suffix) {
+      int suffixLength = suffix.length();
+      return name.length >= suffixLength
+          && equals(name, name.length - suffixLength, suffixLength, suffix.array(),
+              suffix.arrayOffset(), suffixLength);
+    }
+
     /**
      * Returns the header names and values as bytes. An even numbered index contains the
      * {@code byte[]} representation of a header name (in insertion order), and the subsequent
@@ -209,15 +229,12 @@ class GrpcHttp2HeadersUtils {
     }
 
     private void expandHeadersAndValues() {
-      int newValuesLen = Math.max(2, values.length + values.length / 2);
-      int newNamesAndValuesLen = newValuesLen * 2;
+      int numHeaders = namesAndValues.length / 2;
+      int newNamesAndValuesLen = Math.max(2, numHeaders + numHeaders / 2) * 2;
 
       byte[][] newNamesAndValues = new byte[newNamesAndValuesLen][];
-      AsciiString[] newValues = new AsciiString[newValuesLen];
       System.arraycopy(namesAndValues, 0, newNamesAndValues, 0, namesAndValues.length);
-      System.arraycopy(values, 0, newValues, 0, values.length);
       namesAndValues = newNamesAndValues;
-      values = newValues;
     }
 
     @Override
@@ -239,7 +256,7 @@ class GrpcHttp2HeadersUtils {
       for (int i = 0; i < namesAndValuesIdx; i += 2) {
         String name = new String(namesAndValues[i], US_ASCII);
         // If binary headers, the value is base64 encoded.
-        AsciiString value = values[i / 2];
+        AsciiString value = value(i);
         appendNameAndValue(builder, name, value, prependSeparator);
         prependSeparator = true;
       }
@@ -267,6 +284,7 @@ class GrpcHttp2HeadersUtils {
     private AsciiString method;
     private AsciiString scheme;
     private AsciiString te;
+    private AsciiString contentType;
 
     GrpcHttp2RequestHeaders(int numHeadersGuess) {
       super(numHeadersGuess);
@@ -284,6 +302,10 @@ class GrpcHttp2HeadersUtils {
         te = value;
         return this;
       }
+      if (contentType == null && equals(CONTENT_TYPE_HEADER, name)) {
+        // Kept in the array as well, since it is part of the Metadata.
+        contentType = value;
+      }
       return add(name, value);
     }
 
@@ -294,6 +316,9 @@ class GrpcHttp2HeadersUtils {
       if (equals(TE_HEADER, name)) {
         return te;
       }
+      if (equals(CONTENT_TYPE_HEADER, name)) {
+        return contentType;
+      }
       return get(name);
     }
 
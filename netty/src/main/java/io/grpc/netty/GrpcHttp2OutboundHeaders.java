@@ -34,16 +34,13 @@ final class GrpcHttp2OutboundHeaders extends AbstractHttp2Headers {
   static GrpcHttp2OutboundHeaders clientRequestHeaders(byte[][] serializedMetadata,
       AsciiString authority, AsciiString path, AsciiString method, AsciiString scheme,
       AsciiString userAgent) {
-    AsciiString[] preHeaders = new AsciiString[] {
-        Http2Headers.PseudoHeaderName.AUTHORITY.value(), authority,
-        Http2Headers.PseudoHeaderName.PATH.value(), path,
-        Http2Headers.PseudoHeaderName.METHOD.value(), method,
-        Http2Headers.PseudoHeaderName.SCHEME.value(), scheme,
-        Utils.CONTENT_TYPE_HEADER, Utils.CONTENT_TYPE_GRPC,
-        Utils.TE_HEADER, Utils.TE_TRAILERS,
-        Utils.USER_AGENT, userAgent,
-    };
-    return new GrpcHttp2OutboundHeaders(preHeaders, serializedMetadata);
+    return clientRequestHeaders(serializedMetadata,
+        new ClientRequestPreHeaders(authority, path, method, scheme, userAgent));
+  }
+
+  static GrpcHttp2OutboundHeaders clientRequestHeaders(byte[][] serializedMetadata,
+      ClientRequestPreHeaders preHeaders) {
+    return new GrpcHttp2OutboundHeaders(preHeaders.headers, serializedMetadata);
   }
 
   static GrpcHttp2OutboundHeaders serverResponseHeaders(byte[][] serializedMetadata) {
@@ -66,6 +63,57 @@ final class GrpcHttp2OutboundHeaders extends AbstractHttp2Headers {
     this.preHeaders = preHeaders;
   }
 
+  /**
+   * The headers gRPC itself adds to a request, ahead of the ones from the call's {@code Metadata}.
+   * They only depend on the method and the transport, so an instance can be built once and shared
+   * by all calls of a method on a transport, which saves building them again for every call.
+   */
+  static final class ClientRequestPreHeaders {
+    private final AsciiString authority;
+    private final AsciiString path;
+    private final AsciiString method;
+    private final AsciiString scheme;
+    private final AsciiString userAgent;
+    // Never modified once built, so it can be shared between headers instances.
+    private final AsciiString[] headers;
+
+    ClientRequestPreHeaders(AsciiString authority, AsciiString path, AsciiString method,
+        AsciiString scheme, AsciiString userAgent) {
+      this.authority = authority;
+      this.path = path;
+      this.method = method;
+      this.scheme = scheme;
+      this.userAgent = userAgent;
+      headers = new AsciiString[] {
+          Http2Headers.PseudoHeaderName.AUTHORITY.value(), authority,
+          Http2Headers.PseudoHeaderName.PATH.value(), path,
+          Http2Headers.PseudoHeaderName.METHOD.value(), method,
+          Http2Headers.PseudoHeaderName.SCHEME.value(), scheme,
+          Utils.CONTENT_TYPE_HEADER, Utils.CONTENT_TYPE_GRPC,
+          Utils.TE_HEADER, Utils.TE_TRAILERS,
+          Utils.USER_AGENT, userAgent,
+      };
+    }
+
+    AsciiString authority() {
+      return authority;
+    }
+
+    /**
+     * Returns {@code true} if these headers were built for the given values, so they can be reused.
+     */
+    boolean matches(AsciiString authority, AsciiString method, AsciiString scheme,
+        AsciiString userAgent) {
+      return equal(this.authority, authority) && equal(this.method, method)
+          && equal(this.scheme, scheme) && equal(this.userAgent, userAgent);
+    }
+
+    private static boolean equal(AsciiString a, AsciiString b) {
+      // Usually the very same instances, as they are owned by the transport.
+      return a == b || (a != null && a.equals(b));
+    }
+  }
+
   @Override
   public Iterator<Entry<CharSequence, CharSequence>> iterator() {
     return new Itr();
@@ -49,6 +49,7 @@ import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.CheckReturnValue;
 import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
 import javax.net.ssl.SSLException;
 
 /**
@@ -67,7 +68,8 @@ public final class NettyChannelBuilder
 
   private NegotiationType negotiationType = NegotiationType.TLS;
   private OverrideAuthorityChecker authorityChecker;
-  private Class<? extends Channel> channelType = NioSocketChannel.class;
+  @Nullable
+  private Class<? extends Channel> channelType;
 
   @Nullable
   private EventLoopGroup eventLoopGroup;
@@ -77,6 +79,7 @@ public final class NettyChannelBuilder
   private long keepAliveTimeNanos = KEEPALIVE_TIME_NANOS_DISABLED;
   private long keepAliveTimeoutNanos = DEFAULT_KEEPALIVE_TIMEOUT_NANOS;
   private boolean keepAliveWithoutCalls;
+  private WriteQueue.FlushPolicy flushPolicy = WriteQueue.FlushPolicy.IMMEDIATE;
   private TransportCreationParamsFilterFactory dynamicParamsFactory;
 
   /**
@@ -133,7 +136,10 @@ public final class NettyChannelBuilder
   }
 
   /**
-   * Specifies the channel type to use, by default we use {@link NioSocketChannel}.
+   * Specifies the channel type to use. If an {@link #eventLoopGroup} is provided without a channel
+   * type, the channel type matching the group is used. Otherwise Unix domain socket addresses use
+   * Netty's native epoll transport, and other addresses use {@link NioSocketChannel}, unless the
+   * {@code io.grpc.netty.useEpoll} system property is set to {@code true} and epoll is available.
    */
   public NettyChannelBuilder channelType(Class<? extends Channel> channelType) {
     this.channelType = Preconditions.checkNotNull(channelType, "channelType");
@@ -317,13 +323,32 @@ public final class NettyChannelBuilder
     return this;
   }
 
+  /**
+   * Enables coalescing of writes to the socket. Instead of flushing as soon as pending writes have
+   * been handed to the connection, writes are kept pending until at least {@code
+   * flushThresholdBytes} bytes of messages are waiting, or until {@code maxFlushDelay} has passed
+   * since the first pending write. This reduces the number of flushes, and thus syscalls, when
+   * many small messages are sent on a connection, at the cost of up to {@code maxFlushDelay} of
+   * added latency. Disabled by default.
+   */
+  @ExperimentalApi
+  public NettyChannelBuilder writeCoalescing(
+      int flushThresholdBytes, long maxFlushDelay, TimeUnit timeUnit) {
+    checkArgument(flushThresholdBytes > 0, "flush threshold must be positive");
+    checkArgument(maxFlushDelay > 0L, "max flush delay must be positive");
+    flushPolicy =
+        WriteQueue.FlushPolicy.coalescing(flushThresholdBytes, timeUnit.toNanos(maxFlushDelay));
+    return this;
+  }
+
   @Override
   @CheckReturnValue
   @Internal
   protected ClientTransportFactory buildTransportFactory() {
     return new NettyTransportFactory(dynamicParamsFactory, channelType, channelOptions,
         negotiationType, sslContext, eventLoopGroup, flowControlWindow, maxInboundMessageSize(),
-        maxHeaderListSize, keepAliveTimeNanos, keepAliveTimeoutNanos, keepAliveWithoutCalls);
+        maxHeaderListSize, keepAliveTimeNanos, keepAliveTimeoutNanos, keepAliveWithoutCalls,
+        flushPolicy);
   }
 
   @Override
@@ -429,26 +454,34 @@ public final class NettyChannelBuilder
   @CheckReturnValue
   private static final class NettyTransportFactory implements ClientTransportFactory {
     private final TransportCreationParamsFilterFactory transportCreationParamsFilterFactory;
+    @Nullable
     private final Class<? extends Channel> channelType;
     private final Map<ChannelOption<?>, ?> channelOptions;
     private final NegotiationType negotiationType;
     private final SslContext sslContext;
     private final EventLoopGroup group;
-    private final boolean usingSharedGroup;
+    @Nullable
+    private final SharedResourceHolder.Resource<EventLoopGroup> sharedGroup;
+    // The shared epoll group, for Unix domain socket addresses when the shared group is not epoll.
+    @GuardedBy("this")
+    @Nullable
+    private EventLoopGroup domainSocketGroup;
     private final int flowControlWindow;
     private final int maxMessageSize;
     private final int maxHeaderListSize;
     private final AtomicBackoff keepAliveTimeNanos;
     private final long keepAliveTimeoutNanos;
     private final boolean keepAliveWithoutCalls;
+    private final WriteQueue.FlushPolicy flushPolicy;
 
     private boolean closed;
 
     NettyTransportFactory(TransportCreationParamsFilterFactory transportCreationParamsFilterFactory,
-        Class<? extends Channel> channelType, Map<ChannelOption<?>, ?> channelOptions,
+        @Nullable Class<? extends Channel> channelType, Map<ChannelOption<?>, ?> channelOptions,
         NegotiationType negotiationType, SslContext sslContext, EventLoopGroup group,
         int flowControlWindow, int maxMessageSize, int maxHeaderListSize,
-        long keepAliveTimeNanos, long keepAliveTimeoutNanos, boolean keepAliveWithoutCalls) {
+        long keepAliveTimeNanos, long keepAliveTimeoutNanos, boolean keepAliveWithoutCalls,
+        WriteQueue.FlushPolicy flushPolicy) {
       this.channelType = channelType;
       this.negotiationType = negotiationType;
       this.channelOptions = new HashMap<ChannelOption<?>, Object>(channelOptions);
@@ -477,12 +510,14 @@ public final class NettyChannelBuilder
       this.maxHeaderListSize = maxHeaderListSize;
       this.keepAliveTimeNanos = new AtomicBackoff("keepalive time nanos", keepAliveTimeNanos);
       this.keepAliveTimeoutNanos = keepAliveTimeoutNanos;
+      this.flushPolicy = flushPolicy;
       this.keepAliveWithoutCalls = keepAliveWithoutCalls;
-      usingSharedGroup = group == null;
-      if (usingSharedGroup) {
-        // The group was unspecified, using the shared group.
-        this.group = SharedResourceHolder.get(Utils.DEFAULT_WORKER_EVENT_LOOP_GROUP);
+      if (group == null) {
+        // The group was unspecified, using the shared group that fits the channel type.
+        sharedGroup = Utils.sharedWorkerGroup(channelType, null, null);
+        this.group = SharedResourceHolder.get(sharedGroup);
       } else {
+        sharedGroup = null;
         this.group = group;
       }
     }
@@ -502,12 +537,21 @@ public final class NettyChannelBuilder
           keepAliveTimeNanosState.backoff();
         }
       };
+      SocketAddress targetServerAddress = dparams.getTargetServerAddress();
+      EventLoopGroup transportGroup = group;
+      if (channelType == null && sharedGroup != null
+          && Utils.isDomainSocketAddress(targetServerAddress)
+          && !Utils.isEpollEventLoopGroup(group)) {
+        transportGroup = domainSocketGroup();
+      }
+      Class<? extends Channel> transportChannelType = channelType != null
+          ? channelType : Utils.clientChannelType(transportGroup, targetServerAddress);
       NettyClientTransport transport = new NettyClientTransport(
-          dparams.getTargetServerAddress(), channelType, channelOptions, group,
+          targetServerAddress, transportChannelType, channelOptions, transportGroup,
           dparams.getProtocolNegotiator(), flowControlWindow,
           maxMessageSize, maxHeaderListSize, keepAliveTimeNanosState.get(), keepAliveTimeoutNanos,
           keepAliveWithoutCalls, dparams.getAuthority(), dparams.getUserAgent(),
-          tooManyPingsRunnable);
+          tooManyPingsRunnable, flushPolicy);
       return transport;
     }
 
@@ -518,9 +562,22 @@ public final class NettyChannelBuilder
       }
       closed = true;
 
-      if (usingSharedGroup) {
-        SharedResourceHolder.release(Utils.DEFAULT_WORKER_EVENT_LOOP_GROUP, group);
+      if (sharedGroup != null) {
+        SharedResourceHolder.release(sharedGroup, group);
+      }
+      synchronized (this) {
+        if (domainSocketGroup != null) {
+          SharedResourceHolder.release(Utils.EPOLL_WORKER_EVENT_LOOP_GROUP, domainSocketGroup);
+          domainSocketGroup = null;
+        }
+      }
+    }
+
+    private synchronized EventLoopGroup domainSocketGroup() {
+      if (domainSocketGroup == null) {
+        domainSocketGroup = SharedResourceHolder.get(Utils.EPOLL_WORKER_EVENT_LOOP_GROUP);
       }
+      return domainSocketGroup;
     }
 
     @CheckReturnValue
@@ -27,6 +27,7 @@ import io.grpc.Attributes;
 import io.grpc.Metadata;
 import io.grpc.Status;
 import io.grpc.StatusException;
+import io.grpc.internal.ClientStreamListener.RpcProgress;
 import io.grpc.internal.ClientTransport.PingCallback;
 import io.grpc.internal.GrpcUtil;
 import io.grpc.internal.Http2Ping;
@@ -248,7 +249,11 @@ class NettyClientHandler extends AbstractNettyHandler {
   }
 
   void startWriteQueue(Channel channel) {
-    clientWriteQueue = new WriteQueue(channel);
+    startWriteQueue(channel, WriteQueue.FlushPolicy.IMMEDIATE);
+  }
+
+  void startWriteQueue(Channel channel, WriteQueue.FlushPolicy flushPolicy) {
+    clientWriteQueue = new WriteQueue(channel, flushPolicy);
   }
 
   WriteQueue getWriteQueue() {
@@ -295,7 +300,11 @@ class NettyClientHandler extends AbstractNettyHandler {
     if (stream != null) {
       Status status = GrpcUtil.Http2Error.statusForCode((int) errorCode)
           .augmentDescription("Received Rst Stream");
-      stream.transportReportStatus(status, false /*stop delivery*/, new Metadata());
+      // REFUSED_STREAM guarantees that the server did no processing
+      RpcProgress rpcProgress = errorCode == Http2Error.REFUSED_STREAM.code()
+          ? RpcProgress.REFUSED : RpcProgress.PROCESSED;
+      stream.transportReportStatus(
+          status, rpcProgress, false /*stop delivery*/, new Metadata());
       if (keepAliveManager != null) {
         keepAliveManager.onDataReceived();
       }
@@ -572,7 +581,8 @@ class NettyClientHandler extends AbstractNettyHandler {
           if (stream.id() > lastKnownStream) {
             NettyClientStream.TransportState clientStream = clientStream(stream);
             if (clientStream != null) {
-              clientStream.transportReportStatus(goAwayStatus, false, new Metadata());
+              clientStream.transportReportStatus(
+                  goAwayStatus, RpcProgress.REFUSED, false, new Metadata());
             }
             stream.close();
           }
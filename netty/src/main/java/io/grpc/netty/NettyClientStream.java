@@ -33,6 +33,7 @@ import io.grpc.internal.GrpcUtil;
 import io.grpc.internal.Http2ClientStreamTransportState;
 import io.grpc.internal.StatsTraceContext;
 import io.grpc.internal.WritableBuffer;
+import io.grpc.netty.GrpcHttp2OutboundHeaders.ClientRequestPreHeaders;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
@@ -58,10 +59,12 @@ class NettyClientStream extends AbstractClientStream {
   private AsciiString authority;
   private final AsciiString scheme;
   private final AsciiString userAgent;
+  private final ClientRequestPreHeadersCache preHeadersCache;
 
   NettyClientStream(
       TransportState state, MethodDescriptor<?, ?> method, Metadata headers,
       Channel channel, AsciiString authority, AsciiString scheme, AsciiString userAgent,
+      ClientRequestPreHeadersCache preHeadersCache,
       StatsTraceContext statsTraceCtx) {
     super(new NettyWritableBufferAllocator(channel.alloc()),
         statsTraceCtx,
@@ -74,6 +77,7 @@ class NettyClientStream extends AbstractClientStream {
     this.authority = checkNotNull(authority, "authority");
     this.scheme = checkNotNull(scheme, "scheme");
     this.userAgent = userAgent;
+    this.preHeadersCache = checkNotNull(preHeadersCache, "preHeadersCache");
   }
 
   @Override
@@ -103,26 +107,34 @@ class NettyClientStream extends AbstractClientStream {
   private class Sink implements AbstractClientStream.Sink {
     @Override
     public void writeHeaders(Metadata headers, byte[] requestPayload) {
-      // Convert the headers into Netty HTTP/2 headers.
+      // Convert the headers into Netty HTTP/2 headers. The headers gRPC adds itself are cached by
+      // the transport for its own authority.
       AsciiString defaultPath = (AsciiString) methodDescriptorAccessor.geRawMethodName(method);
       if (defaultPath == null) {
         defaultPath = new AsciiString("/" + method.getFullMethodName());
         methodDescriptorAccessor.setRawMethodName(method, defaultPath);
       }
       boolean get = (requestPayload != null);
-      AsciiString httpMethod;
+      ClientRequestPreHeaders preHeaders;
       if (get) {
         // Forge the query string
         // TODO(ericgribkoff) Add the key back to the query string
-        defaultPath =
+        AsciiString path =
             new AsciiString(defaultPath + "?" + BaseEncoding.base64().encode(requestPayload));
-        httpMethod = Utils.HTTP_GET_METHOD;
+        preHeaders = new ClientRequestPreHeaders(
+            authority, path, Utils.HTTP_GET_METHOD, scheme, userAgent);
       } else {
-        httpMethod = Utils.HTTP_METHOD;
+        String fullMethodName = method.getFullMethodName();
+        preHeaders = preHeadersCache.get(fullMethodName, authority);
+        if (preHeaders == null
+            || !preHeaders.matches(authority, Utils.HTTP_METHOD, scheme, userAgent)) {
+          preHeaders = new ClientRequestPreHeaders(
+              authority, defaultPath, Utils.HTTP_METHOD, scheme, userAgent);
+          preHeadersCache.put(fullMethodName, preHeaders);
+        }
       }
       headers.discardAll(GrpcUtil.USER_AGENT_KEY);
-      Http2Headers http2Headers = Utils.convertClientHeaders(headers, scheme, defaultPath,
-          authority, httpMethod, userAgent);
+      Http2Headers http2Headers = Utils.convertClientHeaders(headers, preHeaders);
 
       ChannelFutureListener failureListener = new ChannelFutureListener() {
         @Override
@@ -44,7 +44,6 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.http2.StreamBufferingEncoder.Http2ChannelClosedException;
 import io.netty.util.AsciiString;
 import java.net.SocketAddress;
@@ -65,6 +64,7 @@ class NettyClientTransport implements ConnectionClientTransport {
   private final ProtocolNegotiator negotiator;
   private final AsciiString authority;
   private final AsciiString userAgent;
+  private final ClientRequestPreHeadersCache preHeadersCache;
   private final int flowControlWindow;
   private final int maxMessageSize;
   private final int maxHeaderListSize;
@@ -73,6 +73,7 @@ class NettyClientTransport implements ConnectionClientTransport {
   private final long keepAliveTimeoutNanos;
   private final boolean keepAliveWithoutCalls;
   private final Runnable tooManyPingsRunnable;
+  private final WriteQueue.FlushPolicy flushPolicy;
 
   private ProtocolNegotiator.Handler negotiationHandler;
   private NettyClientHandler handler;
@@ -90,7 +91,7 @@ class NettyClientTransport implements ConnectionClientTransport {
       ProtocolNegotiator negotiator, int flowControlWindow, int maxMessageSize,
       int maxHeaderListSize, long keepAliveTimeNanos, long keepAliveTimeoutNanos,
       boolean keepAliveWithoutCalls, String authority, @Nullable String userAgent,
-      Runnable tooManyPingsRunnable) {
+      Runnable tooManyPingsRunnable, WriteQueue.FlushPolicy flushPolicy) {
     this.negotiator = Preconditions.checkNotNull(negotiator, "negotiator");
     this.address = Preconditions.checkNotNull(address, "address");
     this.group = Preconditions.checkNotNull(group, "group");
@@ -103,9 +104,11 @@ class NettyClientTransport implements ConnectionClientTransport {
     this.keepAliveTimeoutNanos = keepAliveTimeoutNanos;
     this.keepAliveWithoutCalls = keepAliveWithoutCalls;
     this.authority = new AsciiString(authority);
+    this.preHeadersCache = new ClientRequestPreHeadersCache(this.authority);
     this.userAgent = new AsciiString(GrpcUtil.getGrpcUserAgent("netty", userAgent));
     this.tooManyPingsRunnable =
         Preconditions.checkNotNull(tooManyPingsRunnable, "tooManyPingsRunnable");
+    this.flushPolicy = Preconditions.checkNotNull(flushPolicy, "flushPolicy");
   }
 
   @Override
@@ -152,7 +155,7 @@ class NettyClientTransport implements ConnectionClientTransport {
           }
         },
         method, headers, channel, authority, negotiationHandler.scheme(), userAgent,
-        statsTraceCtx);
+        preHeadersCache, statsTraceCtx);
   }
 
   @Override
@@ -181,7 +184,7 @@ class NettyClientTransport implements ConnectionClientTransport {
     Bootstrap b = new Bootstrap();
     b.group(eventLoop);
     b.channel(channelType);
-    if (NioSocketChannel.class.isAssignableFrom(channelType)) {
+    if (Utils.isTcpChannelType(channelType)) {
       b.option(SO_KEEPALIVE, true);
     }
     for (Map.Entry<ChannelOption<?>, ?> entry : channelOptions.entrySet()) {
@@ -220,7 +223,7 @@ class NettyClientTransport implements ConnectionClientTransport {
       };
     }
     // Start the write queue as soon as the channel is constructed
-    handler.startWriteQueue(channel);
+    handler.startWriteQueue(channel, flushPolicy);
     // Start the connection operation to the server.
     channel.connect(address).addListener(new ChannelFutureListener() {
       @Override
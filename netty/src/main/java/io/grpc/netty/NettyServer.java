@@ -26,6 +26,7 @@ import io.grpc.internal.InternalServer;
 import io.grpc.internal.ServerListener;
 import io.grpc.internal.ServerTransportListener;
 import io.grpc.internal.SharedResourceHolder;
+import io.grpc.internal.SharedResourceHolder.Resource;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
@@ -33,7 +34,6 @@ import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.ServerChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.util.AbstractReferenceCounted;
 import io.netty.util.ReferenceCounted;
 import java.io.IOException;
@@ -51,11 +51,14 @@ class NettyServer implements InternalServer {
   private static final Logger log = Logger.getLogger(InternalServer.class.getName());
 
   private final SocketAddress address;
+  @Nullable
   private final Class<? extends ServerChannel> channelType;
   private final ProtocolNegotiator protocolNegotiator;
   private final int maxStreamsPerConnection;
-  private final boolean usingSharedBossGroup;
-  private final boolean usingSharedWorkerGroup;
+  @Nullable
+  private Resource<EventLoopGroup> sharedBossGroup;
+  @Nullable
+  private Resource<EventLoopGroup> sharedWorkerGroup;
   private EventLoopGroup bossGroup;
   private EventLoopGroup workerGroup;
   private ServerListener listener;
@@ -70,26 +73,26 @@ class NettyServer implements InternalServer {
   private final long maxConnectionAgeGraceInNanos;
   private final boolean permitKeepAliveWithoutCalls;
   private final long permitKeepAliveTimeInNanos;
+  private final WriteQueue.FlushPolicy flushPolicy;
   private final ReferenceCounted eventLoopReferenceCounter = new EventLoopReferenceCounter();
   private final List<ServerStreamTracer.Factory> streamTracerFactories;
 
   NettyServer(
-      SocketAddress address, Class<? extends ServerChannel> channelType,
+      SocketAddress address, @Nullable Class<? extends ServerChannel> channelType,
       @Nullable EventLoopGroup bossGroup, @Nullable EventLoopGroup workerGroup,
       ProtocolNegotiator protocolNegotiator, List<ServerStreamTracer.Factory> streamTracerFactories,
       int maxStreamsPerConnection, int flowControlWindow, int maxMessageSize, int maxHeaderListSize,
       long keepAliveTimeInNanos, long keepAliveTimeoutInNanos,
       long maxConnectionIdleInNanos,
       long maxConnectionAgeInNanos, long maxConnectionAgeGraceInNanos,
-      boolean permitKeepAliveWithoutCalls, long permitKeepAliveTimeInNanos) {
+      boolean permitKeepAliveWithoutCalls, long permitKeepAliveTimeInNanos,
+      WriteQueue.FlushPolicy flushPolicy) {
     this.address = address;
-    this.channelType = checkNotNull(channelType, "channelType");
+    this.channelType = channelType;
     this.bossGroup = bossGroup;
     this.workerGroup = workerGroup;
     this.protocolNegotiator = checkNotNull(protocolNegotiator, "protocolNegotiator");
     this.streamTracerFactories = checkNotNull(streamTracerFactories, "streamTracerFactories");
-    this.usingSharedBossGroup = bossGroup == null;
-    this.usingSharedWorkerGroup = workerGroup == null;
     this.maxStreamsPerConnection = maxStreamsPerConnection;
     this.flowControlWindow = flowControlWindow;
     this.maxMessageSize = maxMessageSize;
@@ -101,6 +104,7 @@ class NettyServer implements InternalServer {
     this.maxConnectionAgeGraceInNanos = maxConnectionAgeGraceInNanos;
     this.permitKeepAliveWithoutCalls = permitKeepAliveWithoutCalls;
     this.permitKeepAliveTimeInNanos = permitKeepAliveTimeInNanos;
+    this.flushPolicy = checkNotNull(flushPolicy, "flushPolicy");
   }
 
   @Override
@@ -124,8 +128,10 @@ class NettyServer implements InternalServer {
 
     ServerBootstrap b = new ServerBootstrap();
     b.group(bossGroup, workerGroup);
-    b.channel(channelType);
-    if (NioServerSocketChannel.class.isAssignableFrom(channelType)) {
+    Class<? extends ServerChannel> serverChannelType = channelType != null
+        ? channelType : Utils.serverChannelType(bossGroup, workerGroup, address);
+    b.channel(serverChannelType);
+    if (Utils.isTcpChannelType(serverChannelType)) {
       b.option(SO_BACKLOG, 128);
       b.childOption(SO_KEEPALIVE, true);
     }
@@ -147,7 +153,7 @@ class NettyServer implements InternalServer {
                 keepAliveTimeInNanos, keepAliveTimeoutInNanos,
                 maxConnectionIdleInNanos,
                 maxConnectionAgeInNanos, maxConnectionAgeGraceInNanos,
-                permitKeepAliveWithoutCalls, permitKeepAliveTimeInNanos);
+                permitKeepAliveWithoutCalls, permitKeepAliveTimeInNanos, flushPolicy);
         ServerTransportListener transportListener;
         // This is to order callbacks on the listener, not to guard access to channel.
         synchronized (NettyServer.this) {
@@ -206,10 +212,12 @@ class NettyServer implements InternalServer {
 
   private void allocateSharedGroups() {
     if (bossGroup == null) {
-      bossGroup = SharedResourceHolder.get(Utils.DEFAULT_BOSS_EVENT_LOOP_GROUP);
+      sharedBossGroup = Utils.sharedBossGroup(channelType, workerGroup, address);
+      bossGroup = SharedResourceHolder.get(sharedBossGroup);
     }
     if (workerGroup == null) {
-      workerGroup = SharedResourceHolder.get(Utils.DEFAULT_WORKER_EVENT_LOOP_GROUP);
+      sharedWorkerGroup = Utils.sharedWorkerGroup(channelType, bossGroup, address);
+      workerGroup = SharedResourceHolder.get(sharedWorkerGroup);
     }
   }
 
@@ -217,14 +225,14 @@ class NettyServer implements InternalServer {
     @Override
     protected void deallocate() {
       try {
-        if (usingSharedBossGroup && bossGroup != null) {
-          SharedResourceHolder.release(Utils.DEFAULT_BOSS_EVENT_LOOP_GROUP, bossGroup);
+        if (sharedBossGroup != null && bossGroup != null) {
+          SharedResourceHolder.release(sharedBossGroup, bossGroup);
         }
       } finally {
         bossGroup = null;
         try {
-          if (usingSharedWorkerGroup && workerGroup != null) {
-            SharedResourceHolder.release(Utils.DEFAULT_WORKER_EVENT_LOOP_GROUP, workerGroup);
+          if (sharedWorkerGroup != null && workerGroup != null) {
+            SharedResourceHolder.release(sharedWorkerGroup, workerGroup);
           }
         } finally {
           workerGroup = null;
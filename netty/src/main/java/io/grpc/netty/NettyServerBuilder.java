@@ -62,7 +62,8 @@ public final class NettyServerBuilder extends AbstractServerImplBuilder<NettySer
   private static final long AS_LARGE_AS_INFINITE = TimeUnit.DAYS.toNanos(1000L);
 
   private final SocketAddress address;
-  private Class<? extends ServerChannel> channelType = NioServerSocketChannel.class;
+  @Nullable
+  private Class<? extends ServerChannel> channelType;
   @Nullable
   private EventLoopGroup bossEventLoopGroup;
   @Nullable
@@ -80,6 +81,7 @@ public final class NettyServerBuilder extends AbstractServerImplBuilder<NettySer
   private long maxConnectionAgeGraceInNanos = MAX_CONNECTION_AGE_GRACE_NANOS_INFINITE;
   private boolean permitKeepAliveWithoutCalls;
   private long permitKeepAliveTimeInNanos = TimeUnit.MINUTES.toNanos(5);
+  private WriteQueue.FlushPolicy flushPolicy = WriteQueue.FlushPolicy.IMMEDIATE;
 
   /**
    * Creates a server builder that will bind to the given port.
@@ -114,7 +116,10 @@ public final class NettyServerBuilder extends AbstractServerImplBuilder<NettySer
   }
 
   /**
-   * Specify the channel type to use, by default we use {@link NioServerSocketChannel}.
+   * Specify the channel type to use. If event loop groups are provided without a channel type, the
+   * channel type matching the groups is used. Otherwise Unix domain socket addresses use Netty's
+   * native epoll transport, and other addresses use {@link NioServerSocketChannel}, unless the
+   * {@code io.grpc.netty.useEpoll} system property is set to {@code true} and epoll is available.
    */
   public NettyServerBuilder channelType(Class<? extends ServerChannel> channelType) {
     this.channelType = Preconditions.checkNotNull(channelType, "channelType");
@@ -369,6 +374,24 @@ public final class NettyServerBuilder extends AbstractServerImplBuilder<NettySer
     return this;
   }
 
+  /**
+   * Enables coalescing of writes to the socket. Instead of flushing as soon as pending writes have
+   * been handed to the connection, writes are kept pending until at least {@code
+   * flushThresholdBytes} bytes of messages are waiting, or until {@code maxFlushDelay} has passed
+   * since the first pending write. This reduces the number of flushes, and thus syscalls, when
+   * many small messages are sent on a connection, at the cost of up to {@code maxFlushDelay} of
+   * added latency. Disabled by default.
+   */
+  @ExperimentalApi
+  public NettyServerBuilder writeCoalescing(
+      int flushThresholdBytes, long maxFlushDelay, TimeUnit timeUnit) {
+    checkArgument(flushThresholdBytes > 0, "flush threshold must be positive");
+    checkArgument(maxFlushDelay > 0L, "max flush delay must be positive");
+    flushPolicy =
+        WriteQueue.FlushPolicy.coalescing(flushThresholdBytes, timeUnit.toNanos(maxFlushDelay));
+    return this;
+  }
+
   @Override
   @CheckReturnValue
   protected NettyServer buildTransportServer(
@@ -385,7 +408,7 @@ public final class NettyServerBuilder extends AbstractServerImplBuilder<NettySer
         maxMessageSize, maxHeaderListSize, keepAliveTimeInNanos, keepAliveTimeoutInNanos,
         maxConnectionIdleInNanos,
         maxConnectionAgeInNanos, maxConnectionAgeGraceInNanos,
-        permitKeepAliveWithoutCalls, permitKeepAliveTimeInNanos);
+        permitKeepAliveWithoutCalls, permitKeepAliveTimeInNanos, flushPolicy);
   }
 
   @Override
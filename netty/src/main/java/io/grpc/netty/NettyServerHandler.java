@@ -21,6 +21,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static io.grpc.internal.GrpcUtil.SERVER_KEEPALIVE_TIME_NANOS_DISABLED;
 import static io.grpc.netty.NettyServerBuilder.MAX_CONNECTION_AGE_NANOS_DISABLED;
 import static io.grpc.netty.NettyServerBuilder.MAX_CONNECTION_IDLE_NANOS_DISABLED;
+import static io.grpc.netty.Utils.CONTENT_TYPE_GRPC;
 import static io.grpc.netty.Utils.CONTENT_TYPE_HEADER;
 import static io.grpc.netty.Utils.HTTP_METHOD;
 import static io.grpc.netty.Utils.TE_HEADER;
@@ -106,6 +107,7 @@ class NettyServerHandler extends AbstractNettyHandler {
   private Attributes attributes;
   private Throwable connectionError;
   private boolean teWarningLogged;
+  private final WriteQueue.FlushPolicy flushPolicy;
   private WriteQueue serverWriteQueue;
   private AsciiString lastKnownAuthority;
   @CheckForNull
@@ -128,7 +130,8 @@ class NettyServerHandler extends AbstractNettyHandler {
       long maxConnectionAgeInNanos,
       long maxConnectionAgeGraceInNanos,
       boolean permitKeepAliveWithoutCalls,
-      long permitKeepAliveTimeInNanos) {
+      long permitKeepAliveTimeInNanos,
+      WriteQueue.FlushPolicy flushPolicy) {
     Preconditions.checkArgument(maxHeaderListSize > 0, "maxHeaderListSize must be positive");
     Http2FrameLogger frameLogger = new Http2FrameLogger(LogLevel.DEBUG, NettyServerHandler.class);
     Http2HeadersDecoder headersDecoder = new GrpcHttp2ServerHeadersDecoder(maxHeaderListSize);
@@ -142,7 +145,7 @@ class NettyServerHandler extends AbstractNettyHandler {
         keepAliveTimeInNanos, keepAliveTimeoutInNanos,
         maxConnectionIdleInNanos,
         maxConnectionAgeInNanos, maxConnectionAgeGraceInNanos,
-        permitKeepAliveWithoutCalls, permitKeepAliveTimeInNanos);
+        permitKeepAliveWithoutCalls, permitKeepAliveTimeInNanos, flushPolicy);
   }
 
   @VisibleForTesting
@@ -160,7 +163,8 @@ class NettyServerHandler extends AbstractNettyHandler {
       long maxConnectionAgeInNanos,
       long maxConnectionAgeGraceInNanos,
       boolean permitKeepAliveWithoutCalls,
-      long permitKeepAliveTimeInNanos) {
+      long permitKeepAliveTimeInNanos,
+      WriteQueue.FlushPolicy flushPolicy) {
     Preconditions.checkArgument(maxStreams > 0, "maxStreams must be positive");
     Preconditions.checkArgument(flowControlWindow > 0, "flowControlWindow must be positive");
     Preconditions.checkArgument(maxHeaderListSize > 0, "maxHeaderListSize must be positive");
@@ -198,7 +202,7 @@ class NettyServerHandler extends AbstractNettyHandler {
         keepAliveTimeInNanos, keepAliveTimeoutInNanos,
         maxConnectionIdleInNanos,
         maxConnectionAgeInNanos, maxConnectionAgeGraceInNanos,
-        keepAliveEnforcer);
+        keepAliveEnforcer, flushPolicy);
   }
 
   private NettyServerHandler(
@@ -213,7 +217,8 @@ class NettyServerHandler extends AbstractNettyHandler {
       long maxConnectionIdleInNanos,
       long maxConnectionAgeInNanos,
       long maxConnectionAgeGraceInNanos,
-      final KeepAliveEnforcer keepAliveEnforcer) {
+      final KeepAliveEnforcer keepAliveEnforcer,
+      WriteQueue.FlushPolicy flushPolicy) {
     super(decoder, encoder, settings);
 
     final MaxConnectionIdleManager maxConnectionIdleManager;
@@ -273,6 +278,7 @@ class NettyServerHandler extends AbstractNettyHandler {
     streamKey = encoder.connection().newKey();
     this.transportListener = checkNotNull(transportListener, "transportListener");
     this.streamTracerFactories = checkNotNull(streamTracerFactories, "streamTracerFactories");
+    this.flushPolicy = checkNotNull(flushPolicy, "flushPolicy");
 
     // Set the frame listener on the decoder.
     decoder().frameListener(new FrameListener());
@@ -285,7 +291,7 @@ class NettyServerHandler extends AbstractNettyHandler {
 
   @Override
   public void handlerAdded(final ChannelHandlerContext ctx) throws Exception {
-    serverWriteQueue = new WriteQueue(ctx.channel());
+    serverWriteQueue = new WriteQueue(ctx.channel(), flushPolicy);
 
     // init max connection age monitor
     if (maxConnectionAgeInNanos != MAX_CONNECTION_AGE_NANOS_DISABLED) {
@@ -589,6 +595,9 @@ class NettyServerHandler extends AbstractNettyHandler {
       throw Http2Exception.streamError(streamId, Http2Error.REFUSED_STREAM,
           "Content-Type is missing from the request");
     }
+    if (CONTENT_TYPE_GRPC.contentEquals(contentType)) {
+      return;
+    }
     String contentTypeString = contentType.toString();
     if (!GrpcUtil.isGrpcContentType(contentTypeString)) {
       throw Http2Exception.streamError(streamId, Http2Error.REFUSED_STREAM,
@@ -16,9 +16,11 @@
 
 package io.grpc.netty;
 
+import io.grpc.internal.ReadableBuffer;
 import io.grpc.internal.WritableBuffer;
-import io.grpc.internal.WritableBufferAllocator;
+import io.grpc.internal.ZeroCopyWritableBufferAllocator;
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
 
 /**
  * The default allocator for {@link NettyWritableBuffer}s used by the Netty transport. We set a
@@ -30,8 +32,10 @@ import io.netty.buffer.ByteBufAllocator;
  *
  * <p>Note: It is assumed that most applications will be using Netty's direct buffer pools for
  * maximum performance.
+ *
+ * <p>Messages that are already held in Netty buffers or heap arrays are wrapped instead of copied.
  */
-class NettyWritableBufferAllocator implements WritableBufferAllocator {
+class NettyWritableBufferAllocator implements ZeroCopyWritableBufferAllocator {
 
   // Use 4k as our minimum buffer size.
   private static final int MIN_BUFFER = 4096;
@@ -50,4 +54,18 @@ class NettyWritableBufferAllocator implements WritableBufferAllocator {
     capacityHint = Math.min(MAX_BUFFER, Math.max(MIN_BUFFER, capacityHint));
     return new NettyWritableBuffer(allocator.buffer(capacityHint, capacityHint));
   }
+
+  @Override
+  public WritableBuffer wrap(ReadableBuffer buffer) {
+    if (buffer instanceof NettyReadableBuffer) {
+      // The ByteBuf is already retained for the ReadableBuffer, so its reference is handed over.
+      // Slicing keeps the framer from writing into the remaining capacity of the original buffer.
+      return new NettyWritableBuffer(((NettyReadableBuffer) buffer).buffer().slice());
+    }
+    if (buffer.hasArray()) {
+      return new NettyWritableBuffer(
+          Unpooled.wrappedBuffer(buffer.array(), buffer.arrayOffset(), buffer.readableBytes()));
+    }
+    return null;
+  }
 }
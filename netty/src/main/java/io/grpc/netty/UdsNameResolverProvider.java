@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.grpc.netty;
+
+import com.google.common.base.Preconditions;
+import io.grpc.Attributes;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.Internal;
+import io.grpc.NameResolver;
+import io.grpc.NameResolverProvider;
+import io.grpc.Status;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.util.Collections;
+
+/**
+ * A provider of name resolvers for Unix domain socket targets, which the Netty transport connects
+ * to with its native epoll transport.
+ *
+ * <p>It resolves a target URI whose scheme is {@code "unix"} to the socket file at its path.
+ * Example target URIs:
+ *
+ * <ul>
+ *   <li>{@code "unix:///var/run/foo.sock"} (absolute path)</li>
+ *   <li>{@code "unix:foo.sock"} (path relative to the working directory)</li>
+ * </ul>
+ */
+@Internal
+public final class UdsNameResolverProvider extends NameResolverProvider {
+
+  private static final String SCHEME = "unix";
+
+  @Override
+  public NameResolver newNameResolver(URI targetUri, Attributes params) {
+    if (!SCHEME.equals(targetUri.getScheme())) {
+      return null;
+    }
+    String path = targetUri.isOpaque() ? targetUri.getSchemeSpecificPart() : targetUri.getPath();
+    Preconditions.checkArgument(targetUri.getAuthority() == null,
+        "the target (%s) must not have an authority", targetUri);
+    Preconditions.checkArgument(path != null && !path.isEmpty(),
+        "the target (%s) must have a path", targetUri);
+    return new UdsNameResolver(path);
+  }
+
+  @Override
+  public String getDefaultScheme() {
+    return SCHEME;
+  }
+
+  @Override
+  protected boolean isAvailable() {
+    // Available even without epoll, so that the resolver can explain why the target can't be used
+    // instead of the target falling back to DNS.
+    return true;
+  }
+
+  @Override
+  protected int priority() {
+    return 3;
+  }
+
+  static final class UdsNameResolver extends NameResolver {
+    private final String path;
+
+    UdsNameResolver(String path) {
+      this.path = path;
+    }
+
+    String getPath() {
+      return path;
+    }
+
+    @Override
+    public String getServiceAuthority() {
+      return "localhost";
+    }
+
+    @Override
+    public void start(Listener listener) {
+      SocketAddress address;
+      try {
+        address = Utils.newDomainSocketAddress(path);
+      } catch (UnsupportedOperationException e) {
+        listener.onError(Status.UNAVAILABLE.withDescription(e.getMessage()).withCause(e));
+        return;
+      }
+      listener.onAddresses(
+          Collections.singletonList(new EquivalentAddressGroup(address)), Attributes.EMPTY);
+    }
+
+    @Override
+    public void shutdown() {}
+  }
+}
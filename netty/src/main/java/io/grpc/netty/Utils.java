@@ -30,23 +30,44 @@ import io.grpc.Status;
 import io.grpc.internal.GrpcUtil;
 import io.grpc.internal.SharedResourceHolder.Resource;
 import io.grpc.netty.GrpcHttp2HeadersUtils.GrpcHttp2InboundHeaders;
+import io.netty.channel.Channel;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.http2.Http2Exception;
 import io.netty.handler.codec.http2.Http2Headers;
 import io.netty.util.AsciiString;
 import io.netty.util.concurrent.DefaultThreadFactory;
 import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.net.SocketAddress;
 import java.nio.channels.ClosedChannelException;
 import java.util.Map;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
 
 /**
  * Common utility methods.
  */
 @VisibleForTesting
 class Utils {
+  private static final Logger logger = Logger.getLogger(Utils.class.getName());
+
+  /**
+   * System property that, when set to {@code true}, makes channels and servers that specify
+   * neither a channel type nor an event loop group use Netty's native epoll transport, if it is
+   * available. They use NIO otherwise.
+   */
+  @VisibleForTesting
+  static final String USE_EPOLL_PROPERTY = "io.grpc.netty.useEpoll";
+
+  private static final String EPOLL_PACKAGE = "io.netty.channel.epoll.";
+  private static final String UNIX_PACKAGE = "io.netty.channel.unix.";
 
   public static final AsciiString STATUS_OK = AsciiString.of("200");
   public static final AsciiString HTTP_METHOD = AsciiString.of(GrpcUtil.HTTP_METHOD);
@@ -60,14 +81,174 @@ class Utils {
   public static final AsciiString USER_AGENT = AsciiString.of(USER_AGENT_KEY.name());
 
   public static final Resource<EventLoopGroup> DEFAULT_BOSS_EVENT_LOOP_GROUP =
-      new DefaultEventLoopGroupResource(1, "grpc-default-boss-ELG");
+      new DefaultEventLoopGroupResource(1, "grpc-default-boss-ELG", false);
 
   public static final Resource<EventLoopGroup> DEFAULT_WORKER_EVENT_LOOP_GROUP =
-      new DefaultEventLoopGroupResource(0, "grpc-default-worker-ELG");
+      new DefaultEventLoopGroupResource(0, "grpc-default-worker-ELG", false);
+
+  /**
+   * The shared epoll boss group. It may only be created if {@link #isEpollAvailable()}.
+   */
+  public static final Resource<EventLoopGroup> EPOLL_BOSS_EVENT_LOOP_GROUP =
+      new DefaultEventLoopGroupResource(1, "grpc-epoll-boss-ELG", true);
+
+  /**
+   * The shared epoll worker group. It may only be created if {@link #isEpollAvailable()}.
+   */
+  public static final Resource<EventLoopGroup> EPOLL_WORKER_EVENT_LOOP_GROUP =
+      new DefaultEventLoopGroupResource(0, "grpc-epoll-worker-ELG", true);
 
   @VisibleForTesting
   static boolean validateHeaders = false;
 
+  private static Class<?> loadClass(String name) throws ClassNotFoundException {
+    return Class.forName(name, true, Utils.class.getClassLoader());
+  }
+
+  /**
+   * Returns whether Netty's native epoll transport can be used.
+   */
+  static boolean isEpollAvailable() {
+    return Epoll.EVENT_LOOP_GROUP_CONSTRUCTOR != null;
+  }
+
+  /**
+   * Returns whether the shared groups should use epoll when nothing else decides it.
+   */
+  private static boolean useEpollByDefault() {
+    return Boolean.getBoolean(USE_EPOLL_PROPERTY) && isEpollAvailable();
+  }
+
+  /**
+   * Returns whether {@code type} or one of its superclasses is in {@code packagePrefix}. Types are
+   * checked this way before the epoll classes are needed, so that other transports never load
+   * them, and with them the native library.
+   */
+  private static boolean isInPackage(Class<?> type, String packagePrefix) {
+    for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+      if (c.getName().startsWith(packagePrefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns whether {@code group} is made of epoll event loops.
+   */
+  static boolean isEpollEventLoopGroup(EventLoopGroup group) {
+    return isInPackage(group.getClass(), EPOLL_PACKAGE) && isEpollAvailable()
+        && Epoll.EVENT_LOOP_GROUP_TYPE.isInstance(group);
+  }
+
+  /**
+   * Returns whether {@code address} is a Unix domain socket address.
+   */
+  static boolean isDomainSocketAddress(SocketAddress address) {
+    return isInPackage(address.getClass(), UNIX_PACKAGE) && isEpollAvailable()
+        && Epoll.DOMAIN_SOCKET_ADDRESS_CONSTRUCTOR.getDeclaringClass().isInstance(address);
+  }
+
+  /**
+   * Creates a Unix domain socket address for the given file path.
+   *
+   * @throws UnsupportedOperationException if the epoll transport is not available
+   */
+  static SocketAddress newDomainSocketAddress(String path) {
+    if (!isEpollAvailable()) {
+      throw new UnsupportedOperationException(
+          "Unix domain sockets require Netty's native epoll transport");
+    }
+    try {
+      return Epoll.DOMAIN_SOCKET_ADDRESS_CONSTRUCTOR.newInstance(path);
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Returns the client channel type to connect to {@code address} with event loops of {@code
+   * group}, when the user did not specify one.
+   */
+  static Class<? extends Channel> clientChannelType(EventLoopGroup group, SocketAddress address) {
+    if (isEpollEventLoopGroup(group)) {
+      return isDomainSocketAddress(address)
+          ? Epoll.DOMAIN_SOCKET_CHANNEL_TYPE : Epoll.SOCKET_CHANNEL_TYPE;
+    }
+    return NioSocketChannel.class;
+  }
+
+  /**
+   * Returns the server channel type to bind {@code address} with the given groups, when the user
+   * did not specify one.
+   */
+  static Class<? extends ServerChannel> serverChannelType(
+      EventLoopGroup bossGroup, EventLoopGroup workerGroup, SocketAddress address) {
+    if (isEpollEventLoopGroup(bossGroup) && isEpollEventLoopGroup(workerGroup)) {
+      return isDomainSocketAddress(address)
+          ? Epoll.SERVER_DOMAIN_SOCKET_CHANNEL_TYPE : Epoll.SERVER_SOCKET_CHANNEL_TYPE;
+    }
+    return NioServerSocketChannel.class;
+  }
+
+  /**
+   * Returns whether {@code channelType} is a TCP client or server channel, which accepts the usual
+   * socket options.
+   */
+  static boolean isTcpChannelType(Class<?> channelType) {
+    return NioSocketChannel.class.isAssignableFrom(channelType)
+        || NioServerSocketChannel.class.isAssignableFrom(channelType)
+        || (isEpollChannelType(channelType)
+            && (Epoll.SOCKET_CHANNEL_TYPE.isAssignableFrom(channelType)
+                || Epoll.SERVER_SOCKET_CHANNEL_TYPE.isAssignableFrom(channelType)));
+  }
+
+  /**
+   * Returns the shared boss group to use with {@code channelType}. If the channel type is {@code
+   * null}, the group matches {@code workerGroup} if that was specified. Otherwise it is an epoll
+   * group for Unix domain socket addresses, or if {@link #USE_EPOLL_PROPERTY} is set, and the
+   * default group if not.
+   */
+  static Resource<EventLoopGroup> sharedBossGroup(@Nullable Class<?> channelType,
+      @Nullable EventLoopGroup workerGroup, @Nullable SocketAddress address) {
+    return useEpollGroup(channelType, workerGroup, address)
+        ? EPOLL_BOSS_EVENT_LOOP_GROUP : DEFAULT_BOSS_EVENT_LOOP_GROUP;
+  }
+
+  /**
+   * Returns the shared worker group to use with {@code channelType}. If the channel type is {@code
+   * null}, the group matches {@code bossGroup} if that was specified. Otherwise it is an epoll
+   * group for Unix domain socket addresses, or if {@link #USE_EPOLL_PROPERTY} is set, and the
+   * default group if not.
+   */
+  static Resource<EventLoopGroup> sharedWorkerGroup(@Nullable Class<?> channelType,
+      @Nullable EventLoopGroup bossGroup, @Nullable SocketAddress address) {
+    return useEpollGroup(channelType, bossGroup, address)
+        ? EPOLL_WORKER_EVENT_LOOP_GROUP : DEFAULT_WORKER_EVENT_LOOP_GROUP;
+  }
+
+  private static boolean useEpollGroup(@Nullable Class<?> channelType,
+      @Nullable EventLoopGroup otherGroup, @Nullable SocketAddress address) {
+    if (channelType != null) {
+      return isEpollChannelType(channelType);
+    }
+    if (otherGroup != null) {
+      return isEpollEventLoopGroup(otherGroup);
+    }
+    if (address != null && isDomainSocketAddress(address)) {
+      return true;
+    }
+    return useEpollByDefault();
+  }
+
+  private static boolean isEpollChannelType(Class<?> channelType) {
+    return isInPackage(channelType, EPOLL_PACKAGE) && isEpollAvailable()
+        && (Epoll.SOCKET_CHANNEL_TYPE.isAssignableFrom(channelType)
+            || Epoll.SERVER_SOCKET_CHANNEL_TYPE.isAssignableFrom(channelType)
+            || Epoll.DOMAIN_SOCKET_CHANNEL_TYPE.isAssignableFrom(channelType)
+            || Epoll.SERVER_DOMAIN_SOCKET_CHANNEL_TYPE.isAssignableFrom(channelType));
+  }
+
   public static Metadata convertHeaders(Http2Headers http2Headers) {
     if (http2Headers instanceof GrpcHttp2InboundHeaders) {
       GrpcHttp2InboundHeaders h = (GrpcHttp2InboundHeaders) http2Headers;
@@ -117,6 +298,15 @@ class Utils {
         userAgent);
   }
 
+  /**
+   * Like {@link #convertClientHeaders(Metadata, AsciiString, AsciiString, AsciiString, AsciiString,
+   * AsciiString)}, but with the headers added by gRPC already built.
+   */
+  static Http2Headers convertClientHeaders(Metadata headers,
+      GrpcHttp2OutboundHeaders.ClientRequestPreHeaders preHeaders) {
+    return GrpcHttp2OutboundHeaders.clientRequestHeaders(toHttp2Headers(headers), preHeaders);
+  }
+
   public static Http2Headers convertServerHeaders(Metadata headers) {
     return GrpcHttp2OutboundHeaders.serverResponseHeaders(toHttp2Headers(headers));
   }
@@ -159,10 +349,12 @@ class Utils {
   private static class DefaultEventLoopGroupResource implements Resource<EventLoopGroup> {
     private final String name;
     private final int numEventLoops;
+    private final boolean epoll;
 
-    DefaultEventLoopGroupResource(int numEventLoops, String name) {
+    DefaultEventLoopGroupResource(int numEventLoops, String name, boolean epoll) {
       this.name = name;
       this.numEventLoops = numEventLoops;
+      this.epoll = epoll;
     }
 
     @Override
@@ -172,6 +364,13 @@ class Utils {
       ThreadFactory threadFactory = new DefaultThreadFactory(name, useDaemonThreads);
       int parallelism = numEventLoops == 0
           ? Runtime.getRuntime().availableProcessors() * 2 : numEventLoops;
+      if (epoll) {
+        try {
+          return Epoll.EVENT_LOOP_GROUP_CONSTRUCTOR.newInstance(parallelism, threadFactory);
+        } catch (Exception e) {
+          throw new RuntimeException("Failed to create epoll event loop group", e);
+        }
+      }
       return new NioEventLoopGroup(parallelism, threadFactory);
     }
 
@@ -186,6 +385,72 @@ class Utils {
     }
   }
 
+  /**
+   * Netty's epoll classes. They are looked up reflectively, since netty-transport-native-epoll is
+   * an optional runtime dependency. This happens when the class is first used, as that also loads
+   * the native library. The fields are all null when epoll is not available.
+   */
+  private static final class Epoll {
+    @Nullable
+    static final Constructor<? extends EventLoopGroup> EVENT_LOOP_GROUP_CONSTRUCTOR;
+    @Nullable
+    static final Class<? extends EventLoopGroup> EVENT_LOOP_GROUP_TYPE;
+    @Nullable
+    static final Class<? extends Channel> SOCKET_CHANNEL_TYPE;
+    @Nullable
+    static final Class<? extends ServerChannel> SERVER_SOCKET_CHANNEL_TYPE;
+    @Nullable
+    static final Class<? extends Channel> DOMAIN_SOCKET_CHANNEL_TYPE;
+    @Nullable
+    static final Class<? extends ServerChannel> SERVER_DOMAIN_SOCKET_CHANNEL_TYPE;
+    @Nullable
+    static final Constructor<? extends SocketAddress> DOMAIN_SOCKET_ADDRESS_CONSTRUCTOR;
+
+    static {
+      Constructor<? extends EventLoopGroup> groupConstructor = null;
+      Class<? extends Channel> socketType = null;
+      Class<? extends ServerChannel> serverSocketType = null;
+      Class<? extends Channel> domainSocketType = null;
+      Class<? extends ServerChannel> serverDomainSocketType = null;
+      Constructor<? extends SocketAddress> domainAddressConstructor = null;
+      try {
+        Throwable cause = (Throwable) loadClass(EPOLL_PACKAGE + "Epoll")
+            .getMethod("unavailabilityCause").invoke(null);
+        if (cause == null) {
+          groupConstructor = loadClass(EPOLL_PACKAGE + "EpollEventLoopGroup")
+              .asSubclass(EventLoopGroup.class).getConstructor(int.class, ThreadFactory.class);
+          socketType = loadClass(EPOLL_PACKAGE + "EpollSocketChannel").asSubclass(Channel.class);
+          serverSocketType = loadClass(EPOLL_PACKAGE + "EpollServerSocketChannel")
+              .asSubclass(ServerChannel.class);
+          domainSocketType = loadClass(EPOLL_PACKAGE + "EpollDomainSocketChannel")
+              .asSubclass(Channel.class);
+          serverDomainSocketType = loadClass(EPOLL_PACKAGE + "EpollServerDomainSocketChannel")
+              .asSubclass(ServerChannel.class);
+          domainAddressConstructor = loadClass(UNIX_PACKAGE + "DomainSocketAddress")
+              .asSubclass(SocketAddress.class).getConstructor(String.class);
+        } else {
+          logger.log(Level.FINE, "Epoll is not available", cause);
+        }
+      } catch (Exception e) {
+        logger.log(Level.FINE, "Epoll could not be loaded", e);
+        groupConstructor = null;
+      } catch (LinkageError e) {
+        logger.log(Level.FINE, "Epoll could not be loaded", e);
+        groupConstructor = null;
+      }
+      boolean available = groupConstructor != null;
+      EVENT_LOOP_GROUP_CONSTRUCTOR = groupConstructor;
+      EVENT_LOOP_GROUP_TYPE = available ? groupConstructor.getDeclaringClass() : null;
+      SOCKET_CHANNEL_TYPE = available ? socketType : null;
+      SERVER_SOCKET_CHANNEL_TYPE = available ? serverSocketType : null;
+      DOMAIN_SOCKET_CHANNEL_TYPE = available ? domainSocketType : null;
+      SERVER_DOMAIN_SOCKET_CHANNEL_TYPE = available ? serverDomainSocketType : null;
+      DOMAIN_SOCKET_ADDRESS_CONSTRUCTOR = available ? domainAddressConstructor : null;
+    }
+
+    private Epoll() {}
+  }
+
   private Utils() {
     // Prevents instantiation
   }
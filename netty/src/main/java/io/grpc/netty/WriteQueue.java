@@ -24,6 +24,8 @@ import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelPromise;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -45,12 +47,33 @@ class WriteQueue {
     }
   };
 
+  /**
+   * {@link Runnable} used to flush coalesced writes once the flush delay of the policy expires.
+   */
+  private final Runnable delayedFlushTask = new Runnable() {
+    @Override
+    public void run() {
+      delayedFlush = null;
+      flushChannel();
+    }
+  };
+
   private final Channel channel;
   private final Queue<QueuedCommand> queue;
   private final AtomicBoolean scheduled = new AtomicBoolean();
+  private final FlushPolicy flushPolicy;
+
+  // Only accessed from the event loop.
+  private long unflushedBytes;
+  private ScheduledFuture<?> delayedFlush;
 
   public WriteQueue(Channel channel) {
+    this(channel, FlushPolicy.IMMEDIATE);
+  }
+
+  WriteQueue(Channel channel, FlushPolicy flushPolicy) {
     this.channel = Preconditions.checkNotNull(channel, "channel");
+    this.flushPolicy = Preconditions.checkNotNull(flushPolicy, "flushPolicy");
     queue = new ConcurrentLinkedQueue<QueuedCommand>();
   }
 
@@ -109,19 +132,33 @@ class WriteQueue {
       int i = 0;
       boolean flushedOnce = false;
       while ((cmd = queue.poll()) != null) {
+        if (flushPolicy.isCoalescing() && cmd instanceof SendGrpcFrameCommand) {
+          // Counted before the write, which may release the buffer.
+          unflushedBytes += ((SendGrpcFrameCommand) cmd).content().readableBytes();
+        }
         channel.write(cmd, cmd.promise());
         if (++i == DEQUE_CHUNK_SIZE) {
           i = 0;
           // Flush each chunk so we are releasing buffers periodically. In theory this loop
           // might never end as new events are continuously added to the queue, if we never
           // flushed in that case we would be guaranteed to OOM.
-          channel.flush();
+          flushChannel();
+          flushedOnce = true;
+        } else if (flushPolicy.isCoalescing()
+            && unflushedBytes >= flushPolicy.flushThresholdBytes) {
+          i = 0;
+          flushChannel();
           flushedOnce = true;
         }
       }
       // Must flush at least once, even if there were no writes.
       if (i != 0 || !flushedOnce) {
-        channel.flush();
+        if (flushPolicy.isCoalescing()) {
+          // Wait for more writes to arrive, but not longer than the policy allows.
+          scheduleDelayedFlush();
+        } else {
+          flushChannel();
+        }
       }
     } finally {
       // Mark the write as done, if the queue is non-empty after marking trigger a new write.
@@ -132,6 +169,54 @@ class WriteQueue {
     }
   }
 
+  private void scheduleDelayedFlush() {
+    if (delayedFlush == null) {
+      delayedFlush = channel.eventLoop().schedule(
+          delayedFlushTask, flushPolicy.maxFlushDelayNanos, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  private void flushChannel() {
+    if (delayedFlush != null) {
+      delayedFlush.cancel(false);
+      delayedFlush = null;
+    }
+    channel.flush();
+    unflushedBytes = 0;
+  }
+
+  /**
+   * Decides when the writes of a drain of the queue are flushed to the socket. By default they are
+   * flushed as soon as the queue has been drained. A coalescing policy instead keeps them pending
+   * until enough bytes have been written or the flush delay expires, trading latency for fewer
+   * flushes (and syscalls) when many small writes arrive on a connection.
+   */
+  static final class FlushPolicy {
+    static final FlushPolicy IMMEDIATE = new FlushPolicy(0, 0);
+
+    final long flushThresholdBytes;
+    final long maxFlushDelayNanos;
+
+    private FlushPolicy(long flushThresholdBytes, long maxFlushDelayNanos) {
+      this.flushThresholdBytes = flushThresholdBytes;
+      this.maxFlushDelayNanos = maxFlushDelayNanos;
+    }
+
+    /**
+     * Creates a policy that flushes once {@code flushThresholdBytes} bytes of gRPC frames are
+     * pending, or {@code maxFlushDelayNanos} after the first unflushed write otherwise.
+     */
+    static FlushPolicy coalescing(long flushThresholdBytes, long maxFlushDelayNanos) {
+      Preconditions.checkArgument(flushThresholdBytes > 0, "flushThresholdBytes must be positive");
+      Preconditions.checkArgument(maxFlushDelayNanos > 0, "maxFlushDelayNanos must be positive");
+      return new FlushPolicy(flushThresholdBytes, maxFlushDelayNanos);
+    }
+
+    boolean isCoalescing() {
+      return maxFlushDelayNanos > 0;
+    }
+  }
+
   abstract static class AbstractQueuedCommand implements QueuedCommand {
 
     private ChannelPromise promise;
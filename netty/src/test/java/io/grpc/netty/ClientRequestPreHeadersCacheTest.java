@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.grpc.netty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import io.grpc.netty.GrpcHttp2OutboundHeaders.ClientRequestPreHeaders;
+import io.netty.util.AsciiString;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link ClientRequestPreHeadersCache}. */
+@RunWith(JUnit4.class)
+public class ClientRequestPreHeadersCacheTest {
+  private static final AsciiString AUTHORITY = AsciiString.of("localhost");
+  private static final AsciiString OTHER_AUTHORITY = AsciiString.of("otherhost");
+
+  private final ClientRequestPreHeadersCache cache = new ClientRequestPreHeadersCache(AUTHORITY);
+
+  @Test
+  public void cachesTransportAuthority() {
+    ClientRequestPreHeaders preHeaders = preHeaders(AUTHORITY, "service/method");
+    cache.put("service/method", preHeaders);
+
+    assertSame(preHeaders, cache.get("service/method", AUTHORITY));
+    assertNull(cache.get("service/method", OTHER_AUTHORITY));
+    assertNull(cache.get("service/other", AUTHORITY));
+  }
+
+  @Test
+  public void ignoresOtherAuthority() {
+    cache.put("service/method", preHeaders(OTHER_AUTHORITY, "service/method"));
+
+    assertNull(cache.get("service/method", OTHER_AUTHORITY));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void stopsGrowingWhenFull() {
+    for (int i = 0; i < ClientRequestPreHeadersCache.MAX_SIZE + 10; i++) {
+      cache.put("service/method" + i, preHeaders(AUTHORITY, "service/method" + i));
+    }
+
+    assertEquals(ClientRequestPreHeadersCache.MAX_SIZE, cache.size());
+    assertNull(cache.get("service/method" + ClientRequestPreHeadersCache.MAX_SIZE, AUTHORITY));
+  }
+
+  private static ClientRequestPreHeaders preHeaders(AsciiString authority, String methodName) {
+    return new ClientRequestPreHeaders(authority, AsciiString.of("/" + methodName),
+        Utils.HTTP_METHOD, Utils.HTTP, AsciiString.of("agent"));
+  }
+}
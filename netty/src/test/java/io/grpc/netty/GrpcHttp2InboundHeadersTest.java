@@ -20,6 +20,7 @@ import static io.netty.util.AsciiString.of;
 import static junit.framework.TestCase.assertNotSame;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 import com.google.common.io.BaseEncoding;
 import io.grpc.netty.GrpcHttp2HeadersUtils.GrpcHttp2InboundHeaders;
@@ -27,6 +28,7 @@ import io.grpc.netty.GrpcHttp2HeadersUtils.GrpcHttp2RequestHeaders;
 import io.grpc.netty.GrpcHttp2HeadersUtils.GrpcHttp2ResponseHeaders;
 import io.netty.handler.codec.http2.Http2Headers;
 import io.netty.util.AsciiString;
+import java.util.Arrays;
 import java.util.Random;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -79,4 +81,29 @@ public class GrpcHttp2InboundHeadersTest {
     assertArrayEquals(data, namesAndValues[1]);
   }
 
+  @Test
+  public void binaryHeadersShouldBeReturnedBase64Encoded() {
+    Http2Headers headers = new GrpcHttp2ResponseHeaders(1);
+
+    byte[] data = new byte[100];
+    new Random().nextBytes(data);
+    headers.add(of("foo-bin"), of(BaseEncoding.base64().encode(data)));
+    headers.add(of("foo-bin"), of(BaseEncoding.base64().omitPadding().encode(data)));
+
+    AsciiString encoded = of(BaseEncoding.base64().omitPadding().encode(data));
+    assertEquals(encoded, headers.get(of("foo-bin")));
+    assertEquals(Arrays.<CharSequence>asList(encoded, encoded), headers.getAll(of("foo-bin")));
+  }
+
+  @Test
+  public void contentTypeIsReturnedAsReceived() {
+    Http2Headers headers = new GrpcHttp2RequestHeaders(1);
+    AsciiString contentType = of("application/grpc");
+    headers.add(of("content-type"), contentType);
+    headers.add(of("content-type"), of("text/html"));
+
+    assertSame(contentType, headers.get(of("content-type")));
+    assertEquals(2, ((GrpcHttp2InboundHeaders) headers).numHeaders());
+  }
+
 }
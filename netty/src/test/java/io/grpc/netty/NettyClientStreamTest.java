@@ -48,6 +48,7 @@ import io.grpc.Status;
 import io.grpc.internal.ClientStreamListener;
 import io.grpc.internal.GrpcUtil;
 import io.grpc.internal.StatsTraceContext;
+import io.grpc.netty.GrpcHttp2OutboundHeaders.ClientRequestPreHeaders;
 import io.grpc.netty.WriteQueue.QueuedCommand;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
@@ -82,6 +83,8 @@ public class NettyClientStreamTest extends NettyStreamTestBase<NettyClientStream
   @SuppressWarnings("unchecked")
   private MethodDescriptor.Marshaller<Void> marshaller = mock(MethodDescriptor.Marshaller.class);
 
+  private final ClientRequestPreHeadersCache preHeadersCache =
+      new ClientRequestPreHeadersCache(AsciiString.of("localhost"));
   // Must be initialized before @Before, because it is used by createStream()
   private MethodDescriptor<?, ?> methodDescriptor = MethodDescriptor.<Void, Void>newBuilder()
       .setType(MethodDescriptor.MethodType.UNARY)
@@ -350,7 +353,8 @@ public class NettyClientStreamTest extends NettyStreamTestBase<NettyClientStream
 
     stream = new NettyClientStream(new TransportStateImpl(handler, DEFAULT_MAX_MESSAGE_SIZE),
         methodDescriptor, new Metadata(), channel, AsciiString.of("localhost"),
-        AsciiString.of("http"), AsciiString.of("agent"), StatsTraceContext.NOOP);
+        AsciiString.of("http"), AsciiString.of("agent"), preHeadersCache,
+        StatsTraceContext.NOOP);
     stream.start(listener);
     stream().transportState().setId(STREAM_ID);
     verify(listener, never()).onReady();
@@ -370,7 +374,8 @@ public class NettyClientStreamTest extends NettyStreamTestBase<NettyClientStream
 
     stream = new NettyClientStream(new TransportStateImpl(handler, DEFAULT_MAX_MESSAGE_SIZE),
         methodDescriptor, new Metadata(), channel, AsciiString.of("localhost"),
-        AsciiString.of("http"), AsciiString.of("good agent"), StatsTraceContext.NOOP);
+        AsciiString.of("http"), AsciiString.of("good agent"),
+        preHeadersCache, StatsTraceContext.NOOP);
     stream.start(listener);
 
     ArgumentCaptor<CreateStreamCommand> cmdCap = ArgumentCaptor.forClass(CreateStreamCommand.class);
@@ -379,6 +384,45 @@ public class NettyClientStreamTest extends NettyStreamTestBase<NettyClientStream
         .containsEntry(Utils.USER_AGENT, AsciiString.of("good agent"));
   }
 
+  @Test
+  public void requestHeadersCachedForTransportAuthorityOnly() {
+    // Streams to the transport's authority, and ones with an overridden authority.
+    ClientRequestPreHeaders firstCached = null;
+    for (int i = 0; i < 4; i++) {
+      boolean overridden = i % 2 == 1;
+      String authority = overridden ? "otherhost" : "localhost";
+      listener = mock(ClientStreamListener.class);
+      Mockito.reset(writeQueue);
+      when(writeQueue.enqueue(any(QueuedCommand.class), any(boolean.class))).thenReturn(future);
+
+      stream = new NettyClientStream(new TransportStateImpl(handler, DEFAULT_MAX_MESSAGE_SIZE),
+          methodDescriptor, new Metadata(), channel, AsciiString.of("localhost"),
+          AsciiString.of("http"), AsciiString.of("agent"), preHeadersCache,
+          StatsTraceContext.NOOP);
+      if (overridden) {
+        stream.setAuthority(authority);
+      }
+      stream.start(listener);
+
+      ArgumentCaptor<CreateStreamCommand> cmdCap =
+          ArgumentCaptor.forClass(CreateStreamCommand.class);
+      verify(writeQueue).enqueue(cmdCap.capture(), eq(false));
+      assertThat(ImmutableListMultimap.copyOf(cmdCap.getValue().headers()))
+          .containsEntry(AsciiString.of(":authority"), AsciiString.of(authority));
+      assertThat(ImmutableListMultimap.copyOf(cmdCap.getValue().headers()))
+          .containsEntry(AsciiString.of(":path"), AsciiString.of("//testService/test"));
+      if (i == 0) {
+        firstCached = preHeadersCache.get(
+            methodDescriptor.getFullMethodName(), AsciiString.of("localhost"));
+      }
+    }
+    // The overridden authority did not replace the cached headers.
+    assertThat(firstCached).isNotNull();
+    assertThat(preHeadersCache.get(methodDescriptor.getFullMethodName(),
+        AsciiString.of("localhost"))).isSameAs(firstCached);
+    assertEquals(1, preHeadersCache.size());
+  }
+
   @Test
   public void getRequestSentThroughHeader() {
     // Creating a GET method
@@ -393,7 +437,7 @@ public class NettyClientStreamTest extends NettyStreamTestBase<NettyClientStream
     NettyClientStream stream = new NettyClientStream(
         new TransportStateImpl(handler, DEFAULT_MAX_MESSAGE_SIZE), descriptor, new Metadata(),
         channel, AsciiString.of("localhost"), AsciiString.of("http"), AsciiString.of("agent"),
-        StatsTraceContext.NOOP);
+        preHeadersCache, StatsTraceContext.NOOP);
     stream.start(listener);
     stream.transportState().setId(STREAM_ID);
     stream.transportState().setHttp2Stream(http2Stream);
@@ -427,7 +471,7 @@ public class NettyClientStreamTest extends NettyStreamTestBase<NettyClientStream
     NettyClientStream stream = new NettyClientStream(
         new TransportStateImpl(handler, DEFAULT_MAX_MESSAGE_SIZE), methodDescriptor, new Metadata(),
         channel, AsciiString.of("localhost"), AsciiString.of("http"), AsciiString.of("agent"),
-        StatsTraceContext.NOOP);
+        preHeadersCache, StatsTraceContext.NOOP);
     stream.start(listener);
     stream.transportState().setId(STREAM_ID);
     stream.transportState().setHttp2Stream(http2Stream);
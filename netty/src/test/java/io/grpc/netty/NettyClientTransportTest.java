@@ -164,7 +164,7 @@ public class NettyClientTransportTest {
         address, NioSocketChannel.class, channelOptions, group, newNegotiator(),
         DEFAULT_WINDOW_SIZE, DEFAULT_MAX_MESSAGE_SIZE, GrpcUtil.DEFAULT_MAX_HEADER_LIST_SIZE,
         KEEPALIVE_TIME_NANOS_DISABLED, 1L, false, authority, null /* user agent */,
-        tooManyPingsRunnable);
+        tooManyPingsRunnable, WriteQueue.FlushPolicy.IMMEDIATE);
     transports.add(transport);
     callMeMaybe(transport.start(clientTransportListener));
 
@@ -291,7 +291,7 @@ public class NettyClientTransportTest {
         address, CantConstructChannel.class, new HashMap<ChannelOption<?>, Object>(), group,
         newNegotiator(), DEFAULT_WINDOW_SIZE, DEFAULT_MAX_MESSAGE_SIZE,
         GrpcUtil.DEFAULT_MAX_HEADER_LIST_SIZE, KEEPALIVE_TIME_NANOS_DISABLED, 1, false, authority,
-        null, tooManyPingsRunnable);
+        null, tooManyPingsRunnable, WriteQueue.FlushPolicy.IMMEDIATE);
     transports.add(transport);
 
     // Should not throw
@@ -459,7 +459,7 @@ public class NettyClientTransportTest {
         address, NioSocketChannel.class, new HashMap<ChannelOption<?>, Object>(), group, negotiator,
         DEFAULT_WINDOW_SIZE, maxMsgSize, maxHeaderListSize,
         keepAliveTimeNano, keepAliveTimeoutNano,
-        false, authority, userAgent, tooManyPingsRunnable);
+        false, authority, userAgent, tooManyPingsRunnable, WriteQueue.FlushPolicy.IMMEDIATE);
     transports.add(transport);
     return transport;
   }
@@ -481,7 +481,8 @@ public class NettyClientTransportTest {
         DEFAULT_WINDOW_SIZE, DEFAULT_MAX_MESSAGE_SIZE, maxHeaderListSize,
         DEFAULT_SERVER_KEEPALIVE_TIME_NANOS, DEFAULT_SERVER_KEEPALIVE_TIMEOUT_NANOS,
         MAX_CONNECTION_IDLE_NANOS_DISABLED,
-        MAX_CONNECTION_AGE_NANOS_DISABLED, MAX_CONNECTION_AGE_GRACE_NANOS_INFINITE, true, 0);
+        MAX_CONNECTION_AGE_NANOS_DISABLED, MAX_CONNECTION_AGE_GRACE_NANOS_INFINITE, true, 0,
+        WriteQueue.FlushPolicy.IMMEDIATE);
     server.start(serverListener);
     address = TestUtils.testServerAddress(server.getPort());
     authority = GrpcUtil.authorityFromHostAndPort(address.getHostString(), address.getPort());
@@ -551,6 +552,11 @@ public class NettyClientTransportTest {
       }
     }
 
+    @Override
+    public void closed(Status status, RpcProgress rpcProgress, Metadata trailers) {
+      closed(status, trailers);
+    }
+
     @Override
     public void messageRead(InputStream message) {
       responseFuture.set(null);
@@ -18,10 +18,12 @@ package io.grpc.netty;
 
 import static com.google.common.base.Charsets.UTF_8;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import io.grpc.internal.ReadableBuffer;
 import io.grpc.internal.ReadableBufferTestBase;
 import io.netty.buffer.Unpooled;
+import java.nio.ByteBuffer;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -52,6 +54,18 @@ public class NettyReadableBufferTest extends ReadableBufferTestBase {
     assertEquals(0, buffer.buffer().refCnt());
   }
 
+  @Test
+  public void getByteBufferShouldShareContent() {
+    assertTrue(buffer.byteBufferSupported());
+    buffer.readUnsignedByte();
+
+    ByteBuffer byteBuffer = buffer.getByteBuffer();
+    assertEquals(msg.length() - 1, byteBuffer.remaining());
+    assertEquals(msg.charAt(1), byteBuffer.get());
+    // Reading the returned buffer does not advance this buffer.
+    assertEquals(msg.length() - 1, buffer.readableBytes());
+  }
+
   @Override
   protected ReadableBuffer buffer() {
     return buffer;
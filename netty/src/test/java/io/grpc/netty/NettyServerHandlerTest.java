@@ -756,7 +756,8 @@ public class NettyServerHandlerTest extends NettyHandlerTestBase<NettyServerHand
         keepAliveTimeInNanos, keepAliveTimeoutInNanos,
         maxConnectionIdleInNanos,
         maxConnectionAgeInNanos, maxConnectionAgeGraceInNanos,
-        permitKeepAliveWithoutCalls, permitKeepAliveTimeInNanos);
+        permitKeepAliveWithoutCalls, permitKeepAliveTimeInNanos,
+        WriteQueue.FlushPolicy.IMMEDIATE);
   }
 
   @Override
@@ -49,7 +49,8 @@ public class NettyServerTest {
         1, // ignore
         1, 1, // ignore
         1, 1, // ignore
-        true, 0); // ignore
+        true, 0, // ignore
+        WriteQueue.FlushPolicy.IMMEDIATE);
     ns.start(new ServerListener() {
       @Override
       public ServerTransportListener transportCreated(ServerTransport transport) {
@@ -84,7 +85,8 @@ public class NettyServerTest {
         1, // ignore
         1, 1, // ignore
         1, 1, // ignore
-        true, 0); // ignore
+        true, 0, // ignore
+        WriteQueue.FlushPolicy.IMMEDIATE);
 
     assertThat(ns.getPort()).isEqualTo(-1);
   }
@@ -17,11 +17,15 @@
 package io.grpc.netty;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
+import io.grpc.internal.ReadableBuffers;
 import io.grpc.internal.WritableBuffer;
 import io.grpc.internal.WritableBufferAllocator;
 import io.grpc.internal.WritableBufferAllocatorTestBase;
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -61,4 +65,27 @@ public class NettyWritableBufferAllocatorTest extends WritableBufferAllocatorTes
     assertEquals(0, buffer.readableBytes());
     assertEquals(1024 * 1024, buffer.writableBytes());
   }
+
+  @Test
+  public void wrapAdoptsNettyBufferWithoutCopying() {
+    ByteBuf byteBuf = Unpooled.buffer(100).writeBytes(new byte[10]);
+    WritableBuffer buffer = allocator.wrap(new NettyReadableBuffer(byteBuf));
+
+    assertEquals(10, buffer.readableBytes());
+    assertEquals(0, buffer.writableBytes());
+    assertSame(byteBuf, ((NettyWritableBuffer) buffer).bytebuf().unwrap());
+    buffer.release();
+    assertEquals(0, byteBuf.refCnt());
+  }
+
+  @Test
+  public void wrapSharesArray() {
+    byte[] array = new byte[10];
+    WritableBuffer buffer = allocator.wrap(ReadableBuffers.wrap(array, 2, 5));
+
+    ByteBuf byteBuf = ((NettyWritableBuffer) buffer).bytebuf();
+    assertEquals(5, buffer.readableBytes());
+    assertSame(array, byteBuf.array());
+    assertEquals(2, byteBuf.arrayOffset() + byteBuf.readerIndex());
+  }
 }
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.grpc.netty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import io.grpc.Attributes;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.NameResolver;
+import io.grpc.NameResolverProvider;
+import io.grpc.Status;
+import java.net.URI;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+
+/** Unit tests for {@link UdsNameResolverProvider}. */
+@RunWith(JUnit4.class)
+public class UdsNameResolverProviderTest {
+  private final UdsNameResolverProvider provider = new UdsNameResolverProvider();
+
+  @Test
+  public void provided() {
+    for (NameResolverProvider current
+        : NameResolverProvider.getCandidatesViaServiceLoader(getClass().getClassLoader())) {
+      if (current instanceof UdsNameResolverProvider) {
+        return;
+      }
+    }
+    fail("UdsNameResolverProvider not registered");
+  }
+
+  @Test
+  public void isAvailable() {
+    assertTrue(provider.isAvailable());
+  }
+
+  @Test
+  public void newNameResolver() {
+    assertEquals("/var/run/foo.sock", newNameResolver("unix:///var/run/foo.sock").getPath());
+    assertEquals("/var/run/foo.sock", newNameResolver("unix:/var/run/foo.sock").getPath());
+    assertEquals("foo.sock", newNameResolver("unix:foo.sock").getPath());
+    assertEquals("localhost", newNameResolver("unix:foo.sock").getServiceAuthority());
+    assertNull(provider.newNameResolver(URI.create("dns:///localhost:443"), Attributes.EMPTY));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void newNameResolver_rejectsAuthority() {
+    newNameResolver("unix://localhost/var/run/foo.sock");
+  }
+
+  @Test
+  public void start() {
+    NameResolver resolver = newNameResolver("unix:///var/run/foo.sock");
+    NameResolver.Listener listener = mock(NameResolver.Listener.class);
+    resolver.start(listener);
+
+    if (Utils.isEpollAvailable()) {
+      @SuppressWarnings("unchecked")
+      ArgumentCaptor<List<EquivalentAddressGroup>> captor =
+          (ArgumentCaptor<List<EquivalentAddressGroup>>) (ArgumentCaptor<?>)
+              ArgumentCaptor.forClass(List.class);
+      verify(listener).onAddresses(captor.capture(), eq(Attributes.EMPTY));
+      assertEquals(1, captor.getValue().size());
+      assertTrue(Utils.isDomainSocketAddress(captor.getValue().get(0).getAddresses().get(0)));
+    } else {
+      ArgumentCaptor<Status> captor = ArgumentCaptor.forClass(Status.class);
+      verify(listener).onError(captor.capture());
+      assertEquals(Status.Code.UNAVAILABLE, captor.getValue().getCode());
+    }
+    resolver.shutdown();
+  }
+
+  private UdsNameResolverProvider.UdsNameResolver newNameResolver(String target) {
+    return (UdsNameResolverProvider.UdsNameResolver)
+        provider.newNameResolver(URI.create(target), Attributes.EMPTY);
+  }
+}
@@ -17,12 +17,22 @@
 package io.grpc.netty;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import io.grpc.Status;
 import io.netty.channel.ConnectTimeoutException;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.http2.Http2Error;
 import io.netty.handler.codec.http2.Http2Exception;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -43,6 +53,64 @@ public class UtilsTest {
     assertStatusEquals(Status.UNKNOWN.withCause(t), Utils.statusFromThrowable(t));
   }
 
+  @Test
+  public void channelTypesMatchNioGroup() {
+    EventLoopGroup group = new NioEventLoopGroup(1);
+    try {
+      SocketAddress address = new InetSocketAddress("localhost", 443);
+      assertSame(NioSocketChannel.class, Utils.clientChannelType(group, address));
+      assertSame(NioServerSocketChannel.class, Utils.serverChannelType(group, group, address));
+    } finally {
+      group.shutdownGracefully();
+    }
+  }
+
+  @Test
+  public void sharedGroupsFollowChannelType() {
+    SocketAddress address = new InetSocketAddress("localhost", 443);
+    assertSame(Utils.DEFAULT_WORKER_EVENT_LOOP_GROUP,
+        Utils.sharedWorkerGroup(NioSocketChannel.class, null, address));
+    assertSame(Utils.DEFAULT_BOSS_EVENT_LOOP_GROUP,
+        Utils.sharedBossGroup(NioServerSocketChannel.class, null, address));
+    assertSame(Utils.DEFAULT_WORKER_EVENT_LOOP_GROUP,
+        Utils.sharedWorkerGroup(LocalChannel.class, null, new LocalAddress("local")));
+  }
+
+  @Test
+  public void sharedGroupsFollowOtherGroup() {
+    EventLoopGroup group = new NioEventLoopGroup(1);
+    try {
+      assertSame(Utils.DEFAULT_BOSS_EVENT_LOOP_GROUP, Utils.sharedBossGroup(null, group, null));
+      assertSame(Utils.DEFAULT_WORKER_EVENT_LOOP_GROUP,
+          Utils.sharedWorkerGroup(null, group, null));
+    } finally {
+      group.shutdownGracefully();
+    }
+  }
+
+  @Test
+  public void sharedGroupsDefaultToNio() {
+    String useEpoll = System.getProperty(Utils.USE_EPOLL_PROPERTY);
+    System.clearProperty(Utils.USE_EPOLL_PROPERTY);
+    try {
+      SocketAddress address = new InetSocketAddress("localhost", 443);
+      assertSame(Utils.DEFAULT_BOSS_EVENT_LOOP_GROUP, Utils.sharedBossGroup(null, null, address));
+      assertSame(Utils.DEFAULT_WORKER_EVENT_LOOP_GROUP,
+          Utils.sharedWorkerGroup(null, null, null));
+    } finally {
+      if (useEpoll != null) {
+        System.setProperty(Utils.USE_EPOLL_PROPERTY, useEpoll);
+      }
+    }
+  }
+
+  @Test
+  public void tcpChannelTypes() {
+    assertTrue(Utils.isTcpChannelType(NioSocketChannel.class));
+    assertTrue(Utils.isTcpChannelType(NioServerSocketChannel.class));
+    assertFalse(Utils.isTcpChannelType(LocalChannel.class));
+  }
+
   private static void assertStatusEquals(Status expected, Status actual) {
     assertEquals(expected.getCode(), actual.getCode());
     assertEquals(expected.getDescription(), actual.getDescription());
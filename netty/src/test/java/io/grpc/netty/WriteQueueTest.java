@@ -18,24 +18,31 @@ package io.grpc.netty;
 
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isA;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import io.grpc.netty.WriteQueue.QueuedCommand;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelPromise;
 import io.netty.channel.EventLoop;
+import io.netty.util.concurrent.ScheduledFuture;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
@@ -53,6 +60,11 @@ public class WriteQueueTest {
   @Mock
   public ChannelPromise promise;
 
+  @Mock
+  public ScheduledFuture<?> delayedFlush;
+
+  private EventLoop eventLoop;
+
   private long writeCalledNanos;
   private long flushCalledNanos = writeCalledNanos;
 
@@ -64,7 +76,7 @@ public class WriteQueueTest {
     MockitoAnnotations.initMocks(this);
     when(channel.newPromise()).thenReturn(promise);
 
-    EventLoop eventLoop = Mockito.mock(EventLoop.class);
+    eventLoop = Mockito.mock(EventLoop.class);
     doAnswer(new Answer<Void>() {
       @Override
       public Void answer(InvocationOnMock invocation) throws Throwable {
@@ -75,6 +87,8 @@ public class WriteQueueTest {
     }).when(eventLoop).execute(any(Runnable.class));
     when(eventLoop.inEventLoop()).thenReturn(true);
     when(channel.eventLoop()).thenReturn(eventLoop);
+    doReturn(delayedFlush).when(eventLoop)
+        .schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
 
     when(channel.flush()).thenAnswer(new Answer<Channel>() {
       @Override
@@ -138,6 +152,58 @@ public class WriteQueueTest {
     verify(channel, times(2)).flush();
   }
 
+  @Test
+  public void coalescingShouldDelayFlush() {
+    WriteQueue queue = new WriteQueue(channel, WriteQueue.FlushPolicy.coalescing(1024, 1000));
+    queue.enqueue(new CuteCommand(), true);
+    queue.enqueue(new CuteCommand(), true);
+
+    verify(channel, times(2)).write(isA(QueuedCommand.class), eq(promise));
+    verify(channel, never()).flush();
+    ArgumentCaptor<Runnable> taskCaptor = ArgumentCaptor.forClass(Runnable.class);
+    verify(eventLoop).schedule(taskCaptor.capture(), eq(1000L), eq(TimeUnit.NANOSECONDS));
+
+    taskCaptor.getValue().run();
+    verify(channel).flush();
+  }
+
+  @Test
+  public void coalescingShouldFlushOnceThresholdIsReached() {
+    WriteQueue queue = new WriteQueue(channel, WriteQueue.FlushPolicy.coalescing(100, 1000));
+    queue.enqueue(frameCommand(60), false);
+    queue.enqueue(frameCommand(60), false);
+    queue.enqueue(frameCommand(10), false);
+    queue.scheduleFlush();
+
+    verify(channel, times(3)).write(isA(QueuedCommand.class), eq(promise));
+    verify(channel).flush();
+    // The remaining write is left for the delayed flush.
+    verify(eventLoop).schedule(any(Runnable.class), eq(1000L), eq(TimeUnit.NANOSECONDS));
+  }
+
+  @Test
+  public void flushShouldCancelDelayedFlush() {
+    WriteQueue queue = new WriteQueue(channel, WriteQueue.FlushPolicy.coalescing(100, 1000));
+    queue.enqueue(frameCommand(10), true);
+    verify(channel, never()).flush();
+
+    queue.enqueue(frameCommand(100), true);
+    verify(channel).flush();
+    verify(delayedFlush).cancel(false);
+  }
+
+  @Test
+  public void immediatePolicyShouldNotDelayFlush() {
+    WriteQueue queue = new WriteQueue(channel);
+    queue.enqueue(frameCommand(10), false);
+    queue.enqueue(frameCommand(20), false);
+    queue.scheduleFlush();
+
+    verify(channel).flush();
+    verify(eventLoop, never())
+        .schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+  }
+
   @Test(timeout = 10000)
   public void concurrentWriteAndFlush() throws Throwable {
     final WriteQueue queue = new WriteQueue(channel);
@@ -196,6 +262,10 @@ public class WriteQueueTest {
     verify(channel, times(writes)).write(isA(CuteCommand.class), eq(promise));
   }
 
+  private static SendGrpcFrameCommand frameCommand(int size) {
+    return new SendGrpcFrameCommand(null, Unpooled.wrappedBuffer(new byte[size]), false);
+  }
+
   static class CuteCommand extends WriteQueue.AbstractQueuedCommand {
 
   }
@@ -16,6 +16,7 @@
 
 package io.grpc.okhttp;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import io.grpc.internal.SerializingExecutor;
 import io.grpc.okhttp.internal.framed.ErrorCode;
@@ -25,17 +26,43 @@ import io.grpc.okhttp.internal.framed.Settings;
 import java.io.IOException;
 import java.net.Socket;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import okio.Buffer;
 
 class AsyncFrameWriter implements FrameWriter {
   private static final Logger log = Logger.getLogger(OkHttpClientTransport.class.getName());
+
+  // Flush at least this often while draining, so a busy transport still makes progress on the wire.
+  @VisibleForTesting
+  static final int DRAIN_CHUNK_SIZE = 128;
+
   private FrameWriter frameWriter;
   private Socket socket;
   // Although writes are thread-safe, we serialize them to prevent consuming many Threads that are
-  // just waiting on each other.
+  // just waiting on each other. Frames are queued and written in batches by a single task, which
+  // flushes the socket once per batch rather than once per flush() call.
   private final SerializingExecutor executor;
+  private final Queue<Runnable> queue = new ConcurrentLinkedQueue<Runnable>();
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+  private final Runnable drainTask = new Runnable() {
+    @Override
+    public void run() {
+      drain();
+    }
+  };
+
+  // Only accessed by the executor.
+  private boolean flushRequested;
+  private int unflushedFrames;
+
+  // Written by the executor, may be read from any thread.
+  private final AtomicLong flushCount = new AtomicLong();
+  private final AtomicLong flushedFrameCount = new AtomicLong();
   private final OkHttpClientTransport transport;
 
   public AsyncFrameWriter(OkHttpClientTransport transport, SerializingExecutor executor) {
@@ -58,7 +85,7 @@ class AsyncFrameWriter implements FrameWriter {
 
   @Override
   public void connectionPreface() {
-    executor.execute(new WriteRunnable() {
+    enqueue(new WriteRunnable() {
       @Override
       public void doRun() throws IOException {
         frameWriter.connectionPreface();
@@ -68,7 +95,7 @@ class AsyncFrameWriter implements FrameWriter {
 
   @Override
   public void ackSettings(final Settings peerSettings) {
-    executor.execute(new WriteRunnable() {
+    enqueue(new WriteRunnable() {
       @Override
       public void doRun() throws IOException {
         frameWriter.ackSettings(peerSettings);
@@ -79,7 +106,7 @@ class AsyncFrameWriter implements FrameWriter {
   @Override
   public void pushPromise(final int streamId, final int promisedStreamId,
       final List<Header> requestHeaders) {
-    executor.execute(new WriteRunnable() {
+    enqueue(new WriteRunnable() {
       @Override
       public void doRun() throws IOException {
         frameWriter.pushPromise(streamId, promisedStreamId, requestHeaders);
@@ -89,10 +116,16 @@ class AsyncFrameWriter implements FrameWriter {
 
   @Override
   public void flush() {
-    executor.execute(new WriteRunnable() {
+    enqueue(new WriteRunnable() {
       @Override
       public void doRun() throws IOException {
-        frameWriter.flush();
+        // Deferred until the frames already queued have been written as well.
+        flushRequested = true;
+      }
+
+      @Override
+      boolean writesFrame() {
+        return false;
       }
     });
   }
@@ -100,7 +133,7 @@ class AsyncFrameWriter implements FrameWriter {
   @Override
   public void synStream(final boolean outFinished, final boolean inFinished, final int streamId,
       final int associatedStreamId, final List<Header> headerBlock) {
-    executor.execute(new WriteRunnable() {
+    enqueue(new WriteRunnable() {
       @Override
       public void doRun() throws IOException {
         frameWriter.synStream(outFinished, inFinished, streamId, associatedStreamId, headerBlock);
@@ -111,7 +144,7 @@ class AsyncFrameWriter implements FrameWriter {
   @Override
   public void synReply(final boolean outFinished, final int streamId,
       final List<Header> headerBlock) {
-    executor.execute(new WriteRunnable() {
+    enqueue(new WriteRunnable() {
       @Override
       public void doRun() throws IOException {
         frameWriter.synReply(outFinished, streamId, headerBlock);
@@ -121,7 +154,7 @@ class AsyncFrameWriter implements FrameWriter {
 
   @Override
   public void headers(final int streamId, final List<Header> headerBlock) {
-    executor.execute(new WriteRunnable() {
+    enqueue(new WriteRunnable() {
       @Override
       public void doRun() throws IOException {
         frameWriter.headers(streamId, headerBlock);
@@ -131,7 +164,7 @@ class AsyncFrameWriter implements FrameWriter {
 
   @Override
   public void rstStream(final int streamId, final ErrorCode errorCode) {
-    executor.execute(new WriteRunnable() {
+    enqueue(new WriteRunnable() {
       @Override
       public void doRun() throws IOException {
         frameWriter.rstStream(streamId, errorCode);
@@ -142,7 +175,7 @@ class AsyncFrameWriter implements FrameWriter {
   @Override
   public void data(final boolean outFinished, final int streamId, final Buffer source,
       final int byteCount) {
-    executor.execute(new WriteRunnable() {
+    enqueue(new WriteRunnable() {
       @Override
       public void doRun() throws IOException {
         frameWriter.data(outFinished, streamId, source, byteCount);
@@ -152,7 +185,7 @@ class AsyncFrameWriter implements FrameWriter {
 
   @Override
   public void settings(final Settings okHttpSettings) {
-    executor.execute(new WriteRunnable() {
+    enqueue(new WriteRunnable() {
       @Override
       public void doRun() throws IOException {
         frameWriter.settings(okHttpSettings);
@@ -162,7 +195,7 @@ class AsyncFrameWriter implements FrameWriter {
 
   @Override
   public void ping(final boolean ack, final int payload1, final int payload2) {
-    executor.execute(new WriteRunnable() {
+    enqueue(new WriteRunnable() {
       @Override
       public void doRun() throws IOException {
         frameWriter.ping(ack, payload1, payload2);
@@ -173,19 +206,19 @@ class AsyncFrameWriter implements FrameWriter {
   @Override
   public void goAway(final int lastGoodStreamId, final ErrorCode errorCode,
       final byte[] debugData) {
-    executor.execute(new WriteRunnable() {
+    enqueue(new WriteRunnable() {
       @Override
       public void doRun() throws IOException {
         frameWriter.goAway(lastGoodStreamId, errorCode, debugData);
         // Flush it since after goAway, we are likely to close this writer.
-        frameWriter.flush();
+        flushFrameWriter();
       }
     });
   }
 
   @Override
   public void windowUpdate(final int streamId, final long windowSizeIncrement) {
-    executor.execute(new WriteRunnable() {
+    enqueue(new WriteRunnable() {
       @Override
       public void doRun() throws IOException {
         frameWriter.windowUpdate(streamId, windowSizeIncrement);
@@ -195,11 +228,14 @@ class AsyncFrameWriter implements FrameWriter {
 
   @Override
   public void close() {
-    executor.execute(new Runnable() {
+    enqueue(new Runnable() {
       @Override
       public void run() {
         if (frameWriter != null) {
           try {
+            if (flushRequested) {
+              flushFrameWriter();
+            }
             frameWriter.close();
             socket.close();
           } catch (IOException e) {
@@ -210,6 +246,74 @@ class AsyncFrameWriter implements FrameWriter {
     });
   }
 
+  private void enqueue(Runnable command) {
+    queue.add(command);
+    if (scheduled.compareAndSet(false, true)) {
+      executor.execute(drainTask);
+    }
+  }
+
+  /**
+   * Writes all queued frames, flushing the socket once at the end if any flush was requested in the
+   * meantime. Only called by the executor.
+   */
+  private void drain() {
+    try {
+      Runnable command;
+      int i = 0;
+      while ((command = queue.poll()) != null) {
+        command.run();
+        if (++i == DRAIN_CHUNK_SIZE) {
+          i = 0;
+          flushIfRequested();
+        }
+      }
+      flushIfRequested();
+    } finally {
+      // Mark the drain as done, if the queue is non-empty after marking schedule a new one.
+      scheduled.set(false);
+      if (!queue.isEmpty() && scheduled.compareAndSet(false, true)) {
+        executor.execute(drainTask);
+      }
+    }
+  }
+
+  private void flushIfRequested() {
+    if (!flushRequested) {
+      return;
+    }
+    try {
+      flushFrameWriter();
+    } catch (RuntimeException e) {
+      transport.onException(e);
+    } catch (Exception e) {
+      transport.onException(e);
+    }
+  }
+
+  private void flushFrameWriter() throws IOException {
+    flushRequested = false;
+    frameWriter.flush();
+    flushCount.incrementAndGet();
+    flushedFrameCount.addAndGet(unflushedFrames);
+    unflushedFrames = 0;
+  }
+
+  /**
+   * Returns the number of times the socket has been flushed.
+   */
+  long flushCount() {
+    return flushCount.get();
+  }
+
+  /**
+   * Returns the number of frames written before a flush of the socket. Divided by {@link
+   * #flushCount} this gives the average number of frames per flush.
+   */
+  long flushedFrameCount() {
+    return flushedFrameCount.get();
+  }
+
   private abstract class WriteRunnable implements Runnable {
     @Override
     public final void run() {
@@ -217,6 +321,9 @@ class AsyncFrameWriter implements FrameWriter {
         if (frameWriter == null) {
           throw new IOException("Unable to perform write due to unavailable frameWriter.");
         }
+        if (writesFrame()) {
+          unflushedFrames++;
+        }
         doRun();
       } catch (RuntimeException e) {
         transport.onException(e);
@@ -226,6 +333,10 @@ class AsyncFrameWriter implements FrameWriter {
     }
 
     public abstract void doRun() throws IOException;
+
+    boolean writesFrame() {
+      return true;
+    }
   }
 
   @Override
@@ -36,6 +36,7 @@ import io.grpc.MethodDescriptor.MethodType;
 import io.grpc.Status;
 import io.grpc.Status.Code;
 import io.grpc.StatusException;
+import io.grpc.internal.ClientStreamListener.RpcProgress;
 import io.grpc.internal.ConnectionClientTransport;
 import io.grpc.internal.GrpcUtil;
 import io.grpc.internal.Http2Ping;
@@ -299,7 +300,8 @@ class OkHttpClientTransport implements ConnectionClientTransport {
   void streamReadyToStart(OkHttpClientStream clientStream) {
     synchronized (lock) {
       if (goAwayStatus != null) {
-        clientStream.transportState().transportReportStatus(goAwayStatus, true, new Metadata());
+        clientStream.transportState().transportReportStatus(
+            goAwayStatus, RpcProgress.REFUSED, true, new Metadata());
       } else if (streams.size() >= maxConcurrentStreams) {
         pendingStreams.add(clientStream);
         setInUse();
@@ -682,12 +684,14 @@ class OkHttpClientTransport implements ConnectionClientTransport {
         Map.Entry<Integer, OkHttpClientStream> entry = it.next();
         if (entry.getKey() > lastKnownStreamId) {
           it.remove();
-          entry.getValue().transportState().transportReportStatus(status, false, new Metadata());
+          entry.getValue().transportState().transportReportStatus(
+              status, RpcProgress.REFUSED, false, new Metadata());
         }
       }
 
       for (OkHttpClientStream stream : pendingStreams) {
-        stream.transportState().transportReportStatus(status, true, new Metadata());
+        stream.transportState().transportReportStatus(
+            status, RpcProgress.REFUSED, true, new Metadata());
       }
       pendingStreams.clear();
       maybeClearInUse();
@@ -712,6 +716,15 @@ class OkHttpClientTransport implements ConnectionClientTransport {
    */
   void finishStream(int streamId, @Nullable Status status, @Nullable ErrorCode errorCode,
       @Nullable Metadata trailers) {
+    finishStream(streamId, status, RpcProgress.PROCESSED, errorCode, trailers);
+  }
+
+  /**
+   * Like {@link #finishStream(int, Status, ErrorCode, Metadata)}, but reporting the status with
+   * the given {@link RpcProgress}.
+   */
+  void finishStream(int streamId, @Nullable Status status, RpcProgress rpcProgress,
+      @Nullable ErrorCode errorCode, @Nullable Metadata trailers) {
     synchronized (lock) {
       OkHttpClientStream stream = streams.remove(streamId);
       if (stream != null) {
@@ -721,7 +734,7 @@ class OkHttpClientTransport implements ConnectionClientTransport {
         if (status != null) {
           boolean isCancelled = (status.getCode() == Code.CANCELLED
               || status.getCode() == Code.DEADLINE_EXCEEDED);
-          stream.transportState().transportReportStatus(status, isCancelled,
+          stream.transportState().transportReportStatus(status, rpcProgress, isCancelled,
               trailers != null ? trailers : new Metadata());
         }
         if (!startPendingStreams()) {
@@ -943,7 +956,11 @@ class OkHttpClientTransport implements ConnectionClientTransport {
 
     @Override
     public void rstStream(int streamId, ErrorCode errorCode) {
-      finishStream(streamId, toGrpcStatus(errorCode).augmentDescription("Rst Stream"), null, null);
+      // REFUSED_STREAM guarantees that the server did no processing
+      RpcProgress rpcProgress = errorCode == ErrorCode.REFUSED_STREAM
+          ? RpcProgress.REFUSED : RpcProgress.PROCESSED;
+      finishStream(streamId, toGrpcStatus(errorCode).augmentDescription("Rst Stream"),
+          rpcProgress, null, null);
     }
 
     @Override
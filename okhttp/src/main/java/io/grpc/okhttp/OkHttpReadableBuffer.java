@@ -33,6 +33,10 @@ class OkHttpReadableBuffer extends AbstractReadableBuffer {
     this.buffer = buffer;
   }
 
+  okio.Buffer buffer() {
+    return buffer;
+  }
+
   @Override
   public int readableBytes() {
     return (int) buffer.size();
@@ -30,6 +30,16 @@ class OkHttpWritableBuffer implements WritableBuffer {
     writableBytes = capacity;
   }
 
+  /**
+   * Creates a buffer whose content is the {@code size} bytes already in {@code buffer} and that
+   * can not be written to.
+   */
+  static OkHttpWritableBuffer filled(Buffer buffer, int size) {
+    OkHttpWritableBuffer writableBuffer = new OkHttpWritableBuffer(buffer, 0);
+    writableBuffer.readableBytes = size;
+    return writableBuffer;
+  }
+
   @Override
   public void write(byte[] src, int srcIndex, int length) {
     buffer.write(src, srcIndex, length);
@@ -16,16 +16,20 @@
 
 package io.grpc.okhttp;
 
+import io.grpc.internal.ReadableBuffer;
 import io.grpc.internal.WritableBuffer;
-import io.grpc.internal.WritableBufferAllocator;
+import io.grpc.internal.ZeroCopyWritableBufferAllocator;
 import okio.Buffer;
 
 /**
  * The default allocator for {@link OkHttpWritableBuffer}s used by the OkHttp transport. OkHttp
  * cannot receive buffers larger than the max DATA frame size - 1 so we must set an upper bound on
  * the allocated buffer size here.
+ *
+ * <p>Messages that are already held in okio buffers are adopted by moving their segments instead
+ * of copying them.
  */
-class OkHttpWritableBufferAllocator implements WritableBufferAllocator {
+class OkHttpWritableBufferAllocator implements ZeroCopyWritableBufferAllocator {
 
   // Use 4k as our minimum buffer size.
   private static final int MIN_BUFFER = 4096;
@@ -48,4 +52,17 @@ class OkHttpWritableBufferAllocator implements WritableBufferAllocator {
     capacityHint = Math.min(MAX_BUFFER, Math.max(MIN_BUFFER, capacityHint));
     return new OkHttpWritableBuffer(new Buffer(), capacityHint);
   }
+
+  @Override
+  public WritableBuffer wrap(ReadableBuffer buffer) {
+    if (!(buffer instanceof OkHttpReadableBuffer) || buffer.readableBytes() > MAX_BUFFER) {
+      return null;
+    }
+    Buffer source = ((OkHttpReadableBuffer) buffer).buffer();
+    int size = (int) source.size();
+    Buffer adopted = new Buffer();
+    // Moves the segments over without copying the bytes.
+    adopted.write(source, size);
+    return OkHttpWritableBuffer.filled(adopted, size);
+  }
 }
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.okhttp;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import io.grpc.internal.FakeClock;
+import io.grpc.internal.SerializingExecutor;
+import io.grpc.okhttp.internal.framed.FrameWriter;
+import java.net.Socket;
+import okio.Buffer;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+/**
+ * Tests for {@link AsyncFrameWriter}.
+ */
+@RunWith(JUnit4.class)
+public class AsyncFrameWriterTest {
+
+  @Mock private OkHttpClientTransport transport;
+  @Mock private FrameWriter frameWriter;
+  @Mock private Socket socket;
+
+  private final FakeClock executor = new FakeClock();
+  private AsyncFrameWriter asyncFrameWriter;
+
+  /**
+   * Set up for test.
+   */
+  @Before
+  public void setUp() {
+    MockitoAnnotations.initMocks(this);
+    asyncFrameWriter = new AsyncFrameWriter(transport,
+        new SerializingExecutor(executor.getScheduledExecutorService()));
+    asyncFrameWriter.becomeConnected(frameWriter, socket);
+  }
+
+  @Test
+  public void framesAreWrittenBeforeASingleFlush() throws Exception {
+    for (int i = 0; i < 3; i++) {
+      asyncFrameWriter.windowUpdate(1, 100);
+      asyncFrameWriter.flush();
+    }
+    assertEquals(1, executor.runDueTasks());
+
+    InOrder inOrder = inOrder(frameWriter);
+    inOrder.verify(frameWriter, times(3)).windowUpdate(1, 100);
+    inOrder.verify(frameWriter).flush();
+    assertEquals(1, asyncFrameWriter.flushCount());
+    assertEquals(3, asyncFrameWriter.flushedFrameCount());
+  }
+
+  @Test
+  public void requestedFlushIsDoneOncePerChunk() throws Exception {
+    // A data frame and a flush request per iteration, so this fills two chunks.
+    int frames = AsyncFrameWriter.DRAIN_CHUNK_SIZE;
+    for (int i = 0; i < frames; i++) {
+      asyncFrameWriter.data(false, 1, new Buffer(), 0);
+      asyncFrameWriter.flush();
+    }
+    executor.runDueTasks();
+
+    verify(frameWriter, times(frames)).data(false, 1, new Buffer(), 0);
+    verify(frameWriter, times(2)).flush();
+    assertEquals(frames, asyncFrameWriter.flushedFrameCount());
+  }
+
+  @Test
+  public void noFlushUnlessRequested() throws Exception {
+    asyncFrameWriter.windowUpdate(1, 100);
+    executor.runDueTasks();
+
+    verify(frameWriter).windowUpdate(1, 100);
+    verify(frameWriter, times(0)).flush();
+    assertEquals(0, asyncFrameWriter.flushCount());
+  }
+
+  @Test
+  public void closeFlushesPendingFrames() throws Exception {
+    asyncFrameWriter.windowUpdate(1, 100);
+    asyncFrameWriter.flush();
+    asyncFrameWriter.close();
+    executor.runDueTasks();
+
+    InOrder inOrder = inOrder(frameWriter, socket);
+    inOrder.verify(frameWriter).windowUpdate(1, 100);
+    inOrder.verify(frameWriter).flush();
+    inOrder.verify(frameWriter).close();
+    inOrder.verify(socket).close();
+  }
+}
@@ -212,6 +212,11 @@ public class OkHttpClientStreamTest {
 
     @Override
     public void closed(Status status, Metadata trailers) {}
+
+    @Override
+    public void closed(Status status, RpcProgress rpcProgress, Metadata trailers) {
+      closed(status, trailers);
+    }
   }
 }
 
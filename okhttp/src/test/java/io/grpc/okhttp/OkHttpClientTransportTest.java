@@ -57,6 +57,7 @@ import io.grpc.Status.Code;
 import io.grpc.StatusException;
 import io.grpc.internal.AbstractStream;
 import io.grpc.internal.ClientStreamListener;
+import io.grpc.internal.ClientStreamListener.RpcProgress;
 import io.grpc.internal.ClientTransport;
 import io.grpc.internal.GrpcUtil;
 import io.grpc.internal.ManagedClientTransport;
@@ -403,6 +404,22 @@ public class OkHttpClientTransportTest {
 
     assertThat(listener.status.getDescription()).contains("Rst Stream");
     assertThat(listener.status.getCode()).isEqualTo(Code.INTERNAL);
+    assertThat(listener.rpcProgress).isEqualTo(RpcProgress.PROCESSED);
+    shutdownAndVerify();
+  }
+
+  @Test
+  public void receiveRefusedStream() throws Exception {
+    initTransport();
+    MockStreamListener listener = new MockStreamListener();
+    OkHttpClientStream stream = clientTransport.newStream(method, new Metadata());
+    stream.start(listener);
+    assertContainStream(3);
+    frameHandler().rstStream(3, ErrorCode.REFUSED_STREAM);
+    listener.waitUntilStreamClosed();
+
+    assertThat(listener.status.getCode()).isEqualTo(Code.UNAVAILABLE);
+    assertThat(listener.rpcProgress).isEqualTo(RpcProgress.REFUSED);
     shutdownAndVerify();
   }
 
@@ -718,6 +735,7 @@ public class OkHttpClientTransportTest {
     listener2.waitUntilStreamClosed();
     assertEquals(1, activeStreamCount());
     assertEquals(Status.CANCELLED.getCode(), listener2.status.getCode());
+    assertEquals(RpcProgress.REFUSED, listener2.rpcProgress);
 
     // New stream should be failed.
     assertNewStreamFail();
@@ -861,6 +879,7 @@ public class OkHttpClientTransportTest {
 
     listener2.waitUntilStreamClosed();
     assertEquals(Status.CANCELLED.getCode(), listener2.status.getCode());
+    assertEquals(RpcProgress.REFUSED, listener2.rpcProgress);
     assertEquals(0, clientTransport.getPendingStreamSize());
 
     // active stream should not be affected.
@@ -1689,6 +1708,7 @@ public class OkHttpClientTransportTest {
 
   private static class MockStreamListener implements ClientStreamListener {
     Status status;
+    RpcProgress rpcProgress;
     Metadata headers;
     Metadata trailers;
     CountDownLatch closed = new CountDownLatch(1);
@@ -1713,7 +1733,13 @@ public class OkHttpClientTransportTest {
 
     @Override
     public void closed(Status status, Metadata trailers) {
+      closed(status, RpcProgress.PROCESSED, trailers);
+    }
+
+    @Override
+    public void closed(Status status, RpcProgress rpcProgress, Metadata trailers) {
       this.status = status;
+      this.rpcProgress = rpcProgress;
       this.trailers = trailers;
       closed.countDown();
     }
@@ -17,10 +17,13 @@
 package io.grpc.okhttp;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
+import io.grpc.internal.ReadableBuffers;
 import io.grpc.internal.WritableBuffer;
 import io.grpc.internal.WritableBufferAllocator;
 import io.grpc.internal.WritableBufferAllocatorTestBase;
+import okio.Buffer;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -58,4 +61,20 @@ public class OkHttpWritableBufferAllocatorTest extends WritableBufferAllocatorTe
     assertEquals(0, buffer.readableBytes());
     assertEquals(4097, buffer.writableBytes());
   }
+
+  @Test
+  public void wrapMovesOkioSegments() {
+    Buffer source = new Buffer().write(new byte[10]);
+    WritableBuffer buffer = allocator.wrap(new OkHttpReadableBuffer(source));
+
+    assertEquals(10, buffer.readableBytes());
+    assertEquals(0, buffer.writableBytes());
+    assertEquals(10, ((OkHttpWritableBuffer) buffer).buffer().size());
+    assertEquals(0, source.size());
+  }
+
+  @Test
+  public void wrapDoesNotAdoptOtherBuffers() {
+    assertNull(allocator.wrap(ReadableBuffers.wrap(new byte[10])));
+  }
 }
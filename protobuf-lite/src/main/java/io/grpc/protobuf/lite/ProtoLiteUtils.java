@@ -24,6 +24,7 @@ import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.MessageLite;
 import com.google.protobuf.Parser;
 import io.grpc.ExperimentalApi;
+import io.grpc.HasByteBuffer;
 import io.grpc.KnownLength;
 import io.grpc.Metadata;
 import io.grpc.MethodDescriptor.Marshaller;
@@ -34,6 +35,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.lang.ref.Reference;
 import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import javax.annotation.Nullable;
 
 /**
  * Utility methods for using protobuf with grpc.
@@ -118,10 +121,18 @@ public class ProtoLiteUtils {
           }
         }
         CodedInputStream cis = null;
+        int parsedInPlace = 0;
         try {
           if (stream instanceof KnownLength) {
             int size = stream.available();
-            if (size > 0 && size <= GrpcUtil.DEFAULT_MAX_MESSAGE_SIZE) {
+            ByteBuffer buffer = size > 0 ? contiguousByteBuffer(stream, size) : null;
+            if (buffer != null) {
+              // The whole message is in a single heap buffer owned by the transport, so parse it
+              // in place instead of copying it to our own array first.
+              cis = CodedInputStream.newInstance(
+                  buffer.array(), buffer.arrayOffset() + buffer.position(), size);
+              parsedInPlace = size;
+            } else if (size > 0 && size <= GrpcUtil.DEFAULT_MAX_MESSAGE_SIZE) {
               // buf should not be used after this method has returned.
               byte[] buf = bufs.get().get();
               if (buf == null || buf.length < size) {
@@ -151,12 +162,22 @@ public class ProtoLiteUtils {
         // when parsing.
         cis.setSizeLimit(Integer.MAX_VALUE);
 
+        T message;
         try {
-          return parseFrom(cis);
+          message = parseFrom(cis);
         } catch (InvalidProtocolBufferException ipbe) {
           throw Status.INTERNAL.withDescription("Invalid protobuf byte sequence")
             .withCause(ipbe).asRuntimeException();
         }
+        if (parsedInPlace > 0) {
+          // Consume the bytes that were parsed in place so the backing buffer can be released.
+          try {
+            stream.skip(parsedInPlace);
+          } catch (IOException e) {
+            throw new RuntimeException(e);
+          }
+        }
+        return message;
       }
 
       private T parseFrom(CodedInputStream stream) throws InvalidProtocolBufferException {
@@ -172,6 +193,24 @@ public class ProtoLiteUtils {
     };
   }
 
+  /**
+   * Returns the buffer backing {@code stream} if the stream exposes its content as {@link
+   * ByteBuffer}s and all {@code size} remaining bytes are in the first one, which is backed by an
+   * array, or {@code null} otherwise. Protobuf copies the content of direct buffers to a new array,
+   * which is worse than copying it to the reused one.
+   */
+  @Nullable
+  private static ByteBuffer contiguousByteBuffer(InputStream stream, int size) {
+    if (!(stream instanceof HasByteBuffer) || !((HasByteBuffer) stream).byteBufferSupported()) {
+      return null;
+    }
+    ByteBuffer buffer = ((HasByteBuffer) stream).getByteBuffer();
+    if (buffer == null || !buffer.hasArray() || buffer.remaining() != size) {
+      return null;
+    }
+    return buffer;
+  }
+
   /**
    * Produce a metadata marshaller for a protobuf type.
    */
@@ -20,6 +20,7 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import com.google.common.io.ByteStreams;
@@ -29,15 +30,19 @@ import com.google.protobuf.Enum;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Type;
 import io.grpc.Drainable;
+import io.grpc.HasByteBuffer;
 import io.grpc.Metadata;
 import io.grpc.MethodDescriptor.Marshaller;
 import io.grpc.MethodDescriptor.PrototypeMarshaller;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
+import io.grpc.internal.CompositeReadableBuffer;
+import io.grpc.internal.ReadableBuffers;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import org.junit.Rule;
 import org.junit.Test;
@@ -66,6 +71,39 @@ public class ProtoLiteUtilsTest {
     assertEquals(proto, marshaller.parse(is));
   }
 
+  @Test
+  public void parseFromByteBufferInPlace() throws Exception {
+    byte[] bytes = ByteStreams.toByteArray(marshaller.stream(proto));
+    InputStream is = ReadableBuffers.openStream(ReadableBuffers.wrap(bytes), true);
+    assertTrue(((HasByteBuffer) is).byteBufferSupported());
+
+    assertEquals(proto, marshaller.parse(is));
+    assertEquals(0, is.available());
+  }
+
+  @Test
+  public void parseFromDirectByteBuffer() throws Exception {
+    byte[] bytes = ByteStreams.toByteArray(marshaller.stream(proto));
+    ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+    direct.put(bytes).flip();
+    InputStream is = ReadableBuffers.openStream(ReadableBuffers.wrap(direct), true);
+
+    assertEquals(proto, marshaller.parse(is));
+    assertEquals(0, is.available());
+  }
+
+  @Test
+  public void parseFromSplitByteBuffers() throws Exception {
+    byte[] bytes = ByteStreams.toByteArray(marshaller.stream(proto));
+    CompositeReadableBuffer composite = new CompositeReadableBuffer();
+    composite.addBuffer(ReadableBuffers.wrap(bytes, 0, 1));
+    composite.addBuffer(ReadableBuffers.wrap(bytes, 1, bytes.length - 1));
+    InputStream is = ReadableBuffers.openStream(composite, true);
+
+    assertEquals(proto, marshaller.parse(is));
+    assertEquals(0, is.available());
+  }
+
   @Test
   public void testInvalidatedMessage() throws Exception {
     InputStream is = marshaller.stream(proto);
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.grpc.shm;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.base.Preconditions;
+import io.grpc.ExperimentalApi;
+import io.grpc.Internal;
+import io.grpc.internal.AbstractManagedChannelImplBuilder;
+import io.grpc.internal.ClientTransportFactory;
+import io.grpc.internal.ConnectionClientTransport;
+import java.io.File;
+import java.net.InetAddress;
+import java.net.SocketAddress;
+import java.net.UnknownHostException;
+import javax.annotation.Nullable;
+
+/**
+ * Builder for a channel to a server on the same host that exchanges frames through memory-mapped
+ * ring buffers instead of a socket. The server is identified by the directory it listens in.
+ */
+@ExperimentalApi
+public final class ShmChannelBuilder extends AbstractManagedChannelImplBuilder<ShmChannelBuilder> {
+  public static final int DEFAULT_RING_CAPACITY = 1024 * 1024; // 1MiB
+  public static final int DEFAULT_FLOW_CONTROL_WINDOW = ShmConnection.DEFAULT_WINDOW;
+
+  private static final String SCHEME = "shm:";
+
+  private final ShmSocketAddress address;
+  private int ringCapacity = DEFAULT_RING_CAPACITY;
+  private int flowControlWindow = DEFAULT_FLOW_CONTROL_WINDOW;
+
+  /**
+   * Creates a channel builder that connects to the server listening in {@code directory}.
+   */
+  public static ShmChannelBuilder forDirectory(File directory) {
+    return new ShmChannelBuilder(new ShmSocketAddress(directory));
+  }
+
+  /**
+   * Creates a channel builder that connects to the server started with
+   * {@link ShmServerBuilder#forPort}. The server must be on this host, so {@code host} must be a
+   * loopback address.
+   *
+   * @throws IllegalArgumentException if {@code host} is not a loopback address
+   */
+  public static ShmChannelBuilder forAddress(String host, int port) {
+    checkArgument(isLoopback(host), "host must be a loopback address: %s", host);
+    return new ShmChannelBuilder(new ShmSocketAddress(ShmSocketAddress.directoryForPort(port)));
+  }
+
+  /**
+   * Creates a channel builder for a target of the form {@code shm:<directory>}.
+   *
+   * @return the builder, or {@code null} if {@code target} is not a shared-memory target
+   */
+  @Nullable
+  public static ShmChannelBuilder forTarget(String target) {
+    if (!target.startsWith(SCHEME)) {
+      return null;
+    }
+    return forDirectory(new File(target.substring(SCHEME.length())));
+  }
+
+  private static boolean isLoopback(String host) {
+    if (host.equalsIgnoreCase("localhost")) {
+      return true;
+    }
+    try {
+      return InetAddress.getByName(host).isLoopbackAddress();
+    } catch (UnknownHostException e) {
+      return false;
+    }
+  }
+
+  private ShmChannelBuilder(ShmSocketAddress address) {
+    super(address, "localhost");
+    this.address = Preconditions.checkNotNull(address, "address");
+  }
+
+  /**
+   * Sets the capacity in bytes of each of the two rings of a connection. It must be a power of two
+   * of at least 64KiB. If not called, the default value is {@link #DEFAULT_RING_CAPACITY}.
+   */
+  public ShmChannelBuilder ringCapacity(int ringCapacity) {
+    checkArgument(ringCapacity >= ShmRingBuffer.MIN_CAPACITY,
+        "ringCapacity must be at least %s", ShmRingBuffer.MIN_CAPACITY);
+    checkArgument(Integer.bitCount(ringCapacity) == 1, "ringCapacity must be a power of two");
+    this.ringCapacity = ringCapacity;
+    return this;
+  }
+
+  /**
+   * Sets the number of bytes the server may send on a stream before the application has consumed
+   * them. If not called, the default value is {@link #DEFAULT_FLOW_CONTROL_WINDOW}.
+   */
+  public ShmChannelBuilder flowControlWindow(int flowControlWindow) {
+    checkArgument(flowControlWindow > 0, "flowControlWindow must be positive");
+    this.flowControlWindow = flowControlWindow;
+    return this;
+  }
+
+  /**
+   * Does nothing. Shared memory is only reachable by processes on the same host.
+   */
+  @Override
+  public ShmChannelBuilder usePlaintext(boolean skipNegotiation) {
+    return this;
+  }
+
+  @Override
+  @Internal
+  protected ClientTransportFactory buildTransportFactory() {
+    return new ShmClientTransportFactory(
+        address, ringCapacity, flowControlWindow, maxInboundMessageSize());
+  }
+
+  /**
+   * Creates shared-memory transports. Exposed for internal use, as it should be private.
+   */
+  @Internal
+  static final class ShmClientTransportFactory implements ClientTransportFactory {
+    private final ShmSocketAddress address;
+    private final int ringCapacity;
+    private final int flowControlWindow;
+    private final int maxMessageSize;
+
+    private boolean closed;
+
+    private ShmClientTransportFactory(ShmSocketAddress address, int ringCapacity,
+        int flowControlWindow, int maxMessageSize) {
+      this.address = address;
+      this.ringCapacity = ringCapacity;
+      this.flowControlWindow = flowControlWindow;
+      this.maxMessageSize = maxMessageSize;
+    }
+
+    @Override
+    public ConnectionClientTransport newClientTransport(
+        SocketAddress addr, String authority, String userAgent) {
+      if (closed) {
+        throw new IllegalStateException("The transport factory is closed.");
+      }
+      ShmSocketAddress serverAddress =
+          addr instanceof ShmSocketAddress ? (ShmSocketAddress) addr : address;
+      return new ShmClientTransport(
+          serverAddress, authority, ringCapacity, flowControlWindow, maxMessageSize);
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+}
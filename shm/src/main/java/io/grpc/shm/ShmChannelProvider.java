@@ -0,0 +1,53 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.grpc.shm;
+
+import io.grpc.Internal;
+import io.grpc.ManagedChannelProvider;
+
+/**
+ * Provider for {@link ShmChannelBuilder} instances. It is not registered by default: applications
+ * that want {@link io.grpc.ManagedChannelBuilder} to fall back to shared memory list it in their
+ * own {@code META-INF/services/io.grpc.ManagedChannelProvider}. Its low priority means it is only
+ * chosen when no socket-based transport is available.
+ */
+@Internal
+public final class ShmChannelProvider extends ManagedChannelProvider {
+  @Override
+  public boolean isAvailable() {
+    return ShmRingBuffer.isPlatformSupported();
+  }
+
+  @Override
+  public int priority() {
+    return 1;
+  }
+
+  @Override
+  public ShmChannelBuilder builderForAddress(String name, int port) {
+    return ShmChannelBuilder.forAddress(name, port);
+  }
+
+  /**
+   * Returns {@code null} for targets other than {@code shm:<directory>}.
+   */
+  @Override
+  public ShmChannelBuilder builderForTarget(String target) {
+    return ShmChannelBuilder.forTarget(target);
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.grpc.shm;
+
+import com.google.common.base.Preconditions;
+import io.grpc.Attributes;
+import io.grpc.InternalStatus;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.internal.AbstractClientStream;
+import io.grpc.internal.ReadableBuffers;
+import io.grpc.internal.StatsTraceContext;
+import io.grpc.internal.WritableBuffer;
+import javax.annotation.Nullable;
+
+/**
+ * Client stream for the shared-memory transport. All operations are handed over to the connection
+ * thread, where {@link ShmClientTransport} writes the corresponding frames.
+ */
+class ShmClientStream extends AbstractClientStream {
+  private final Sink sink = new Sink();
+  private final TransportState state;
+  private final MethodDescriptor<?, ?> method;
+  private String authority;
+
+  ShmClientStream(TransportState state, MethodDescriptor<?, ?> method, Metadata headers,
+      String authority, StatsTraceContext statsTraceCtx) {
+    super(ShmWritableBufferAllocator.INSTANCE, statsTraceCtx, headers, false);
+    this.state = Preconditions.checkNotNull(state, "transportState");
+    this.method = Preconditions.checkNotNull(method, "method");
+    this.authority = Preconditions.checkNotNull(authority, "authority");
+  }
+
+  @Override
+  protected TransportState transportState() {
+    return state;
+  }
+
+  @Override
+  protected Sink abstractClientStreamSink() {
+    return sink;
+  }
+
+  @Override
+  public void setAuthority(String authority) {
+    this.authority = Preconditions.checkNotNull(authority, "authority");
+  }
+
+  @Override
+  public Attributes getAttributes() {
+    return Attributes.EMPTY;
+  }
+
+  private class Sink implements AbstractClientStream.Sink {
+    @Override
+    public void writeHeaders(Metadata headers, byte[] requestPayload) {
+      final byte[] payload =
+          ShmCodec.encodeRequestHeaders(method.getFullMethodName(), authority, headers);
+      state.transport.execute(new Runnable() {
+        @Override
+        public void run() {
+          state.transport.startStream(state, payload);
+        }
+      });
+    }
+
+    @Override
+    public void writeFrame(WritableBuffer frame, final boolean endOfStream, boolean flush) {
+      final ShmWritableBuffer buffer = (ShmWritableBuffer) frame;
+      final int numBytes = buffer == null ? 0 : buffer.readableBytes();
+      if (numBytes > 0) {
+        onSendingBytes(numBytes);
+      }
+      state.transport.execute(new Runnable() {
+        @Override
+        public void run() {
+          state.transport.sendData(state, buffer, numBytes, endOfStream);
+        }
+      });
+    }
+
+    @Override
+    public void request(final int numMessages) {
+      state.transport.execute(new Runnable() {
+        @Override
+        public void run() {
+          state.requestMessagesFromDeframer(numMessages);
+        }
+      });
+    }
+
+    @Override
+    public void cancel(final Status status) {
+      state.transport.execute(new Runnable() {
+        @Override
+        public void run() {
+          state.transport.cancelStream(state, status);
+        }
+      });
+    }
+  }
+
+  /**
+   * The transport-thread side of the stream. {@link ShmClientTransport} drives it from the frames
+   * it reads.
+   */
+  static class TransportState extends AbstractClientStream.TransportState {
+    final ShmClientTransport transport;
+    /** Whether the transport counted the stream as in use when it was created. */
+    final boolean registered;
+    @Nullable
+    ShmConnection.Stream stream;
+    boolean closed;
+
+    TransportState(ShmClientTransport transport, boolean registered, int maxMessageSize,
+        StatsTraceContext statsTraceCtx) {
+      super(maxMessageSize, statsTraceCtx);
+      this.transport = Preconditions.checkNotNull(transport, "transport");
+      this.registered = registered;
+    }
+
+    void transportStreamStarted() {
+      onStreamAllocated();
+    }
+
+    void transportHeadersReceived(Metadata headers) {
+      inboundHeadersReceived(headers);
+    }
+
+    void transportDataReceived(byte[] payload) {
+      inboundDataReceived(ReadableBuffers.wrap(payload));
+    }
+
+    void transportTrailersReceived(Metadata trailers) {
+      Status status = trailers.get(InternalStatus.CODE_KEY);
+      if (status == null) {
+        status = Status.INTERNAL.withDescription("missing GRPC status in response");
+      } else {
+        status = status.withDescription(trailers.get(InternalStatus.MESSAGE_KEY));
+      }
+      trailers.discardAll(InternalStatus.CODE_KEY);
+      trailers.discardAll(InternalStatus.MESSAGE_KEY);
+      inboundTrailersReceived(trailers, status);
+    }
+
+    @Override
+    public void bytesRead(int processedBytes) {
+      transport.bytesRead(this, processedBytes);
+    }
+
+    @Override
+    protected void deframeFailed(Throwable cause) {
+      transport.cancelStream(this, Status.fromThrowable(cause));
+    }
+  }
+}
@@ -0,0 +1,454 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.grpc.shm;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Stopwatch;
+import io.grpc.Attributes;
+import io.grpc.CallOptions;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.internal.ClientStream;
+import io.grpc.internal.ConnectionClientTransport;
+import io.grpc.internal.Http2Ping;
+import io.grpc.internal.LogId;
+import io.grpc.internal.StatsTraceContext;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Client side of a shared-memory connection. Connecting creates the two rings in the server's
+ * directory and announces them over a loopback socket to the server, see {@link ShmServer}.
+ */
+class ShmClientTransport implements ConnectionClientTransport, ShmConnection.Handler {
+  private static final byte[] EMPTY = new byte[0];
+
+  private final LogId logId = LogId.allocate(getClass().getName());
+  private final ShmSocketAddress address;
+  private final String authority;
+  private final int ringCapacity;
+  private final int flowControlWindow;
+  private final int maxMessageSize;
+  private final Random random = new Random();
+  private volatile ShmConnection connection;
+
+  private final Object lock = new Object();
+  @GuardedBy("lock")
+  private Listener listener;
+  @GuardedBy("lock")
+  private Status shutdownStatus;
+  @GuardedBy("lock")
+  private boolean terminated;
+  /** Streams that were created while the transport was not shut down and are not closed yet. */
+  @GuardedBy("lock")
+  private int activeStreams;
+
+  // Only used on the connection thread.
+  private final Map<Integer, ShmClientStream.TransportState> streams =
+      new HashMap<Integer, ShmClientStream.TransportState>();
+  private int nextStreamId = 1;
+  private boolean closing;
+  private boolean stopped;
+  @Nullable
+  private Http2Ping ping;
+  private File[] files = new File[0];
+
+  ShmClientTransport(ShmSocketAddress address, String authority, int ringCapacity,
+      int flowControlWindow, int maxMessageSize) {
+    this.address = checkNotNull(address, "address");
+    this.authority = checkNotNull(authority, "authority");
+    this.ringCapacity = ringCapacity;
+    this.flowControlWindow = flowControlWindow;
+    this.maxMessageSize = maxMessageSize;
+  }
+
+  @Override
+  public Runnable start(Listener listener) {
+    synchronized (lock) {
+      this.listener = checkNotNull(listener, "listener");
+    }
+    File directory = address.getDirectory();
+    String id = UUID.randomUUID().toString();
+    File clientToServer = new File(directory, id + ShmServer.CLIENT_TO_SERVER_SUFFIX);
+    File serverToClient = new File(directory, id + ShmServer.SERVER_TO_CLIENT_SUFFIX);
+    files = new File[] {clientToServer, serverToClient};
+    ShmRingBuffer out = null;
+    ShmRingBuffer in = null;
+    SocketChannel socket = null;
+    final ShmConnection connection;
+    try {
+      int port;
+      try {
+        port = ShmServer.readPort(directory);
+      } catch (IOException e) {
+        throw new IOException("No server is listening in " + directory, e);
+      }
+      out = ShmRingBuffer.create(clientToServer, ringCapacity);
+      in = ShmRingBuffer.create(serverToClient, ringCapacity);
+      socket = SocketChannel.open(ShmServer.loopbackAddress(port));
+      ShmServer.writeConnectionId(socket, id);
+      connection = new ShmConnection(id, in, out, socket, flowControlWindow, this);
+    } catch (IOException e) {
+      if (out != null) {
+        out.close();
+      }
+      if (in != null) {
+        in.close();
+      }
+      if (socket != null) {
+        ShmServer.closeQuietly(socket);
+      }
+      deleteFiles();
+      synchronized (this) {
+        stopped = true;
+      }
+      final Status status =
+          Status.UNAVAILABLE.withDescription("Failed to connect to " + address).withCause(e);
+      return new Runnable() {
+        @Override
+        public void run() {
+          notifyShutdown(status);
+          notifyTerminated();
+        }
+      };
+    }
+    this.connection = connection;
+    return new Runnable() {
+      @Override
+      public void run() {
+        connection.start();
+      }
+    };
+  }
+
+  @Override
+  public ClientStream newStream(
+      MethodDescriptor<?, ?> method, Metadata headers, CallOptions callOptions) {
+    checkNotNull(method, "method");
+    checkNotNull(headers, "headers");
+    StatsTraceContext statsTraceCtx = StatsTraceContext.newClientContext(callOptions, headers);
+    boolean registered;
+    synchronized (lock) {
+      registered = shutdownStatus == null;
+      if (registered && activeStreams++ == 0) {
+        listener.transportInUse(true);
+      }
+    }
+    ShmClientStream.TransportState state =
+        new ShmClientStream.TransportState(this, registered, maxMessageSize, statsTraceCtx);
+    return new ShmClientStream(state, method, headers, authority, statsTraceCtx);
+  }
+
+  @Override
+  public ClientStream newStream(MethodDescriptor<?, ?> method, Metadata headers) {
+    return newStream(method, headers, CallOptions.DEFAULT);
+  }
+
+  @Override
+  public void ping(final PingCallback callback, final Executor executor) {
+    synchronized (lock) {
+      if (terminated) {
+        Http2Ping.notifyFailed(callback, executor, shutdownStatus.asException());
+        return;
+      }
+    }
+    execute(new Runnable() {
+      @Override
+      public void run() {
+        if (stopped) {
+          Http2Ping.notifyFailed(callback, executor,
+              Status.UNAVAILABLE.withDescription("Transport terminated").asException());
+          return;
+        }
+        if (ping == null) {
+          ping = new Http2Ping(random.nextLong(), Stopwatch.createStarted());
+          connection.writeControlFrame(
+              0, ShmConnection.TYPE_PING, ShmCodec.encodeLong(ping.payload()));
+        }
+        ping.addCallback(callback, executor);
+      }
+    });
+  }
+
+  @Override
+  public void shutdown() {
+    notifyShutdown(Status.UNAVAILABLE.withDescription("Channel requested transport to shut down"));
+    execute(new Runnable() {
+      @Override
+      public void run() {
+        maybeClose();
+      }
+    });
+  }
+
+  @Override
+  public void shutdownNow(final Status reason) {
+    checkNotNull(reason, "reason");
+    shutdown();
+    execute(new Runnable() {
+      @Override
+      public void run() {
+        for (ShmClientStream.TransportState state :
+            new ArrayList<ShmClientStream.TransportState>(streams.values())) {
+          cancelStream(state, reason);
+        }
+      }
+    });
+  }
+
+  @Override
+  public Attributes getAttributes() {
+    return Attributes.EMPTY;
+  }
+
+  @Override
+  public LogId getLogId() {
+    return logId;
+  }
+
+  @Override
+  public String toString() {
+    return getLogId() + "(" + address + ")";
+  }
+
+  /**
+   * Runs {@code task} where stream state may be touched: on the connection thread or, if the
+   * transport never connected, inline.
+   */
+  void execute(Runnable task) {
+    ShmConnection connection = this.connection;
+    if (connection != null) {
+      connection.execute(task);
+    } else {
+      synchronized (this) {
+        task.run();
+      }
+    }
+  }
+
+  void startStream(ShmClientStream.TransportState state, byte[] headers) {
+    if (stopped || !state.registered) {
+      Status status;
+      synchronized (lock) {
+        status = shutdownStatus;
+      }
+      if (status == null) {
+        status = Status.UNAVAILABLE.withDescription("Transport terminated");
+      }
+      failStream(state, status);
+      return;
+    }
+    if (headers.length > connection.maxPayloadSize()) {
+      failStream(state, Status.RESOURCE_EXHAUSTED.withDescription(
+          "Request headers are larger than the ring: " + headers.length));
+      return;
+    }
+    int id = nextStreamId;
+    nextStreamId += 2;
+    state.stream = connection.newStream(id);
+    streams.put(id, state);
+    connection.writeStreamFrame(state.stream, ShmConnection.TYPE_HEADERS, headers,
+        headers.length, null);
+    state.getStatsTraceContext().clientOutboundHeaders();
+    state.transportStreamStarted();
+  }
+
+  void sendData(final ShmClientStream.TransportState state, @Nullable ShmWritableBuffer buffer,
+      final int numBytes, boolean endOfStream) {
+    if (state.stream == null || state.closed) {
+      return;
+    }
+    int type = ShmConnection.TYPE_DATA | (endOfStream ? ShmConnection.FLAG_END_STREAM : 0);
+    byte[] payload = buffer == null ? EMPTY : buffer.array();
+    Runnable onWritten = null;
+    if (numBytes > 0) {
+      onWritten = new Runnable() {
+        @Override
+        public void run() {
+          state.onSentBytes(numBytes);
+        }
+      };
+    }
+    connection.writeStreamFrame(state.stream, type, payload, numBytes, onWritten);
+  }
+
+  void cancelStream(ShmClientStream.TransportState state, Status status) {
+    if (state.stream != null && !state.closed) {
+      connection.writeControlFrame(
+          state.stream.id, ShmConnection.TYPE_RST_STREAM, ShmCodec.encodeStatus(status));
+    }
+    failStream(state, status);
+  }
+
+  void bytesRead(ShmClientStream.TransportState state, int numBytes) {
+    if (state.stream != null && !stopped) {
+      connection.bytesRead(state.stream, numBytes);
+    }
+  }
+
+  @Override
+  public void frameRead(int streamId, int type, ByteBuffer payload) {
+    ShmClientStream.TransportState state = streams.get(streamId);
+    switch (type & ShmConnection.TYPE_MASK) {
+      case ShmConnection.TYPE_HELLO:
+        synchronized (lock) {
+          if (shutdownStatus == null) {
+            listener.transportReady();
+          }
+        }
+        break;
+      case ShmConnection.TYPE_HEADERS:
+        if (state != null) {
+          state.transportHeadersReceived(ShmCodec.decodeMetadata(payload));
+        }
+        break;
+      case ShmConnection.TYPE_DATA:
+        if (state != null) {
+          state.transportDataReceived(ShmCodec.copy(payload));
+        }
+        break;
+      case ShmConnection.TYPE_TRAILERS:
+        if (state != null) {
+          state.transportTrailersReceived(ShmCodec.decodeMetadata(payload));
+          streamClosed(state);
+        }
+        break;
+      case ShmConnection.TYPE_RST_STREAM:
+        if (state != null) {
+          state.transportReportStatus(ShmCodec.decodeStatus(payload), false, new Metadata());
+          streamClosed(state);
+        }
+        break;
+      case ShmConnection.TYPE_PING_ACK:
+        if (ping != null && ping.payload() == ShmCodec.decodeLong(payload)) {
+          ping.complete();
+          ping = null;
+        }
+        break;
+      case ShmConnection.TYPE_GOAWAY:
+        notifyShutdown(Status.UNAVAILABLE.withDescription("Server is shutting down"));
+        maybeClose();
+        break;
+      case ShmConnection.TYPE_CLOSE:
+        connection.stop();
+        break;
+      default:
+        // Ignore frames this side does not know about.
+    }
+  }
+
+  @Override
+  public void connectionStopped(@Nullable Throwable cause) {
+    stopped = true;
+    Status status = cause == null
+        ? Status.UNAVAILABLE.withDescription("Connection closed")
+        : Status.UNAVAILABLE.withDescription("Connection failed").withCause(cause);
+    notifyShutdown(status);
+    for (ShmClientStream.TransportState state :
+        new ArrayList<ShmClientStream.TransportState>(streams.values())) {
+      failStream(state, status);
+    }
+    if (ping != null) {
+      ping.failed(status.asException());
+      ping = null;
+    }
+    deleteFiles();
+    notifyTerminated();
+  }
+
+  private void failStream(ShmClientStream.TransportState state, Status status) {
+    state.transportReportStatus(status, true, new Metadata());
+    streamClosed(state);
+  }
+
+  private void streamClosed(ShmClientStream.TransportState state) {
+    if (state.closed) {
+      return;
+    }
+    state.closed = true;
+    if (state.stream != null) {
+      streams.remove(state.stream.id);
+      if (!stopped) {
+        connection.removeStream(state.stream);
+      }
+    }
+    if (state.registered) {
+      synchronized (lock) {
+        if (--activeStreams == 0) {
+          listener.transportInUse(false);
+        }
+      }
+      maybeClose();
+    }
+  }
+
+  /**
+   * Closes the connection once the transport is shut down and no stream is left.
+   */
+  private void maybeClose() {
+    if (stopped || closing) {
+      return;
+    }
+    synchronized (lock) {
+      if (shutdownStatus == null || activeStreams != 0) {
+        return;
+      }
+    }
+    closing = true;
+    connection.writeControlFrame(0, ShmConnection.TYPE_CLOSE, EMPTY);
+    connection.stop();
+  }
+
+  private void notifyShutdown(Status status) {
+    synchronized (lock) {
+      if (shutdownStatus != null) {
+        return;
+      }
+      shutdownStatus = status;
+      listener.transportShutdown(status);
+    }
+  }
+
+  private void notifyTerminated() {
+    synchronized (lock) {
+      if (terminated) {
+        return;
+      }
+      terminated = true;
+      listener.transportTerminated();
+    }
+  }
+
+  private void deleteFiles() {
+    for (File file : files) {
+      file.delete();
+    }
+  }
+}
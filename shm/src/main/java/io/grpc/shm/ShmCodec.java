@@ -0,0 +1,169 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.grpc.shm;
+
+import com.google.common.base.Charsets;
+import io.grpc.InternalMetadata;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes and decodes the payloads of the control frames exchanged by shared-memory transports.
+ * Metadata is carried in its serialized form, so binary values are never base64 encoded. Decoders
+ * read the payload from the buffer's position to its limit.
+ */
+final class ShmCodec {
+  private ShmCodec() {}
+
+  /**
+   * The payload of a client's HEADERS frame.
+   */
+  static final class RequestHeaders {
+    final String method;
+    final String authority;
+    final Metadata headers;
+
+    private RequestHeaders(String method, String authority, Metadata headers) {
+      this.method = method;
+      this.authority = authority;
+      this.headers = headers;
+    }
+  }
+
+  static byte[] encodeRequestHeaders(String method, String authority, Metadata headers) {
+    byte[] methodBytes = method.getBytes(Charsets.UTF_8);
+    byte[] authorityBytes = authority.getBytes(Charsets.UTF_8);
+    byte[][] serialized = serialize(headers);
+    ByteBuffer buf = ByteBuffer.allocate(8 + methodBytes.length + authorityBytes.length
+        + encodedSize(serialized));
+    putBytes(buf, methodBytes);
+    putBytes(buf, authorityBytes);
+    putMetadata(buf, serialized);
+    return buf.array();
+  }
+
+  static RequestHeaders decodeRequestHeaders(ByteBuffer buf) {
+    String method = new String(getBytes(buf), Charsets.UTF_8);
+    String authority = new String(getBytes(buf), Charsets.UTF_8);
+    return new RequestHeaders(method, authority, getMetadata(buf));
+  }
+
+  static byte[] encodeMetadata(Metadata metadata) {
+    byte[][] serialized = serialize(metadata);
+    ByteBuffer buf = ByteBuffer.allocate(encodedSize(serialized));
+    putMetadata(buf, serialized);
+    return buf.array();
+  }
+
+  static Metadata decodeMetadata(ByteBuffer payload) {
+    return getMetadata(payload);
+  }
+
+  static byte[] encodeStatus(Status status) {
+    String description = status.getDescription();
+    byte[] descriptionBytes =
+        description == null ? new byte[0] : description.getBytes(Charsets.UTF_8);
+    ByteBuffer buf = ByteBuffer.allocate(8 + descriptionBytes.length);
+    buf.putInt(status.getCode().value());
+    putBytes(buf, descriptionBytes);
+    return buf.array();
+  }
+
+  static Status decodeStatus(ByteBuffer buf) {
+    Status status = Status.fromCodeValue(buf.getInt());
+    byte[] descriptionBytes = getBytes(buf);
+    if (descriptionBytes.length == 0) {
+      return status;
+    }
+    return status.withDescription(new String(descriptionBytes, Charsets.UTF_8));
+  }
+
+  static byte[] encodeInt(int value) {
+    return ByteBuffer.allocate(4).putInt(value).array();
+  }
+
+  static int decodeInt(ByteBuffer payload) {
+    return payload.getInt();
+  }
+
+  static byte[] encodeLong(long value) {
+    return ByteBuffer.allocate(8).putLong(value).array();
+  }
+
+  static long decodeLong(ByteBuffer payload) {
+    return payload.getLong();
+  }
+
+  /**
+   * Copies the rest of {@code payload} out of the ring, for data that outlives the frame.
+   */
+  static byte[] copy(ByteBuffer payload) {
+    byte[] bytes = new byte[payload.remaining()];
+    payload.get(bytes);
+    return bytes;
+  }
+
+  private static byte[][] serialize(Metadata metadata) {
+    byte[][] serialized = InternalMetadata.serialize(metadata);
+    // Empty metadata serializes to null
+    return serialized == null ? new byte[0][] : serialized;
+  }
+
+  private static int encodedSize(byte[][] serialized) {
+    int size = 4;
+    for (byte[] bytes : serialized) {
+      size += 4 + bytes.length;
+    }
+    return size;
+  }
+
+  private static void putMetadata(ByteBuffer buf, byte[][] serialized) {
+    buf.putInt(serialized.length);
+    for (byte[] bytes : serialized) {
+      putBytes(buf, bytes);
+    }
+  }
+
+  private static Metadata getMetadata(ByteBuffer buf) {
+    int count = buf.getInt();
+    if (count < 0 || count % 2 != 0 || count > buf.remaining() / 4) {
+      throw new IllegalArgumentException("Malformed metadata");
+    }
+    byte[][] serialized = new byte[count][];
+    for (int i = 0; i < count; i++) {
+      serialized[i] = getBytes(buf);
+    }
+    return InternalMetadata.newMetadata(serialized);
+  }
+
+  private static void putBytes(ByteBuffer buf, byte[] bytes) {
+    buf.putInt(bytes.length);
+    buf.put(bytes);
+  }
+
+  private static byte[] getBytes(ByteBuffer buf) {
+    int length = buf.getInt();
+    if (length < 0 || length > buf.remaining()) {
+      throw new IllegalArgumentException("Malformed frame");
+    }
+    byte[] bytes = new byte[length];
+    buf.get(bytes);
+    return bytes;
+  }
+}
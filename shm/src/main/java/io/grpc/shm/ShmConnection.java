@@ -0,0 +1,496 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.grpc.shm;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+
+/**
+ * One end of a shared-memory connection: the ring it reads, the ring it writes, a loopback socket
+ * to the peer and the thread that services them. The owning transport's stream state is confined
+ * to that thread; other threads hand work over with {@link #execute}. Once the connection has
+ * stopped, submitted work runs on the submitting thread instead, serialized by the connection's
+ * monitor.
+ *
+ * <p>Flow control has two levels. The ring capacity bounds the bytes in flight on the connection;
+ * frames that do not fit stay queued here until the peer has consumed enough of the ring. On top
+ * of that each stream sends DATA only while it has window granted by the peer, so a stream whose
+ * reader stopped requesting messages cannot fill the ring and starve the other streams. A frame is
+ * reported as sent once it is in the ring.
+ *
+ * <p>When idle the thread spins briefly and then sleeps in a {@link Selector} on the socket. Before
+ * it sleeps it raises the sleeping flag of the ring it reads, and it checks the rings once more
+ * afterwards. A peer that writes frames to that ring, or frees space in the ring this side writes,
+ * lowers the flag and sends a byte over the socket to wake the thread up. Local work submitted
+ * through {@link #execute} wakes up the selector directly. The socket also tells the connection
+ * when the peer process is gone: its end of the socket is closed by the operating system, and the
+ * connection fails once it has read what the peer left in the ring.
+ */
+final class ShmConnection implements Executor {
+  private static final Logger log = Logger.getLogger(ShmConnection.class.getName());
+
+  static final int TYPE_HELLO = 0;
+  static final int TYPE_HEADERS = 1;
+  static final int TYPE_DATA = 2;
+  static final int TYPE_TRAILERS = 3;
+  static final int TYPE_RST_STREAM = 4;
+  static final int TYPE_WINDOW_UPDATE = 5;
+  static final int TYPE_PING = 6;
+  static final int TYPE_PING_ACK = 7;
+  static final int TYPE_GOAWAY = 8;
+  static final int TYPE_CLOSE = 9;
+  static final int TYPE_MASK = 0xff;
+  static final int FLAG_END_STREAM = 0x100;
+
+  static final int DEFAULT_WINDOW = 256 * 1024;
+
+  private static final int MAX_FRAMES_PER_READ = 64;
+  private static final int MAX_TASKS_PER_RUN = 1024;
+  private static final int SPIN_ITERATIONS = 100;
+  private static final long STOP_FLUSH_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+  /**
+   * Receives the inbound frames of a connection.
+   */
+  interface Handler {
+    /**
+     * Called on the connection thread for every inbound frame other than WINDOW_UPDATE. The payload
+     * is a view of the ring that is only valid during the call; handlers copy what they keep.
+     */
+    void frameRead(int streamId, int type, ByteBuffer payload);
+
+    /**
+     * Called once the connection has stopped, either after {@link #stop} or because it failed
+     * with {@code cause}. No more frames will be read or written.
+     */
+    void connectionStopped(@Nullable Throwable cause);
+  }
+
+  private final ShmRingBuffer in;
+  private final ShmRingBuffer out;
+  private final SocketChannel peer;
+  private final Selector selector;
+  private final ByteBuffer doorbell = ByteBuffer.allocate(64);
+  private final AtomicBoolean sleeping = new AtomicBoolean();
+  private final int localWindow;
+  private final Handler handler;
+  private final Thread thread;
+  private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+  private final ArrayDeque<PendingFrame> controlFrames = new ArrayDeque<PendingFrame>();
+  private final ArrayDeque<Stream> activeStreams = new ArrayDeque<Stream>();
+  private final Map<Integer, Stream> streams = new HashMap<Integer, Stream>();
+  private int peerWindow = DEFAULT_WINDOW;
+  /** The payload length of the frame that last didn't fit in the outbound ring, or -1. */
+  private int blockedFrameLength = -1;
+  private boolean peerClosed;
+  private boolean stopRequested;
+  private volatile boolean stopped;
+
+  /**
+   * Creates a connection that takes ownership of the rings and of {@code peer}, a socket connected
+   * to the other side.
+   */
+  ShmConnection(String name, ShmRingBuffer in, ShmRingBuffer out, SocketChannel peer,
+      int localWindow, Handler handler) throws IOException {
+    this.in = checkNotNull(in, "in");
+    this.out = checkNotNull(out, "out");
+    this.peer = checkNotNull(peer, "peer");
+    peer.configureBlocking(false);
+    selector = Selector.open();
+    peer.register(selector, SelectionKey.OP_READ);
+    this.localWindow = localWindow;
+    this.handler = checkNotNull(handler, "handler");
+    thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        ShmConnection.this.run();
+      }
+    }, "grpc-shm-" + name);
+    thread.setDaemon(true);
+  }
+
+  void start() {
+    thread.start();
+  }
+
+  /**
+   * Releases the rings and the socket of a connection that was never started.
+   */
+  void discard() {
+    stopped = true;
+    close();
+  }
+
+  /**
+   * Runs {@code task} on the connection thread.
+   */
+  @Override
+  public void execute(Runnable task) {
+    tasks.add(task);
+    if (stopped) {
+      runTasksAfterStop();
+    } else if (sleeping.compareAndSet(true, false)) {
+      selector.wakeup();
+    }
+  }
+
+  /**
+   * Returns the largest payload a single frame may carry.
+   */
+  int maxPayloadSize() {
+    return out.maxPayloadSize();
+  }
+
+  /**
+   * Starts tracking the flow control state of a new stream.
+   */
+  Stream newStream(int id) {
+    Stream stream = new Stream(id, peerWindow);
+    streams.put(id, stream);
+    return stream;
+  }
+
+  /**
+   * Stops tracking {@code stream}, dropping any of its frames that have not been written yet.
+   */
+  void removeStream(Stream stream) {
+    stream.removed = true;
+    stream.pending.clear();
+    streams.remove(stream.id);
+  }
+
+  /**
+   * Queues a frame that is not subject to flow control. Control frames are written ahead of stream
+   * frames.
+   */
+  void writeControlFrame(int streamId, int type, byte[] payload) {
+    if (stopped) {
+      return;
+    }
+    controlFrames.add(new PendingFrame(streamId, type, payload, payload.length, false, null));
+  }
+
+  /**
+   * Queues a frame of {@code stream} behind its earlier frames. Non-empty DATA frames wait for
+   * window. {@code onWritten}, if any, runs on the connection thread once the frame is in the ring.
+   */
+  void writeStreamFrame(Stream stream, int type, byte[] payload, int length,
+      @Nullable Runnable onWritten) {
+    if (stopped || stream.removed) {
+      return;
+    }
+    boolean flowControlled = (type & TYPE_MASK) == TYPE_DATA && length > 0;
+    stream.pending.add(
+        new PendingFrame(stream.id, type, payload, length, flowControlled, onWritten));
+    activate(stream);
+  }
+
+  /**
+   * Records that the application consumed {@code numBytes} of the stream's DATA, granting the peer
+   * more window once half of it has been used.
+   */
+  void bytesRead(Stream stream, int numBytes) {
+    if (stream.removed) {
+      return;
+    }
+    stream.unacknowledgedBytes += numBytes;
+    if (stream.unacknowledgedBytes >= localWindow / 2) {
+      writeControlFrame(
+          stream.id, TYPE_WINDOW_UPDATE, ShmCodec.encodeInt(stream.unacknowledgedBytes));
+      stream.unacknowledgedBytes = 0;
+    }
+  }
+
+  /**
+   * Stops the connection once the current frame or task is done. Control frames queued so far are
+   * still written, if the peer makes room for them in time.
+   */
+  void stop() {
+    stopRequested = true;
+  }
+
+  private void run() {
+    Throwable cause = null;
+    try {
+      writeControlFrame(0, TYPE_HELLO, ShmCodec.encodeInt(localWindow));
+      int idleCount = 0;
+      while (!stopRequested) {
+        boolean ran = runTasks();
+        boolean read = readFrames();
+        boolean wrote = writeFrames();
+        if (read || wrote) {
+          wakePeer();
+        }
+        if (ran || read || wrote) {
+          idleCount = 0;
+        } else if (peerClosed && in.isEmpty()) {
+          throw new IOException("Peer closed the connection");
+        } else if (idleCount++ >= SPIN_ITERATIONS) {
+          sleep(0);
+          idleCount = 0;
+        }
+      }
+      long deadline = System.nanoTime() + STOP_FLUSH_NANOS;
+      long remaining;
+      while (!controlFrames.isEmpty() && !peerClosed
+          && (remaining = deadline - System.nanoTime()) > 0) {
+        if (writeFrames()) {
+          wakePeer();
+        } else {
+          sleep(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)));
+        }
+      }
+    } catch (Throwable t) {
+      log.log(Level.WARNING, "Shared-memory connection failed", t);
+      cause = t;
+    }
+    synchronized (this) {
+      stopped = true;
+      controlFrames.clear();
+      activeStreams.clear();
+      close();
+      handler.connectionStopped(cause);
+      runTasks();
+    }
+  }
+
+  private void close() {
+    try {
+      selector.close();
+    } catch (IOException e) {
+      log.log(Level.FINE, "Failed to close the selector", e);
+    }
+    try {
+      peer.close();
+    } catch (IOException e) {
+      log.log(Level.FINE, "Failed to close the socket", e);
+    }
+    in.close();
+    out.close();
+  }
+
+  private synchronized void runTasksAfterStop() {
+    runTasks();
+  }
+
+  private boolean runTasks() {
+    boolean ran = false;
+    Runnable task;
+    for (int i = 0; i < MAX_TASKS_PER_RUN && (task = tasks.poll()) != null; i++) {
+      task.run();
+      ran = true;
+    }
+    return ran;
+  }
+
+  private boolean readFrames() {
+    boolean read = false;
+    for (int i = 0; i < MAX_FRAMES_PER_READ && !stopRequested; i++) {
+      ShmRingBuffer.Frame frame = in.peek();
+      if (frame == null) {
+        break;
+      }
+      read = true;
+      switch (frame.type & TYPE_MASK) {
+        case TYPE_WINDOW_UPDATE:
+          windowUpdate(frame.streamId, ShmCodec.decodeInt(frame.payload));
+          break;
+        case TYPE_HELLO:
+          peerWindow(ShmCodec.decodeInt(frame.payload.duplicate()));
+          handler.frameRead(frame.streamId, frame.type, frame.payload);
+          break;
+        default:
+          handler.frameRead(frame.streamId, frame.type, frame.payload);
+      }
+      in.remove();
+    }
+    return read;
+  }
+
+  private boolean writeFrames() {
+    boolean wrote = false;
+    blockedFrameLength = -1;
+    PendingFrame frame;
+    while ((frame = controlFrames.peek()) != null) {
+      if (!out.offer(frame.streamId, frame.type, frame.payload, 0, frame.length)) {
+        blockedFrameLength = frame.length;
+        return wrote;
+      }
+      controlFrames.poll();
+      wrote = true;
+    }
+    // Round robin: at most one frame per stream on each pass.
+    for (int n = activeStreams.size(); n > 0; n--) {
+      Stream stream = activeStreams.poll();
+      stream.active = false;
+      frame = stream.pending.peek();
+      if (frame == null || (frame.flowControlled && stream.window <= 0)) {
+        // Activated again when frames are queued or window arrives.
+        continue;
+      }
+      if (!out.offer(frame.streamId, frame.type, frame.payload, 0, frame.length)) {
+        stream.active = true;
+        activeStreams.addFirst(stream);
+        blockedFrameLength = frame.length;
+        return wrote;
+      }
+      stream.pending.poll();
+      if (frame.flowControlled) {
+        stream.window -= frame.length;
+      }
+      wrote = true;
+      activate(stream);
+      if (frame.onWritten != null) {
+        frame.onWritten.run();
+      }
+    }
+    return wrote;
+  }
+
+  private void windowUpdate(int streamId, int delta) {
+    Stream stream = streams.get(streamId);
+    if (stream == null) {
+      return;
+    }
+    stream.window += delta;
+    activate(stream);
+  }
+
+  private void peerWindow(int window) {
+    int delta = window - peerWindow;
+    peerWindow = window;
+    for (Stream stream : streams.values()) {
+      stream.window += delta;
+      activate(stream);
+    }
+  }
+
+  private void activate(Stream stream) {
+    if (!stream.active && !stream.removed && !stream.pending.isEmpty()) {
+      stream.active = true;
+      activeStreams.add(stream);
+    }
+  }
+
+  /**
+   * Tells the peer that there are frames to read or space to write, if it is sleeping.
+   */
+  private void wakePeer() throws IOException {
+    if (!out.wakeConsumer() || peerClosed) {
+      return;
+    }
+    doorbell.clear();
+    doorbell.put((byte) 0).flip();
+    try {
+      // If the socket buffer is full, the peer has plenty of wake-ups to read already.
+      peer.write(doorbell);
+    } catch (IOException e) {
+      log.log(Level.FINE, "Failed to wake up the peer", e);
+      peerClosed = true;
+    }
+  }
+
+  /**
+   * Sleeps until the peer or a local task wakes this thread up, or {@code timeoutMillis} have
+   * passed if not 0. Returns at once if the rings changed while the flags were being raised.
+   */
+  private void sleep(long timeoutMillis) throws IOException {
+    sleeping.set(true);
+    in.consumerSleeping(true);
+    try {
+      if (tasks.isEmpty() && in.isEmpty()
+          && (blockedFrameLength == -1 || !out.canOffer(blockedFrameLength))) {
+        selector.select(timeoutMillis);
+        selector.selectedKeys().clear();
+      }
+    } finally {
+      in.consumerSleeping(false);
+      sleeping.set(false);
+    }
+    readDoorbell();
+  }
+
+  private void readDoorbell() {
+    try {
+      int read;
+      do {
+        doorbell.clear();
+        read = peer.read(doorbell);
+      } while (read > 0);
+      if (read < 0) {
+        peerClosed = true;
+      }
+    } catch (IOException e) {
+      log.log(Level.FINE, "Failed to read from the peer", e);
+      peerClosed = true;
+    }
+  }
+
+  /**
+   * The flow control state of one stream. Only used on the connection thread.
+   */
+  static final class Stream {
+    final int id;
+    private final ArrayDeque<PendingFrame> pending = new ArrayDeque<PendingFrame>();
+    private int window;
+    private int unacknowledgedBytes;
+    private boolean active;
+    private boolean removed;
+
+    private Stream(int id, int window) {
+      this.id = id;
+      this.window = window;
+    }
+  }
+
+  private static final class PendingFrame {
+    final int streamId;
+    final int type;
+    final byte[] payload;
+    final int length;
+    final boolean flowControlled;
+    @Nullable
+    final Runnable onWritten;
+
+    PendingFrame(int streamId, int type, byte[] payload, int length, boolean flowControlled,
+        @Nullable Runnable onWritten) {
+      this.streamId = streamId;
+      this.type = type;
+      this.payload = payload;
+      this.length = length;
+      this.flowControlled = flowControlled;
+      this.onWritten = onWritten;
+    }
+  }
+}
@@ -0,0 +1,402 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.grpc.shm;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+import sun.misc.Unsafe;
+
+/**
+ * A single-producer single-consumer ring of frames backed by a memory-mapped file, shared between
+ * the two processes of a connection. Exactly one thread in one process may {@link #offer} and
+ * exactly one thread in the other process may {@link #peek} and {@link #remove}.
+ *
+ * <p>The file starts with a header holding the producer's write index and the consumer's read
+ * index on separate cache lines. Both indices only grow; their difference is the number of bytes in
+ * use, so neither side ever needs a lock. The data region that follows has a power of two size and
+ * holds frames of a 12 byte header (payload length, stream id and type) followed by the payload,
+ * padded to 4 bytes. Frames never wrap around the end of the region: a frame that doesn't fit
+ * before the end is preceded by a padding marker and starts over at the beginning, so that
+ * consumers can read each payload in place.
+ *
+ * <p>Frame contents are written before the write index is published, and read before the read
+ * index is published. The indices are accessed through {@link Unsafe} at the mapped address, with
+ * ordered stores and volatile loads, which give them release and acquire semantics across
+ * processes. Rings are only supported where that access is available, see
+ * {@link #isPlatformSupported}.
+ *
+ * <p>The header also holds a flag the consumer raises before it goes to sleep, see
+ * {@link #consumerSleeping} and {@link #wakeConsumer}.
+ */
+final class ShmRingBuffer {
+  private static final Logger log = Logger.getLogger(ShmRingBuffer.class.getName());
+
+  static final int HEADER_SIZE = 128;
+  static final int FRAME_HEADER_SIZE = 12;
+  static final int MIN_CAPACITY = 64 * 1024;
+
+  private static final int WRITE_INDEX_OFFSET = 0;
+  private static final int READ_INDEX_OFFSET = 64;
+  private static final int SLEEPING_OFFSET = 72;
+  private static final int MAGIC_OFFSET = 16;
+  private static final int CAPACITY_OFFSET = 20;
+  private static final int MAGIC = 0x67525043;
+  /** Stored instead of a payload length where the rest of the data region is unused. */
+  private static final int PADDING = -1;
+
+  @Nullable
+  private static final Unsafe UNSAFE = getUnsafe();
+  private static final long ADDRESS_FIELD_OFFSET = getAddressFieldOffset();
+
+  private final MappedByteBuffer mapped;
+  private final long writeIndexAddress;
+  private final long readIndexAddress;
+  private final long sleepingAddress;
+  /** The data region, used by the producer. */
+  private final ByteBuffer writeView;
+  /** The data region, used by the consumer. */
+  private final ByteBuffer readView;
+  private final int capacity;
+  private final int mask;
+  private final Frame frame;
+
+  // Only touched by the producer.
+  private long writeIndex;
+  private long cachedReadIndex;
+  // Only touched by the consumer.
+  private long readIndex;
+  private long cachedWriteIndex;
+  private int peekedFrameSize;
+  private boolean closed;
+
+  /**
+   * Returns whether rings can be mapped, that is whether {@link Unsafe} is available to access the
+   * indices and the JVM is 64-bit, so that the indices are read and written atomically.
+   */
+  static boolean isPlatformSupported() {
+    if (UNSAFE == null || ADDRESS_FIELD_OFFSET == -1) {
+      return false;
+    }
+    String dataModel = System.getProperty("sun.arch.data.model");
+    if (dataModel != null) {
+      return dataModel.equals("64");
+    }
+    return System.getProperty("os.arch", "").contains("64");
+  }
+
+  private static void checkPlatform() throws IOException {
+    if (!isPlatformSupported()) {
+      throw new IOException("Shared-memory rings are not supported on this platform");
+    }
+  }
+
+  @Nullable
+  private static Unsafe getUnsafe() {
+    try {
+      Field field = Unsafe.class.getDeclaredField("theUnsafe");
+      field.setAccessible(true);
+      return (Unsafe) field.get(null);
+    } catch (Throwable t) {
+      log.log(Level.FINE, "sun.misc.Unsafe is not available", t);
+      return null;
+    }
+  }
+
+  private static long getAddressFieldOffset() {
+    if (UNSAFE == null) {
+      return -1;
+    }
+    try {
+      return UNSAFE.objectFieldOffset(Buffer.class.getDeclaredField("address"));
+    } catch (Throwable t) {
+      log.log(Level.FINE, "The address of direct buffers is not available", t);
+      return -1;
+    }
+  }
+
+  /**
+   * Creates the backing file of a new ring with a data region of {@code capacity} bytes.
+   */
+  static ShmRingBuffer create(File file, int capacity) throws IOException {
+    checkArgument(capacity >= MIN_CAPACITY, "capacity must be at least %s", MIN_CAPACITY);
+    checkArgument(Integer.bitCount(capacity) == 1, "capacity must be a power of two");
+    checkPlatform();
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      raf.setLength(HEADER_SIZE + capacity);
+      MappedByteBuffer mapped =
+          raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + capacity);
+      long address = UNSAFE.getLong(mapped, ADDRESS_FIELD_OFFSET);
+      UNSAFE.putLong(address + WRITE_INDEX_OFFSET, 0);
+      UNSAFE.putLong(address + READ_INDEX_OFFSET, 0);
+      UNSAFE.putInt(address + SLEEPING_OFFSET, 0);
+      mapped.putInt(CAPACITY_OFFSET, capacity);
+      mapped.putInt(MAGIC_OFFSET, MAGIC);
+      return new ShmRingBuffer(mapped, capacity);
+    } finally {
+      // The mapping stays valid after the file is closed.
+      raf.close();
+    }
+  }
+
+  /**
+   * Maps the ring previously created in {@code file} by the other side of the connection.
+   */
+  static ShmRingBuffer open(File file) throws IOException {
+    checkPlatform();
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      long length = raf.length();
+      if (length < HEADER_SIZE) {
+        throw new IOException("Not a ring buffer: " + file);
+      }
+      MappedByteBuffer mapped = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+      int capacity = mapped.getInt(CAPACITY_OFFSET);
+      if (mapped.getInt(MAGIC_OFFSET) != MAGIC || capacity < MIN_CAPACITY
+          || Integer.bitCount(capacity) != 1 || HEADER_SIZE + (long) capacity != length) {
+        unmap(mapped);
+        throw new IOException("Not a ring buffer: " + file);
+      }
+      return new ShmRingBuffer(mapped, capacity);
+    } finally {
+      raf.close();
+    }
+  }
+
+  private ShmRingBuffer(MappedByteBuffer mapped, int capacity) {
+    this.mapped = mapped;
+    this.capacity = capacity;
+    this.mask = capacity - 1;
+    long address = UNSAFE.getLong(mapped, ADDRESS_FIELD_OFFSET);
+    writeIndexAddress = address + WRITE_INDEX_OFFSET;
+    readIndexAddress = address + READ_INDEX_OFFSET;
+    sleepingAddress = address + SLEEPING_OFFSET;
+    mapped.position(HEADER_SIZE);
+    writeView = mapped.slice();
+    readView = mapped.slice();
+    mapped.position(0);
+    frame = new Frame(readView.asReadOnlyBuffer());
+    writeIndex = UNSAFE.getLongVolatile(null, writeIndexAddress);
+    readIndex = UNSAFE.getLongVolatile(null, readIndexAddress);
+    cachedReadIndex = readIndex;
+    cachedWriteIndex = writeIndex;
+  }
+
+  /**
+   * Returns the size of the data region.
+   */
+  int capacity() {
+    return capacity;
+  }
+
+  /**
+   * Returns the largest payload that a single frame may carry. Half of the data region, so that a
+   * frame that must skip the end of the region still fits once the ring is empty.
+   */
+  int maxPayloadSize() {
+    return capacity / 2 - FRAME_HEADER_SIZE;
+  }
+
+  /**
+   * Appends a frame. Returns {@code false}, leaving the ring untouched, if there is currently not
+   * enough room for it.
+   */
+  boolean offer(int streamId, int type, byte[] payload, int offset, int length) {
+    checkArgument(length <= maxPayloadSize(), "frame too large: %s", length);
+    int pos = (int) writeIndex & mask;
+    int frameSize = align(FRAME_HEADER_SIZE + length);
+    int padding = paddingBefore(pos, frameSize);
+    if (!hasRoom(padding + frameSize)) {
+      return false;
+    }
+    if (padding != 0) {
+      writeView.putInt(pos, PADDING);
+      pos = 0;
+    }
+    writeView.putInt(pos, length);
+    writeView.putInt(pos + 4, streamId);
+    writeView.putInt(pos + 8, type);
+    writeView.position(pos + FRAME_HEADER_SIZE);
+    writeView.put(payload, offset, length);
+    writeIndex += padding + frameSize;
+    UNSAFE.putOrderedLong(null, writeIndexAddress, writeIndex);
+    return true;
+  }
+
+  /**
+   * Returns whether a frame with a payload of {@code length} bytes would currently fit.
+   */
+  boolean canOffer(int length) {
+    int frameSize = align(FRAME_HEADER_SIZE + length);
+    return hasRoom(paddingBefore((int) writeIndex & mask, frameSize) + frameSize);
+  }
+
+  private int paddingBefore(int pos, int frameSize) {
+    return pos + frameSize > capacity ? capacity - pos : 0;
+  }
+
+  private boolean hasRoom(int size) {
+    if (writeIndex + size - cachedReadIndex > capacity) {
+      cachedReadIndex = UNSAFE.getLongVolatile(null, readIndexAddress);
+      return writeIndex + size - cachedReadIndex <= capacity;
+    }
+    return true;
+  }
+
+  /**
+   * Returns the oldest frame without removing it, or returns {@code null} if the ring is empty.
+   * The frame and its payload are a view of the ring, only valid until {@link #remove} is called.
+   */
+  @Nullable
+  Frame peek() {
+    if (readIndex == cachedWriteIndex) {
+      cachedWriteIndex = UNSAFE.getLongVolatile(null, writeIndexAddress);
+      if (readIndex == cachedWriteIndex) {
+        return null;
+      }
+    }
+    int pos = (int) readIndex & mask;
+    int length = readView.getInt(pos);
+    if (length == PADDING) {
+      // Published together with the frame that follows it.
+      readIndex += capacity - pos;
+      pos = 0;
+      length = readView.getInt(pos);
+    }
+    int frameSize = align(FRAME_HEADER_SIZE + length);
+    if (length < 0 || length > maxPayloadSize() || pos + frameSize > capacity) {
+      throw new IllegalStateException("Corrupt frame length: " + length);
+    }
+    frame.streamId = readView.getInt(pos + 4);
+    frame.type = readView.getInt(pos + 8);
+    frame.payload.limit(pos + FRAME_HEADER_SIZE + length).position(pos + FRAME_HEADER_SIZE);
+    peekedFrameSize = frameSize;
+    return frame;
+  }
+
+  /**
+   * Removes the frame returned by the last call to {@link #peek}, handing its space back to the
+   * producer.
+   */
+  void remove() {
+    checkState(peekedFrameSize != 0, "no frame peeked");
+    readIndex += peekedFrameSize;
+    peekedFrameSize = 0;
+    UNSAFE.putOrderedLong(null, readIndexAddress, readIndex);
+  }
+
+  /**
+   * Returns whether the ring holds no frame. Only called by the consumer.
+   */
+  boolean isEmpty() {
+    cachedWriteIndex = UNSAFE.getLongVolatile(null, writeIndexAddress);
+    return readIndex == cachedWriteIndex;
+  }
+
+  /**
+   * Raises or lowers the consumer's sleeping flag. Only called by the consumer. Raising it is a
+   * volatile store, so that the consumer checks the ring again only after the producer can see the
+   * flag.
+   */
+  void consumerSleeping(boolean sleeping) {
+    if (sleeping) {
+      UNSAFE.putIntVolatile(null, sleepingAddress, 1);
+    } else {
+      UNSAFE.putOrderedInt(null, sleepingAddress, 0);
+    }
+  }
+
+  /**
+   * Lowers the consumer's sleeping flag, returning whether it was raised and so whether the
+   * consumer must be woken up. Called by the producer after it published frames to this ring or
+   * freed space in the ring the consumer writes. The compare-and-swap orders the flag after the
+   * index just published, so either this sees the flag or the consumer sees the index.
+   */
+  boolean wakeConsumer() {
+    return UNSAFE.compareAndSwapInt(null, sleepingAddress, 1, 0);
+  }
+
+  /**
+   * Unmaps the ring. Neither side may use it afterwards.
+   */
+  void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    unmap(mapped);
+  }
+
+  /**
+   * Releases the mapping without waiting for the buffer to be garbage collected. The Java 9+ and
+   * the Java 6-8 ways are both tried; if neither works, the mapping is left to the collector.
+   */
+  private static void unmap(MappedByteBuffer buffer) {
+    try {
+      Method invokeCleaner;
+      try {
+        invokeCleaner = Unsafe.class.getMethod("invokeCleaner", ByteBuffer.class);
+      } catch (NoSuchMethodException e) {
+        invokeCleaner = null;
+      }
+      if (invokeCleaner != null) {
+        invokeCleaner.invoke(UNSAFE, buffer);
+        return;
+      }
+      Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+      cleanerMethod.setAccessible(true);
+      Object cleaner = cleanerMethod.invoke(buffer);
+      if (cleaner != null) {
+        cleaner.getClass().getMethod("clean").invoke(cleaner);
+      }
+    } catch (Exception e) {
+      log.log(Level.FINE, "Failed to unmap a ring buffer", e);
+    }
+  }
+
+  private static int align(int size) {
+    return (size + 3) & ~3;
+  }
+
+  /**
+   * A frame in the ring. The same instance is handed out for every frame of a ring.
+   */
+  static final class Frame {
+    int streamId;
+    int type;
+    /** The payload, between the buffer's position and limit. */
+    final ByteBuffer payload;
+
+    private Frame(ByteBuffer payload) {
+      this.payload = payload;
+    }
+  }
+}
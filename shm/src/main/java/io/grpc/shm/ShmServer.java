@@ -0,0 +1,312 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.grpc.shm;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Charsets;
+import io.grpc.ServerStreamTracer;
+import io.grpc.internal.InternalServer;
+import io.grpc.internal.ServerListener;
+import io.grpc.internal.ServerTransportListener;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Accepts shared-memory connections in a directory. While listening the server holds a lock on a
+ * file in the directory and listens on a loopback socket, whose port it writes next to the lock.
+ * Clients create their two rings in the directory and then connect to the socket and send the
+ * connection id the rings are named after. The socket stays open for the life of the connection,
+ * to wake up the other side and to notice when it is gone, see {@link ShmConnection}.
+ */
+@ThreadSafe
+class ShmServer implements InternalServer {
+  private static final Logger log = Logger.getLogger(ShmServer.class.getName());
+
+  static final String LOCK_FILE = "server.lock";
+  static final String PORT_FILE = "server.port";
+  static final String CLIENT_TO_SERVER_SUFFIX = ".c2s";
+  static final String SERVER_TO_CLIENT_SUFFIX = ".s2c";
+
+  /** The length of a connection id, which is a {@link UUID} in its string form. */
+  private static final int ID_LENGTH = 36;
+  private static final int HANDSHAKE_TIMEOUT_MILLIS = 1000;
+
+  // File locks are held per process, so servers in this process are tracked separately.
+  private static final ConcurrentMap<String, ShmServer> listening =
+      new ConcurrentHashMap<String, ShmServer>();
+
+  private final ShmSocketAddress address;
+  private final List<ServerStreamTracer.Factory> streamTracerFactories;
+  private final int flowControlWindow;
+  private final int maxMessageSize;
+
+  private final Object lock = new Object();
+  @GuardedBy("lock")
+  private ServerListener listener;
+  @GuardedBy("lock")
+  private boolean shutdown;
+  private String key;
+  private RandomAccessFile lockFile;
+  private FileLock fileLock;
+  private ServerSocketChannel serverChannel;
+
+  ShmServer(ShmSocketAddress address, List<ServerStreamTracer.Factory> streamTracerFactories,
+      int flowControlWindow, int maxMessageSize) {
+    this.address = checkNotNull(address, "address");
+    this.streamTracerFactories = checkNotNull(streamTracerFactories, "streamTracerFactories");
+    this.flowControlWindow = flowControlWindow;
+    this.maxMessageSize = maxMessageSize;
+  }
+
+  @Override
+  public void start(ServerListener serverListener) throws IOException {
+    synchronized (lock) {
+      listener = checkNotNull(serverListener, "serverListener");
+    }
+    final File directory = address.getDirectory();
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Failed to create " + directory);
+    }
+    key = directory.getCanonicalPath();
+    if (listening.putIfAbsent(key, this) != null) {
+      throw new IOException("A server is already listening in " + directory);
+    }
+    try {
+      lockFile = new RandomAccessFile(new File(directory, LOCK_FILE), "rw");
+      try {
+        fileLock = lockFile.getChannel().tryLock();
+      } catch (OverlappingFileLockException e) {
+        fileLock = null;
+      }
+      if (fileLock == null) {
+        lockFile.close();
+        throw new IOException("A server is already listening in " + directory);
+      }
+      try {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.socket().bind(loopbackAddress(0));
+        writePort(directory, serverChannel.socket().getLocalPort());
+      } catch (IOException e) {
+        if (serverChannel != null) {
+          serverChannel.close();
+        }
+        fileLock.release();
+        lockFile.close();
+        throw e;
+      }
+    } catch (IOException e) {
+      listening.remove(key, this);
+      throw e;
+    }
+    Thread acceptThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        acceptLoop(directory);
+      }
+    }, "grpc-shm-server-" + directory.getName());
+    acceptThread.setDaemon(true);
+    acceptThread.start();
+  }
+
+  @Override
+  public int getPort() {
+    return -1;
+  }
+
+  @Override
+  public void shutdown() {
+    synchronized (lock) {
+      if (shutdown) {
+        return;
+      }
+      shutdown = true;
+    }
+    // Delete before unlocking, so that a server that takes over the directory keeps its files.
+    new File(address.getDirectory(), PORT_FILE).delete();
+    new File(address.getDirectory(), LOCK_FILE).delete();
+    try {
+      // Also stops the accept thread
+      serverChannel.close();
+    } catch (IOException e) {
+      log.log(Level.WARNING, "Failed to close the server socket", e);
+    }
+    try {
+      fileLock.release();
+      lockFile.close();
+    } catch (IOException e) {
+      log.log(Level.WARNING, "Failed to release " + LOCK_FILE, e);
+    }
+    listening.remove(key, this);
+    synchronized (lock) {
+      listener.serverShutdown();
+    }
+  }
+
+  private void acceptLoop(File directory) {
+    while (true) {
+      SocketChannel socket;
+      try {
+        socket = serverChannel.accept();
+      } catch (ClosedChannelException e) {
+        // Shut down
+        return;
+      } catch (IOException e) {
+        synchronized (lock) {
+          if (shutdown) {
+            return;
+          }
+        }
+        log.log(Level.WARNING, "Failed to accept a connection", e);
+        continue;
+      }
+      accept(directory, socket);
+    }
+  }
+
+  private void accept(File directory, SocketChannel socket) {
+    String id;
+    try {
+      id = readConnectionId(socket);
+    } catch (IOException e) {
+      log.log(Level.FINE, "Failed to read a connection id", e);
+      closeQuietly(socket);
+      return;
+    }
+    File clientToServer = new File(directory, id + CLIENT_TO_SERVER_SUFFIX);
+    File serverToClient = new File(directory, id + SERVER_TO_CLIENT_SUFFIX);
+    ShmRingBuffer in = null;
+    ShmRingBuffer out = null;
+    ShmServerTransport transport;
+    try {
+      in = ShmRingBuffer.open(clientToServer);
+      out = ShmRingBuffer.open(serverToClient);
+      transport = new ShmServerTransport(id, in, out, socket,
+          new File[] {clientToServer, serverToClient}, address, streamTracerFactories,
+          flowControlWindow, maxMessageSize);
+    } catch (IOException e) {
+      log.log(Level.FINE, "Failed to accept connection " + id, e);
+      if (in != null) {
+        in.close();
+      }
+      if (out != null) {
+        out.close();
+      }
+      closeQuietly(socket);
+      clientToServer.delete();
+      serverToClient.delete();
+      return;
+    }
+    ServerTransportListener transportListener;
+    synchronized (lock) {
+      if (shutdown) {
+        transport.discard();
+        return;
+      }
+      transportListener = listener.transportCreated(transport);
+    }
+    transport.start(transportListener);
+  }
+
+  static InetSocketAddress loopbackAddress(int port) throws IOException {
+    return new InetSocketAddress(InetAddress.getByAddress(new byte[] {127, 0, 0, 1}), port);
+  }
+
+  /**
+   * Returns the port of the server listening in {@code directory}.
+   */
+  static int readPort(File directory) throws IOException {
+    DataInputStream in = new DataInputStream(new FileInputStream(new File(directory, PORT_FILE)));
+    try {
+      return in.readInt();
+    } finally {
+      in.close();
+    }
+  }
+
+  private static void writePort(File directory, int port) throws IOException {
+    // Renamed into place, so that clients never read a partial file
+    File temp = new File(directory, PORT_FILE + ".tmp");
+    DataOutputStream out = new DataOutputStream(new FileOutputStream(temp));
+    try {
+      out.writeInt(port);
+    } finally {
+      out.close();
+    }
+    File portFile = new File(directory, PORT_FILE);
+    portFile.delete();
+    if (!temp.renameTo(portFile)) {
+      throw new IOException("Failed to create " + portFile);
+    }
+  }
+
+  /**
+   * Sends the id of a new connection over its socket, which must be in blocking mode.
+   */
+  static void writeConnectionId(SocketChannel socket, String id) throws IOException {
+    ByteBuffer buf = ByteBuffer.wrap(id.getBytes(Charsets.US_ASCII));
+    while (buf.hasRemaining()) {
+      socket.write(buf);
+    }
+  }
+
+  private static String readConnectionId(SocketChannel socket) throws IOException {
+    socket.socket().setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+    byte[] bytes = new byte[ID_LENGTH];
+    new DataInputStream(socket.socket().getInputStream()).readFully(bytes);
+    String id = new String(bytes, Charsets.US_ASCII);
+    // The id names files in the directory, so it must be exactly what a client generates.
+    try {
+      if (UUID.fromString(id).toString().equals(id)) {
+        return id;
+      }
+    } catch (IllegalArgumentException e) {
+      // Fall through
+    }
+    throw new IOException("Malformed connection id");
+  }
+
+  static void closeQuietly(SocketChannel socket) {
+    try {
+      socket.close();
+    } catch (IOException e) {
+      log.log(Level.FINE, "Failed to close a socket", e);
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.grpc.shm;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.base.Preconditions;
+import io.grpc.ExperimentalApi;
+import io.grpc.ServerStreamTracer;
+import io.grpc.internal.AbstractServerImplBuilder;
+import io.grpc.internal.GrpcUtil;
+import java.io.File;
+import java.util.List;
+
+/**
+ * Builder for a server that accepts connections from channels on the same host through
+ * memory-mapped ring buffers. The server listens in a directory, which must not be shared with
+ * another running server.
+ */
+@ExperimentalApi
+public final class ShmServerBuilder extends AbstractServerImplBuilder<ShmServerBuilder> {
+  public static final int DEFAULT_FLOW_CONTROL_WINDOW = ShmConnection.DEFAULT_WINDOW;
+
+  private final File directory;
+  private int flowControlWindow = DEFAULT_FLOW_CONTROL_WINDOW;
+  private int maxMessageSize = GrpcUtil.DEFAULT_MAX_MESSAGE_SIZE;
+
+  /**
+   * Creates a server builder that listens in {@code directory}, creating it if necessary.
+   */
+  public static ShmServerBuilder forDirectory(File directory) {
+    return new ShmServerBuilder(directory);
+  }
+
+  /**
+   * Creates a server builder that listens in a directory derived from {@code port} under the
+   * system's temporary directory.
+   */
+  public static ShmServerBuilder forPort(int port) {
+    return new ShmServerBuilder(ShmSocketAddress.directoryForPort(port));
+  }
+
+  private ShmServerBuilder(File directory) {
+    this.directory = Preconditions.checkNotNull(directory, "directory");
+  }
+
+  /**
+   * Sets the number of bytes a client may send on a stream before the application has consumed
+   * them. If not called, the default value is {@link #DEFAULT_FLOW_CONTROL_WINDOW}.
+   */
+  public ShmServerBuilder flowControlWindow(int flowControlWindow) {
+    checkArgument(flowControlWindow > 0, "flowControlWindow must be positive");
+    this.flowControlWindow = flowControlWindow;
+    return this;
+  }
+
+  /**
+   * Sets the maximum message size allowed to be received on the server. If not called,
+   * defaults to 4 MiB. The default provides protection to services who haven't considered the
+   * possibility of receiving large messages while trying to be large enough to not be hit in normal
+   * usage.
+   */
+  public ShmServerBuilder maxMessageSize(int maxMessageSize) {
+    checkArgument(maxMessageSize >= 0, "maxMessageSize must be >= 0");
+    this.maxMessageSize = maxMessageSize;
+    return this;
+  }
+
+  @Override
+  protected ShmServer buildTransportServer(
+      List<ServerStreamTracer.Factory> streamTracerFactories) {
+    return new ShmServer(new ShmSocketAddress(directory), streamTracerFactories,
+        flowControlWindow, maxMessageSize);
+  }
+
+  @Override
+  public ShmServerBuilder useTransportSecurity(File certChain, File privateKey) {
+    throw new UnsupportedOperationException("TLS not supported in ShmServer");
+  }
+}
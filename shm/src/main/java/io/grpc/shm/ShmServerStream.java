@@ -0,0 +1,157 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.grpc.shm;
+
+import com.google.common.base.Preconditions;
+import io.grpc.Attributes;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.internal.AbstractServerStream;
+import io.grpc.internal.StatsTraceContext;
+import io.grpc.internal.WritableBuffer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Server stream for the shared-memory transport. All operations are handed over to the connection
+ * thread, where {@link ShmServerTransport} writes the corresponding frames.
+ */
+class ShmServerStream extends AbstractServerStream {
+  private static final Logger log = Logger.getLogger(ShmServerStream.class.getName());
+
+  private final Sink sink = new Sink();
+  private final TransportState state;
+  private final Attributes attributes;
+  private final String authority;
+
+  ShmServerStream(TransportState state, Attributes attributes, String authority,
+      StatsTraceContext statsTraceCtx) {
+    super(ShmWritableBufferAllocator.INSTANCE, statsTraceCtx);
+    this.state = Preconditions.checkNotNull(state, "transportState");
+    this.attributes = Preconditions.checkNotNull(attributes, "attributes");
+    this.authority = authority;
+  }
+
+  @Override
+  protected TransportState transportState() {
+    return state;
+  }
+
+  @Override
+  protected Sink abstractServerStreamSink() {
+    return sink;
+  }
+
+  @Override
+  public Attributes getAttributes() {
+    return attributes;
+  }
+
+  @Override
+  public String getAuthority() {
+    return authority;
+  }
+
+  private class Sink implements AbstractServerStream.Sink {
+    @Override
+    public void writeHeaders(Metadata headers) {
+      final byte[] payload = ShmCodec.encodeMetadata(headers);
+      state.transport.execute(new Runnable() {
+        @Override
+        public void run() {
+          state.transport.writeHeaders(state, payload);
+        }
+      });
+    }
+
+    @Override
+    public void writeFrame(WritableBuffer frame, boolean flush) {
+      final ShmWritableBuffer buffer = (ShmWritableBuffer) frame;
+      final int numBytes = buffer == null ? 0 : buffer.readableBytes();
+      if (numBytes == 0) {
+        return;
+      }
+      onSendingBytes(numBytes);
+      state.transport.execute(new Runnable() {
+        @Override
+        public void run() {
+          state.transport.sendData(state, buffer, numBytes);
+        }
+      });
+    }
+
+    @Override
+    public void writeTrailers(Metadata trailers, boolean headersSent) {
+      final byte[] payload = ShmCodec.encodeMetadata(trailers);
+      state.transport.execute(new Runnable() {
+        @Override
+        public void run() {
+          state.transport.writeTrailers(state, payload);
+        }
+      });
+    }
+
+    @Override
+    public void request(final int numMessages) {
+      state.transport.execute(new Runnable() {
+        @Override
+        public void run() {
+          state.requestMessagesFromDeframer(numMessages);
+        }
+      });
+    }
+
+    @Override
+    public void cancel(final Status status) {
+      state.transport.execute(new Runnable() {
+        @Override
+        public void run() {
+          state.transport.cancelStream(state, status);
+        }
+      });
+    }
+  }
+
+  /**
+   * The transport-thread side of the stream. {@link ShmServerTransport} drives it from the frames
+   * it reads.
+   */
+  static class TransportState extends AbstractServerStream.TransportState {
+    final ShmServerTransport transport;
+    final ShmConnection.Stream stream;
+    boolean closed;
+
+    TransportState(ShmServerTransport transport, ShmConnection.Stream stream, int maxMessageSize,
+        StatsTraceContext statsTraceCtx) {
+      super(maxMessageSize, statsTraceCtx);
+      this.transport = Preconditions.checkNotNull(transport, "transport");
+      this.stream = Preconditions.checkNotNull(stream, "stream");
+    }
+
+    @Override
+    public void bytesRead(int processedBytes) {
+      transport.bytesRead(this, processedBytes);
+    }
+
+    @Override
+    protected void deframeFailed(Throwable cause) {
+      log.log(Level.WARNING, "Exception processing message", cause);
+      transport.cancelStream(this, Status.fromThrowable(cause));
+    }
+  }
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.grpc.shm;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import io.grpc.Attributes;
+import io.grpc.Grpc;
+import io.grpc.ServerStreamTracer;
+import io.grpc.Status;
+import io.grpc.internal.LogId;
+import io.grpc.internal.ReadableBuffers;
+import io.grpc.internal.ServerTransport;
+import io.grpc.internal.ServerTransportListener;
+import io.grpc.internal.StatsTraceContext;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Server side of a shared-memory connection, created by {@link ShmServer} for each client that
+ * announced its rings.
+ */
+class ShmServerTransport implements ServerTransport, ShmConnection.Handler {
+  private static final byte[] EMPTY = new byte[0];
+
+  private final LogId logId = LogId.allocate(getClass().getName());
+  private final ShmConnection connection;
+  private final ShmSocketAddress address;
+  private final File[] files;
+  private final List<ServerStreamTracer.Factory> streamTracerFactories;
+  private final int maxMessageSize;
+
+  // Only used on the connection thread, after start().
+  private ServerTransportListener listener;
+  private Attributes attributes;
+  private final Map<Integer, ShmServerStream.TransportState> streams =
+      new HashMap<Integer, ShmServerStream.TransportState>();
+  private boolean goAwaySent;
+  private boolean stopped;
+
+  ShmServerTransport(String id, ShmRingBuffer in, ShmRingBuffer out, SocketChannel peer,
+      File[] files, ShmSocketAddress address,
+      List<ServerStreamTracer.Factory> streamTracerFactories, int flowControlWindow,
+      int maxMessageSize) throws IOException {
+    this.connection = new ShmConnection(id, in, out, peer, flowControlWindow, this);
+    this.address = checkNotNull(address, "address");
+    this.files = checkNotNull(files, "files");
+    this.streamTracerFactories = checkNotNull(streamTracerFactories, "streamTracerFactories");
+    this.maxMessageSize = maxMessageSize;
+  }
+
+  void start(ServerTransportListener listener) {
+    this.listener = checkNotNull(listener, "listener");
+    attributes = listener.transportReady(
+        Attributes.newBuilder().set(Grpc.TRANSPORT_ATTR_REMOTE_ADDR, address).build());
+    connection.start();
+  }
+
+  /**
+   * Releases the connection of a transport that will never be started.
+   */
+  void discard() {
+    connection.discard();
+    for (File file : files) {
+      file.delete();
+    }
+  }
+
+  @Override
+  public void shutdown() {
+    connection.execute(new Runnable() {
+      @Override
+      public void run() {
+        sendGoAway();
+      }
+    });
+  }
+
+  @Override
+  public void shutdownNow(final Status reason) {
+    checkNotNull(reason, "reason");
+    connection.execute(new Runnable() {
+      @Override
+      public void run() {
+        if (stopped) {
+          return;
+        }
+        for (ShmServerStream.TransportState state :
+            new ArrayList<ShmServerStream.TransportState>(streams.values())) {
+          cancelStream(state, reason);
+        }
+        sendGoAway();
+        connection.writeControlFrame(0, ShmConnection.TYPE_CLOSE, EMPTY);
+        connection.stop();
+      }
+    });
+  }
+
+  @Override
+  public LogId getLogId() {
+    return logId;
+  }
+
+  @Override
+  public String toString() {
+    return getLogId() + "(" + address + ")";
+  }
+
+  void execute(Runnable task) {
+    connection.execute(task);
+  }
+
+  void writeHeaders(ShmServerStream.TransportState state, byte[] headers) {
+    if (state.closed || !checkFrameSize(state, headers)) {
+      return;
+    }
+    connection.writeStreamFrame(
+        state.stream, ShmConnection.TYPE_HEADERS, headers, headers.length, null);
+  }
+
+  void sendData(final ShmServerStream.TransportState state, ShmWritableBuffer buffer,
+      final int numBytes) {
+    if (state.closed) {
+      return;
+    }
+    connection.writeStreamFrame(state.stream, ShmConnection.TYPE_DATA, buffer.array(), numBytes,
+        new Runnable() {
+          @Override
+          public void run() {
+            state.onSentBytes(numBytes);
+          }
+        });
+  }
+
+  void writeTrailers(final ShmServerStream.TransportState state, byte[] trailers) {
+    if (state.closed || !checkFrameSize(state, trailers)) {
+      return;
+    }
+    connection.writeStreamFrame(state.stream,
+        ShmConnection.TYPE_TRAILERS | ShmConnection.FLAG_END_STREAM, trailers, trailers.length,
+        new Runnable() {
+          @Override
+          public void run() {
+            state.complete();
+            streamClosed(state);
+          }
+        });
+  }
+
+  void cancelStream(ShmServerStream.TransportState state, Status status) {
+    if (state.closed) {
+      return;
+    }
+    // As with HTTP/2's RST_STREAM, the client only learns that the stream was cancelled.
+    connection.writeControlFrame(
+        state.stream.id, ShmConnection.TYPE_RST_STREAM, ShmCodec.encodeStatus(Status.CANCELLED));
+    state.transportReportStatus(status);
+    streamClosed(state);
+  }
+
+  void bytesRead(ShmServerStream.TransportState state, int numBytes) {
+    if (!stopped) {
+      connection.bytesRead(state.stream, numBytes);
+    }
+  }
+
+  @Override
+  public void frameRead(int streamId, int type, ByteBuffer payload) {
+    ShmServerStream.TransportState state = streams.get(streamId);
+    switch (type & ShmConnection.TYPE_MASK) {
+      case ShmConnection.TYPE_HEADERS:
+        streamStarted(streamId, payload);
+        break;
+      case ShmConnection.TYPE_DATA:
+        if (state != null) {
+          state.inboundDataReceived(ReadableBuffers.wrap(ShmCodec.copy(payload)),
+              (type & ShmConnection.FLAG_END_STREAM) != 0);
+        }
+        break;
+      case ShmConnection.TYPE_RST_STREAM:
+        if (state != null) {
+          Status status = ShmCodec.decodeStatus(payload);
+          state.transportReportStatus(status.isOk() ? Status.CANCELLED : status);
+          streamClosed(state);
+        }
+        break;
+      case ShmConnection.TYPE_PING:
+        connection.writeControlFrame(0, ShmConnection.TYPE_PING_ACK, ShmCodec.copy(payload));
+        break;
+      case ShmConnection.TYPE_CLOSE:
+        connection.stop();
+        break;
+      default:
+        // Ignore frames this side does not know about.
+    }
+  }
+
+  @Override
+  public void connectionStopped(@Nullable Throwable cause) {
+    stopped = true;
+    Status status = cause == null
+        ? Status.UNAVAILABLE.withDescription("Connection closed")
+        : Status.UNAVAILABLE.withDescription("Connection failed").withCause(cause);
+    for (ShmServerStream.TransportState state :
+        new ArrayList<ShmServerStream.TransportState>(streams.values())) {
+      state.transportReportStatus(status);
+      streamClosed(state);
+    }
+    for (File file : files) {
+      file.delete();
+    }
+    listener.transportTerminated();
+  }
+
+  private void streamStarted(int streamId, ByteBuffer payload) {
+    if (goAwaySent) {
+      connection.writeControlFrame(streamId, ShmConnection.TYPE_RST_STREAM,
+          ShmCodec.encodeStatus(Status.UNAVAILABLE.withDescription("Server is shutting down")));
+      return;
+    }
+    ShmCodec.RequestHeaders request = ShmCodec.decodeRequestHeaders(payload);
+    StatsTraceContext statsTraceCtx = StatsTraceContext.newServerContext(
+        streamTracerFactories, request.method, request.headers);
+    ShmServerStream.TransportState state = new ShmServerStream.TransportState(
+        this, connection.newStream(streamId), maxMessageSize, statsTraceCtx);
+    ShmServerStream stream =
+        new ShmServerStream(state, attributes, request.authority, statsTraceCtx);
+    streams.put(streamId, state);
+    listener.streamCreated(stream, request.method, request.headers);
+    state.onStreamAllocated();
+  }
+
+  private boolean checkFrameSize(ShmServerStream.TransportState state, byte[] payload) {
+    if (payload.length <= connection.maxPayloadSize()) {
+      return true;
+    }
+    cancelStream(state, Status.RESOURCE_EXHAUSTED.withDescription(
+        "Response metadata is larger than the ring: " + payload.length));
+    return false;
+  }
+
+  private void streamClosed(ShmServerStream.TransportState state) {
+    if (state.closed) {
+      return;
+    }
+    state.closed = true;
+    streams.remove(state.stream.id);
+    if (!stopped) {
+      connection.removeStream(state.stream);
+    }
+  }
+
+  private void sendGoAway() {
+    if (stopped || goAwaySent) {
+      return;
+    }
+    goAwaySent = true;
+    connection.writeControlFrame(0, ShmConnection.TYPE_GOAWAY, EMPTY);
+  }
+}
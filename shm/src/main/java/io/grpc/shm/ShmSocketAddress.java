@@ -0,0 +1,63 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.grpc.shm;
+
+import com.google.common.base.Preconditions;
+import io.grpc.ExperimentalApi;
+import java.io.File;
+import java.net.SocketAddress;
+
+/**
+ * The address of a shared-memory server: the directory in which it accepts connections.
+ */
+@ExperimentalApi
+public final class ShmSocketAddress extends SocketAddress {
+  private static final long serialVersionUID = 4915420735633361427L;
+
+  private final File directory;
+
+  public ShmSocketAddress(File directory) {
+    this.directory = Preconditions.checkNotNull(directory, "directory");
+  }
+
+  public File getDirectory() {
+    return directory;
+  }
+
+  /**
+   * Returns the directory used by servers and channels that are configured with just a port.
+   */
+  static File directoryForPort(int port) {
+    return new File(System.getProperty("java.io.tmpdir"), "grpc-shm-" + port);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof ShmSocketAddress && directory.equals(((ShmSocketAddress) o).directory);
+  }
+
+  @Override
+  public int hashCode() {
+    return directory.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return "shm:" + directory.getPath();
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.grpc.shm;
+
+import io.grpc.internal.WritableBuffer;
+
+/**
+ * A {@link WritableBuffer} over a plain byte array, copied into the ring once the frame is
+ * complete.
+ */
+final class ShmWritableBuffer implements WritableBuffer {
+  private final byte[] bytes;
+  private int index;
+
+  ShmWritableBuffer(int capacity) {
+    bytes = new byte[capacity];
+  }
+
+  @Override
+  public void write(byte[] src, int srcIndex, int length) {
+    System.arraycopy(src, srcIndex, bytes, index, length);
+    index += length;
+  }
+
+  @Override
+  public void write(byte b) {
+    bytes[index++] = b;
+  }
+
+  @Override
+  public int writableBytes() {
+    return bytes.length - index;
+  }
+
+  @Override
+  public int readableBytes() {
+    return index;
+  }
+
+  @Override
+  public void release() {}
+
+  byte[] array() {
+    return bytes;
+  }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.grpc.shm;
+
+import io.grpc.internal.WritableBuffer;
+import io.grpc.internal.WritableBufferAllocator;
+
+/**
+ * Allocates {@link ShmWritableBuffer}s. Each buffer becomes a single DATA frame, so the upper bound
+ * keeps frames well below the smallest ring capacity.
+ */
+final class ShmWritableBufferAllocator implements WritableBufferAllocator {
+  static final ShmWritableBufferAllocator INSTANCE = new ShmWritableBufferAllocator();
+
+  // Use 4k as our minimum buffer size.
+  private static final int MIN_BUFFER = 4096;
+
+  // A quarter of the smallest ring.
+  static final int MAX_BUFFER = ShmRingBuffer.MIN_CAPACITY / 4;
+
+  private ShmWritableBufferAllocator() {}
+
+  @Override
+  public WritableBuffer allocate(int capacityHint) {
+    capacityHint = Math.min(MAX_BUFFER, Math.max(MIN_BUFFER, capacityHint));
+    return new ShmWritableBuffer(capacityHint);
+  }
+}
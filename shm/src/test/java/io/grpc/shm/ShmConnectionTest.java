@@ -0,0 +1,173 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.shm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link ShmConnection}. */
+@RunWith(JUnit4.class)
+public class ShmConnectionTest {
+  private static final int CAPACITY = ShmRingBuffer.MIN_CAPACITY;
+  private static final long TIMEOUT_MS = 5000;
+
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private final RecordingHandler clientHandler = new RecordingHandler();
+  private final RecordingHandler serverHandler = new RecordingHandler();
+  // Each side maps the rings separately, as they would in two processes.
+  private ShmRingBuffer clientIn;
+  private ShmRingBuffer clientOut;
+  private ShmRingBuffer serverIn;
+  private ShmRingBuffer serverOut;
+  private SocketChannel clientSocket;
+  private SocketChannel serverSocket;
+
+  @Before
+  public void setUp() throws IOException {
+    assumeTrue(ShmRingBuffer.isPlatformSupported());
+    File clientToServer = tempFolder.newFile();
+    File serverToClient = tempFolder.newFile();
+    clientOut = ShmRingBuffer.create(clientToServer, CAPACITY);
+    clientIn = ShmRingBuffer.create(serverToClient, CAPACITY);
+    serverIn = ShmRingBuffer.open(clientToServer);
+    serverOut = ShmRingBuffer.open(serverToClient);
+    ServerSocketChannel listener = ServerSocketChannel.open();
+    try {
+      listener.socket().bind(ShmServer.loopbackAddress(0));
+      clientSocket = SocketChannel.open(
+          ShmServer.loopbackAddress(listener.socket().getLocalPort()));
+      serverSocket = listener.accept();
+    } finally {
+      listener.close();
+    }
+  }
+
+  @After
+  public void tearDown() {
+    if (clientSocket != null) {
+      ShmServer.closeQuietly(clientSocket);
+      ShmServer.closeQuietly(serverSocket);
+    }
+  }
+
+  @Test
+  public void sleepingPeerIsWokenUp() throws Exception {
+    final ShmConnection client = new ShmConnection(
+        "client", clientIn, clientOut, clientSocket, CAPACITY, clientHandler);
+    ShmConnection server = new ShmConnection(
+        "server", serverIn, serverOut, serverSocket, CAPACITY, serverHandler);
+    client.start();
+    server.start();
+    assertEquals(ShmConnection.TYPE_HELLO, serverHandler.nextFrameType());
+    assertEquals(ShmConnection.TYPE_HELLO, clientHandler.nextFrameType());
+    // Long enough for both threads to go to sleep
+    Thread.sleep(100);
+
+    client.execute(new Runnable() {
+      @Override
+      public void run() {
+        client.writeControlFrame(0, ShmConnection.TYPE_PING, ShmCodec.encodeLong(42));
+      }
+    });
+    assertEquals(ShmConnection.TYPE_PING, serverHandler.nextFrameType());
+  }
+
+  @Test
+  public void connectionFailsWhenPeerIsGone() throws Exception {
+    ShmConnection client = new ShmConnection(
+        "client", clientIn, clientOut, clientSocket, CAPACITY, clientHandler);
+    client.start();
+    // The server never starts and its process goes away.
+    serverSocket.close();
+
+    assertNotNull(clientHandler.stopped.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void stoppedConnectionFlushesControlFrames() throws Exception {
+    final ShmConnection client = new ShmConnection(
+        "client", clientIn, clientOut, clientSocket, CAPACITY, clientHandler);
+    ShmConnection server = new ShmConnection(
+        "server", serverIn, serverOut, serverSocket, CAPACITY, serverHandler);
+    client.start();
+    server.start();
+    assertEquals(ShmConnection.TYPE_HELLO, serverHandler.nextFrameType());
+
+    client.execute(new Runnable() {
+      @Override
+      public void run() {
+        client.writeControlFrame(0, ShmConnection.TYPE_CLOSE, new byte[0]);
+        client.stop();
+      }
+    });
+    assertNull(clientHandler.stopped.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS).cause);
+    // The client closed its socket, but the server still reads what was left in the ring
+    assertEquals(ShmConnection.TYPE_CLOSE, serverHandler.nextFrameType());
+    assertNotNull(serverHandler.stopped.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+  }
+
+  private static final class RecordingHandler implements ShmConnection.Handler {
+    final BlockingQueue<Integer> frames = new LinkedBlockingQueue<Integer>();
+    final BlockingQueue<Stopped> stopped = new LinkedBlockingQueue<Stopped>();
+
+    int nextFrameType() throws InterruptedException {
+      Integer type = frames.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+      assertNotNull("no frame read", type);
+      return type;
+    }
+
+    @Override
+    public void frameRead(int streamId, int type, ByteBuffer payload) {
+      frames.add(type & ShmConnection.TYPE_MASK);
+    }
+
+    @Override
+    public void connectionStopped(@Nullable Throwable cause) {
+      stopped.add(new Stopped(cause));
+    }
+  }
+
+  private static final class Stopped {
+    @Nullable
+    final Throwable cause;
+
+    Stopped(@Nullable Throwable cause) {
+      this.cause = cause;
+    }
+  }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2017, gRPC Authors All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.grpc.shm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link ShmRingBuffer}. */
+@RunWith(JUnit4.class)
+public class ShmRingBufferTest {
+  private static final int CAPACITY = ShmRingBuffer.MIN_CAPACITY;
+
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Rule
+  public final ExpectedException thrown = ExpectedException.none();
+
+  private File file;
+  private ShmRingBuffer producer;
+  private ShmRingBuffer consumer;
+
+  @Before
+  public void setUp() throws IOException {
+    assumeTrue(ShmRingBuffer.isPlatformSupported());
+    file = tempFolder.newFile();
+    producer = ShmRingBuffer.create(file, CAPACITY);
+    consumer = ShmRingBuffer.open(file);
+  }
+
+  @After
+  public void tearDown() {
+    if (producer != null) {
+      producer.close();
+      consumer.close();
+    }
+  }
+
+  @Test
+  public void emptyRingPeeksNull() {
+    assertTrue(consumer.isEmpty());
+    assertNull(consumer.peek());
+  }
+
+  @Test
+  public void framesArriveInOrder() {
+    assertTrue(producer.offer(1, 2, bytes(3, 0), 0, 3));
+    assertTrue(producer.offer(5, 6, bytes(7, 1), 2, 5));
+
+    ShmRingBuffer.Frame frame = consumer.peek();
+    assertEquals(1, frame.streamId);
+    assertEquals(2, frame.type);
+    assertArrayEquals(bytes(3, 0), payload(frame));
+    consumer.remove();
+    frame = consumer.peek();
+    assertEquals(5, frame.streamId);
+    assertEquals(6, frame.type);
+    assertArrayEquals(new byte[] {3, 4, 5, 6, 7}, payload(frame));
+    consumer.remove();
+    assertNull(consumer.peek());
+  }
+
+  @Test
+  public void peekDoesNotRemove() {
+    assertTrue(producer.offer(1, 0, bytes(3, 0), 0, 3));
+
+    assertEquals(1, consumer.peek().streamId);
+    assertEquals(1, consumer.peek().streamId);
+    consumer.remove();
+    assertTrue(consumer.isEmpty());
+  }
+
+  @Test
+  public void fullRingRejectsUntilConsumed() {
+    byte[] payload = new byte[CAPACITY / 4 - ShmRingBuffer.FRAME_HEADER_SIZE];
+    for (int i = 0; i < 4; i++) {
+      assertTrue(producer.offer(1, 0, payload, 0, payload.length));
+    }
+    assertFalse(producer.offer(1, 0, new byte[0], 0, 0));
+    assertFalse(producer.canOffer(0));
+
+    consumer.peek();
+    consumer.remove();
+    assertTrue(producer.canOffer(payload.length));
+    assertTrue(producer.offer(1, 0, payload, 0, payload.length));
+    assertFalse(producer.offer(1, 0, new byte[0], 0, 0));
+  }
+
+  @Test
+  public void framesSkipTheEndOfTheRing() {
+    // Neither a divisor of the capacity nor aligned, so frames start all over the ring.
+    int length = 10001;
+    for (int i = 0; i < 100; i++) {
+      byte[] payload = bytes(length, i);
+      assertTrue(producer.offer(i, 0, payload, 0, length));
+      ShmRingBuffer.Frame frame = consumer.peek();
+      assertEquals(i, frame.streamId);
+      assertTrue(frame.payload.limit() <= CAPACITY);
+      assertArrayEquals(payload, payload(frame));
+      consumer.remove();
+    }
+    assertTrue(consumer.isEmpty());
+  }
+
+  @Test
+  public void largestFrameFitsAnywhereOnceEmpty() {
+    byte[] payload = new byte[producer.maxPayloadSize()];
+    for (int i = 0; i < 10; i++) {
+      assertTrue(producer.offer(i, 0, new byte[1001], 0, 1001));
+      consumer.peek();
+      consumer.remove();
+      assertTrue(producer.offer(i, 0, payload, 0, payload.length));
+      assertEquals(payload.length, consumer.peek().payload.remaining());
+      consumer.remove();
+    }
+  }
+
+  @Test
+  public void reopenedRingContinuesWhereItWas() throws IOException {
+    assertTrue(producer.offer(1, 0, bytes(10, 0), 0, 10));
+    assertTrue(producer.offer(2, 0, bytes(10, 1), 0, 10));
+    consumer.peek();
+    consumer.remove();
+
+    ShmRingBuffer reopened = ShmRingBuffer.open(file);
+    assertEquals(2, reopened.peek().streamId);
+    reopened.remove();
+    assertNull(reopened.peek());
+    reopened.close();
+  }
+
+  @Test
+  public void wakeConsumerOnlyWhileSleeping() {
+    assertFalse(producer.wakeConsumer());
+
+    consumer.consumerSleeping(true);
+    assertTrue(producer.wakeConsumer());
+    assertFalse(producer.wakeConsumer());
+
+    consumer.consumerSleeping(true);
+    consumer.consumerSleeping(false);
+    assertFalse(producer.wakeConsumer());
+  }
+
+  @Test
+  public void frameLargerThanHalfTheRingIsRejected() {
+    int length = CAPACITY / 2;
+    thrown.expect(IllegalArgumentException.class);
+    producer.offer(1, 0, new byte[length], 0, length);
+  }
+
+  @Test
+  public void openRejectsOtherFiles() throws IOException {
+    File other = tempFolder.newFile();
+    FileOutputStream out = new FileOutputStream(other);
+    try {
+      out.write(new byte[ShmRingBuffer.HEADER_SIZE + CAPACITY]);
+    } finally {
+      out.close();
+    }
+    thrown.expect(IOException.class);
+    ShmRingBuffer.open(other);
+  }
+
+  private static byte[] payload(ShmRingBuffer.Frame frame) {
+    ByteBuffer payload = frame.payload.duplicate();
+    byte[] bytes = new byte[payload.remaining()];
+    payload.get(bytes);
+    return bytes;
+  }
+
+  private static byte[] bytes(int length, int seed) {
+    byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++) {
+      bytes[i] = (byte) (i + seed);
+    }
+    return bytes;
+  }
+}